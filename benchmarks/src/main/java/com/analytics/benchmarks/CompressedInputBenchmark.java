@@ -0,0 +1,79 @@
+package com.analytics.benchmarks;
+
+import com.analytics.parser.LogScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Scanning one generated day file plain versus gzip-compressed.
+ * inflateOnly is the cost of decompression alone; scanGzip close to max(inflateOnly, scanPlain)
+ * rather than their sum means the inflater thread and the scanner overlap.
+ * Throughput in MB/s of uncompressed log is ops/s multiplied by the megabytes parameter.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class CompressedInputBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Compressed {
+        Path file;
+
+        @Setup(Level.Trial)
+        public void compress(GeneratedLogs logs) throws IOException {
+            file = logs.directory.resolve("day_x.log.gz");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file), 1 << 16)) {
+                Files.copy(logs.dayX, out);
+            }
+        }
+    }
+
+    private final LogScanner scanner = new LogScanner();
+
+    @Benchmark
+    public void scanPlain(GeneratedLogs logs, Blackhole blackhole) throws IOException {
+        scan(logs.dayX, blackhole);
+    }
+
+    @Benchmark
+    public void scanGzip(Compressed compressed, Blackhole blackhole) throws IOException {
+        scan(compressed.file, blackhole);
+    }
+
+    /** Decompression alone on the benchmark thread, without parsing. */
+    @Benchmark
+    public long inflateOnly(Compressed compressed) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(compressed.file), 1 << 16)) {
+            return in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private void scan(Path file, Blackhole blackhole) throws IOException {
+        scanner.scan(file, (buf, pageStart, pageEnd, customerStart, customerEnd) -> {
+            blackhole.consume(customerEnd - pageStart);
+            return true;
+        });
+    }
+}
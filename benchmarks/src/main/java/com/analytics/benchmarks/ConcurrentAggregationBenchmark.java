@@ -0,0 +1,187 @@
+package com.analytics.benchmarks;
+
+import com.analytics.collection.ByteSlice;
+import com.analytics.collection.ConcurrentCustomerTable;
+import com.analytics.model.CustomerActivity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregating pre-parsed visits from several threads at once, without file I/O:
+ *   table          — one shared ConcurrentCustomerTable (CAS state, lock-free lookups)
+ *   concurrentMap  — one shared ConcurrentHashMap of CustomerActivity, locking each activity to update it
+ *   partialMaps    — a HashMap per thread, merged on the calling thread at the end
+ * Customers are drawn with a skew (a quarter of the IDs take three quarters of the visits) so hot keys contend.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentAggregationBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"table", "concurrentMap", "partialMaps"})
+    public String strategy;
+
+    @Param("2000000")
+    public int visits;
+
+    @Param("200000")
+    public int customers;
+
+    private ByteBuffer data;
+    private int[] offsets;
+    private ExecutorService pool;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        SplittableRandom random = new SplittableRandom(42);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        offsets = new int[visits * 4];
+        for (int i = 0; i < visits; i++) {
+            int customer = random.nextDouble() < 0.75 ? random.nextInt(customers / 4) : random.nextInt(customers);
+            byte[] page = ("/page-" + random.nextInt(100)).getBytes(StandardCharsets.US_ASCII);
+            byte[] id = ("cust_" + customer).getBytes(StandardCharsets.US_ASCII);
+            offsets[i * 4] = bytes.size();
+            bytes.writeBytes(page);
+            offsets[i * 4 + 1] = bytes.size();
+            offsets[i * 4 + 2] = bytes.size();
+            bytes.writeBytes(id);
+            offsets[i * 4 + 3] = bytes.size();
+        }
+        data = ByteBuffer.wrap(bytes.toByteArray());
+        pool = Executors.newFixedThreadPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public int aggregate() throws Exception {
+        return switch (strategy) {
+            case "table" -> table();
+            case "concurrentMap" -> concurrentMap();
+            case "partialMaps" -> partialMaps();
+            default -> throw new IllegalArgumentException("Unknown strategy: " + strategy);
+        };
+    }
+
+    private int table() throws Exception {
+        ConcurrentCustomerTable table = new ConcurrentCustomerTable();
+        runSlices((from, to) -> {
+            ByteSlice customer = new ByteSlice();
+            ByteSlice page = new ByteSlice();
+            for (int i = from; i < to; i++) {
+                table.record(customer.set(data, offsets[i * 4 + 2], offsets[i * 4 + 3]),
+                        page.set(data, offsets[i * 4], offsets[i * 4 + 1]), day(i));
+            }
+            return null;
+        });
+        return table.loyalCustomers().size();
+    }
+
+    private int concurrentMap() throws Exception {
+        Map<String, CustomerActivity> activities = new ConcurrentHashMap<>();
+        runSlices((from, to) -> {
+            for (int i = from; i < to; i++) {
+                CustomerActivity activity = activities.computeIfAbsent(string(i * 4 + 2), CustomerActivity::new);
+                String page = string(i * 4);
+                synchronized (activity) {
+                    record(activity, page, i);
+                }
+            }
+            return null;
+        });
+        return countLoyal(activities);
+    }
+
+    private int partialMaps() throws Exception {
+        List<Map<String, CustomerActivity>> partials = runSlices((from, to) -> {
+            Map<String, CustomerActivity> partial = new HashMap<>();
+            for (int i = from; i < to; i++) {
+                record(partial.computeIfAbsent(string(i * 4 + 2), CustomerActivity::new), string(i * 4), i);
+            }
+            return partial;
+        });
+        Map<String, CustomerActivity> merged = new HashMap<>();
+        for (Map<String, CustomerActivity> partial : partials) {
+            partial.forEach((id, activity) -> merged.merge(id, activity, CustomerActivity::merge));
+        }
+        return countLoyal(merged);
+    }
+
+    /** First half of the visits is day X, second half day Y. */
+    private int day(int visit) {
+        return visit < visits / 2 ? ConcurrentCustomerTable.DAY_X : ConcurrentCustomerTable.DAY_Y;
+    }
+
+    private void record(CustomerActivity activity, String page, int visit) {
+        if (day(visit) == ConcurrentCustomerTable.DAY_X) {
+            activity.recordDayX(page);
+        } else {
+            activity.recordDayY(page);
+        }
+    }
+
+    private String string(int field) {
+        byte[] bytes = new byte[offsets[field + 1] - offsets[field]];
+        data.get(offsets[field], bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static int countLoyal(Map<String, CustomerActivity> activities) {
+        int loyal = 0;
+        for (CustomerActivity activity : activities.values()) {
+            if (activity.isLoyal()) loyal++;
+        }
+        return loyal;
+    }
+
+    private interface Slice<T> {
+        T run(int from, int to);
+    }
+
+    /** Splits the visits into one contiguous slice per thread and waits for all of them. */
+    private <T> List<T> runSlices(Slice<T> slice) throws Exception {
+        List<Future<T>> futures = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            int from = (int) ((long) visits * t / threads);
+            int to = (int) ((long) visits * (t + 1) / threads);
+            futures.add(pool.submit(() -> slice.run(from, to)));
+        }
+        List<T> results = new ArrayList<>(threads);
+        for (Future<T> future : futures) results.add(future.get());
+        return results;
+    }
+}
@@ -0,0 +1,52 @@
+package com.analytics.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/** Benchmark state holding one generated (dayX, dayY) pair per parameter combination. */
+@State(Scope.Benchmark)
+public class GeneratedLogs {
+
+    @Param("100000")
+    public int customers;
+
+    @Param("1000")
+    public int pages;
+
+    @Param("0.5")
+    public double overlap;
+
+    @Param("64")
+    public int megabytes;
+
+    public Path directory;
+    public Path dayX;
+    public Path dayY;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        directory = Files.createTempDirectory("loyalty-bench");
+        dayX = directory.resolve("day_x.log");
+        dayY = directory.resolve("day_y.log");
+        new SyntheticLogGenerator(customers, pages, overlap, (long) megabytes << 20, 42).generate(dayX, dayY);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+}
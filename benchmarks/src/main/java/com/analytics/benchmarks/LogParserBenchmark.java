@@ -0,0 +1,79 @@
+package com.analytics.benchmarks;
+
+import com.analytics.model.LogRecord;
+import com.analytics.parser.LogParser;
+import com.analytics.parser.LogScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Parsing cost of one generated day file: line-based LogParser versus the byte-level LogScanner and its cursor. */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class LogParserBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Lines {
+        List<String> lines;
+        Path file;
+
+        @Setup(Level.Trial)
+        public void read(GeneratedLogs logs) throws IOException {
+            file = logs.dayX;
+            lines = Files.readAllLines(file);
+        }
+    }
+
+    private final LogParser parser = new LogParser();
+    private final LogScanner scanner = new LogScanner();
+
+    @Benchmark
+    public List<LogRecord> parseFile(GeneratedLogs logs) throws IOException {
+        return parser.parseFile(logs.dayX);
+    }
+
+    /** parseFileLine alone, over lines already held in memory. */
+    @Benchmark
+    public void parseFileLine(Lines lines, Blackhole blackhole) {
+        int lineNumber = 0;
+        for (String line : lines.lines) {
+            blackhole.consume(parser.parseFileLine(line.strip(), ++lineNumber, lines.file));
+        }
+    }
+
+    @Benchmark
+    public void scan(GeneratedLogs logs, Blackhole blackhole) throws IOException {
+        scanner.scan(logs.dayX, (buf, pageStart, pageEnd, customerStart, customerEnd) -> {
+            blackhole.consume(customerEnd - pageStart);
+            return true;
+        });
+    }
+
+    /** Same scan through the reused LogCursor; gc.alloc.rate.norm should match scan. */
+    @Benchmark
+    public void scanCursor(GeneratedLogs logs, Blackhole blackhole) throws IOException {
+        scanner.scan(logs.dayX, cursor -> {
+            blackhole.consume(cursor.customerId().length());
+            return true;
+        });
+    }
+}
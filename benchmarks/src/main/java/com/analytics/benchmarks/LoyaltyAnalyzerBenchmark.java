@@ -0,0 +1,60 @@
+package com.analytics.benchmarks;
+
+import com.analytics.service.CompactLoyaltyAnalyzer;
+import com.analytics.service.DictionaryLoyaltyAnalyzer;
+import com.analytics.service.ExternalSortLoyaltyAnalyzer;
+import com.analytics.service.InMemoryLoyaltyAnalyzer;
+import com.analytics.service.LoyaltyAnalyzer;
+import com.analytics.service.ParallelLoyaltyAnalyzer;
+import com.analytics.service.PartitionedLoyaltyAnalyzer;
+import com.analytics.service.StreamingLoyaltyAnalyzer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** End-to-end LoyaltyAnalyzer.find over a generated day pair, one run per analyzer. */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoyaltyAnalyzerBenchmark {
+
+    @Param({"in-memory", "streaming", "parallel", "dictionary", "compact", "external", "partitioned"})
+    public String analyzer;
+
+    private LoyaltyAnalyzer instance;
+
+    @Setup(Level.Trial)
+    public void create() {
+        instance = switch (analyzer) {
+            case "in-memory" -> new InMemoryLoyaltyAnalyzer();
+            case "streaming" -> new StreamingLoyaltyAnalyzer();
+            case "parallel" -> new ParallelLoyaltyAnalyzer();
+            case "dictionary" -> new DictionaryLoyaltyAnalyzer();
+            case "compact" -> new CompactLoyaltyAnalyzer();
+            case "external" -> new ExternalSortLoyaltyAnalyzer();
+            case "partitioned" -> new PartitionedLoyaltyAnalyzer();
+            default -> throw new IllegalArgumentException("Unknown analyzer: " + analyzer);
+        };
+    }
+
+    @Benchmark
+    public List<String> find(GeneratedLogs logs) throws IOException {
+        return instance.find(logs.dayX, logs.dayY);
+    }
+}
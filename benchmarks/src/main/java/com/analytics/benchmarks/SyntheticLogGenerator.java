@@ -0,0 +1,68 @@
+package com.analytics.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Writes a pair of synthetic day logs in the analyzer's input format.
+ * Tunable knobs:
+ *   customers — distinct customer IDs drawn per day
+ *   pages     — distinct page IDs
+ *   overlap   — fraction of day-Y visits made by customers drawn from the day-X population (0..1)
+ *   bytes     — approximate size of each file
+ * Output is deterministic for a given seed.
+ */
+public final class SyntheticLogGenerator {
+
+    private final int customers;
+    private final int pages;
+    private final double overlap;
+    private final long bytes;
+    private final long seed;
+
+    public SyntheticLogGenerator(int customers, int pages, double overlap, long bytes, long seed) {
+        if (customers < 1 || pages < 1) throw new IllegalArgumentException("customers and pages must be positive");
+        if (overlap < 0 || overlap > 1) throw new IllegalArgumentException("overlap must be within [0, 1]: " + overlap);
+        this.customers = customers;
+        this.pages = pages;
+        this.overlap = overlap;
+        this.bytes = bytes;
+        this.seed = seed;
+    }
+
+    /** Writes dayX and dayY; day-Y customers outside the overlap come from a disjoint ID range. */
+    public void generate(Path dayX, Path dayY) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        write(dayX, "2024-01-15", random, false);
+        write(dayY, "2024-01-16", random, true);
+    }
+
+    private void write(Path file, String date, SplittableRandom random, boolean dayY) throws IOException {
+        long written = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int second = 0; written < bytes; second++) {
+                boolean fresh = dayY && random.nextDouble() >= overlap;
+                int customer = random.nextInt(customers) + (fresh ? customers : 0);
+                String line = "%sT%02d:%02d:%02d /page-%d cust_%d\n".formatted(date,
+                        second / 3600 % 24, second / 60 % 60, second % 60, random.nextInt(pages), customer);
+                writer.write(line);
+                written += line.length();
+            }
+        }
+    }
+
+    /** Usage: SyntheticLogGenerator dayX dayY customers pages overlap megabytes [seed] */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 6) {
+            System.err.println("Usage: SyntheticLogGenerator <day_x> <day_y> <customers> <pages> <overlap> <megabytes> [seed]");
+            System.exit(1);
+        }
+        new SyntheticLogGenerator(Integer.parseInt(args[2]), Integer.parseInt(args[3]), Double.parseDouble(args[4]),
+                Long.parseLong(args[5]) << 20, args.length > 6 ? Long.parseLong(args[6]) : 42)
+                .generate(Path.of(args[0]), Path.of(args[1]));
+    }
+}
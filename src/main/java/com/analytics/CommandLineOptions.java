@@ -0,0 +1,483 @@
+package com.analytics;
+
+import com.analytics.cluster.DistributedLoyaltyAnalyzer;
+import com.analytics.model.LoyaltyRule;
+import com.analytics.parser.MalformedLinePolicy;
+import com.analytics.parser.TimeFilter;
+import com.analytics.service.CheckpointStore;
+
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parsed command line: positional log files (oldest first) plus optional --name=value flags.
+ * Two files run a LoyaltyAnalyzer; more files, or an explicit rule, run a RollingLoyaltyWindow over all of them.
+ * Invalid input is reported as IllegalArgumentException with a message suitable for the user.
+ */
+final class CommandLineOptions {
+
+    static final String USAGE = """
+            Usage: loyalty-analyzer-in-memory [options] <log_file_day_x> <log_file_day_y> [<more day logs>...]
+                   loyalty-analyzer-in-memory --batch=MANIFEST [--jobs=N] [--batch-memory-mb=M] [--analyzer=NAME]
+            Options:
+              --analyzer=NAME   in-memory (default), streaming, parallel, dictionary, compact, windowed, external,
+                                partitioned, concurrent or auto (chosen per pair from sampled cardinality)
+              --workers=N       parallel, concurrent: scan each day file with N workers (implies parallel);
+                                partitioned: analyze N partitions at a time
+              --partitions=P    split both days into P partitions by customer (implies partitioned)
+              --off-heap        in-memory: keep customers in direct memory instead of on the heap, for days
+                                with hundreds of millions of customers (size -XX:MaxDirectMemorySize to fit)
+              --memory-mb=M     sort buffer of the external analyzer in MB (default 256, implies external)
+              --min-days=K      rolling window: loyal if present on at least K of the given days (default 2)
+              --min-pages=P     rolling window: loyal if at least P distinct pages in total (default 2)
+              --snapshot-dir=D  reuse and save binary day summaries in D (implies windowed for two files)
+              --checkpoint-dir=D  save progress in D and resume an interrupted run from it (implies streaming)
+              --checkpoint-mb=N   checkpoint after every N MB of input (default 1024)
+              --checkpoint-seconds=S  checkpoint at least every S seconds (default 300)
+              --output=FILE     write loyal customer IDs to FILE, one per line, instead of stdout
+              --count-only      print only the number of loyal customers
+              --metrics=FILE    write run metrics (phase timings, throughput, state sizes) to FILE as JSON
+              --from=TIME       only count visits at or after TIME (2024-01-15 or 2024-01-15T09:30[:00])
+              --to=TIME         only count visits before TIME
+              --hours=HH:MM-HH:MM    only count visits within these hours of each day, e.g. 09:00-17:00
+              --malformed-samples=N  log only the first N malformed lines of each file (default 10)
+              --max-malformed=PCT    fail if more than PCT percent of a file's lines are malformed
+              --approximate     estimate the number of loyal customers from fixed-size day sketches, with a 95%
+                                interval; with --snapshot-dir, day sketches are saved and reused
+              --cluster=N       analyze with N local worker processes that exchange customer states by socket
+              --cluster=HOST:PORT,...  analyze with running workers (com.analytics.cluster.ClusterWorker)
+              --scaling         with --cluster=N: time 1, 2, 4 ... N workers and print the scaling efficiency
+              --follow          keep reading day Y as it grows and print customers as they become loyal
+              --poll-ms=N       follow: check day Y for new lines every N milliseconds (default 1000)
+              --batch=MANIFEST  run every "<day_x> <day_y> <output>" line of MANIFEST in this JVM
+              --jobs=N          batch: run at most N jobs at a time (default: number of processors)
+              --batch-memory-mb=M    batch: heap shared by running jobs, reserved by input size (default 3/4 of -Xmx)""";
+
+    static final List<String> ANALYZERS = List.of("in-memory", "streaming", "parallel", "dictionary", "compact", "windowed",
+            "external", "partitioned", "concurrent", "auto");
+
+    private List<Path> logFiles;
+    private String analyzer;
+    private Integer workers;
+    private Integer memoryMb;
+    private Integer partitions;
+    private Integer minDays;
+    private Integer minPages;
+    private Path snapshotDir;
+    private Path checkpointDir;
+    private Integer checkpointMb;
+    private Integer checkpointSeconds;
+    private Path output;
+    private boolean countOnly;
+    private boolean offHeap;
+    private Path metricsFile;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private LocalTime[] hours;
+    private Integer malformedSamples;
+    private Double maxMalformedPercent;
+    private boolean approximate;
+    private boolean follow;
+    private Integer pollMillis;
+    private Integer clusterWorkers;
+    private List<InetSocketAddress> clusterAddresses;
+    private boolean scaling;
+    private Path batchManifest;
+    private Integer jobs;
+    private Integer batchMemoryMb;
+
+    private CommandLineOptions() {
+    }
+
+    static CommandLineOptions parse(String[] args) {
+        CommandLineOptions options = new CommandLineOptions();
+        List<String> positional = new ArrayList<>();
+
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                positional.add(arg);
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            String name = eq < 0 ? arg.substring(2) : arg.substring(2, eq);
+            String value = eq < 0 ? null : arg.substring(eq + 1);
+            switch (name) {
+                case "analyzer" -> options.analyzer = oneOf(name, value, ANALYZERS);
+                case "workers" -> options.workers = positiveInt(name, value);
+                case "memory-mb" -> options.memoryMb = positiveInt(name, value);
+                case "off-heap" -> options.offHeap = flag(name, value);
+                case "partitions" -> options.partitions = positiveInt(name, value);
+                case "min-days" -> options.minDays = positiveInt(name, value);
+                case "min-pages" -> options.minPages = positiveInt(name, value);
+                case "snapshot-dir" -> options.snapshotDir = Path.of(required(name, value));
+                case "checkpoint-dir" -> options.checkpointDir = Path.of(required(name, value));
+                case "checkpoint-mb" -> options.checkpointMb = positiveInt(name, value);
+                case "checkpoint-seconds" -> options.checkpointSeconds = positiveInt(name, value);
+                case "output" -> options.output = Path.of(required(name, value));
+                case "count-only" -> options.countOnly = flag(name, value);
+                case "metrics" -> options.metricsFile = Path.of(required(name, value));
+                case "from" -> options.from = dateTime(name, value);
+                case "to" -> options.to = dateTime(name, value);
+                case "hours" -> options.hours = hours(name, value);
+                case "malformed-samples" -> options.malformedSamples = nonNegativeInt(name, value);
+                case "max-malformed" -> options.maxMalformedPercent = percent(name, value);
+                case "approximate" -> options.approximate = flag(name, value);
+                case "follow" -> options.follow = flag(name, value);
+                case "poll-ms" -> options.pollMillis = positiveInt(name, value);
+                case "cluster" -> {
+                    if (required(name, value).chars().allMatch(Character::isDigit)) {
+                        options.clusterWorkers = positiveInt(name, value);
+                    } else {
+                        options.clusterAddresses = DistributedLoyaltyAnalyzer.parseAddresses(value);
+                    }
+                }
+                case "scaling" -> options.scaling = flag(name, value);
+                case "batch" -> options.batchManifest = Path.of(required(name, value));
+                case "jobs" -> options.jobs = positiveInt(name, value);
+                case "batch-memory-mb" -> options.batchMemoryMb = positiveInt(name, value);
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+
+        if ((options.checkpointMb != null || options.checkpointSeconds != null) && options.checkpointDir == null) {
+            throw new IllegalArgumentException("--checkpoint-mb and --checkpoint-seconds need --checkpoint-dir");
+        }
+        if ((options.from != null || options.to != null || options.hours != null)
+                && (options.snapshotDir != null || options.checkpointDir != null)) {
+            throw new IllegalArgumentException("--from, --to and --hours cannot be combined with --snapshot-dir or "
+                    + "--checkpoint-dir, which keep state of whole days");
+        }
+        options.timeFilter(); // rejects an empty range or daily window
+        if (options.checkpointDir != null && (options.batchManifest != null || options.approximate || options.follow)) {
+            throw new IllegalArgumentException("--checkpoint-dir does not apply to --batch, --approximate or --follow");
+        }
+        if (options.batchManifest != null) return options.validateBatch(positional);
+        if (options.jobs != null || options.batchMemoryMb != null) {
+            throw new IllegalArgumentException("--jobs and --batch-memory-mb only apply to --batch");
+        }
+        if (positional.size() < 2) {
+            throw new IllegalArgumentException("Expected at least two log files, got " + positional.size());
+        }
+        options.logFiles = positional.stream().map(Path::of).toList();
+        if (options.countOnly && options.output != null) {
+            throw new IllegalArgumentException("--output and --count-only are mutually exclusive");
+        }
+        if (options.approximate && options.follow) {
+            throw new IllegalArgumentException("--approximate and --follow are mutually exclusive");
+        }
+        if (options.isCluster()) return options.validateCluster();
+        if (options.scaling) throw new IllegalArgumentException("--scaling needs --cluster=N");
+        if (options.approximate) return options.validateApproximate();
+        if (options.follow) return options.validateFollow();
+        if (options.pollMillis != null) throw new IllegalArgumentException("--poll-ms only applies to --follow");
+        if (options.isWindow()) {
+            if (options.analyzer != null || options.workers != null || options.memoryMb != null
+                    || options.partitions != null || options.checkpointDir != null || options.offHeap) {
+                throw new IllegalArgumentException("--analyzer, --workers, --memory-mb, --partitions, "
+                        + "--checkpoint-dir and --off-heap do not apply to a rolling window");
+            }
+            if (options.rule().minDays() > positional.size()) {
+                throw new IllegalArgumentException("--min-days exceeds the number of log files");
+            }
+        } else {
+            options.resolveAnalyzer();
+        }
+        return options;
+    }
+
+    /** Picks the analyzer implied by the other options when none is given and checks that they apply to it. */
+    private void resolveAnalyzer() {
+        if (analyzer == null) {
+            analyzer = partitions != null ? "partitioned"
+                    : workers != null ? "parallel"
+                    : snapshotDir != null ? "windowed"
+                    : memoryMb != null ? "external"
+                    : checkpointDir != null ? "streaming"
+                    : "in-memory";
+        }
+        if (workers != null && !List.of("parallel", "partitioned", "concurrent").contains(analyzer)) {
+            throw new IllegalArgumentException("--workers only applies to the parallel, partitioned and concurrent analyzers");
+        }
+        if (partitions != null && !analyzer.equals("partitioned")) {
+            throw new IllegalArgumentException("--partitions only applies to the partitioned analyzer");
+        }
+        if (snapshotDir != null && !analyzer.equals("windowed")) {
+            throw new IllegalArgumentException("--snapshot-dir only applies to the windowed analyzer");
+        }
+        if (memoryMb != null && !analyzer.equals("external")) {
+            throw new IllegalArgumentException("--memory-mb only applies to the external analyzer");
+        }
+        if (checkpointDir != null && !analyzer.equals("streaming")) {
+            throw new IllegalArgumentException("--checkpoint-dir only applies to the streaming analyzer");
+        }
+        if (offHeap && !analyzer.equals("in-memory")) {
+            throw new IllegalArgumentException("--off-heap only applies to the in-memory analyzer");
+        }
+    }
+
+    /** Approximate counting only ever sketches a day pair and prints no IDs. */
+    private CommandLineOptions validateApproximate() {
+        if (isWindow() || analyzer != null || workers != null || memoryMb != null || partitions != null
+                || offHeap || output != null || countOnly || metricsFile != null) {
+            throw new IllegalArgumentException("--approximate takes exactly two log files and only --snapshot-dir "
+                    + "and the malformed line options");
+        }
+        return this;
+    }
+
+    /**
+     * Workers are sent the malformed line policy and time filter with each job and stream IDs back, so only the
+     * output, malformed line and time filter options apply.
+     */
+    private CommandLineOptions validateCluster() {
+        if (isWindow() || analyzer != null || workers != null || memoryMb != null || partitions != null || offHeap
+                || snapshotDir != null || checkpointDir != null || metricsFile != null || approximate || follow
+                || pollMillis != null) {
+            throw new IllegalArgumentException("--cluster takes exactly two log files and only --output, --count-only, "
+                    + "--scaling and the malformed line and time filter options");
+        }
+        if (scaling && (clusterWorkers == null || output != null)) {
+            throw new IllegalArgumentException("--scaling needs --cluster=N and prints a table instead of the IDs");
+        }
+        return this;
+    }
+
+    /** Following emits IDs as day Y grows, so it needs a day pair and an output that is not only a final count. */
+    private CommandLineOptions validateFollow() {
+        if (isWindow() || analyzer != null || workers != null || memoryMb != null || partitions != null
+                || offHeap || snapshotDir != null || countOnly || metricsFile != null) {
+            throw new IllegalArgumentException("--follow takes exactly two log files and only --output, --poll-ms "
+                    + "and the malformed line options");
+        }
+        return this;
+    }
+
+    /** A batch takes its files from the manifest and writes one output per job. */
+    private CommandLineOptions validateBatch(List<String> positional) {
+        if (!positional.isEmpty()) throw new IllegalArgumentException("--batch does not take log files: " + positional);
+        if (minDays != null || minPages != null || snapshotDir != null || output != null || countOnly
+                || metricsFile != null || approximate || follow || isCluster() || scaling) {
+            throw new IllegalArgumentException("--min-days, --min-pages, --snapshot-dir, --output, --count-only, "
+                    + "--metrics, --approximate, --follow, --cluster and --scaling do not apply to --batch");
+        }
+        logFiles = List.of();
+        resolveAnalyzer();
+        if (analyzer.equals("windowed")) throw new IllegalArgumentException("--batch does not support the windowed analyzer");
+        return this;
+    }
+
+    private static int positiveInt(String name, String value) {
+        try {
+            int parsed = Integer.parseInt(required(name, value));
+            if (parsed > 0) return parsed;
+        } catch (NumberFormatException ignored) {
+            // reported below
+        }
+        throw new IllegalArgumentException("--%s expects a positive integer: %s".formatted(name, value));
+    }
+
+    private static int nonNegativeInt(String name, String value) {
+        try {
+            int parsed = Integer.parseInt(required(name, value));
+            if (parsed >= 0) return parsed;
+        } catch (NumberFormatException ignored) {
+            // reported below
+        }
+        throw new IllegalArgumentException("--%s expects a non-negative integer: %s".formatted(name, value));
+    }
+
+    /** Accepts "5" or "5%". */
+    private static double percent(String name, String value) {
+        String number = required(name, value).endsWith("%") ? value.substring(0, value.length() - 1) : value;
+        try {
+            double parsed = Double.parseDouble(number);
+            if (parsed >= 0 && parsed <= 100) return parsed;
+        } catch (NumberFormatException ignored) {
+            // reported below
+        }
+        throw new IllegalArgumentException("--%s expects a percentage between 0 and 100: %s".formatted(name, value));
+    }
+
+    /** Accepts a date (its start) or a date and time in ISO format. */
+    private static LocalDateTime dateTime(String name, String value) {
+        String text = required(name, value);
+        try {
+            return text.contains("T") ? LocalDateTime.parse(text) : LocalDate.parse(text).atStartOfDay();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("--%s expects a date or date-time such as 2024-01-15T09:30: %s"
+                    .formatted(name, value));
+        }
+    }
+
+    private static LocalTime[] hours(String name, String value) {
+        String[] bounds = required(name, value).split("-", 2);
+        try {
+            if (bounds.length == 2) return new LocalTime[] {LocalTime.parse(bounds[0]), LocalTime.parse(bounds[1])};
+        } catch (DateTimeParseException ignored) {
+            // reported below
+        }
+        throw new IllegalArgumentException("--%s expects two times of day such as 09:00-17:00: %s".formatted(name, value));
+    }
+
+    private static boolean flag(String name, String value) {
+        if (value != null) throw new IllegalArgumentException("--%s does not take a value".formatted(name));
+        return true;
+    }
+
+    private static String oneOf(String name, String value, List<String> allowed) {
+        if (!allowed.contains(required(name, value))) {
+            throw new IllegalArgumentException("--%s must be one of %s: %s".formatted(name, allowed, value));
+        }
+        return value;
+    }
+
+    private static String required(String name, String value) {
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("--%s requires a value".formatted(name));
+        }
+        return value;
+    }
+
+    List<Path> logFiles() {
+        return logFiles;
+    }
+
+    Path dayX() {
+        return logFiles.get(0);
+    }
+
+    Path dayY() {
+        return logFiles.get(1);
+    }
+
+    /** True when the files should be evaluated as a rolling window rather than a day pair. */
+    boolean isWindow() {
+        return logFiles.size() > 2 || minDays != null || minPages != null;
+    }
+
+    /** Snapshot directory, or null when snapshots are disabled. */
+    Path snapshotDir() {
+        return snapshotDir;
+    }
+
+    /** Checkpoint directory, or null when runs are not checkpointed. */
+    Path checkpointDir() {
+        return checkpointDir;
+    }
+
+    long checkpointBytes() {
+        return checkpointMb != null ? (long) checkpointMb << 20 : CheckpointStore.DEFAULT_BYTES;
+    }
+
+    Duration checkpointInterval() {
+        return checkpointSeconds != null ? Duration.ofSeconds(checkpointSeconds) : CheckpointStore.DEFAULT_INTERVAL;
+    }
+
+    LoyaltyRule rule() {
+        return new LoyaltyRule(minDays != null ? minDays : LoyaltyRule.DEFAULT.minDays(),
+                minPages != null ? minPages : LoyaltyRule.DEFAULT.minPages());
+    }
+
+    String analyzer() {
+        return analyzer;
+    }
+
+    /** True to keep the in-memory analyzer's customers off the heap. */
+    boolean offHeap() {
+        return offHeap;
+    }
+
+    /** External sort buffer in megabytes, or null for the analyzer's default. */
+    Integer memoryMb() {
+        return memoryMb;
+    }
+
+    /** File receiving the loyal customer IDs, or null for stdout. */
+    Path output() {
+        return output;
+    }
+
+    boolean countOnly() {
+        return countOnly;
+    }
+
+    MalformedLinePolicy malformedLinePolicy() {
+        MalformedLinePolicy defaults = MalformedLinePolicy.DEFAULT;
+        return new MalformedLinePolicy(malformedSamples != null ? malformedSamples : defaults.sampleSize(),
+                maxMalformedPercent != null ? maxMalformedPercent / 100 : defaults.maxMalformedRatio(),
+                defaults.minLines());
+    }
+
+    /** Lines kept by --from, --to and --hours; TimeFilter.NONE without them. */
+    TimeFilter timeFilter() {
+        return new TimeFilter(from, to, hours == null ? null : hours[0], hours == null ? null : hours[1]);
+    }
+
+    /** True to estimate the loyal count from day sketches instead of listing customers. */
+    boolean approximate() {
+        return approximate;
+    }
+
+    /** True to keep following day Y as it grows. */
+    boolean follow() {
+        return follow;
+    }
+
+    Duration pollInterval() {
+        return Duration.ofMillis(pollMillis != null ? pollMillis : 1000);
+    }
+
+    /** True to run on cluster workers (started locally or given by address). */
+    boolean isCluster() {
+        return clusterWorkers != null || clusterAddresses != null;
+    }
+
+    /** Number of local worker processes to start, or null when workers were given by address. */
+    Integer clusterWorkers() {
+        return clusterWorkers;
+    }
+
+    List<InetSocketAddress> clusterAddresses() {
+        return clusterAddresses;
+    }
+
+    /** True to measure scaling efficiency over 1 to clusterWorkers workers. */
+    boolean scaling() {
+        return scaling;
+    }
+
+    /** Batch manifest, or null for a single run. */
+    Path batchManifest() {
+        return batchManifest;
+    }
+
+    int jobs() {
+        return jobs != null ? jobs : Runtime.getRuntime().availableProcessors();
+    }
+
+    long batchMemoryBytes() {
+        return batchMemoryMb != null ? (long) batchMemoryMb << 20 : Runtime.getRuntime().maxMemory() / 4 * 3;
+    }
+
+    /** Destination of the JSON run metrics, or null when metrics are disabled. */
+    Path metricsFile() {
+        return metricsFile;
+    }
+
+    /** Partition count, or null for the partitioned analyzer's default. */
+    Integer partitions() {
+        return partitions;
+    }
+
+    /** Parallel or partitioned worker count, or null for the analyzer's default. */
+    Integer workers() {
+        return workers;
+    }
+}
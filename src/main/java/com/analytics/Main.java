@@ -1,45 +1,258 @@
 package com.analytics;
 
+import com.analytics.batch.BatchJob;
+import com.analytics.batch.BatchManifest;
+import com.analytics.batch.BatchRunner;
+import com.analytics.batch.JobResult;
+import com.analytics.cluster.ClusterReport;
+import com.analytics.cluster.DistributedLoyaltyAnalyzer;
+import com.analytics.cluster.LocalCluster;
+import com.analytics.metrics.RunMetrics;
+import com.analytics.model.CompactCustomerActivity;
+import com.analytics.model.DaySketch;
+import com.analytics.model.HeapCustomerStateStore;
+import com.analytics.model.LoyaltyEstimate;
+import com.analytics.model.LoyaltyRule;
+import com.analytics.model.OffHeapCustomerStateStore;
+import com.analytics.parser.LogScanner;
+import com.analytics.service.AdaptiveLoyaltyAnalyzer;
+import com.analytics.service.ApproximateLoyaltyCounter;
+import com.analytics.service.CheckpointStore;
+import com.analytics.service.CompactLoyaltyAnalyzer;
+import com.analytics.service.ConcurrentLoyaltyAnalyzer;
+import com.analytics.service.DictionaryLoyaltyAnalyzer;
+import com.analytics.service.ExternalSortLoyaltyAnalyzer;
 import com.analytics.service.InMemoryLoyaltyAnalyzer;
 import com.analytics.service.LoyaltyAnalyzer;
+import com.analytics.service.LoyaltyFollower;
+import com.analytics.service.ParallelLoyaltyAnalyzer;
+import com.analytics.service.PartitionedLoyaltyAnalyzer;
+import com.analytics.service.RollingLoyaltyWindow;
+import com.analytics.service.StreamingLoyaltyAnalyzer;
+import com.analytics.service.WindowedLoyaltyAnalyzer;
+import com.analytics.snapshot.SnapshotStore;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 
 public class Main {
 
     public static void main(String[] args) {
-        if (args.length != 2) {
-            System.err.println("Usage: loyalty-analyzer-in-memory <log_file_day_x> <log_file_day_y>");
+        CommandLineOptions options;
+        try {
+            options = CommandLineOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println(CommandLineOptions.USAGE);
             System.exit(1);
+            return;
         }
 
-        Path dayX = Path.of(args[0]);
-        Path dayY = Path.of(args[1]);
-
-        for (Path path : List.of(dayX, dayY)) {
+        for (Path path : options.logFiles()) {
             if (!Files.exists(path)) {
                 System.err.println("Error: File not found: " + path);
                 System.exit(1);
             }
         }
 
-        try {
-            LoyaltyAnalyzer finder = new InMemoryLoyaltyAnalyzer();
-            List<String> loyalCustomers = finder.find(dayX, dayY);
-            if (loyalCustomers.isEmpty()) {
-                System.out.println("No loyal customers found.");
-            } else {
-                System.out.printf("Number of loyal customers found: %d.%n", loyalCustomers.size());
-                for (String id : loyalCustomers) {
-                    System.out.println("  " + id);
+        if (options.batchManifest() != null) {
+            System.exit(runBatch(options));
+            return;
+        }
+        if (options.approximate()) {
+            System.exit(runApproximate(options));
+            return;
+        }
+        if (options.follow()) {
+            System.exit(runFollow(options));
+            return;
+        }
+        if (options.isCluster()) {
+            System.exit(options.scaling() ? runScaling(options) : runCluster(options));
+            return;
+        }
+        RunMetrics metrics = options.metricsFile() == null
+                ? RunMetrics.disabled()
+                : new RunMetrics(options.isWindow() ? "window" : options.analyzer());
+        metrics.register();
+        try (ResultWriter results = createWriter(options)) {
+            if (options.isWindow()) {
+                RollingLoyaltyWindow window =
+                        new RollingLoyaltyWindow(options.logFiles().size(), options.rule(), snapshots(options), scanner(options));
+                List<Path> days = options.logFiles();
+                for (int i = 0; i < days.size(); i++) {
+                    // Earlier days count as day X in the metrics, the newest as day Y.
+                    RunMetrics.Phase phase = i < days.size() - 1 ? RunMetrics.Phase.PARSE_DAY_X : RunMetrics.Phase.PARSE_DAY_Y;
+                    window.addDay(days.get(i), metrics.begin(phase));
                 }
+                RunMetrics.PhaseTimer evaluate = metrics.begin(RunMetrics.Phase.EVALUATE);
+                for (String id : window.loyalCustomers()) results.accept(id);
+                evaluate.end();
+            } else {
+                LoyaltyAnalyzer finder = createAnalyzer(options);
+                finder.find(options.dayX(), options.dayY(), results, metrics);
             }
+            results.finish();
+            metrics.finish(results.count());
+            if (metrics.isEnabled()) Files.writeString(options.metricsFile(), metrics.toJson() + "\n");
         } catch (IOException e) {
             System.err.println("Error reading log files: " + e.getMessage());
             System.exit(1);
         }
     }
+
+    /** Prints the estimated loyal count of the day pair; returns the exit code. */
+    private static int runApproximate(CommandLineOptions options) {
+        try {
+            LoyaltyEstimate estimate = new ApproximateLoyaltyCounter(DaySketch.DEFAULT_CAPACITY, snapshots(options), scanner(options))
+                    .count(options.dayX(), options.dayY());
+            if (estimate.exact()) {
+                System.out.printf("Number of loyal customers found: %d (exact).%n", estimate.loyalCustomers());
+            } else {
+                System.out.printf("Approximate number of loyal customers: %d (95%% interval %d to %d, +/-%.1f%%).%n",
+                        estimate.loyalCustomers(), estimate.lower(), estimate.upper(), estimate.relativeError() * 100);
+            }
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Error reading log files: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /** Prints customers as day Y makes them loyal until the process is stopped; returns the exit code. */
+    private static int runFollow(CommandLineOptions options) {
+        try (ResultWriter results = createWriter(options)) {
+            new LoyaltyFollower(options.dayX(), options.dayY(), results, scanner(options)).follow(options.pollInterval());
+            results.finish();
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Error following log files: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /** Analyzes the day pair on cluster workers, started here unless given by address; returns the exit code. */
+    private static int runCluster(CommandLineOptions options) {
+        try (LocalCluster local = options.clusterWorkers() == null ? null : LocalCluster.processes(options.clusterWorkers(), List.of());
+             ResultWriter results = createWriter(options)) {
+            List<InetSocketAddress> workers = local == null ? options.clusterAddresses() : local.addresses();
+            new DistributedLoyaltyAnalyzer(workers, LoyaltyRule.DEFAULT, scanner(options))
+                    .find(options.dayX(), options.dayY(), results);
+            results.finish();
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Error in distributed analysis: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Times the day pair on 1, 2, 4 ... N local worker processes and prints speedup and efficiency against one
+     * worker. Each cluster is warmed up with an untimed run first, so JIT and page cache do not favour later runs.
+     */
+    private static int runScaling(CommandLineOptions options) {
+        List<ClusterReport> reports = new ArrayList<>();
+        long loyal = 0;
+        try {
+            for (int workers = 1; ; workers = Math.min(workers * 2, options.clusterWorkers())) {
+                try (LocalCluster local = LocalCluster.processes(workers, List.of())) {
+                    DistributedLoyaltyAnalyzer analyzer =
+                            new DistributedLoyaltyAnalyzer(local.addresses(), LoyaltyRule.DEFAULT, scanner(options));
+                    analyzer.find(options.dayX(), options.dayY(), id -> { });
+                    loyal = analyzer.find(options.dayX(), options.dayY(), id -> { });
+                    reports.add(analyzer.lastReport());
+                }
+                if (workers == options.clusterWorkers()) break;
+            }
+        } catch (IOException e) {
+            System.err.println("Error in distributed analysis: " + e.getMessage());
+            return 1;
+        }
+        System.out.print(ClusterReport.scalingTable(reports));
+        System.out.printf("Number of loyal customers found: %d.%n", loyal);
+        return 0;
+    }
+
+    /** Runs every job of the manifest, printing one status line per job; returns the exit code. */
+    private static int runBatch(CommandLineOptions options) {
+        List<BatchJob> jobs;
+        try {
+            jobs = BatchManifest.read(options.batchManifest());
+        } catch (IOException e) {
+            System.err.println("Error reading batch manifest: " + e.getMessage());
+            return 1;
+        }
+        BatchRunner runner = new BatchRunner(() -> createAnalyzer(options), options.jobs(), options.batchMemoryBytes());
+        try {
+            List<JobResult> results = runner.run(jobs, result -> System.out.println(status(result)));
+            long failed = results.stream().filter(r -> !r.succeeded()).count();
+            System.out.printf("%d jobs: %d succeeded, %d failed.%n", results.size(), results.size() - failed, failed);
+            return failed == 0 ? 0 : 1;
+        } catch (IOException e) {
+            System.err.println("Batch aborted: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static String status(JobResult result) {
+        BatchJob job = result.job();
+        return result.succeeded()
+                ? "[ok]     job %d %s %s -> %s: %d loyal customers in %d ms".formatted(job.number(),
+                        job.dayX().getFileName(), job.dayY().getFileName(), job.output(), result.loyalCustomers(),
+                        result.millis())
+                : "[failed] job %d %s %s: %s".formatted(job.number(), job.dayX().getFileName(),
+                        job.dayY().getFileName(), result.failure());
+    }
+
+    /**
+     * A run resumed from a checkpoint only emits the customers after it, so the writer starts counting from the
+     * checkpoint and keeps that many IDs of the interrupted run's output file.
+     */
+    private static ResultWriter createWriter(CommandLineOptions options) throws IOException {
+        CheckpointStore checkpoints = checkpoints(options);
+        long resumed = checkpoints == null ? 0 : checkpoints.loyalEmitted(options.dayX(), options.dayY()).orElse(0);
+        if (options.countOnly()) return ResultWriter.countOnly(resumed);
+        if (options.output() == null) return ResultWriter.toStdout(resumed);
+        return resumed > 0 ? ResultWriter.resume(options.output(), resumed) : ResultWriter.toFile(options.output());
+    }
+
+    private static LoyaltyAnalyzer createAnalyzer(CommandLineOptions options) {
+        LogScanner scanner = scanner(options);
+        int workers = options.workers() == null ? Runtime.getRuntime().availableProcessors() : options.workers();
+        return switch (options.analyzer()) {
+            case "streaming" -> new StreamingLoyaltyAnalyzer(checkpoints(options), scanner);
+            case "parallel" -> new ParallelLoyaltyAnalyzer(workers, scanner);
+            case "concurrent" -> new ConcurrentLoyaltyAnalyzer(workers, scanner);
+            case "dictionary" -> new DictionaryLoyaltyAnalyzer(scanner);
+            case "compact" -> new CompactLoyaltyAnalyzer(CompactCustomerActivity.DEFAULT_MIN_PAGES, scanner);
+            case "windowed" -> new WindowedLoyaltyAnalyzer(snapshots(options), scanner);
+            case "external" -> new ExternalSortLoyaltyAnalyzer(
+                    options.memoryMb() == null ? ExternalSortLoyaltyAnalyzer.DEFAULT_MEMORY_BUDGET : (long) options.memoryMb() << 20,
+                    Path.of(System.getProperty("java.io.tmpdir")), scanner);
+            case "partitioned" -> new PartitionedLoyaltyAnalyzer(
+                    options.partitions() == null ? PartitionedLoyaltyAnalyzer.DEFAULT_PARTITIONS : options.partitions(),
+                    options.workers() == null ? 1 : options.workers(), scanner);
+            case "auto" -> new AdaptiveLoyaltyAnalyzer(0, scanner);
+            default -> new InMemoryLoyaltyAnalyzer(
+                    options.offHeap() ? OffHeapCustomerStateStore::new : HeapCustomerStateStore::new, scanner);
+        };
+    }
+
+    /** A scanner applying the run's malformed line policy and time filter. */
+    private static LogScanner scanner(CommandLineOptions options) {
+        return new LogScanner(options.malformedLinePolicy(), options.timeFilter());
+    }
+
+    private static SnapshotStore snapshots(CommandLineOptions options) {
+        return options.snapshotDir() == null ? null : new SnapshotStore(options.snapshotDir());
+    }
+
+    private static CheckpointStore checkpoints(CommandLineOptions options) {
+        return options.checkpointDir() == null ? null
+                : new CheckpointStore(options.checkpointDir(), options.checkpointBytes(), options.checkpointInterval());
+    }
 }
@@ -0,0 +1,138 @@
+package com.analytics;
+
+import com.analytics.service.LoyalCustomerSink;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * CLI output behind a single 1 MB buffer instead of one synchronized println per customer.
+ * IDs go to a file one per line, or indented to stdout; finish() prints the summary line to stdout
+ * after the IDs. With no destination (count-only) IDs are just counted. A writer for a run resumed from a
+ * checkpoint starts counting at the IDs emitted before it, and keeps exactly those in the output file;
+ * the output file is forced to disk before each checkpoint, so it never holds fewer IDs than one counts.
+ */
+final class ResultWriter implements LoyalCustomerSink, Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Writer out;
+    private final String indent;
+    private final FileChannel file;
+    private long count;
+
+    /** file is the channel under out if the writer owns an output file, otherwise null. */
+    private ResultWriter(Writer out, String indent, FileChannel file, long emitted) {
+        this.out = out;
+        this.indent = indent;
+        this.file = file;
+        this.count = emitted;
+    }
+
+    /** emitted is the number of IDs printed before a checkpoint this run resumes from, usually 0. */
+    static ResultWriter toStdout(long emitted) {
+        return new ResultWriter(new BufferedWriter(stdout(), BUFFER_SIZE), "  ", null, emitted);
+    }
+
+    static ResultWriter toFile(Path target) throws IOException {
+        FileChannel file = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        return new ResultWriter(fileWriter(file), "", file, 0);
+    }
+
+    /** Keeps the first emitted IDs of target, written before a checkpoint, and appends after them. */
+    static ResultWriter resume(Path target, long emitted) throws IOException {
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+            channel.truncate(endOfLine(channel, emitted, target));
+        }
+        FileChannel file = FileChannel.open(target, StandardOpenOption.APPEND);
+        return new ResultWriter(fileWriter(file), "", file, emitted);
+    }
+
+    static ResultWriter countOnly(long emitted) {
+        return new ResultWriter(null, "", null, emitted);
+    }
+
+    @Override
+    public void accept(String customerId) throws IOException {
+        count++;
+        if (out == null) return;
+        out.write(indent);
+        out.write(customerId);
+        out.write('\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (out != null) out.flush();
+    }
+
+    /** Flushes, then forces an output file to disk, before a checkpoint counts its IDs. */
+    @Override
+    public void sync() throws IOException {
+        flush();
+        if (file != null) file.force(false);
+    }
+
+    long count() {
+        return count;
+    }
+
+    /** Flushes the IDs, then prints the summary line. */
+    void finish() throws IOException {
+        if (out != null) out.flush();
+        if (count == 0) {
+            System.out.println("No loyal customers found.");
+        } else {
+            System.out.printf("Number of loyal customers found: %d.%n", count);
+        }
+    }
+
+    /** Closes an output file; stdout is flushed but left open. */
+    @Override
+    public void close() throws IOException {
+        if (out == null) return;
+        if (file != null) out.close(); else out.flush();
+    }
+
+    /** Offset just past the lines-th line of the file. */
+    private static long endOfLine(FileChannel channel, long lines, Path target) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        long position = 0;
+        long seen = 0;
+        while (seen < lines) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("%s holds %d of the %d IDs written before the checkpoint"
+                        .formatted(target, seen, lines));
+            }
+            for (int i = 0; i < read && seen < lines; i++, position++) {
+                if (buffer.get(i) == '\n') seen++;
+            }
+        }
+        return position;
+    }
+
+    /** UTF-8 writer on file behind the single BUFFER_SIZE buffer; closing it closes file. */
+    private static Writer fileWriter(FileChannel file) {
+        return new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(file), StandardCharsets.UTF_8),
+                BUFFER_SIZE);
+    }
+
+    /** Unsynchronized view of the process stdout; System.out is only used for the summary after a flush. */
+    private static Writer stdout() {
+        return new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,6 @@
+package com.analytics.batch;
+
+import java.nio.file.Path;
+
+/** One manifest entry: analyze dayX and dayY and write the loyal customer IDs to output. number is 1-based. */
+public record BatchJob(int number, Path dayX, Path dayY, Path output) {}
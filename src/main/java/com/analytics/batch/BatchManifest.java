@@ -0,0 +1,45 @@
+package com.analytics.batch;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads a batch manifest: one job per line as three whitespace-separated paths, dayX dayY output.
+ * Blank lines and lines starting with # are ignored; relative paths are resolved against the manifest's directory.
+ * Two jobs writing the same output are rejected, since they would overwrite each other.
+ */
+public final class BatchManifest {
+
+    private BatchManifest() {
+    }
+
+    public static List<BatchJob> read(Path manifest) throws IOException {
+        Path base = manifest.toAbsolutePath().getParent();
+        List<String> lines = Files.readAllLines(manifest);
+        List<BatchJob> jobs = new ArrayList<>();
+        Set<Path> outputs = new HashSet<>();
+
+        for (int lineNumber = 1; lineNumber <= lines.size(); lineNumber++) {
+            String line = lines.get(lineNumber - 1).strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] fields = line.split("\\s+");
+            if (fields.length != 3) {
+                throw new IOException("%s:%d: expected <dayX> <dayY> <output>, got \"%s\""
+                        .formatted(manifest.getFileName(), lineNumber, line));
+            }
+            Path output = base.resolve(fields[2]).normalize();
+            if (!outputs.add(output)) {
+                throw new IOException("%s:%d: output %s is already written by another job"
+                        .formatted(manifest.getFileName(), lineNumber, fields[2]));
+            }
+            jobs.add(new BatchJob(jobs.size() + 1, base.resolve(fields[0]).normalize(),
+                    base.resolve(fields[1]).normalize(), output));
+        }
+        return jobs;
+    }
+}
@@ -0,0 +1,156 @@
+package com.analytics.batch;
+
+import com.analytics.service.LoyalCustomerSink;
+import com.analytics.service.LoyaltyAnalyzer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs many BatchJobs inside one JVM, so each job after the first runs on warm, JIT-compiled code.
+ * At most concurrency jobs run at a time, on a fixed pool of platform threads; in addition every job
+ * reserves an estimate of its heap from a shared memory budget before it starts, so a few large pairs do not
+ * run side by side while small ones may. A job larger than the whole budget runs alone.
+ * Each job gets a fresh analyzer from the supplier; analyzers keep their dictionaries per find, and
+ * those are not thread-safe, so only the stateless scanning code is shared between jobs.
+ * Output is written to a temporary file next to the target and moved into place when the job succeeds,
+ * so a failed job never leaves a partial result. A failing job does not stop the others.
+ */
+public class BatchRunner {
+
+    /** Rough heap needed per byte of input by the in-memory analyzers, used to size reservations. */
+    static final int ESTIMATED_HEAP_PER_INPUT_BYTE = 2;
+    private static final int MB = 1 << 20;
+
+    private final Supplier<? extends LoyaltyAnalyzer> analyzers;
+    private final int concurrency;
+    private final int budgetMb;
+    private final Semaphore memory;
+
+    public BatchRunner(Supplier<? extends LoyaltyAnalyzer> analyzers, int concurrency, long memoryBudgetBytes) {
+        if (concurrency < 1) throw new IllegalArgumentException("concurrency must be positive: " + concurrency);
+        if (memoryBudgetBytes < MB) {
+            throw new IllegalArgumentException("Memory budget must be at least 1 MB: " + memoryBudgetBytes);
+        }
+        this.analyzers = analyzers;
+        this.concurrency = concurrency;
+        this.budgetMb = (int) Math.min(memoryBudgetBytes / MB, Integer.MAX_VALUE);
+        this.memory = new Semaphore(budgetMb, true);
+    }
+
+    /**
+     * Runs every job and returns the results in manifest order.
+     * onDone sees each result as it completes, on the worker thread that ran the job.
+     */
+    public List<JobResult> run(List<BatchJob> jobs, Consumer<JobResult> onDone) throws IOException {
+        if (jobs.isEmpty()) return List.of();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(concurrency, jobs.size()));
+        try {
+            List<Future<JobResult>> futures = new ArrayList<>(jobs.size());
+            for (BatchJob job : jobs) {
+                futures.add(pool.submit(() -> {
+                    JobResult result = runWithinBudget(job);
+                    onDone.accept(result);
+                    return result;
+                }));
+            }
+            List<JobResult> results = new ArrayList<>(jobs.size());
+            for (Future<JobResult> future : futures) results.add(await(future));
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private JobResult runWithinBudget(BatchJob job) throws InterruptedException {
+        int reservation = reservationMb(job);
+        memory.acquire(reservation);
+        try {
+            return run(job);
+        } finally {
+            memory.release(reservation);
+        }
+    }
+
+    /** Failures stay with their job, including running out of heap, so the other jobs carry on. */
+    private JobResult run(BatchJob job) {
+        long start = System.nanoTime();
+        try {
+            long loyal = analyze(job);
+            return new JobResult(job, loyal, (System.nanoTime() - start) / 1_000_000, null);
+        } catch (Exception | OutOfMemoryError e) {
+            return new JobResult(job, -1, (System.nanoTime() - start) / 1_000_000, e);
+        }
+    }
+
+    private long analyze(BatchJob job) throws IOException {
+        Path output = job.output().toAbsolutePath();
+        Files.createDirectories(output.getParent());
+        Path partial = Files.createTempFile(output.getParent(), output.getFileName() + ".", ".partial");
+        try {
+            long loyal;
+            try (Writer out = new BufferedWriter(Files.newBufferedWriter(partial, StandardCharsets.UTF_8), 1 << 16)) {
+                LoyalCustomerSink sink = customerId -> {
+                    out.write(customerId);
+                    out.write('\n');
+                };
+                loyal = analyzers.get().find(job.dayX(), job.dayY(), sink);
+            }
+            moveIntoPlace(partial, output);
+            return loyal;
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    /** Reservation in MB for job, between 1 and the whole budget. */
+    int reservationMb(BatchJob job) {
+        long input;
+        try {
+            input = Files.size(job.dayX()) + Files.size(job.dayY());
+        } catch (IOException e) {
+            return 1; // the job fails as soon as it opens the missing file
+        }
+        long estimate = (input * ESTIMATED_HEAP_PER_INPUT_BYTE + MB - 1) / MB;
+        return (int) Math.max(1, Math.min(estimate, budgetMb));
+    }
+
+    private static void moveIntoPlace(Path partial, Path output) throws IOException {
+        try {
+            Files.move(partial, output, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partial, output, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static JobResult await(Future<JobResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a batch job");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InterruptedException) {
+                throw new InterruptedIOException("Interrupted while waiting for memory");
+            }
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IOException("Batch job failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.analytics.batch;
+
+/** Outcome of one BatchJob; failure is null for a job that succeeded. */
+public record JobResult(BatchJob job, long loyalCustomers, long millis, Throwable failure) {
+
+    public boolean succeeded() {
+        return failure == null;
+    }
+}
@@ -0,0 +1,142 @@
+package com.analytics.cluster;
+
+import com.analytics.model.LoyaltyRule;
+import com.analytics.parser.MalformedLinePolicy;
+import com.analytics.parser.TimeFilter;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Wire format between the coordinator and workers, and between workers (DataOutput, big-endian).
+ * Every connection starts with magic "LCLU", version and a message type:
+ *   JOB      coordinator to worker: job id, worker count, this worker's index, every worker's host and port,
+ *            day X and day Y paths, the coordinator's MalformedLinePolicy (sample size, ratio, minimum lines),
+ *            its TimeFilter (from, to, daily from and daily to as ISO strings, empty when unset),
+ *            the LoyaltyRule (minimum days and pages), then the assigned ranges as (day, start, end); the worker answers on the
+ *            same connection with its partition's loyal IDs, END and its WorkerStats, or FAILED and a message
+ *   SHUFFLE  worker to worker: job id, worker count, sender index, LoyaltyRule, then partial customer states
+ *            (PartialStates.write) ending with END, or ABORT and a message if the sender failed
+ *   STOP     asks a worker process to exit
+ * Byte strings are written as an int length and the bytes; END and ABORT take the place of a length.
+ */
+final class ClusterProtocol {
+
+    static final int MAGIC = 0x4C434C55;
+    static final int VERSION = 4;
+
+    static final byte JOB = 1;
+    static final byte SHUFFLE = 2;
+    static final byte STOP = 3;
+
+    static final int END = -1;
+    static final int ABORT = -2;
+    static final int FAILED = -3;
+
+    static final int DAY_X = 0;
+    static final int DAY_Y = 1;
+
+    /** Longest byte string accepted from the network: a customer ID, page ID, path or message. */
+    static final int MAX_STRING_BYTES = 1 << 20;
+
+    static final int BUFFER_BYTES = 1 << 16;
+
+    private ClusterProtocol() {
+    }
+
+    static void writeHeader(DataOutputStream out, byte type) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeByte(type);
+    }
+
+    /** Reads the connection header and returns the message type. */
+    static byte readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Not a cluster connection");
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException("Unsupported cluster protocol version " + version);
+        return in.readByte();
+    }
+
+    static void writeAddress(DataOutputStream out, InetSocketAddress address) throws IOException {
+        out.writeUTF(address.getHostString());
+        out.writeInt(address.getPort());
+    }
+
+    static InetSocketAddress readAddress(DataInputStream in) throws IOException {
+        return new InetSocketAddress(in.readUTF(), in.readInt());
+    }
+
+    static void writePolicy(DataOutputStream out, MalformedLinePolicy policy) throws IOException {
+        out.writeInt(policy.sampleSize());
+        out.writeDouble(policy.maxMalformedRatio());
+        out.writeLong(policy.minLines());
+    }
+
+    static MalformedLinePolicy readPolicy(DataInputStream in) throws IOException {
+        try {
+            return new MalformedLinePolicy(in.readInt(), in.readDouble(), in.readLong());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid malformed line policy: " + e.getMessage());
+        }
+    }
+
+    static void writeFilter(DataOutputStream out, TimeFilter filter) throws IOException {
+        out.writeUTF(filter.from() == null ? "" : filter.from().toString());
+        out.writeUTF(filter.to() == null ? "" : filter.to().toString());
+        out.writeUTF(filter.dailyFrom() == null ? "" : filter.dailyFrom().toString());
+        out.writeUTF(filter.dailyTo() == null ? "" : filter.dailyTo().toString());
+    }
+
+    static TimeFilter readFilter(DataInputStream in) throws IOException {
+        try {
+            String from = in.readUTF();
+            String to = in.readUTF();
+            String dailyFrom = in.readUTF();
+            String dailyTo = in.readUTF();
+            return new TimeFilter(from.isEmpty() ? null : LocalDateTime.parse(from),
+                    to.isEmpty() ? null : LocalDateTime.parse(to),
+                    dailyFrom.isEmpty() ? null : LocalTime.parse(dailyFrom),
+                    dailyTo.isEmpty() ? null : LocalTime.parse(dailyTo));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IOException("Invalid time filter: " + e.getMessage());
+        }
+    }
+
+    static void writeRule(DataOutputStream out, LoyaltyRule rule) throws IOException {
+        out.writeInt(rule.minDays());
+        out.writeInt(rule.minPages());
+    }
+
+    static LoyaltyRule readRule(DataInputStream in) throws IOException {
+        try {
+            return DistributedLoyaltyAnalyzer.checkRule(new LoyaltyRule(in.readInt(), in.readInt()));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid loyalty rule: " + e.getMessage());
+        }
+    }
+
+    /** Reads the length of the next byte string, or END, ABORT or FAILED. */
+    static int readLength(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < FAILED || length > MAX_STRING_BYTES) throw new IOException("Invalid length on the wire: " + length);
+        return length;
+    }
+
+    /** Parses host:port, or a bare port on the loopback address. */
+    static InetSocketAddress parseAddress(String text) {
+        int colon = text.lastIndexOf(':');
+        try {
+            int port = Integer.parseInt(text.substring(colon + 1));
+            if (port < 0 || port > 0xFFFF) throw new NumberFormatException();
+            return new InetSocketAddress(colon < 0 ? "127.0.0.1" : text.substring(0, colon), port);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected host:port or a port: " + text);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.analytics.cluster;
+
+import java.util.List;
+
+/**
+ * Timings of one distributed find: wall time at the coordinator and every worker's WorkerStats.
+ * Scaling is judged against a baseline run of the same input with fewer workers: speedup is the ratio of
+ * wall times, efficiency the speedup divided by the growth in workers (1.0 is linear scaling).
+ */
+public record ClusterReport(int workers, long wallNanos, List<WorkerStats> workerStats) {
+
+    public ClusterReport {
+        workerStats = List.copyOf(workerStats);
+    }
+
+    public long bytes() {
+        return workerStats.stream().mapToLong(WorkerStats::bytes).sum();
+    }
+
+    public long shuffleBytes() {
+        return workerStats.stream().mapToLong(WorkerStats::shuffleBytes).sum();
+    }
+
+    /** Slowest worker's scan time over the mean: 1.0 when the ranges took equally long. */
+    public double scanImbalance() {
+        long slowest = workerStats.stream().mapToLong(WorkerStats::scanNanos).max().orElse(0);
+        double mean = workerStats.stream().mapToLong(WorkerStats::scanNanos).average().orElse(0);
+        return mean == 0 ? 1 : slowest / mean;
+    }
+
+    public double speedup(ClusterReport baseline) {
+        return (double) baseline.wallNanos / Math.max(1, wallNanos);
+    }
+
+    public double efficiency(ClusterReport baseline) {
+        return speedup(baseline) * baseline.workers / workers;
+    }
+
+    public String summary() {
+        double seconds = wallNanos / 1e9;
+        return "%d workers: %.2f s, %.1f MB scanned (%.1f MB/s), %.1f MB shuffled, scan imbalance %.2f"
+                .formatted(workers, seconds, bytes() / 1e6, bytes() / 1e6 / Math.max(seconds, 1e-9),
+                        shuffleBytes() / 1e6, scanImbalance());
+    }
+
+    /** One line per run with speedup and efficiency relative to the first run. */
+    public static String scalingTable(List<ClusterReport> runs) {
+        StringBuilder table = new StringBuilder("workers  seconds  MB/s      speedup  efficiency\n");
+        for (ClusterReport run : runs) {
+            double seconds = run.wallNanos / 1e9;
+            table.append("%7d  %7.2f  %8.1f  %7.2f  %10.2f%n".formatted(run.workers, seconds,
+                    run.bytes() / 1e6 / Math.max(seconds, 1e-9), run.speedup(runs.get(0)), run.efficiency(runs.get(0))));
+        }
+        return table.toString();
+    }
+}
@@ -0,0 +1,373 @@
+package com.analytics.cluster;
+
+import com.analytics.model.LoyaltyRule;
+import com.analytics.parser.FileRange;
+import com.analytics.parser.LogScanner;
+import com.analytics.parser.MalformedLinePolicy;
+import com.analytics.parser.TimeFilter;
+import com.analytics.parser.MalformedLineReport;
+import com.analytics.parser.ScanResult;
+import com.analytics.service.LogPartitioner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One worker of a distributed analysis (see DistributedLoyaltyAnalyzer). For each job it scans the byte
+ * ranges of day X and day Y it was assigned, under the job's MalformedLinePolicy and TimeFilter, into one PartialStates per
+ * worker, by customerId hash (LogPartitioner.partitionOf), and sends each of them to the worker owning that partition. As owner of its
+ * own partition it merges what every worker sent, applies the job's LoyaltyRule and streams the loyal IDs and
+ * its WorkerStats back to the coordinator. Each connection is served on its own thread.
+ * A worker that fails sends ABORT to the peers still waiting for it and reports the failure to the
+ * coordinator; an owner gives up on peers that have sent nothing after SHUFFLE_TIMEOUT.
+ * States that arrive for a job this worker has finished are dropped. Finished jobs are remembered for
+ * SHUFFLE_TIMEOUT, and so are states of a job whose JOB never arrived.
+ * Run as a process with: java -cp loyalty-analyzer-in-memory.jar com.analytics.cluster.ClusterWorker [host:]port
+ * It prints "Listening on host:port" once ready and serves until sent STOP.
+ */
+public class ClusterWorker implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(ClusterWorker.class.getName());
+    static final Duration SHUFFLE_TIMEOUT = Duration.ofMinutes(10);
+
+    private final ServerSocket server;
+    private final ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "cluster-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+    /** When each recently finished job ended, by id. */
+    private final Map<Long, Long> finished = new ConcurrentHashMap<>();
+
+    /** Listens on the loopback address; port 0 picks a free port. */
+    public ClusterWorker(int port) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public ClusterWorker(InetSocketAddress address) throws IOException {
+        this.server = new ServerSocket();
+        server.bind(address);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: ClusterWorker [host:]port");
+            System.exit(2);
+        }
+        try (ClusterWorker worker = new ClusterWorker(ClusterProtocol.parseAddress(args[0]))) {
+            InetSocketAddress address = worker.address();
+            System.out.println("Listening on " + address.getHostString() + ":" + address.getPort());
+            System.out.flush();
+            worker.serve();
+        }
+    }
+
+    public InetSocketAddress address() {
+        return (InetSocketAddress) server.getLocalSocketAddress();
+    }
+
+    /** Serves connections on a background thread and returns. */
+    public ClusterWorker start() {
+        Thread acceptor = new Thread(this::serveQuietly, "cluster-worker-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return this;
+    }
+
+    /** Accepts connections until closed or sent STOP. */
+    public void serve() throws IOException {
+        while (!server.isClosed()) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (SocketException e) {
+                if (server.isClosed()) return;
+                throw e;
+            }
+            connections.execute(() -> handle(socket));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        connections.shutdownNow();
+    }
+
+    /** Asks the worker at address to exit. */
+    public static void stop(InetSocketAddress address) throws IOException {
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            ClusterProtocol.writeHeader(out, ClusterProtocol.STOP);
+            out.flush();
+        }
+    }
+
+    private void serveQuietly() {
+        try {
+            serve();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Worker %s stopped accepting connections".formatted(address()), e);
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), ClusterProtocol.BUFFER_BYTES));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), ClusterProtocol.BUFFER_BYTES));
+            switch (ClusterProtocol.readHeader(in)) {
+                case ClusterProtocol.JOB -> runJob(in, out);
+                case ClusterProtocol.SHUFFLE -> receiveShuffle(in);
+                case ClusterProtocol.STOP -> close();
+                default -> throw new IOException("Unknown message type");
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cluster connection from %s failed".formatted(socket.getRemoteSocketAddress()), e);
+        }
+    }
+
+    private void runJob(DataInputStream in, DataOutputStream out) throws IOException {
+        long jobId = in.readLong();
+        int workers = in.readInt();
+        int index = in.readInt();
+        List<InetSocketAddress> peers = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) peers.add(ClusterProtocol.readAddress(in));
+        Path[] days = {Path.of(in.readUTF()), Path.of(in.readUTF())};
+        MalformedLinePolicy policy = ClusterProtocol.readPolicy(in);
+        TimeFilter filter = ClusterProtocol.readFilter(in);
+        LoyaltyRule rule = ClusterProtocol.readRule(in);
+        int rangeCount = in.readInt();
+        List<Assignment> assignments = new ArrayList<>(rangeCount);
+        for (int i = 0; i < rangeCount; i++) {
+            int day = in.readByte();
+            if (day != ClusterProtocol.DAY_X && day != ClusterProtocol.DAY_Y) throw new IOException("Invalid day " + day);
+            assignments.add(new Assignment(days[day], day, new FileRange(in.readLong(), in.readLong())));
+        }
+
+        Job job = job(jobId, workers, rule);
+        boolean[] sent = new boolean[workers];
+        try {
+            if (job == null) throw new IOException("Job %x already ran on this worker".formatted(jobId));
+            job.claimed = true;
+            WorkerStats stats = job.run(index, peers, assignments, new LogScanner(policy, filter), sent, out);
+            out.writeInt(ClusterProtocol.END);
+            stats.write(out);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Job %x failed on worker %d".formatted(jobId, index), e);
+            abortPeers(jobId, workers, index, rule, peers, sent, String.valueOf(e.getMessage()));
+            out.writeInt(ClusterProtocol.FAILED);
+            out.writeUTF(String.valueOf(e.getMessage()));
+        } finally {
+            finish(jobId);
+        }
+        out.flush();
+    }
+
+    private void receiveShuffle(DataInputStream in) throws IOException {
+        long jobId = in.readLong();
+        int workers = in.readInt();
+        int from = in.readInt();
+        LoyaltyRule rule = ClusterProtocol.readRule(in);
+        Job job = job(jobId, workers, rule);
+        if (job == null) {
+            LOGGER.fine(() -> "Dropping states from worker %d for finished job %x".formatted(from, jobId));
+            return;
+        }
+        job.receive(in, from);
+    }
+
+    /**
+     * The job with jobId, created by its JOB or by the first states sent for it, whichever comes first;
+     * null if it has already finished. The check and the creation are one atomic step, so a late SHUFFLE
+     * cannot revive a job that finish removed.
+     */
+    private Job job(long jobId, int workers, LoyaltyRule rule) throws IOException {
+        if (workers < 1) throw new IOException("Invalid worker count " + workers);
+        Job job = jobs.compute(jobId, (id, current) ->
+                current != null || finished.containsKey(id) ? current : new Job(id, workers, rule));
+        if (job == null) return null;
+        if (job.workers != workers) throw new IOException("Worker count mismatch in job %x".formatted(jobId));
+        if (!job.rule.equals(rule)) throw new IOException("Loyalty rule mismatch in job %x".formatted(jobId));
+        return job;
+    }
+
+    /**
+     * Removes a job and remembers it as finished, then forgets finished jobs, and jobs whose JOB never came,
+     * older than SHUFFLE_TIMEOUT.
+     */
+    private void finish(long jobId) {
+        long now = System.nanoTime();
+        jobs.compute(jobId, (id, job) -> {
+            finished.put(id, now);
+            return null;
+        });
+        long expired = now - SHUFFLE_TIMEOUT.toNanos();
+        finished.values().removeIf(ended -> ended - expired < 0);
+        jobs.values().removeIf(job -> !job.claimed && job.created - expired < 0);
+    }
+
+    /** Jobs this worker holds state for, running or waiting for their JOB. */
+    int jobCount() {
+        return jobs.size();
+    }
+
+    /**
+     * Lets the peers worker index has not sent its states to stop waiting for them; the coordinator also sends
+     * this in the name of a worker it lost.
+     */
+    static void abortPeers(long jobId, int workers, int index, LoyaltyRule rule, List<InetSocketAddress> peers,
+                           boolean[] sent, String reason) {
+        for (int peer = 0; peer < workers; peer++) {
+            if (peer == index || sent[peer]) continue;
+            try (Socket socket = connect(peers.get(peer))) {
+                DataOutputStream out = shuffleStream(socket, jobId, workers, index, rule);
+                out.writeInt(ClusterProtocol.ABORT);
+                out.writeUTF(reason);
+                out.flush();
+            } catch (IOException e) {
+                LOGGER.fine(() -> "Could not abort job on worker %d: %s".formatted(index, e));
+            }
+        }
+    }
+
+    private static Socket connect(InetSocketAddress address) throws IOException {
+        Socket socket = new Socket(address.getAddress(), address.getPort());
+        socket.setTcpNoDelay(true);
+        return socket;
+    }
+
+    private static DataOutputStream shuffleStream(Socket socket, long jobId, int workers, int from, LoyaltyRule rule)
+            throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), ClusterProtocol.BUFFER_BYTES));
+        ClusterProtocol.writeHeader(out, ClusterProtocol.SHUFFLE);
+        out.writeLong(jobId);
+        out.writeInt(workers);
+        out.writeInt(from);
+        ClusterProtocol.writeRule(out, rule);
+        return out;
+    }
+
+    private record Assignment(Path file, int day, FileRange range) {}
+
+    /** This worker's side of one job: the partition it owns and the peers it is waiting for. */
+    private final class Job {
+
+        final long id;
+        final int workers;
+        final LoyaltyRule rule;
+        final PartialStates owned;
+        final CountDownLatch arrivals;
+        final long created = System.nanoTime();
+        volatile boolean claimed;
+        volatile String failure;
+
+        Job(long id, int workers, LoyaltyRule rule) {
+            this.id = id;
+            this.workers = workers;
+            this.rule = rule;
+            this.owned = new PartialStates(rule);
+            this.arrivals = new CountDownLatch(workers - 1);
+        }
+
+        /** Reads a peer's states off the network without the lock, so peers are received in parallel. */
+        void receive(DataInputStream in, int from) throws IOException {
+            try {
+                PartialStates incoming = new PartialStates(rule);
+                if (!incoming.read(in)) {
+                    failure = "worker %d failed: %s".formatted(from, in.readUTF());
+                    return;
+                }
+                synchronized (owned) {
+                    owned.absorb(incoming);
+                }
+            } catch (IOException e) {
+                failure = "lost the shuffle from worker %d: %s".formatted(from, e.getMessage());
+                throw e;
+            } finally {
+                arrivals.countDown();
+            }
+        }
+
+        WorkerStats run(int index, List<InetSocketAddress> peers, List<Assignment> assignments,
+                        LogScanner scanner, boolean[] sent, DataOutputStream coordinator) throws IOException {
+            long started = System.nanoTime();
+            PartialStates[] partitions = new PartialStates[workers];
+            for (int i = 0; i < workers; i++) partitions[i] = new PartialStates(rule);
+            long lines = 0;
+            long bytes = 0;
+            for (Assignment assignment : assignments) {
+                byte day = assignment.day() == ClusterProtocol.DAY_X ? PartialStates.DAY_X : PartialStates.DAY_Y;
+                MalformedLineReport malformed = scanner.policy().rangeReport(assignment.file());
+                ScanResult result = scanner.scan(assignment.file(), assignment.range(), cursor -> {
+                    partitions[LogPartitioner.partitionOf(cursor.customerId(), workers)]
+                            .record(cursor.customerId(), cursor.pageId(), day);
+                    return true;
+                }, malformed);
+                MalformedLineReport report = scanner.policy().newReport(assignment.file());
+                report.merge(malformed, 0);
+                report.finish(result.lines());
+                lines += result.lines();
+                bytes += result.bytes();
+            }
+            long scanned = System.nanoTime();
+
+            synchronized (owned) {
+                owned.absorb(partitions[index]);
+            }
+            partitions[index] = null;
+            long shuffled = 0;
+            for (int peer = 0; peer < workers; peer++) {
+                if (peer == index) continue;
+                try (Socket socket = connect(peers.get(peer))) {
+                    DataOutputStream out = shuffleStream(socket, id, workers, index, rule);
+                    shuffled += partitions[peer].write(out);
+                    out.flush();
+                }
+                sent[peer] = true;
+                partitions[peer] = null;
+            }
+            awaitPeers();
+            long merged = System.nanoTime();
+
+            long loyal = owned.writeLoyal(coordinator);
+            return new WorkerStats(index, lines, bytes, owned.size(), loyal, shuffled, scanned - started,
+                    merged - scanned, System.nanoTime() - merged);
+        }
+
+        private void awaitPeers() throws IOException {
+            try {
+                if (!arrivals.await(SHUFFLE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                    throw new IOException("Timed out waiting for the other workers' customer states");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the other workers");
+            }
+            if (failure != null) throw new IOException("Shuffle failed: " + failure);
+        }
+    }
+}
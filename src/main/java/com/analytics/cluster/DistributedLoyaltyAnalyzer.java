@@ -0,0 +1,278 @@
+package com.analytics.cluster;
+
+import com.analytics.metrics.RunMetrics;
+import com.analytics.model.LoyaltyRule;
+import com.analytics.parser.FileRange;
+import com.analytics.parser.LogScanner;
+import com.analytics.service.LoyalCustomerSink;
+import com.analytics.service.LoyaltyAnalyzer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+/**
+ * Coordinator of a distributed analysis over ClusterWorkers reached by socket, on this machine (LocalCluster)
+ * or others that see the logs under the same paths. Each day is split into one newline-aligned byte range per
+ * worker; worker i scans range i of day X and range W - 1 - i of day Y, so a compressed day, which cannot be
+ * split, goes to the first worker for X and the last for Y. Workers shuffle partial customer states among
+ * themselves by customerId hash, each applies the LoyaltyRule to the partition it owns, and the coordinator
+ * emits the loyal IDs streamed back by worker 0, then worker 1, and so on. A worker whose connection closes
+ * before it answers fails the job at once, without the other workers waiting out SHUFFLE_TIMEOUT for it.
+ * Every find ends with a ClusterReport, logged at INFO and kept in lastReport, from which scaling efficiency
+ * is computed as workers are added. Workers apply the MalformedLinePolicy and TimeFilter of the coordinator's
+ * LogScanner, sent with each job.
+ */
+public class DistributedLoyaltyAnalyzer implements LoyaltyAnalyzer {
+
+    private static final Logger LOGGER = Logger.getLogger(DistributedLoyaltyAnalyzer.class.getName());
+
+    private final LogScanner scanner;
+    private final List<InetSocketAddress> workers;
+    private final LoyaltyRule rule;
+    private volatile ClusterReport lastReport;
+
+    public DistributedLoyaltyAnalyzer(List<InetSocketAddress> workers) {
+        this(workers, LoyaltyRule.DEFAULT);
+    }
+
+    /** Workers apply rule, whose minDays can be at most the 2 days of a pair. */
+    public DistributedLoyaltyAnalyzer(List<InetSocketAddress> workers, LoyaltyRule rule) {
+        this(workers, rule, new LogScanner());
+    }
+
+    /** Workers also apply the MalformedLinePolicy and TimeFilter of scanner, which splits the days. */
+    public DistributedLoyaltyAnalyzer(List<InetSocketAddress> workers, LoyaltyRule rule, LogScanner scanner) {
+        if (workers.isEmpty()) throw new IllegalArgumentException("At least one worker is required");
+        this.workers = List.copyOf(workers);
+        this.rule = checkRule(rule);
+        this.scanner = scanner;
+    }
+
+    /** Returns rule if a day pair can satisfy it and its pages fit a DaySummary. */
+    static LoyaltyRule checkRule(LoyaltyRule rule) {
+        if (rule.minDays() > 2) {
+            throw new IllegalArgumentException("minDays %d exceeds the 2 days of a pair".formatted(rule.minDays()));
+        }
+        if (rule.minPages() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("minPages must be at most %d: %d".formatted(Byte.MAX_VALUE, rule.minPages()));
+        }
+        return rule;
+    }
+
+    /** Parses a comma-separated list of host:port (or bare ports on the loopback address). */
+    public static List<InetSocketAddress> parseAddresses(String text) {
+        return Arrays.stream(text.split(",")).map(String::trim).map(ClusterProtocol::parseAddress).toList();
+    }
+
+    @Override
+    public List<String> find(Path dayX, Path dayY) throws IOException {
+        List<String> loyal = new ArrayList<>();
+        find(dayX, dayY, LoyalCustomerSink.into(loyal));
+        return loyal;
+    }
+
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink) throws IOException {
+        return find(dayX, dayY, sink, RunMetrics.disabled());
+    }
+
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink, RunMetrics metrics) throws IOException {
+        long started = System.nanoTime();
+        long jobId = ThreadLocalRandom.current().nextLong();
+        int count = workers.size();
+        List<List<Range>> assignments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) assignments.add(new ArrayList<>());
+        List<FileRange> xRanges = scanner.split(dayX, count);
+        for (int i = 0; i < xRanges.size(); i++) assignments.get(i).add(new Range(ClusterProtocol.DAY_X, xRanges.get(i)));
+        List<FileRange> yRanges = scanner.split(dayY, count);
+        for (int i = 0; i < yRanges.size(); i++) {
+            assignments.get(count - 1 - i).add(new Range(ClusterProtocol.DAY_Y, yRanges.get(i)));
+        }
+
+        List<Connection> connections = new ArrayList<>(count);
+        AtomicReference<String> lost = new AtomicReference<>();
+        ExecutorService watchers = Executors.newFixedThreadPool(count, runnable -> {
+            Thread thread = new Thread(runnable, "cluster-watch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int i = 0; i < count; i++) {
+                Socket socket = new Socket(workers.get(i).getAddress(), workers.get(i).getPort());
+                try {
+                    connections.add(new Connection(i, socket, lost));
+                } catch (IOException e) {
+                    socket.close();
+                    throw e;
+                }
+                socket.setTcpNoDelay(true);
+                sendJob(socket, jobId, i, dayX, dayY, assignments.get(i));
+            }
+            for (Connection connection : connections) {
+                connection.first = watchers.submit(() -> connection.watch(jobId, connections));
+            }
+            long loyal = 0;
+            List<WorkerStats> stats = new ArrayList<>(count);
+            for (Connection connection : connections) {
+                String id;
+                while ((id = connection.next()) != null) {
+                    sink.accept(id);
+                    loyal++;
+                }
+                stats.add(connection.stats());
+            }
+            ClusterReport report = new ClusterReport(count, System.nanoTime() - started, stats);
+            lastReport = report;
+            LOGGER.info(() -> "Analyzed %s and %s with %s".formatted(dayX.getFileName(), dayY.getFileName(), report.summary()));
+            metrics.aggregateCustomers(stats.stream().mapToLong(WorkerStats::customers).sum());
+            return loyal;
+        } finally {
+            lost.compareAndSet(null, "the coordinator gave up on the job");
+            watchers.shutdownNow();
+            for (Connection connection : connections) connection.socket.close();
+        }
+    }
+
+    /** The report of the last completed find, or null before the first. */
+    public ClusterReport lastReport() {
+        return lastReport;
+    }
+
+    private void sendJob(Socket socket, long jobId, int index, Path dayX, Path dayY, List<Range> ranges)
+            throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), ClusterProtocol.BUFFER_BYTES));
+        ClusterProtocol.writeHeader(out, ClusterProtocol.JOB);
+        out.writeLong(jobId);
+        out.writeInt(workers.size());
+        out.writeInt(index);
+        for (InetSocketAddress worker : workers) ClusterProtocol.writeAddress(out, worker);
+        out.writeUTF(dayX.toAbsolutePath().toString());
+        out.writeUTF(dayY.toAbsolutePath().toString());
+        ClusterProtocol.writePolicy(out, scanner.policy());
+        ClusterProtocol.writeFilter(out, scanner.filter());
+        ClusterProtocol.writeRule(out, rule);
+        out.writeInt(ranges.size());
+        for (Range range : ranges) {
+            out.writeByte(range.day());
+            out.writeLong(range.range().start());
+            out.writeLong(range.range().end());
+        }
+        out.flush();
+    }
+
+    private record Range(int day, FileRange range) {}
+
+    /**
+     * The coordinator's connection to one worker. Results are consumed in worker order on the calling thread,
+     * but every connection is watched from the start: a worker whose connection closes before its first
+     * answer, as when its process dies, fails the job at once, and its peers are sent ABORT in its name
+     * instead of waiting SHUFFLE_TIMEOUT for its states.
+     */
+    private final class Connection {
+
+        final int index;
+        final Socket socket;
+        final DataInputStream in;
+        final AtomicReference<String> lost;
+        Future<Integer> first;
+        private byte[] id = new byte[256];
+
+        Connection(int index, Socket socket, AtomicReference<String> lost) throws IOException {
+            this.index = index;
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), ClusterProtocol.BUFFER_BYTES));
+            this.lost = lost;
+        }
+
+        /** Waits for the worker's first answer; if the connection fails first, fails the whole job. */
+        int watch(long jobId, List<Connection> all) throws IOException {
+            try {
+                return ClusterProtocol.readLength(in);
+            } catch (IOException e) {
+                String reason = "Worker %d at %s closed its connection before answering".formatted(index, workers.get(index));
+                if (lost.compareAndSet(null, reason)) {
+                    ClusterWorker.abortPeers(jobId, workers.size(), index, rule, workers, new boolean[workers.size()],
+                            reason);
+                    for (Connection connection : all) connection.socket.close();
+                }
+                throw e;
+            }
+        }
+
+        /** The next loyal ID from this worker, or null at END. */
+        String next() throws IOException {
+            int length = nextLength();
+            if (length == ClusterProtocol.END) return null;
+            if (length < 0 && length != ClusterProtocol.FAILED) {
+                throw new IOException("Unexpected marker from worker %d: %d".formatted(index, length));
+            }
+            try {
+                if (length == ClusterProtocol.FAILED) {
+                    throw new IOException("Worker %d at %s failed: %s".formatted(index, workers.get(index), in.readUTF()));
+                }
+                if (length > id.length) id = new byte[Math.max(length, id.length * 2)];
+                in.readFully(id, 0, length);
+            } catch (EOFException | SocketException e) {
+                throw lostConnection(e);
+            }
+            return new String(id, 0, length, StandardCharsets.UTF_8);
+        }
+
+        WorkerStats stats() throws IOException {
+            try {
+                return WorkerStats.read(in);
+            } catch (EOFException | SocketException e) {
+                throw lostConnection(e);
+            }
+        }
+
+        /** The first length is read by the watcher, the rest directly. */
+        private int nextLength() throws IOException {
+            Future<Integer> pending = first;
+            first = null;
+            if (pending == null) {
+                try {
+                    return ClusterProtocol.readLength(in);
+                } catch (EOFException | SocketException e) {
+                    throw lostConnection(e);
+                }
+            }
+            try {
+                return pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for worker " + index);
+            } catch (ExecutionException e) {
+                throw lostConnection(e.getCause());
+            }
+        }
+
+        /** The reason the job was lost if a watcher has one, otherwise this connection's own failure. */
+        private IOException lostConnection(Throwable cause) {
+            String reason = lost.get();
+            return new IOException(reason != null ? reason
+                    : "Lost the connection to worker %d at %s".formatted(index, workers.get(index)), cause);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.analytics.cluster;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * A set of ClusterWorkers on this machine, listening on loopback ports: separate JVM processes started with
+ * this JVM's java binary and class path, or threads of this JVM for tests. close() stops them all.
+ */
+public final class LocalCluster implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(LocalCluster.class.getName());
+    private static final String READY = "Listening on ";
+
+    private final List<InetSocketAddress> addresses = new ArrayList<>();
+    private final List<ClusterWorker> threads = new ArrayList<>();
+    private final List<Process> processes = new ArrayList<>();
+
+    private LocalCluster() {
+    }
+
+    /** Starts workers as threads of this JVM. */
+    public static LocalCluster inProcess(int workers) throws IOException {
+        checkWorkers(workers);
+        LocalCluster cluster = new LocalCluster();
+        try {
+            for (int i = 0; i < workers; i++) {
+                ClusterWorker worker = new ClusterWorker(0).start();
+                cluster.threads.add(worker);
+                cluster.addresses.add(worker.address());
+            }
+        } catch (IOException e) {
+            cluster.close();
+            throw e;
+        }
+        return cluster;
+    }
+
+    /** Starts workers as JVM processes, each given jvmOptions (for example -Xmx2g), and waits until they listen. */
+    public static LocalCluster processes(int workers, List<String> jvmOptions) throws IOException {
+        checkWorkers(workers);
+        LocalCluster cluster = new LocalCluster();
+        try {
+            for (int i = 0; i < workers; i++) cluster.startProcess(jvmOptions);
+        } catch (IOException e) {
+            cluster.close();
+            throw e;
+        }
+        return cluster;
+    }
+
+    public List<InetSocketAddress> addresses() {
+        return List.copyOf(addresses);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (ClusterWorker worker : threads) worker.close();
+        for (int i = 0; i < processes.size(); i++) {
+            Process process = processes.get(i);
+            if (i == addresses.size()) {
+                process.destroyForcibly();
+                continue;
+            }
+            try {
+                ClusterWorker.stop(addresses.get(i));
+                if (!process.waitFor(10, TimeUnit.SECONDS)) process.destroyForcibly();
+            } catch (IOException e) {
+                process.destroyForcibly();
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void startProcess(List<String> jvmOptions) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), ClusterWorker.class.getName(), "0"));
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        processes.add(process);
+        BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line = output.readLine();
+        if (line == null || !line.startsWith(READY)) {
+            throw new IOException("Worker process did not start: " + (line == null ? "exited" : line));
+        }
+        InetSocketAddress address = ClusterProtocol.parseAddress(line.substring(READY.length()));
+        addresses.add(address);
+        LOGGER.fine(() -> "Started worker process %d on %s".formatted(process.pid(), address));
+    }
+
+    private static void checkWorkers(int workers) {
+        if (workers < 1) throw new IllegalArgumentException("workers must be positive: " + workers);
+    }
+}
@@ -0,0 +1,140 @@
+package com.analytics.cluster;
+
+import com.analytics.collection.ByteSlice;
+import com.analytics.model.DaySummary;
+import com.analytics.model.LoyaltyRule;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Customer states of one partition as far as one or more workers have seen them: the days the customer was
+ * present and its pages, kept in a DaySummary that saturates at the rule's minPages. That is all a LoyaltyRule
+ * needs, and two partial states of a customer merge into the state of the union of their visits, as days of
+ * a RollingLoyaltyWindow do. Pages cross the wire as bytes and only while they still matter, that is until the
+ * customer is known to have visited minPages distinct pages.
+ * Not thread-safe.
+ */
+final class PartialStates {
+
+    static final byte DAY_X = 1;
+    static final byte DAY_Y = 2;
+
+    private static final byte SATURATED = -1;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private final LoyaltyRule rule;
+    private final DaySummary summary;
+    private byte[] days = new byte[INITIAL_CAPACITY];
+    private byte[] scratch = new byte[256];
+
+    PartialStates(LoyaltyRule rule) {
+        this.rule = rule;
+        this.summary = new DaySummary(rule.minPages());
+    }
+
+    /** Records one visit on day (DAY_X or DAY_Y). */
+    void record(ByteSlice customerId, ByteSlice pageId, byte day) {
+        int customer = customer(summary.internCustomer(customerId.buffer(), customerId.start(), customerId.end()));
+        days[customer] |= day;
+        if (!summary.isSaturated(customer)) {
+            summary.addPage(customer, summary.internPage(pageId.buffer(), pageId.start(), pageId.end()));
+        }
+    }
+
+    int size() {
+        return summary.customerCount();
+    }
+
+    /** Merges other's customers into this instance. */
+    void absorb(PartialStates other) {
+        for (int customer = 0; customer < other.size(); customer++) {
+            int merged = customer(summary.absorb(other.summary, customer));
+            days[merged] |= other.days[customer];
+        }
+    }
+
+    /**
+     * Writes every customer's state, then END, and returns the number of bytes written: the customer ID, its
+     * days, then SATURATED or the number of pages and the pages.
+     */
+    long write(DataOutputStream out) throws IOException {
+        long written = Integer.BYTES;
+        for (int customer = 0; customer < size(); customer++) {
+            written += writeBytes(out, summary.customerBytes(customer)) + 2;
+            out.writeByte(days[customer]);
+            if (summary.isSaturated(customer)) {
+                out.writeByte(SATURATED);
+                continue;
+            }
+            int pages = summary.distinctPages(customer);
+            out.writeByte(pages);
+            for (int i = 0; i < pages; i++) written += writeBytes(out, summary.pageBytes(summary.samplePage(customer, i)));
+        }
+        out.writeInt(ClusterProtocol.END);
+        return written;
+    }
+
+    /**
+     * Merges the states written by write, up to END. Returns false if the stream ends with ABORT instead,
+     * because the sending worker failed; its reason follows.
+     */
+    boolean read(DataInputStream in) throws IOException {
+        while (true) {
+            int length = ClusterProtocol.readLength(in);
+            if (length == ClusterProtocol.END) return true;
+            if (length == ClusterProtocol.ABORT) return false;
+            if (length < 0) throw new IOException("Unexpected marker in a shuffle stream: " + length);
+            int customer = customer(summary.internCustomer(ByteBuffer.wrap(readInto(in, length)), 0, length));
+            byte day = in.readByte();
+            if (day == 0 || (day & ~(DAY_X | DAY_Y)) != 0) throw new IOException("Invalid customer days: " + day);
+            days[customer] |= day;
+            byte pages = in.readByte();
+            if (pages == SATURATED) {
+                summary.saturate(customer);
+                continue;
+            }
+            if (pages < 0 || pages >= summary.pageLimit()) throw new IOException("Invalid page count: " + pages);
+            for (int i = 0; i < pages; i++) {
+                int pageLength = ClusterProtocol.readLength(in);
+                if (pageLength < 0) throw new IOException("Missing page of a customer");
+                summary.addPage(customer, summary.internPage(ByteBuffer.wrap(readInto(in, pageLength)), 0, pageLength));
+            }
+        }
+    }
+
+    /** Writes the IDs of the customers loyal under the rule as byte strings and returns how many there were. */
+    long writeLoyal(DataOutputStream out) throws IOException {
+        long loyal = 0;
+        for (int customer = 0; customer < size(); customer++) {
+            if (Integer.bitCount(days[customer]) < rule.minDays() || summary.distinctPages(customer) < rule.minPages()) {
+                continue;
+            }
+            writeBytes(out, summary.customerBytes(customer));
+            loyal++;
+        }
+        return loyal;
+    }
+
+    /** Makes room in days for customer, a new id or an existing one, and returns it. */
+    private int customer(int customer) {
+        if (customer == days.length) days = Arrays.copyOf(days, customer * 2);
+        return customer;
+    }
+
+    private byte[] readInto(DataInputStream in, int length) throws IOException {
+        if (length > scratch.length) scratch = new byte[Math.max(length, scratch.length * 2)];
+        in.readFully(scratch, 0, length);
+        return scratch;
+    }
+
+    /** Writes bytes as a byte string and returns the number of bytes written. */
+    static int writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        return Integer.BYTES + bytes.length;
+    }
+}
@@ -0,0 +1,31 @@
+package com.analytics.cluster;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * What one worker did for a job: lines and bytes scanned from its ranges, customers in the partition it owns
+ * and how many of them were loyal, bytes of partial states sent to other workers, and time spent scanning,
+ * exchanging states (including waiting for the slowest peer) and evaluating its partition.
+ */
+public record WorkerStats(int worker, long lines, long bytes, long customers, long loyal, long shuffleBytes,
+                          long scanNanos, long shuffleNanos, long evaluateNanos) {
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(worker);
+        out.writeLong(lines);
+        out.writeLong(bytes);
+        out.writeLong(customers);
+        out.writeLong(loyal);
+        out.writeLong(shuffleBytes);
+        out.writeLong(scanNanos);
+        out.writeLong(shuffleNanos);
+        out.writeLong(evaluateNanos);
+    }
+
+    static WorkerStats read(DataInputStream in) throws IOException {
+        return new WorkerStats(in.readInt(), in.readLong(), in.readLong(), in.readLong(), in.readLong(),
+                in.readLong(), in.readLong(), in.readLong(), in.readLong());
+    }
+}
@@ -0,0 +1,62 @@
+package com.analytics.collection;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bloom filter over byte strings, sized for an expected number of keys and false-positive rate.
+ * Probes use double hashing of one 64-bit hash, so a query costs a single pass over the key bytes
+ * and never allocates. Not thread-safe for concurrent adds.
+ */
+public final class BloomFilter {
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    public BloomFilter(long expectedKeys, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be within (0, 1): " + falsePositiveRate);
+        }
+        long n = Math.max(1, expectedKeys);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (m + 63) >>> 6))];
+        this.bitCount = (long) bits.length << 6;
+        this.hashCount = (int) Math.max(1, Math.min(16, Math.round((double) bitCount / n * Math.log(2))));
+    }
+
+    public void add(byte[] key) {
+        long hash = Hashing.hash64(key);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = index(hash, i);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /** False means buffer[start, end) was certainly never added. */
+    public boolean mightContain(ByteBuffer buffer, int start, int end) {
+        long hash = Hashing.hash64(buffer, start, end);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = index(hash, i);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    public boolean mightContain(ByteSlice key) {
+        return mightContain(key.buffer(), key.start(), key.end());
+    }
+
+    public boolean mightContain(byte[] key) {
+        return mightContain(ByteBuffer.wrap(key), 0, key.length);
+    }
+
+    /** Heap footprint of the bit array in bytes. */
+    public long memoryUsage() {
+        return (long) bits.length * Long.BYTES;
+    }
+
+    private long index(long hash, int i) {
+        long combined = (int) hash + (long) i * (int) (hash >>> 32 | 1);
+        return Math.floorMod(combined, bitCount);
+    }
+}
@@ -0,0 +1,80 @@
+package com.analytics.collection;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Mutable view of the bytes buffer[start, end), re-pointed rather than reallocated for each use.
+ * It deliberately is not a CharSequence: IDs are UTF-8, so a byte is not a char.
+ * toString decodes UTF-8 and is the only method that allocates a String.
+ * A slice is only valid while its buffer is, and its contents change when it is re-pointed,
+ * so it must not be kept or used as a map key; copy it with toString or toByteArray instead.
+ */
+public final class ByteSlice {
+
+    private ByteBuffer buffer;
+    private int start;
+    private int end;
+
+    public ByteSlice set(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+        return this;
+    }
+
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public int start() {
+        return start;
+    }
+
+    public int end() {
+        return end;
+    }
+
+    /** Length in bytes. */
+    public int length() {
+        return end - start;
+    }
+
+    public byte byteAt(int index) {
+        return buffer.get(start + index);
+    }
+
+    /** New slice of the bytes [from, to) of this one, sharing its buffer. */
+    public ByteSlice slice(int from, int to) {
+        if (from < 0 || to > length() || from > to) throw new IndexOutOfBoundsException("[%d, %d)".formatted(from, to));
+        return new ByteSlice().set(buffer, start + from, start + to);
+    }
+
+    public boolean contentEquals(ByteSlice other) {
+        if (other.length() != length()) return false;
+        for (int i = 0; i < length(); i++) {
+            if (byteAt(i) != other.byteAt(i)) return false;
+        }
+        return true;
+    }
+
+    public boolean contentEquals(byte[] bytes) {
+        if (bytes.length != length()) return false;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != buffer.get(start + i)) return false;
+        }
+        return true;
+    }
+
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[length()];
+        buffer.get(start, bytes);
+        return bytes;
+    }
+
+    /** Decodes the bytes as UTF-8. */
+    @Override
+    public String toString() {
+        return new String(toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,218 @@
+package com.analytics.collection;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Interns byte strings to dense int ids (0, 1, 2, ... in order of first sight).
+ * Keys are copied once into paged byte arrays and looked up through an open-addressing table of ids,
+ * so neither interning nor lookup allocates a String or a boxed key.
+ * Keys are decoded back to Strings only on request.
+ * Not thread-safe.
+ */
+public final class ByteStringDictionary {
+
+    private static final int PAGE_SHIFT = 20;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final int EMPTY = -1;
+
+    private byte[][] pages = new byte[1][];
+    private int pageCount;
+    private int pageOffset;
+
+    private long[] addresses = new long[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int size;
+
+    private int[] table = newTable(INITIAL_CAPACITY * 2);
+
+    /** Returns the id of buffer[start, end), assigning the next id if the key is new. */
+    public int intern(ByteBuffer buffer, int start, int end) {
+        int hash = hash(buffer, start, end);
+        int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot];
+            if (id == EMPTY) {
+                id = add(buffer, start, end, hash);
+                table[slot] = id;
+                if (size * 2 > table.length) rehash();
+                return id;
+            }
+            if (hashes[id] == hash && equals(id, buffer, start, end)) return id;
+        }
+    }
+
+    public int intern(byte[] key) {
+        return intern(ByteBuffer.wrap(key), 0, key.length);
+    }
+
+    public int intern(ByteSlice key) {
+        return intern(key.buffer(), key.start(), key.end());
+    }
+
+    /** Returns the id of buffer[start, end), or -1 if it has never been interned. */
+    public int find(ByteBuffer buffer, int start, int end) {
+        return find(buffer, start, end, hash(buffer, start, end));
+    }
+
+    /** As find(buffer, start, end), for a caller that already has the key's hash (see hash). */
+    public int find(ByteBuffer buffer, int start, int end, int hash) {
+        int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot];
+            if (id == EMPTY) return -1;
+            if (hashes[id] == hash && equals(id, buffer, start, end)) return id;
+        }
+    }
+
+    public int find(byte[] key) {
+        return find(ByteBuffer.wrap(key), 0, key.length);
+    }
+
+    public int find(ByteSlice key) {
+        return find(key.buffer(), key.start(), key.end());
+    }
+
+    /** Returns the id in this dictionary of other's key otherId, or -1; the key is compared in place, not copied. */
+    public int find(ByteStringDictionary other, int otherId) {
+        long address = other.addresses[other.checkId(otherId)];
+        int offset = (int) (address & (PAGE_SIZE - 1));
+        ByteBuffer key = ByteBuffer.wrap(other.pages[(int) (address >>> PAGE_SHIFT)]);
+        int hash = other.hashes[otherId];
+        int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot];
+            if (id == EMPTY) return -1;
+            if (hashes[id] == hash && equals(id, key, offset, offset + other.lengths[otherId])) return id;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int length(int id) {
+        return lengths[checkId(id)];
+    }
+
+    /** The hash of id's key, as computed by hash(buffer, start, end). */
+    public int hash(int id) {
+        return hashes[checkId(id)];
+    }
+
+    /** Points into at the key bytes of id in place; the slice wraps a fresh buffer over the key's page. */
+    public ByteSlice key(int id, ByteSlice into) {
+        long address = addresses[checkId(id)];
+        int offset = (int) (address & (PAGE_SIZE - 1));
+        return into.set(ByteBuffer.wrap(pages[(int) (address >>> PAGE_SHIFT)]), offset, offset + lengths[id]);
+    }
+
+    /** Copies the key bytes of id into a new array. */
+    public byte[] bytes(int id) {
+        long address = addresses[checkId(id)];
+        return Arrays.copyOfRange(pages[(int) (address >>> PAGE_SHIFT)],
+                (int) (address & (PAGE_SIZE - 1)), (int) (address & (PAGE_SIZE - 1)) + lengths[id]);
+    }
+
+    public String decode(int id) {
+        long address = addresses[checkId(id)];
+        return new String(pages[(int) (address >>> PAGE_SHIFT)], (int) (address & (PAGE_SIZE - 1)),
+                lengths[id], StandardCharsets.UTF_8);
+    }
+
+    /** True if the keys of id and buffer[start, end) are byte-for-byte equal. */
+    public boolean equals(int id, ByteBuffer buffer, int start, int end) {
+        int length = lengths[id];
+        if (length != end - start) return false;
+        long address = addresses[id];
+        byte[] page = pages[(int) (address >>> PAGE_SHIFT)];
+        int offset = (int) (address & (PAGE_SIZE - 1));
+        for (int i = 0; i < length; i++) {
+            if (page[offset + i] != buffer.get(start + i)) return false;
+        }
+        return true;
+    }
+
+    /** Compares the keys of two ids lexicographically as unsigned bytes. */
+    public int compare(int a, int b) {
+        long addressA = addresses[checkId(a)];
+        long addressB = addresses[checkId(b)];
+        int offsetA = (int) (addressA & (PAGE_SIZE - 1));
+        int offsetB = (int) (addressB & (PAGE_SIZE - 1));
+        return Arrays.compareUnsigned(pages[(int) (addressA >>> PAGE_SHIFT)], offsetA, offsetA + lengths[a],
+                pages[(int) (addressB >>> PAGE_SHIFT)], offsetB, offsetB + lengths[b]);
+    }
+
+    /** Approximate heap footprint of the keys, ids and lookup table in bytes. */
+    public long memoryUsage() {
+        return (long) pageCount * PAGE_SIZE + (long) addresses.length * (8 + 4 + 4) + (long) table.length * 4;
+    }
+
+    /** FNV-1a over the key bytes, finished with the murmur3 mixer to spread low bits. */
+    public static int hash(ByteBuffer buffer, int start, int end) {
+        int h = 0x811C9DC5;
+        for (int i = start; i < end; i++) {
+            h = (h ^ buffer.get(i)) * 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    private int add(ByteBuffer buffer, int start, int end, int hash) {
+        int length = end - start;
+        if (length > PAGE_SIZE) {
+            throw new IllegalArgumentException("Key of %d bytes exceeds the %d byte limit".formatted(length, PAGE_SIZE));
+        }
+        if (size == Integer.MAX_VALUE - 1) throw new IllegalStateException("Dictionary is full");
+        if (pageCount == 0 || pageOffset + length > PAGE_SIZE) newPage();
+
+        byte[] page = pages[pageCount - 1];
+        buffer.get(start, page, pageOffset, length);
+
+        if (size == addresses.length) {
+            int capacity = (int) Math.min((long) size * 2, Integer.MAX_VALUE - 1);
+            addresses = Arrays.copyOf(addresses, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+        }
+        addresses[size] = ((long) (pageCount - 1) << PAGE_SHIFT) | pageOffset;
+        lengths[size] = length;
+        hashes[size] = hash;
+        pageOffset += length;
+        return size++;
+    }
+
+    private void newPage() {
+        if (pageCount == pages.length) pages = Arrays.copyOf(pages, pageCount * 2);
+        pages[pageCount++] = new byte[PAGE_SIZE];
+        pageOffset = 0;
+    }
+
+    private void rehash() {
+        int[] grown = newTable(table.length * 2);
+        int mask = grown.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (grown[slot] != EMPTY) slot = (slot + 1) & mask;
+            grown[slot] = id;
+        }
+        table = grown;
+    }
+
+    private int checkId(int id) {
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException("Unknown id: " + id);
+        return id;
+    }
+
+    private static int[] newTable(int capacity) {
+        int[] t = new int[capacity];
+        Arrays.fill(t, EMPTY);
+        return t;
+    }
+}
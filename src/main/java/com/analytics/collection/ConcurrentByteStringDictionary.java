@@ -0,0 +1,138 @@
+package com.analytics.collection;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe counterpart of ByteStringDictionary: interns byte strings to dense int ids
+ * from any number of threads without a global lock.
+ * Keys are spread over independent segments by their high hash bits. Lookups never lock: each segment
+ * publishes its open-addressing table through a volatile field and entries are immutable, so a reader
+ * sees either a complete entry or an empty slot. Only inserting a new key locks its segment, and a reader
+ * that misses re-checks under that lock, so every key gets exactly one id.
+ * Ids are dense (0 .. size-1) but, across threads, not in order of first sight.
+ */
+public final class ConcurrentByteStringDictionary {
+
+    private static final int DEFAULT_SEGMENTS = 64;
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+    /** Visits one interned key; the array must not be modified. */
+    @FunctionalInterface
+    public interface KeyVisitor {
+        void visit(int id, byte[] key);
+    }
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    public ConcurrentByteStringDictionary() {
+        this(DEFAULT_SEGMENTS);
+    }
+
+    /** segments is rounded up to a power of two; more segments mean less contention on inserts. */
+    public ConcurrentByteStringDictionary(int segments) {
+        if (segments < 1 || segments > 1 << 16) throw new IllegalArgumentException("segments must be within [1, 65536]: " + segments);
+        int count = Integer.highestOneBit(segments);
+        if (count < segments) count <<= 1;
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) this.segments[i] = new Segment();
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(count);
+    }
+
+    public int intern(ByteSlice key) {
+        return intern(key.buffer(), key.start(), key.end());
+    }
+
+    /** Returns the id of buffer[start, end), assigning a new one if no thread has interned the key yet. */
+    public int intern(ByteBuffer buffer, int start, int end) {
+        long hash = Hashing.hash64(buffer, start, end);
+        Segment segment = segmentFor(hash);
+        int id = segment.find(buffer, start, end, (int) hash);
+        return id >= 0 ? id : segment.insert(buffer, start, end, (int) hash, nextId);
+    }
+
+    public int find(ByteSlice key) {
+        return find(key.buffer(), key.start(), key.end());
+    }
+
+    /** Returns the id of buffer[start, end), or -1 if it has not been interned. */
+    public int find(ByteBuffer buffer, int start, int end) {
+        long hash = Hashing.hash64(buffer, start, end);
+        return segmentFor(hash).find(buffer, start, end, (int) hash);
+    }
+
+    /** Number of ids handed out so far. */
+    public int size() {
+        return nextId.get();
+    }
+
+    /** Visits every key interned before the call; keys interned concurrently may or may not be visited. */
+    public void forEach(KeyVisitor visitor) {
+        for (Segment segment : segments) {
+            for (Entry entry : segment.table) {
+                if (entry != null) visitor.visit(entry.id, entry.key);
+            }
+        }
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments.length == 1 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+    }
+
+    /** Immutable, so racy publication through a table slot is safe. */
+    private record Entry(byte[] key, int hash, int id) {
+
+        boolean matches(ByteBuffer buffer, int start, int end, int otherHash) {
+            if (hash != otherHash || key.length != end - start) return false;
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != buffer.get(start + i)) return false;
+            }
+            return true;
+        }
+    }
+
+    private static final class Segment {
+        private volatile Entry[] table = new Entry[INITIAL_SEGMENT_CAPACITY];
+        private int size;
+
+        int find(ByteBuffer buffer, int start, int end, int hash) {
+            Entry[] t = table;
+            int mask = t.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                Entry entry = t[slot];
+                if (entry == null) return -1;
+                if (entry.matches(buffer, start, end, hash)) return entry.id;
+            }
+        }
+
+        synchronized int insert(ByteBuffer buffer, int start, int end, int hash, AtomicInteger nextId) {
+            int existing = find(buffer, start, end, hash);
+            if (existing >= 0) return existing;
+
+            byte[] key = new byte[end - start];
+            buffer.get(start, key);
+            Entry entry = new Entry(key, hash, nextId.getAndIncrement());
+            if ((size + 1) * 2 > table.length) {
+                Entry[] grown = new Entry[table.length * 2];
+                for (Entry e : table) {
+                    if (e != null) place(grown, e);
+                }
+                place(grown, entry);
+                table = grown;
+            } else {
+                place(table, entry);
+            }
+            size++;
+            return entry.id;
+        }
+
+        private static void place(Entry[] t, Entry entry) {
+            int mask = t.length - 1;
+            int slot = entry.hash & mask;
+            while (t[slot] != null) slot = (slot + 1) & mask;
+            t[slot] = entry;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.analytics.collection;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Shared per-customer loyalty state that many parser threads can update at once.
+ * Customer and page IDs are interned in ConcurrentByteStringDictionary instances; the state of each
+ * customer is a single long, updated with compare-and-set:
+ *   bits 0-1  — day X / day Y seen
+ *   bit  2    — multi-page: two or more distinct pages seen
+ *   bits 32+  — first page id + 1 (0 while no page is known)
+ * which is exactly what the default rule (both days, at least 2 distinct pages) needs.
+ * States live in fixed-size AtomicLongArray chunks that never move, so growing the table
+ * never invalidates a concurrent update.
+ */
+public final class ConcurrentCustomerTable {
+
+    public static final int DAY_X = 1;
+    public static final int DAY_Y = 2;
+
+    private static final long DAYS = DAY_X | DAY_Y;
+    private static final long MULTI_PAGE = 4;
+    private static final int CHUNK_SHIFT = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private final ConcurrentByteStringDictionary customers = new ConcurrentByteStringDictionary();
+    private final ConcurrentByteStringDictionary pages = new ConcurrentByteStringDictionary();
+    private volatile AtomicLongArray[] chunks = new AtomicLongArray[16];
+
+    /** Records that customer visited page on day (DAY_X or DAY_Y). Safe to call from any thread. */
+    public void record(ByteSlice customer, ByteSlice page, int day) {
+        int id = customers.intern(customer);
+        AtomicLongArray chunk = chunk(id);
+        int index = id & (CHUNK_SIZE - 1);
+
+        long state = chunk.get(index);
+        if ((state & MULTI_PAGE) != 0 && (state & day) != 0) return;
+        long firstPage = pages.intern(page) + 1L;
+        while (true) {
+            long next = state | day;
+            if ((state & MULTI_PAGE) == 0) {
+                long known = state >>> 32;
+                if (known == 0) {
+                    next |= firstPage << 32;
+                } else if (known != firstPage) {
+                    next |= MULTI_PAGE;
+                }
+            }
+            if (next == state || chunk.compareAndSet(index, state, next)) return;
+            state = chunk.get(index);
+        }
+    }
+
+    /** Number of distinct customers recorded so far. */
+    public int size() {
+        return customers.size();
+    }
+
+    /** Customers seen on both days with at least two distinct pages; call once all producers are done. */
+    public List<String> loyalCustomers() {
+        List<String> loyal = new ArrayList<>();
+        forEachLoyal((id, key) -> loyal.add(new String(key, StandardCharsets.UTF_8)));
+        return loyal;
+    }
+
+    /** Visits the key bytes of every loyal customer without collecting them. */
+    public void forEachLoyal(ConcurrentByteStringDictionary.KeyVisitor visitor) {
+        customers.forEach((id, key) -> {
+            long state = chunk(id).get(id & (CHUNK_SIZE - 1));
+            if ((state & DAYS) == DAYS && (state & MULTI_PAGE) != 0) visitor.visit(id, key);
+        });
+    }
+
+    private AtomicLongArray chunk(int id) {
+        int index = id >>> CHUNK_SHIFT;
+        AtomicLongArray[] current = chunks;
+        AtomicLongArray chunk = index < current.length ? current[index] : null;
+        return chunk != null ? chunk : addChunk(index);
+    }
+
+    private synchronized AtomicLongArray addChunk(int index) {
+        AtomicLongArray[] current = chunks;
+        if (index >= current.length) {
+            AtomicLongArray[] grown = new AtomicLongArray[Math.max(index + 1, current.length * 2)];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            current = grown;
+        }
+        if (current[index] == null) current[index] = new AtomicLongArray(CHUNK_SIZE);
+        chunks = current;
+        return current[index];
+    }
+}
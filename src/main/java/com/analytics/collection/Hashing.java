@@ -0,0 +1,35 @@
+package com.analytics.collection;
+
+import java.nio.ByteBuffer;
+
+/** 64-bit hashing of byte strings, identical for a buffer slice and a byte array with the same content. */
+public final class Hashing {
+
+    private Hashing() {
+    }
+
+    /** FNV-1a (64-bit) over buffer[start, end), finished with the murmur3 fmix64 mixer. */
+    public static long hash64(ByteBuffer buffer, int start, int end) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = start; i < end; i++) {
+            h = (h ^ (buffer.get(i) & 0xFF)) * 0x100000001B3L;
+        }
+        return mix64(h);
+    }
+
+    public static long hash64(ByteSlice slice) {
+        return hash64(slice.buffer(), slice.start(), slice.end());
+    }
+
+    public static long hash64(byte[] bytes) {
+        return hash64(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    public static long mix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+}
@@ -0,0 +1,109 @@
+package com.analytics.collection;
+
+/**
+ * HyperLogLog distinct-count sketch over byte strings: 2^precision one-byte registers, standard error
+ * about 1.04 / sqrt(2^precision) (1.6% at the default precision of 12, in 4 KB).
+ * Small cardinalities use linear counting. Sketches with the same precision can be merged, which gives the
+ * cardinality of the union; the intersection follows by inclusion-exclusion. Not thread-safe.
+ */
+public final class HyperLogLog {
+
+    public static final int DEFAULT_PRECISION = 12;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) throw new IllegalArgumentException("precision must be within [4, 18]: " + precision);
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public void add(ByteSlice key) {
+        addHash(Hashing.hash64(key));
+    }
+
+    public void add(byte[] key) {
+        addHash(Hashing.hash64(key));
+    }
+
+    /** Adds an already mixed 64-bit hash; the top precision bits pick the register. */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[index]) registers[index] = (byte) rank;
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) zeros++;
+        }
+        double raw = alpha(m) * m * m / sum;
+        if (raw <= 2.5 * m && zeros > 0) return Math.round(m * Math.log((double) m / zeros));
+        return Math.round(raw);
+    }
+
+    /** Folds other into this sketch, which then counts the union of both. */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge precision %d into %d".formatted(other.precision, precision));
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) registers[i] = other.registers[i];
+        }
+    }
+
+    /** Estimated size of the intersection of a and b, never negative. */
+    public static long intersection(HyperLogLog a, HyperLogLog b) {
+        HyperLogLog union = a.copy();
+        union.merge(b);
+        return Math.max(0, a.estimate() + b.estimate() - union.estimate());
+    }
+
+    public int precision() {
+        return precision;
+    }
+
+    /** The registers, one byte each; fromByteArray restores the sketch. */
+    public byte[] toByteArray() {
+        return registers.clone();
+    }
+
+    public static HyperLogLog fromByteArray(byte[] registers) {
+        int precision = Integer.numberOfTrailingZeros(registers.length);
+        if (registers.length != 1 << precision) {
+            throw new IllegalArgumentException("Register count is not a power of two: " + registers.length);
+        }
+        HyperLogLog sketch = new HyperLogLog(precision);
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] < 0 || registers[i] > 65 - precision) {
+                throw new IllegalArgumentException("Register out of range: " + registers[i]);
+            }
+            sketch.registers[i] = registers[i];
+        }
+        return sketch;
+    }
+
+    public HyperLogLog copy() {
+        HyperLogLog copy = new HyperLogLog(precision);
+        System.arraycopy(registers, 0, copy.registers, 0, registers.length);
+        return copy;
+    }
+
+    private static double alpha(int m) {
+        return switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+    }
+}
@@ -0,0 +1,84 @@
+package com.analytics.collection;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing set of non-negative longs with linear probing and no boxing.
+ * Typically holds packed (int, int) pairs; see pack.
+ * Not thread-safe.
+ */
+public final class LongHashSet {
+
+    private static final long EMPTY = -1L;
+
+    private long[] table;
+    private int size;
+
+    public LongHashSet() {
+        this(1 << 10);
+    }
+
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize) * 2 - 1) << 1;
+        table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+    }
+
+    /** Packs two non-negative ints into one non-negative long. */
+    public static long pack(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    /** Adds value and returns true if it was not already present. */
+    public boolean add(long value) {
+        if (value < 0) throw new IllegalArgumentException("Negative values are not supported: " + value);
+        int mask = table.length - 1;
+        for (int slot = mix(value) & mask; ; slot = (slot + 1) & mask) {
+            long current = table[slot];
+            if (current == value) return false;
+            if (current == EMPTY) {
+                table[slot] = value;
+                if (++size * 2 > table.length) rehash();
+                return true;
+            }
+        }
+    }
+
+    public boolean contains(long value) {
+        int mask = table.length - 1;
+        for (int slot = mix(value) & mask; ; slot = (slot + 1) & mask) {
+            long current = table[slot];
+            if (current == value) return true;
+            if (current == EMPTY) return false;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Heap footprint of the backing table in bytes. */
+    public long memoryUsage() {
+        return (long) table.length * Long.BYTES;
+    }
+
+    private void rehash() {
+        long[] old = table;
+        table = new long[old.length * 2];
+        Arrays.fill(table, EMPTY);
+        int mask = table.length - 1;
+        for (long value : old) {
+            if (value == EMPTY) continue;
+            int slot = mix(value) & mask;
+            while (table[slot] != EMPTY) slot = (slot + 1) & mask;
+            table[slot] = value;
+        }
+    }
+
+    private static int mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        return (int) value;
+    }
+}
@@ -0,0 +1,41 @@
+package com.analytics.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/** One completed analyzer phase. */
+@Name("com.analytics.Phase")
+@Label("Analyzer Phase")
+@Category("Loyalty Analyzer")
+@StackTrace(false)
+final class PhaseEvent extends jdk.jfr.Event {
+
+    @Label("Analyzer")
+    String analyzer;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("File")
+    String file;
+
+    @Label("Duration")
+    @Timespan(Timespan.MILLISECONDS)
+    long durationMillis;
+
+    @Label("Lines")
+    long lines;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Malformed Lines")
+    @Description("Lines skipped because they lack one of the three fields")
+    long malformedLines;
+}
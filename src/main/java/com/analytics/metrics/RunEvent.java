@@ -0,0 +1,36 @@
+package com.analytics.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/** Summary of a whole analyzer run. */
+@Name("com.analytics.Run")
+@Label("Analyzer Run")
+@Category("Loyalty Analyzer")
+@StackTrace(false)
+final class RunEvent extends jdk.jfr.Event {
+
+    @Label("Analyzer")
+    String analyzer;
+
+    @Label("Duration")
+    @Timespan(Timespan.MILLISECONDS)
+    long durationMillis;
+
+    @Label("Lines")
+    long lines;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Malformed Lines")
+    long malformedLines;
+
+    @Label("Loyal Customers")
+    long loyalCustomers;
+}
@@ -0,0 +1,317 @@
+package com.analytics.metrics;
+
+import com.analytics.parser.ScanResult;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * Measurements of one analyzer run: wall time per phase, lines and bytes scanned, skipped blank and malformed
+ * lines, the size of the customer aggregate and candidate maps, and where day Y was abandoned early.
+ * Analyzers record a handful of values per phase, never per line, and every method returns immediately on
+ * disabled(), so an uninstrumented run pays one branch per phase. Phases and scan totals that no analyzer
+ * recorded stay NOT_MEASURED instead of reading as zero.
+ * An enabled instance also commits a JFR event per phase and per run (visible only while a recording is active),
+ * can be registered as an MXBean, and renders itself as a JSON summary.
+ */
+public final class RunMetrics implements RunMetricsMXBean {
+
+    public static final String OBJECT_NAME = "com.analytics:type=RunMetrics";
+    public static final long NOT_MEASURED = -1;
+
+    private static final Logger LOGGER = Logger.getLogger(RunMetrics.class.getName());
+    private static final RunMetrics DISABLED = new RunMetrics(null, false);
+
+    public enum Phase {
+        PARSE_DAY_X("parseDayX"), PARSE_DAY_Y("parseDayY"), EVALUATE("evaluate");
+
+        private final String key;
+
+        Phase(String key) {
+            this.key = key;
+        }
+    }
+
+    private final String analyzer;
+    private final boolean enabled;
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private long runStart;
+    private long totalNanos = NOT_MEASURED;
+    private long lines = NOT_MEASURED;
+    private long bytes = NOT_MEASURED;
+    private long blankLines = NOT_MEASURED;
+    private long malformedLines = NOT_MEASURED;
+    private long scanNanos = NOT_MEASURED;
+    private long aggregateCustomers = NOT_MEASURED;
+    private long candidateCustomers = NOT_MEASURED;
+    private long earlyExitPosition = NOT_MEASURED;
+    private long loyalCustomers = NOT_MEASURED;
+
+    public RunMetrics(String analyzer) {
+        this(analyzer, true);
+    }
+
+    private RunMetrics(String analyzer, boolean enabled) {
+        this.analyzer = analyzer;
+        this.enabled = enabled;
+        this.runStart = System.nanoTime();
+        Arrays.fill(phaseNanos, NOT_MEASURED);
+    }
+
+    /** Shared instance that records nothing. */
+    public static RunMetrics disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Starts timing phase; the returned timer must be ended exactly once. */
+    public PhaseTimer begin(Phase phase) {
+        if (!enabled) return PhaseTimer.NOOP;
+        return new PhaseTimer(this, phase);
+    }
+
+    synchronized void phaseEnded(Phase phase, long nanos, Path file, ScanResult scan) {
+        phaseNanos[phase.ordinal()] = add(phaseNanos[phase.ordinal()], nanos);
+        if (scan != null) {
+            lines = add(lines, scan.lines());
+            bytes = add(bytes, scan.bytes());
+            blankLines = add(blankLines, scan.blankLines());
+            malformedLines = add(malformedLines, scan.malformedLines());
+            scanNanos = add(scanNanos, nanos);
+        }
+        PhaseEvent event = new PhaseEvent();
+        if (event.shouldCommit()) {
+            event.analyzer = analyzer;
+            event.phase = phase.key;
+            event.file = file == null ? null : file.toString();
+            event.durationMillis = nanos / 1_000_000;
+            if (scan != null) {
+                event.lines = scan.lines();
+                event.bytes = scan.bytes();
+                event.malformedLines = scan.malformedLines();
+            }
+            event.commit();
+        }
+    }
+
+    private static long add(long total, long value) {
+        return total == NOT_MEASURED ? value : total + value;
+    }
+
+    /** Distinct customers held by the analyzer's main aggregate. */
+    public synchronized void aggregateCustomers(long customers) {
+        if (enabled) aggregateCustomers = customers;
+    }
+
+    /** Day-X customers kept as candidates for the day-Y pass. */
+    public synchronized void candidateCustomers(long customers) {
+        if (enabled) candidateCustomers = customers;
+    }
+
+    /** Byte offset at which the day-Y scan stopped because nothing was left to decide. */
+    public synchronized void earlyExit(long position) {
+        if (enabled) earlyExitPosition = position;
+    }
+
+    /** Ends the run; called once the last loyal customer has been emitted. */
+    public synchronized void finish(long loyal) {
+        if (!enabled) return;
+        loyalCustomers = loyal;
+        totalNanos = System.nanoTime() - runStart;
+        RunEvent event = new RunEvent();
+        if (event.shouldCommit()) {
+            event.analyzer = analyzer;
+            event.durationMillis = totalNanos / 1_000_000;
+            event.lines = lines;
+            event.bytes = bytes;
+            event.malformedLines = malformedLines;
+            event.loyalCustomers = loyal;
+            event.commit();
+        }
+    }
+
+    /** Registers this instance as the platform MXBean OBJECT_NAME, replacing a previous run's. */
+    public void register() {
+        if (!enabled) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            try {
+                server.registerMBean(this, name);
+            } catch (InstanceAlreadyExistsException e) {
+                server.unregisterMBean(name);
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            LOGGER.warning("Could not register run metrics MXBean: " + e);
+        }
+    }
+
+    @Override
+    public String getAnalyzer() {
+        return analyzer;
+    }
+
+    @Override
+    public synchronized long getTotalMillis() {
+        return millis(totalNanos);
+    }
+
+    @Override
+    public synchronized long getParseDayXMillis() {
+        return millis(phaseNanos[Phase.PARSE_DAY_X.ordinal()]);
+    }
+
+    @Override
+    public synchronized long getParseDayYMillis() {
+        return millis(phaseNanos[Phase.PARSE_DAY_Y.ordinal()]);
+    }
+
+    @Override
+    public synchronized long getEvaluateMillis() {
+        return millis(phaseNanos[Phase.EVALUATE.ordinal()]);
+    }
+
+    @Override
+    public synchronized long getLines() {
+        return lines;
+    }
+
+    @Override
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public synchronized long getBlankLines() {
+        return blankLines;
+    }
+
+    @Override
+    public synchronized long getMalformedLines() {
+        return malformedLines;
+    }
+
+    /** Lines per second over the time spent in scanning phases. */
+    @Override
+    public synchronized double getLinesPerSecond() {
+        return rate(lines);
+    }
+
+    @Override
+    public synchronized double getBytesPerSecond() {
+        return rate(bytes);
+    }
+
+    private double rate(long total) {
+        if (scanNanos == NOT_MEASURED) return NOT_MEASURED;
+        return scanNanos == 0 ? 0 : total * 1e9 / scanNanos;
+    }
+
+    @Override
+    public synchronized long getAggregateCustomers() {
+        return aggregateCustomers;
+    }
+
+    @Override
+    public synchronized long getCandidateCustomers() {
+        return candidateCustomers;
+    }
+
+    @Override
+    public synchronized long getEarlyExitPosition() {
+        return earlyExitPosition;
+    }
+
+    @Override
+    public synchronized long getLoyalCustomers() {
+        return loyalCustomers;
+    }
+
+    /** One JSON object; values that the analyzer does not measure are -1. */
+    public synchronized String toJson() {
+        StringBuilder json = new StringBuilder(512).append("{\n");
+        json.append("  \"analyzer\": ").append(analyzer == null ? "null" : quote(analyzer)).append(",\n");
+        json.append("  \"totalMillis\": ").append(getTotalMillis()).append(",\n");
+        json.append("  \"phaseMillis\": {");
+        for (Phase phase : Phase.values()) {
+            json.append(phase.ordinal() == 0 ? "" : ", ")
+                    .append(quote(phase.key)).append(": ").append(millis(phaseNanos[phase.ordinal()]));
+        }
+        json.append("},\n");
+        json.append("  \"lines\": ").append(lines).append(",\n");
+        json.append("  \"bytes\": ").append(bytes).append(",\n");
+        json.append("  \"blankLines\": ").append(blankLines).append(",\n");
+        json.append("  \"malformedLines\": ").append(malformedLines).append(",\n");
+        json.append("  \"linesPerSecond\": ").append(String.format(Locale.ROOT, "%.1f", getLinesPerSecond())).append(",\n");
+        json.append("  \"bytesPerSecond\": ").append(String.format(Locale.ROOT, "%.1f", getBytesPerSecond())).append(",\n");
+        json.append("  \"aggregateCustomers\": ").append(aggregateCustomers).append(",\n");
+        json.append("  \"candidateCustomers\": ").append(candidateCustomers).append(",\n");
+        json.append("  \"earlyExitPosition\": ").append(earlyExitPosition).append(",\n");
+        json.append("  \"loyalCustomers\": ").append(loyalCustomers).append('\n');
+        return json.append('}').toString();
+    }
+
+    private static long millis(long nanos) {
+        return nanos == NOT_MEASURED ? NOT_MEASURED : nanos / 1_000_000;
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') quoted.append('\\').append(c);
+            else if (c < 0x20) quoted.append("\\u%04x".formatted((int) c));
+            else quoted.append(c);
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Times one phase; end() records the elapsed time, end(file, scan) also the scan totals.
+     * Phases running concurrently can stop() their timers where they finish and end them later, in a fixed order.
+     */
+    public static final class PhaseTimer {
+        /** Timer of a disabled run; ending it records nothing. */
+        public static final PhaseTimer NOOP = new PhaseTimer(null, null);
+
+        private final RunMetrics metrics;
+        private final Phase phase;
+        private final long start;
+        private volatile long stop;
+
+        private PhaseTimer(RunMetrics metrics, Phase phase) {
+            this.metrics = metrics;
+            this.phase = phase;
+            this.start = metrics == null ? 0 : System.nanoTime();
+        }
+
+        /** Fixes the end of the phase without recording it yet. */
+        public void stop() {
+            if (metrics != null) stop = System.nanoTime();
+        }
+
+        public void end() {
+            if (metrics != null) metrics.phaseEnded(phase, elapsed(), null, null);
+        }
+
+        public void end(Path file, ScanResult scan) {
+            if (metrics != null) metrics.phaseEnded(phase, elapsed(), file, scan);
+        }
+
+        private long elapsed() {
+            long end = stop;
+            return (end != 0 ? end : System.nanoTime()) - start;
+        }
+    }
+}
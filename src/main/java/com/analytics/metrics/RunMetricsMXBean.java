@@ -0,0 +1,35 @@
+package com.analytics.metrics;
+
+/** JMX view of RunMetrics; durations in milliseconds, -1 where the analyzer does not measure a value. */
+public interface RunMetricsMXBean {
+
+    String getAnalyzer();
+
+    long getTotalMillis();
+
+    long getParseDayXMillis();
+
+    long getParseDayYMillis();
+
+    long getEvaluateMillis();
+
+    long getLines();
+
+    long getBytes();
+
+    long getBlankLines();
+
+    long getMalformedLines();
+
+    double getLinesPerSecond();
+
+    double getBytesPerSecond();
+
+    long getAggregateCustomers();
+
+    long getCandidateCustomers();
+
+    long getEarlyExitPosition();
+
+    long getLoyalCustomers();
+}
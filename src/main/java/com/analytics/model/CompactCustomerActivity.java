@@ -0,0 +1,98 @@
+package com.analytics.model;
+
+import java.util.Arrays;
+
+/**
+ * Saturating alternative to CustomerActivity that only remembers enough pages to decide loyalty.
+ * It keeps the two day bits, the first page seen and, for thresholds above 2, up to minPages - 2
+ * further distinct pages. Once minPages distinct pages have been seen the state is saturated:
+ * stored pages are released and further pages are ignored, so the state never grows past the threshold.
+ */
+public class CompactCustomerActivity {
+
+    public static final int DEFAULT_MIN_PAGES = 2;
+
+    private static final byte DAY_X = 1;
+    private static final byte DAY_Y = 2;
+    private static final byte SATURATED = 4;
+    private static final String[] NO_PAGES = new String[0];
+
+    private final String customerId;
+    private final int minPages;
+    private byte flags;
+    private String firstPage;
+    private String[] otherPages = NO_PAGES;
+
+    public CompactCustomerActivity(String customerId) {
+        this(customerId, DEFAULT_MIN_PAGES);
+    }
+
+    public CompactCustomerActivity(String customerId, int minPages) {
+        if (minPages < 1) throw new IllegalArgumentException("minPages must be positive: " + minPages);
+        this.customerId = customerId;
+        this.minPages = minPages;
+    }
+
+    public String customerId() {
+        return customerId;
+    }
+
+    public boolean visitedDayX() {
+        return (flags & DAY_X) != 0;
+    }
+
+    public boolean visitedDayY() {
+        return (flags & DAY_Y) != 0;
+    }
+
+    /** True once minPages distinct pages have been seen; further pages need not be recorded. */
+    public boolean isSaturated() {
+        return (flags & SATURATED) != 0;
+    }
+
+    /** Distinct pages seen so far, capped at minPages. */
+    public int uniquePageCount() {
+        if (isSaturated()) return minPages;
+        return firstPage == null ? 0 : 1 + otherPages.length;
+    }
+
+    public void recordDayX(String pageId) {
+        markDayX();
+        addPage(pageId);
+    }
+
+    public void recordDayY(String pageId) {
+        markDayY();
+        addPage(pageId);
+    }
+
+    public void markDayX() {
+        flags |= DAY_X;
+    }
+
+    public void markDayY() {
+        flags |= DAY_Y;
+    }
+
+    public void addPage(String pageId) {
+        if (isSaturated() || pageId.equals(firstPage)) return;
+        for (String page : otherPages) {
+            if (page.equals(pageId)) return;
+        }
+
+        if (uniquePageCount() + 1 >= minPages) {
+            flags |= SATURATED;
+            firstPage = null;
+            otherPages = NO_PAGES;
+        } else if (firstPage == null) {
+            firstPage = pageId;
+        } else {
+            otherPages = Arrays.copyOf(otherPages, otherPages.length + 1);
+            otherPages[otherPages.length - 1] = pageId;
+        }
+    }
+
+    public boolean isLoyal() {
+        return visitedDayX() && visitedDayY() && uniquePageCount() >= minPages;
+    }
+}
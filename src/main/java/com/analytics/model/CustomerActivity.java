@@ -42,6 +42,14 @@ public class CustomerActivity {
         pages.add(pageId);
     }
 
+    /** Folds another partial record of the same customer into this one and returns this. */
+    public CustomerActivity merge(CustomerActivity other) {
+        visitedDayX |= other.visitedDayX;
+        visitedDayY |= other.visitedDayY;
+        pages.addAll(other.pages);
+        return this;
+    }
+
     public boolean isLoyal() {
         return visitedDayX && visitedDayY && pages.size() >= 2;
     }
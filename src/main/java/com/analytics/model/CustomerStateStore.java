@@ -0,0 +1,62 @@
+package com.analytics.model;
+
+import com.analytics.collection.ByteSlice;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Where a DaySummary keeps its customers: customer ID bytes interned to dense ids (0, 1, 2, ... in order of
+ * first sight), each with slots page ids and a sample size, both zero for a new customer.
+ * HeapCustomerStateStore keeps everything in Java arrays; OffHeapCustomerStateStore keeps it in direct
+ * memory, so the heap does not grow with the number of customers. Keys are hashed with
+ * ByteStringDictionary.hash in both, so a store looks up another store's customers without rehashing them.
+ * Not thread-safe.
+ */
+public interface CustomerStateStore extends AutoCloseable {
+
+    /** Creates an empty store with room for slots page ids per customer. */
+    @FunctionalInterface
+    interface Factory {
+        CustomerStateStore create(int slots);
+    }
+
+    /** Returns the id of buffer[start, end), adding the customer if it is new. */
+    int intern(ByteBuffer buffer, int start, int end);
+
+    /** Returns the id of buffer[start, end), or -1 if the customer was not seen. */
+    int find(ByteBuffer buffer, int start, int end);
+
+    /** Returns the id here of other's customer id, or -1 if this store has not seen that customer. */
+    int find(CustomerStateStore other, int id);
+
+    int size();
+
+    /** The ByteStringDictionary.hash of id's key bytes. */
+    int hash(int id);
+
+    /** Points into at the key bytes of id in place; valid until the store grows or is closed. */
+    ByteSlice key(int id, ByteSlice into);
+
+    /** Copies the key bytes of id into a new array. */
+    byte[] bytes(int id);
+
+    String decode(int id);
+
+    /** Orders ids by their key bytes, compared as unsigned. */
+    int compare(int a, int b);
+
+    byte sampleSize(int id);
+
+    void setSampleSize(int id, byte size);
+
+    int sample(int id, int slot);
+
+    void setSample(int id, int slot, int page);
+
+    /** Approximate footprint of the keys, states and lookup table in bytes, on or off the heap. */
+    long memoryUsage();
+
+    /** Releases the store's memory; it must not be used afterwards. */
+    @Override
+    void close();
+}
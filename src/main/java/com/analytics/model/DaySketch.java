@@ -0,0 +1,193 @@
+package com.analytics.model;
+
+import com.analytics.collection.ByteSlice;
+import com.analytics.collection.Hashing;
+import com.analytics.collection.HyperLogLog;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size summary of one day for approximate loyalty counting.
+ * A HyperLogLog sketch counts the day's distinct customers. In addition the customers with the
+ * capacity smallest 64-bit hashes are kept exactly, each with the hash of its first page and a multi-page flag.
+ * Because every day samples by the same hash, the samples of two days hold the same customers below the lower
+ * of their thresholds, so loyalty can be decided exactly for them and scaled up by the sampling rate.
+ * Memory is bounded by the capacity (about 70 bytes per sampled customer) whatever the size of the day.
+ * Not thread-safe.
+ */
+public final class DaySketch {
+
+    public static final int DEFAULT_CAPACITY = 1 << 18;
+    /** Standard normal quantile for a two-sided 95% interval. */
+    private static final double Z_95 = 1.96;
+    private static final int SKETCH_PRECISION = 14;
+    private static final long EMPTY = 0;
+    private static final long KEEP_ALL = -1L;
+
+    private final int capacity;
+    private final HyperLogLog customers;
+    /** Sampled customers are those whose hash is below threshold, compared as unsigned. */
+    private long threshold;
+    private long[] keys;
+    private long[] pages;
+    private boolean[] multiPage;
+    private int size;
+
+    /** Sketch that keeps DEFAULT_CAPACITY customers. */
+    public DaySketch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public DaySketch(int capacity) {
+        this(capacity, KEEP_ALL, new HyperLogLog(SKETCH_PRECISION));
+    }
+
+    /** Empty sample with a given threshold and customer sketch, used to restore a saved sketch. */
+    public DaySketch(int capacity, long threshold, HyperLogLog customers) {
+        if (capacity < 16 || capacity > 1 << 28) {
+            throw new IllegalArgumentException("capacity must be between 16 and 2^28: " + capacity);
+        }
+        this.capacity = capacity;
+        this.threshold = threshold;
+        this.customers = customers;
+        allocate(Integer.highestOneBit(capacity * 2 - 1) * 4);
+    }
+
+    /** Records one visit, given the pageId and customerId slices of a scanned line. */
+    public void record(ByteSlice pageId, ByteSlice customerId) {
+        long customer = Hashing.hash64(customerId);
+        customers.addHash(customer);
+        if (customer == EMPTY) customer = 1;
+        if (Long.compareUnsigned(customer, threshold) >= 0) return;
+        long page = Hashing.hash64(pageId);
+        int slot = slot(customer);
+        if (keys[slot] == EMPTY) {
+            insert(slot, customer, page, false);
+        } else if (pages[slot] != page) {
+            multiPage[slot] = true;
+        }
+    }
+
+    /** Adds a sampled customer as saved by forEachSample. */
+    public void addSample(long customerHash, long pageHash, boolean multi) {
+        if (customerHash == EMPTY || Long.compareUnsigned(customerHash, threshold) >= 0) {
+            throw new IllegalArgumentException("Customer hash outside the sample: " + Long.toHexString(customerHash));
+        }
+        int slot = slot(customerHash);
+        if (keys[slot] != EMPTY) throw new IllegalArgumentException("Duplicate customer hash");
+        insert(slot, customerHash, pageHash, multi);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Exclusive upper bound of the sampled hashes, unsigned; -1 while every customer is kept. */
+    public long threshold() {
+        return threshold;
+    }
+
+    public int sampleSize() {
+        return size;
+    }
+
+    /** Estimated distinct customers of the day. */
+    public long distinctCustomers() {
+        return exact() ? size : customers.estimate();
+    }
+
+    /** True while the sample holds every customer of the day. */
+    public boolean exact() {
+        return threshold == KEEP_ALL;
+    }
+
+    public HyperLogLog customers() {
+        return customers.copy();
+    }
+
+    public void forEachSample(SampleVisitor visitor) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) visitor.visit(keys[slot], pages[slot], multiPage[slot]);
+        }
+    }
+
+    /**
+     * Estimates the customers of the day pair that visited on both days and saw at least two distinct pages.
+     * Only customers below both thresholds are compared; their loyal count divided by the sampling rate is the
+     * estimate, with a binomial 95% interval. Page hashes are compared, so two pages with equal 64-bit hashes
+     * count as one.
+     */
+    public static LoyaltyEstimate estimateLoyal(DaySketch dayX, DaySketch dayY) {
+        long threshold = Long.compareUnsigned(dayX.threshold, dayY.threshold) <= 0 ? dayX.threshold : dayY.threshold;
+        long loyal = 0;
+        for (int slot = 0; slot < dayX.keys.length; slot++) {
+            long customer = dayX.keys[slot];
+            if (customer == EMPTY || Long.compareUnsigned(customer, threshold) >= 0) continue;
+            int other = dayY.slot(customer);
+            if (dayY.keys[other] == EMPTY) continue;
+            if (dayX.multiPage[slot] || dayY.multiPage[other] || dayX.pages[slot] != dayY.pages[other]) loyal++;
+        }
+        if (threshold == KEEP_ALL) return new LoyaltyEstimate(loyal, loyal, loyal, loyal, 1);
+        double rate = unsigned(threshold) / 0x1p64;
+        double estimate = loyal / rate;
+        double margin = Z_95 * Math.sqrt(Math.max(loyal, 1) * (1 - rate)) / rate;
+        return new LoyaltyEstimate(Math.round(estimate), Math.max(loyal, Math.round(estimate - margin)),
+                Math.round(estimate + margin), loyal, rate);
+    }
+
+    private void insert(int slot, long customer, long page, boolean multi) {
+        keys[slot] = customer;
+        pages[slot] = page;
+        multiPage[slot] = multi;
+        if (++size == capacity * 2) shrink();
+    }
+
+    /** Keeps the capacity smallest hashes and lowers the threshold to the smallest hash dropped. */
+    private void shrink() {
+        long[] sorted = new long[size];
+        int n = 0;
+        for (long key : keys) {
+            if (key != EMPTY) sorted[n++] = key ^ Long.MIN_VALUE;
+        }
+        Arrays.sort(sorted);
+        threshold = sorted[capacity] ^ Long.MIN_VALUE;
+
+        long[] oldKeys = keys;
+        long[] oldPages = pages;
+        boolean[] oldMulti = multiPage;
+        allocate(keys.length);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY || Long.compareUnsigned(oldKeys[i], threshold) >= 0) continue;
+            int slot = slot(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            pages[slot] = oldPages[i];
+            multiPage[slot] = oldMulti[i];
+            size++;
+        }
+    }
+
+    private void allocate(int length) {
+        keys = new long[length];
+        pages = new long[length];
+        multiPage = new boolean[length];
+        size = 0;
+    }
+
+    /** Slot holding customer, or the empty slot where it belongs. Keys are already mixed hashes. */
+    private int slot(long customer) {
+        int mask = keys.length - 1;
+        int slot = (int) (customer ^ customer >>> 32) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != customer) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private static double unsigned(long value) {
+        return value >= 0 ? value : (value >>> 1) * 2.0 + (value & 1);
+    }
+
+    /** Receives one sampled customer: its hash, the hash of its first page and whether it saw another page. */
+    @FunctionalInterface
+    public interface SampleVisitor {
+        void visit(long customerHash, long pageHash, boolean multiPage);
+    }
+}
@@ -0,0 +1,172 @@
+package com.analytics.model;
+
+import com.analytics.collection.ByteStringDictionary;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compact per-day customer summary: for every customer seen that day, up to pageLimit - 1 distinct
+ * pages, or a saturation mark once pageLimit distinct pages have been seen.
+ * That is exactly enough to decide "at least pageLimit distinct pages" across any set of days.
+ * Customer and page IDs are dictionary-encoded; customers and their state live in a CustomerStateStore,
+ * on the heap by default or off it for very large days, which close() releases.
+ * Not thread-safe.
+ */
+public final class DaySummary implements AutoCloseable {
+
+    private static final byte SATURATED = -1;
+
+    private final int pageLimit;
+    private final CustomerStateStore customers;
+    private final ByteStringDictionary pages = new ByteStringDictionary();
+
+    public DaySummary(int pageLimit) {
+        this(pageLimit, HeapCustomerStateStore::new);
+    }
+
+    /** A summary whose customers live in a store created by stores, for example OffHeapCustomerStateStore::new. */
+    public DaySummary(int pageLimit, CustomerStateStore.Factory stores) {
+        if (pageLimit < 1 || pageLimit > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("pageLimit must be between 1 and %d: %d".formatted(Byte.MAX_VALUE, pageLimit));
+        }
+        this.pageLimit = pageLimit;
+        this.customers = stores.create(Math.max(1, pageLimit - 1));
+    }
+
+    /** Records one visit, given the pageId and customerId slices of a scanned line. */
+    public void record(ByteBuffer buf, int pageStart, int pageEnd, int customerStart, int customerEnd) {
+        int customer = customers.intern(buf, customerStart, customerEnd);
+        if (customers.sampleSize(customer) != SATURATED) addPage(customer, pages.intern(buf, pageStart, pageEnd));
+    }
+
+    /**
+     * Folds customer of other into this summary, merging its pages, and returns its id here.
+     * Both summaries must use the same pageLimit.
+     */
+    public int absorb(DaySummary other, int customer) {
+        if (other.pageLimit != pageLimit) throw new IllegalArgumentException("pageLimit mismatch");
+        byte[] id = other.customers.bytes(customer);
+        int merged = customers.intern(ByteBuffer.wrap(id), 0, id.length);
+        if (customers.sampleSize(merged) == SATURATED) return merged;
+
+        if (other.isSaturated(customer)) {
+            saturate(merged);
+            return merged;
+        }
+        for (int i = 0; i < other.customers.sampleSize(customer); i++) {
+            byte[] page = other.pages.bytes(other.customers.sample(customer, i));
+            addPage(merged, pages.intern(page));
+            if (customers.sampleSize(merged) == SATURATED) break;
+        }
+        return merged;
+    }
+
+    public int pageLimit() {
+        return pageLimit;
+    }
+
+    public int customerCount() {
+        return customers.size();
+    }
+
+    public String customerId(int customer) {
+        return customers.decode(customer);
+    }
+
+    public byte[] customerBytes(int customer) {
+        return customers.bytes(customer);
+    }
+
+    /** Returns the id of the given customerId bytes, or -1 if the customer was not seen. */
+    public int findCustomer(byte[] customerId) {
+        return customers.find(ByteBuffer.wrap(customerId), 0, customerId.length);
+    }
+
+    /** Returns the id here of customer of other, or -1 if this day did not see that customer. */
+    public int findCustomer(DaySummary other, int customer) {
+        return customers.find(other.customers, customer);
+    }
+
+    /** Returns the id here of page of other, or -1 if no customer visited that page on this day. */
+    public int findPage(DaySummary other, int page) {
+        return pages.find(other.pages, page);
+    }
+
+    public boolean isSaturated(int customer) {
+        return customers.sampleSize(customer) == SATURATED;
+    }
+
+    /** Distinct pages of customer, capped at pageLimit. */
+    public int distinctPages(int customer) {
+        return isSaturated(customer) ? pageLimit : customers.sampleSize(customer);
+    }
+
+    /** Page id of the i-th stored page of an unsaturated customer; see pageBytes. */
+    public int samplePage(int customer, int i) {
+        if (isSaturated(customer) || i >= customers.sampleSize(customer)) throw new IndexOutOfBoundsException(i);
+        return customers.sample(customer, i);
+    }
+
+    public int pageCount() {
+        return pages.size();
+    }
+
+    public byte[] pageBytes(int page) {
+        return pages.bytes(page);
+    }
+
+    /** Orders customer ids by their customerId bytes, compared as unsigned. */
+    public int compareCustomers(int a, int b) {
+        return customers.compare(a, b);
+    }
+
+    /** Returns the id of customerId, adding the customer with no pages if it is new. */
+    public int internCustomer(byte[] customerId) {
+        return customers.intern(ByteBuffer.wrap(customerId), 0, customerId.length);
+    }
+
+    /** As internCustomer(byte[]), for the customerId bytes buf[start, end). */
+    public int internCustomer(ByteBuffer buf, int start, int end) {
+        return customers.intern(buf, start, end);
+    }
+
+    public int internPage(byte[] pageId) {
+        return pages.intern(pageId);
+    }
+
+    public int internPage(ByteBuffer buf, int start, int end) {
+        return pages.intern(buf, start, end);
+    }
+
+    /** Adds a page (by id from internPage) to customer's sample, saturating at pageLimit. */
+    public void addPage(int customer, int page) {
+        int size = customers.sampleSize(customer);
+        if (size == SATURATED) return;
+        for (int i = 0; i < size; i++) {
+            if (customers.sample(customer, i) == page) return;
+        }
+        if (size + 1 >= pageLimit) {
+            saturate(customer);
+        } else {
+            customers.setSample(customer, size, page);
+            customers.setSampleSize(customer, (byte) (size + 1));
+        }
+    }
+
+    /** Marks customer as having reached pageLimit distinct pages. */
+    public void saturate(int customer) {
+        customers.setSampleSize(customer, SATURATED);
+    }
+
+    /** Approximate footprint in bytes, including customers kept off the heap. */
+    public long memoryUsage() {
+        return customers.memoryUsage() + pages.memoryUsage();
+    }
+
+    /** Releases the customer store; the summary must not be used afterwards. */
+    @Override
+    public void close() {
+        customers.close();
+    }
+
+}
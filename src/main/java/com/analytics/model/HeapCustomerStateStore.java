@@ -0,0 +1,111 @@
+package com.analytics.model;
+
+import com.analytics.collection.ByteSlice;
+import com.analytics.collection.ByteStringDictionary;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * CustomerStateStore on the Java heap: keys in a ByteStringDictionary, states in primitive arrays indexed
+ * by id. The default store of DaySummary. Not thread-safe.
+ */
+public final class HeapCustomerStateStore implements CustomerStateStore {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private final int slots;
+    private final ByteStringDictionary customers = new ByteStringDictionary();
+    private final ByteSlice otherKey = new ByteSlice();
+    private int[] samples;
+    private byte[] sampleSizes;
+
+    public HeapCustomerStateStore(int slots) {
+        if (slots < 1) throw new IllegalArgumentException("slots must be positive: " + slots);
+        this.slots = slots;
+        this.samples = new int[INITIAL_CAPACITY * slots];
+        this.sampleSizes = new byte[INITIAL_CAPACITY];
+    }
+
+    @Override
+    public int intern(ByteBuffer buffer, int start, int end) {
+        int id = customers.intern(buffer, start, end);
+        if (id == sampleSizes.length) {
+            sampleSizes = Arrays.copyOf(sampleSizes, id * 2);
+            samples = Arrays.copyOf(samples, id * 2 * slots);
+        }
+        return id;
+    }
+
+    @Override
+    public int find(ByteBuffer buffer, int start, int end) {
+        return customers.find(buffer, start, end);
+    }
+
+    @Override
+    public int find(CustomerStateStore other, int id) {
+        if (other instanceof HeapCustomerStateStore heap) return customers.find(heap.customers, id);
+        ByteSlice key = other.key(id, otherKey);
+        return customers.find(key.buffer(), key.start(), key.end(), other.hash(id));
+    }
+
+    @Override
+    public int size() {
+        return customers.size();
+    }
+
+    @Override
+    public int hash(int id) {
+        return customers.hash(id);
+    }
+
+    @Override
+    public ByteSlice key(int id, ByteSlice into) {
+        return customers.key(id, into);
+    }
+
+    @Override
+    public byte[] bytes(int id) {
+        return customers.bytes(id);
+    }
+
+    @Override
+    public String decode(int id) {
+        return customers.decode(id);
+    }
+
+    @Override
+    public int compare(int a, int b) {
+        return customers.compare(a, b);
+    }
+
+    @Override
+    public byte sampleSize(int id) {
+        return sampleSizes[id];
+    }
+
+    @Override
+    public void setSampleSize(int id, byte size) {
+        sampleSizes[id] = size;
+    }
+
+    @Override
+    public int sample(int id, int slot) {
+        return samples[id * slots + slot];
+    }
+
+    @Override
+    public void setSample(int id, int slot, int page) {
+        samples[id * slots + slot] = page;
+    }
+
+    @Override
+    public long memoryUsage() {
+        return customers.memoryUsage() + (long) samples.length * Integer.BYTES + sampleSizes.length;
+    }
+
+    /** Nothing to release: the arrays go with the store. */
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,18 @@
+package com.analytics.model;
+
+/**
+ * Approximate loyal customer count with a 95% confidence interval [lower, upper].
+ * sampledLoyal customers were found loyal in a sample covering samplingRate of all customers;
+ * a rate of 1 means every customer was kept and the count is exact.
+ */
+public record LoyaltyEstimate(long loyalCustomers, long lower, long upper, long sampledLoyal, double samplingRate) {
+
+    public boolean exact() {
+        return samplingRate >= 1;
+    }
+
+    /** Half-width of the interval relative to the estimate, 0 if nothing is loyal. */
+    public double relativeError() {
+        return loyalCustomers == 0 ? 0 : (double) (upper - lower) / 2 / loyalCustomers;
+    }
+}
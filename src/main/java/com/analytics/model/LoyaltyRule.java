@@ -0,0 +1,16 @@
+package com.analytics.model;
+
+/**
+ * Loyalty criteria over a window of days: a customer is loyal if they appear on at least minDays
+ * of the days and visit at least minPages distinct pages in total across those days.
+ */
+public record LoyaltyRule(int minDays, int minPages) {
+
+    /** The original two-day rule: present on both days, at least 2 distinct pages. */
+    public static final LoyaltyRule DEFAULT = new LoyaltyRule(2, 2);
+
+    public LoyaltyRule {
+        if (minDays < 1) throw new IllegalArgumentException("minDays must be positive: " + minDays);
+        if (minPages < 1) throw new IllegalArgumentException("minPages must be positive: " + minPages);
+    }
+}
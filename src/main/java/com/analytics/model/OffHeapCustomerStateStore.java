@@ -0,0 +1,388 @@
+package com.analytics.model;
+
+import com.analytics.collection.ByteSlice;
+import com.analytics.collection.ByteStringDictionary;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * CustomerStateStore in direct memory (ByteBuffer.allocateDirect), for days with hundreds of millions of
+ * customers: the heap only holds a few chunk references, so its size and GC work do not grow with the
+ * number of customers. Three regions, each a list of chunks of at most 64 MB:
+ *   keys:     the customer ID bytes, appended in order of first sight
+ *   records:  per id, fixed size: key hash, key length, key address, sample size, slots page ids
+ *   table:    open addressing with linear probing over key hashes; a slot holds id + 1, 0 if empty
+ * Capacity grows explicitly: the table doubles once it is three quarters full (or on ensureCapacity),
+ * rehashing from the stored hashes without touching the keys, and the first chunk of keys and records
+ * doubles until it reaches the chunk size. close() frees all chunks at once, rather than leaving them to
+ * the garbage collector; direct memory is limited by -XX:MaxDirectMemorySize (default: the maximum heap).
+ * Not thread-safe.
+ */
+public final class OffHeapCustomerStateStore implements CustomerStateStore {
+
+    private static final Logger LOGGER = Logger.getLogger(OffHeapCustomerStateStore.class.getName());
+
+    private static final int CHUNK_SHIFT = 26;
+    private static final int CHUNK_BYTES = 1 << CHUNK_SHIFT;
+    private static final int MAX_KEY_BYTES = 1 << 20;
+    private static final int INITIAL_KEY_BYTES = 1 << 16;
+    public static final int DEFAULT_EXPECTED_CUSTOMERS = 1 << 12;
+
+    private static final int TABLE_SHIFT = CHUNK_SHIFT - 2;
+    private static final int TABLE_MASK = (1 << TABLE_SHIFT) - 1;
+    private static final int MAX_TABLE_CAPACITY = 1 << 30;
+
+    private static final int HASH = 0;
+    private static final int LENGTH = 4;
+    private static final int ADDRESS = 8;
+    private static final int SAMPLE_SIZE = 16;
+    private static final int SAMPLES = 17;
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.fine(() -> "Direct buffers will be freed by the garbage collector: " + e);
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final int recordBytes;
+    private final int recordShift;
+    private final int recordMask;
+    private final ByteSlice otherKey = new ByteSlice();
+
+    private ByteBuffer[] keys = new ByteBuffer[1];
+    private int keyChunks;
+    private int keyOffset;
+
+    private ByteBuffer[] records = new ByteBuffer[1];
+    private int recordChunks;
+    private int recordCapacity;
+
+    private ByteBuffer[] table;
+    private int tableCapacity;
+    private int size;
+
+    public OffHeapCustomerStateStore(int slots) {
+        this(slots, DEFAULT_EXPECTED_CUSTOMERS);
+    }
+
+    /** Sized for expectedCustomers up front, so a known cardinality is reached without growing. */
+    public OffHeapCustomerStateStore(int slots, int expectedCustomers) {
+        if (slots < 1 || slots > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("slots must be between 1 and %d: %d".formatted(Byte.MAX_VALUE, slots));
+        }
+        if (expectedCustomers < 1) throw new IllegalArgumentException("expectedCustomers must be positive: " + expectedCustomers);
+        this.recordBytes = SAMPLES + slots * Integer.BYTES;
+        this.recordShift = 31 - Integer.numberOfLeadingZeros(CHUNK_BYTES / recordBytes);
+        this.recordMask = (1 << recordShift) - 1;
+        this.tableCapacity = tableCapacityFor(expectedCustomers);
+        this.table = newTable(tableCapacity);
+        growRecords(expectedCustomers);
+    }
+
+    /** Grows the table and records so that customers fit without further growth. */
+    public void ensureCapacity(int customers) {
+        checkOpen();
+        int capacity = tableCapacityFor(customers);
+        if (capacity > tableCapacity) rehash(capacity);
+        growRecords(customers);
+    }
+
+    @Override
+    public int intern(ByteBuffer buffer, int start, int end) {
+        int hash = ByteStringDictionary.hash(buffer, start, end);
+        int mask = tableCapacity - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slotValue(slot) - 1;
+            if (id < 0) {
+                id = add(buffer, start, end, hash);
+                setSlot(slot, id + 1);
+                if ((long) size * 4 > (long) tableCapacity * 3) grow();
+                return id;
+            }
+            if (equals(id, hash, buffer, start, end)) return id;
+        }
+    }
+
+    @Override
+    public int find(ByteBuffer buffer, int start, int end) {
+        return find(buffer, start, end, ByteStringDictionary.hash(buffer, start, end));
+    }
+
+    @Override
+    public int find(CustomerStateStore other, int id) {
+        ByteSlice key = other.key(id, otherKey);
+        return find(key.buffer(), key.start(), key.end(), other.hash(id));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int hash(int id) {
+        return record(checkId(id)).getInt(recordOffset(id) + HASH);
+    }
+
+    @Override
+    public ByteSlice key(int id, ByteSlice into) {
+        ByteBuffer record = record(checkId(id));
+        int offset = recordOffset(id);
+        long address = record.getLong(offset + ADDRESS);
+        int keyStart = (int) (address & (CHUNK_BYTES - 1));
+        return into.set(keys[(int) (address >>> CHUNK_SHIFT)], keyStart, keyStart + record.getInt(offset + LENGTH));
+    }
+
+    @Override
+    public byte[] bytes(int id) {
+        return key(id, new ByteSlice()).toByteArray();
+    }
+
+    @Override
+    public String decode(int id) {
+        return new String(bytes(id), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int compare(int a, int b) {
+        ByteSlice left = key(a, new ByteSlice());
+        ByteSlice right = key(b, otherKey);
+        int length = Math.min(left.length(), right.length());
+        for (int i = 0; i < length; i++) {
+            int order = Byte.compareUnsigned(left.byteAt(i), right.byteAt(i));
+            if (order != 0) return order;
+        }
+        return left.length() - right.length();
+    }
+
+    @Override
+    public byte sampleSize(int id) {
+        return record(id).get(recordOffset(id) + SAMPLE_SIZE);
+    }
+
+    @Override
+    public void setSampleSize(int id, byte size) {
+        record(id).put(recordOffset(id) + SAMPLE_SIZE, size);
+    }
+
+    @Override
+    public int sample(int id, int slot) {
+        return record(id).getInt(recordOffset(id) + SAMPLES + slot * Integer.BYTES);
+    }
+
+    @Override
+    public void setSample(int id, int slot, int page) {
+        record(id).putInt(recordOffset(id) + SAMPLES + slot * Integer.BYTES, page);
+    }
+
+    /** Direct memory held by the keys, records and table, in bytes; the heap part is negligible. */
+    @Override
+    public long memoryUsage() {
+        if (table == null) return 0;
+        return capacity(keys, keyChunks) + capacity(records, recordChunks) + capacity(table, table.length);
+    }
+
+    /** Frees all direct memory now; idempotent. Slices from key() must not be used afterwards. */
+    @Override
+    public void close() {
+        if (table == null) return;
+        for (int i = 0; i < keyChunks; i++) free(keys[i]);
+        for (int i = 0; i < recordChunks; i++) free(records[i]);
+        for (ByteBuffer chunk : table) free(chunk);
+        keys = null;
+        records = null;
+        table = null;
+        keyChunks = 0;
+        recordChunks = 0;
+        size = 0;
+    }
+
+    private int find(ByteBuffer buffer, int start, int end, int hash) {
+        int mask = tableCapacity - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slotValue(slot) - 1;
+            if (id < 0) return -1;
+            if (equals(id, hash, buffer, start, end)) return id;
+        }
+    }
+
+    private boolean equals(int id, int hash, ByteBuffer buffer, int start, int end) {
+        ByteBuffer record = record(id);
+        int offset = recordOffset(id);
+        int length = end - start;
+        if (record.getInt(offset + HASH) != hash || record.getInt(offset + LENGTH) != length) return false;
+        long address = record.getLong(offset + ADDRESS);
+        ByteBuffer chunk = keys[(int) (address >>> CHUNK_SHIFT)];
+        int keyStart = (int) (address & (CHUNK_BYTES - 1));
+        for (int i = 0; i < length; i++) {
+            if (chunk.get(keyStart + i) != buffer.get(start + i)) return false;
+        }
+        return true;
+    }
+
+    private int add(ByteBuffer buffer, int start, int end, int hash) {
+        int length = end - start;
+        if (length > MAX_KEY_BYTES) {
+            throw new IllegalArgumentException("Key of %d bytes exceeds the %d byte limit".formatted(length, MAX_KEY_BYTES));
+        }
+        if (size == Integer.MAX_VALUE - 1) throw new IllegalStateException("Store is full");
+        long address = appendKey(buffer, start, length);
+        if (size == recordCapacity) growRecords(size + 1);
+
+        int id = size++;
+        ByteBuffer record = record(id);
+        int offset = recordOffset(id);
+        record.putInt(offset + HASH, hash);
+        record.putInt(offset + LENGTH, length);
+        record.putLong(offset + ADDRESS, address);
+        return id;
+    }
+
+    /** Copies a key to the end of the key chunks and returns its address: chunk index, then offset. */
+    private long appendKey(ByteBuffer buffer, int start, int length) {
+        if (keyChunks == 0 || keyOffset + length > keys[keyChunks - 1].capacity()) {
+            if (keyChunks > 0 && keys[keyChunks - 1].capacity() < CHUNK_BYTES) {
+                keys[keyChunks - 1] = grow(keys[keyChunks - 1], keyOffset,
+                        Math.min(CHUNK_BYTES, Math.max(keys[keyChunks - 1].capacity() * 2, keyOffset + length)));
+            } else {
+                if (keyChunks == keys.length) keys = Arrays.copyOf(keys, keyChunks * 2);
+                keys[keyChunks] = allocate(keyChunks == 0 ? Math.max(INITIAL_KEY_BYTES, length) : CHUNK_BYTES);
+                keyChunks++;
+                keyOffset = 0;
+            }
+        }
+        keys[keyChunks - 1].put(keyOffset, buffer, start, length);
+        long address = ((long) (keyChunks - 1) << CHUNK_SHIFT) | keyOffset;
+        keyOffset += length;
+        return address;
+    }
+
+    /** Makes room for ids below customers: doubles the first record chunk up to full size, then adds chunks. */
+    private void growRecords(int customers) {
+        int perChunk = 1 << recordShift;
+        while (recordCapacity < customers) {
+            if (recordChunks == 0) {
+                records[recordChunks++] = allocate(Math.min(perChunk, Math.max(customers, 1 << 10)) * recordBytes);
+                recordCapacity = records[0].capacity() / recordBytes;
+            } else if (recordCapacity < perChunk) {
+                int grown = Math.min(perChunk, Math.max(recordCapacity * 2, customers));
+                records[0] = grow(records[0], recordCapacity * recordBytes, grown * recordBytes);
+                recordCapacity = grown;
+            } else {
+                if (recordChunks == records.length) records = Arrays.copyOf(records, recordChunks * 2);
+                records[recordChunks++] = allocate(perChunk * recordBytes);
+                recordCapacity += perChunk;
+            }
+        }
+    }
+
+    /** Doubles the table; at MAX_TABLE_CAPACITY, where doubling would overflow, the store is full. */
+    private void grow() {
+        if (tableCapacity == MAX_TABLE_CAPACITY) {
+            throw new IllegalStateException("Store is full: " + size + " customers");
+        }
+        rehash(tableCapacity * 2);
+    }
+
+    private void rehash(int capacity) {
+        LOGGER.fine(() -> "Growing off-heap customer table from %d to %d slots at %d customers"
+                .formatted(tableCapacity, capacity, size));
+        ByteBuffer[] old = table;
+        table = newTable(capacity);
+        tableCapacity = capacity;
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = record(id).getInt(recordOffset(id) + HASH) & mask;
+            while (slotValue(slot) != 0) slot = (slot + 1) & mask;
+            setSlot(slot, id + 1);
+        }
+        for (ByteBuffer chunk : old) free(chunk);
+    }
+
+    private int slotValue(int slot) {
+        return table[slot >>> TABLE_SHIFT].getInt((slot & TABLE_MASK) << 2);
+    }
+
+    private void setSlot(int slot, int value) {
+        table[slot >>> TABLE_SHIFT].putInt((slot & TABLE_MASK) << 2, value);
+    }
+
+    private ByteBuffer record(int id) {
+        return records[id >>> recordShift];
+    }
+
+    private int recordOffset(int id) {
+        return (id & recordMask) * recordBytes;
+    }
+
+    private int checkId(int id) {
+        checkOpen();
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException("Unknown id: " + id);
+        return id;
+    }
+
+    private void checkOpen() {
+        if (table == null) throw new IllegalStateException("Store is closed");
+    }
+
+    /** Smallest power-of-two table that holds customers at most three quarters full. */
+    private static int tableCapacityFor(int customers) {
+        long needed = Math.max(1 << 10, (long) customers * 4 / 3 + 1);
+        if (needed > MAX_TABLE_CAPACITY) throw new IllegalArgumentException("Too many customers: " + customers);
+        return Integer.highestOneBit((int) needed * 2 - 1);
+    }
+
+    private static ByteBuffer[] newTable(int capacity) {
+        ByteBuffer[] chunks = new ByteBuffer[(capacity + TABLE_MASK) >>> TABLE_SHIFT];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = allocate(Math.min(capacity - (i << TABLE_SHIFT), 1 << TABLE_SHIFT) * Integer.BYTES);
+        }
+        return chunks;
+    }
+
+    private static ByteBuffer grow(ByteBuffer chunk, int used, int capacity) {
+        ByteBuffer grown = allocate(capacity);
+        grown.put(0, chunk, 0, used);
+        free(chunk);
+        return grown;
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private static long capacity(ByteBuffer[] chunks, int count) {
+        long bytes = 0;
+        for (int i = 0; i < count; i++) bytes += chunks[i].capacity();
+        return bytes;
+    }
+
+    /** Frees a direct buffer now if the JDK allows it; otherwise it is freed once unreachable. */
+    private static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) return;
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+            LOGGER.fine(() -> "Could not free a direct buffer: " + e);
+        }
+    }
+}
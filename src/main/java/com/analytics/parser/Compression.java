@@ -0,0 +1,52 @@
+package com.analytics.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Compression of a log file, detected from its leading magic bytes rather than its name,
+ * so rotated files such as access.log.1 are recognised as well.
+ * Only gzip is supported; zstd input is recognised and rejected with a clear message,
+ * since the JDK has no zstd decoder.
+ */
+enum Compression {
+    NONE,
+    GZIP;
+
+    private static final int GZIP_MAGIC = 0x1F8B;
+    private static final int ZSTD_MAGIC = 0x28B52FFD;
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
+    static Compression detect(Path filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) > 0) {
+                // read until four bytes or end of file
+            }
+            magic.flip();
+            if (magic.remaining() >= 4 && magic.getInt(0) == ZSTD_MAGIC) {
+                throw new IOException("zstd-compressed input is not supported, decompress it first: " + filePath);
+            }
+            if (magic.remaining() >= 2 && (magic.getShort(0) & 0xFFFF) == GZIP_MAGIC) return GZIP;
+            return NONE;
+        }
+    }
+
+    /** Opens the decompressed content of filePath; concatenated gzip members are read as one stream. */
+    InputStream open(Path filePath) throws IOException {
+        InputStream in = Files.newInputStream(filePath);
+        if (this == NONE) return in;
+        try {
+            return new GZIPInputStream(in, STREAM_BUFFER_SIZE);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+}
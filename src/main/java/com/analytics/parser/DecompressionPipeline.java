@@ -0,0 +1,121 @@
+package com.analytics.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Inflates a compressed stream on a dedicated thread, handing the consumer line-aligned chunks
+ * through a bounded queue so decompression and parsing overlap.
+ * Every chunk ends on a line boundary: the partial line at the end of a read is carried over
+ * to the front of the next chunk by the inflater thread, so the consumer scans chunks in place.
+ * Chunk buffers are recycled through a second queue, which also bounds the memory in flight.
+ */
+final class DecompressionPipeline implements AutoCloseable {
+
+    /** A filled buffer: bytes[0, length) holds complete lines. A null buffer marks end of input or failure. */
+    record Chunk(byte[] bytes, int length, IOException failure) {}
+
+    private static final Chunk END = new Chunk(null, 0, null);
+
+    private final int chunkSize;
+    private final BlockingQueue<Chunk> filled;
+    private final BlockingQueue<byte[]> free;
+    private final Thread inflater;
+
+    DecompressionPipeline(InputStream in, String name, int chunkSize, int queueDepth) {
+        this.chunkSize = chunkSize;
+        this.filled = new ArrayBlockingQueue<>(queueDepth + 1);
+        this.free = new ArrayBlockingQueue<>(queueDepth + 1);
+        for (int i = 0; i <= queueDepth; i++) free.add(new byte[chunkSize]);
+        this.inflater = new Thread(() -> inflate(in), "inflater-" + name);
+        this.inflater.setDaemon(true);
+        this.inflater.start();
+    }
+
+    /** Returns the next chunk, or null at end of input; rethrows any failure of the inflater thread. */
+    Chunk take() throws IOException {
+        Chunk chunk;
+        try {
+            chunk = filled.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for decompressed input");
+        }
+        if (chunk.failure() != null) throw new IOException(chunk.failure().getMessage(), chunk.failure());
+        return chunk.bytes() == null ? null : chunk;
+    }
+
+    /** Returns a consumed chunk's buffer for reuse; oversized buffers are replaced by a regular one. */
+    void release(Chunk chunk) {
+        free.offer(chunk.bytes().length == chunkSize ? chunk.bytes() : new byte[chunkSize]);
+    }
+
+    /** Stops the inflater thread, which also closes the compressed stream. */
+    @Override
+    public void close() throws IOException {
+        inflater.interrupt();
+        try {
+            inflater.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while stopping the inflater thread");
+        }
+    }
+
+    private void inflate(InputStream in) {
+        try (in) {
+            byte[] buffer = free.take();
+            int carry = 0;
+            while (true) {
+                int length = carry + in.readNBytes(buffer, carry, buffer.length - carry);
+                if (length < buffer.length) {
+                    if (length > 0) filled.put(new Chunk(buffer, length, null));
+                    filled.put(END);
+                    return;
+                }
+
+                int cut = lastLineEnd(buffer, length);
+                if (cut == 0) {
+                    // A single line fills the whole buffer; keep reading into a larger one.
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    carry = length;
+                    continue;
+                }
+
+                carry = length - cut;
+                byte[] next = free.take();
+                if (carry >= next.length) {
+                    free.put(next);
+                    next = new byte[carry * 2];
+                }
+                System.arraycopy(buffer, cut, next, 0, carry);
+                filled.put(new Chunk(buffer, cut, null));
+                buffer = next;
+            }
+        } catch (InterruptedException e) {
+            // close() was called; the consumer no longer reads the queue.
+        } catch (IOException e) {
+            try {
+                filled.put(new Chunk(null, 0, e));
+            } catch (InterruptedException interrupted) {
+                // close() was called while reporting the failure.
+            }
+        }
+    }
+
+    /**
+     * Returns the offset just past the last complete line terminator in buffer[0, length), or 0 if none.
+     * A trailing \r is not treated as complete, since its \n may arrive with the next read.
+     */
+    private static int lastLineEnd(byte[] buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            byte b = buffer[i];
+            if (b == '\n' || (b == '\r' && i < length - 1)) return i + 1;
+        }
+        return 0;
+    }
+}
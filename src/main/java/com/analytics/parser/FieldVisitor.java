@@ -0,0 +1,16 @@
+package com.analytics.parser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the field offsets of each well-formed line found by LogScanner.
+ * Offsets are absolute indexes into the supplied buffer, end-exclusive, and are only
+ * valid for the duration of the call; the timestamp field is not reported.
+ */
+@FunctionalInterface
+public interface FieldVisitor {
+
+    /** Returns false to stop scanning after this line. */
+    boolean visit(ByteBuffer buffer, int pageStart, int pageEnd, int customerStart, int customerEnd);
+
+}
@@ -0,0 +1,9 @@
+package com.analytics.parser;
+
+/** A byte range [start, end) of a log file whose boundaries fall on line starts. */
+public record FileRange(long start, long end) {
+
+    public long length() {
+        return end - start;
+    }
+}
@@ -0,0 +1,52 @@
+package com.analytics.parser;
+
+import com.analytics.collection.ByteSlice;
+import com.analytics.model.LogRecord;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable view of the current line of a scan: one instance per scan, re-pointed at every
+ * well-formed line, so visiting a line allocates nothing.
+ * The field slices are only valid during RecordVisitor.visit; use toRecord to keep a line.
+ */
+public final class LogCursor {
+
+    private final ByteSlice timestamp = new ByteSlice();
+    private final ByteSlice pageId = new ByteSlice();
+    private final ByteSlice customerId = new ByteSlice();
+    private long lineNumber;
+
+    LogCursor() {
+    }
+
+    void set(ByteBuffer buffer, int timestampStart, int timestampEnd, int pageStart, int pageEnd,
+             int customerStart, int customerEnd, long lineNumber) {
+        timestamp.set(buffer, timestampStart, timestampEnd);
+        pageId.set(buffer, pageStart, pageEnd);
+        customerId.set(buffer, customerStart, customerEnd);
+        this.lineNumber = lineNumber;
+    }
+
+    public ByteSlice timestamp() {
+        return timestamp;
+    }
+
+    public ByteSlice pageId() {
+        return pageId;
+    }
+
+    public ByteSlice customerId() {
+        return customerId;
+    }
+
+    /** 1-based line number, relative to the start of the scanned range. */
+    public long lineNumber() {
+        return lineNumber;
+    }
+
+    /** Copies the current line into an immutable LogRecord. */
+    public LogRecord toRecord() {
+        return new LogRecord(timestamp.toString(), pageId.toString(), customerId.toString());
+    }
+}
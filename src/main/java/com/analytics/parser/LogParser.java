@@ -2,7 +2,10 @@ package com.analytics.parser;
 
 import com.analytics.model.LogRecord;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -13,34 +16,71 @@ import java.util.logging.Logger;
 /**
  * Parses a log file into a list of LogRecord objects.
  * Expected line format (whitespace-separated): timestamp pageId customerId
- * Blank lines are skipped. Malformed lines are logged as warnings and skipped,
- * so a single bad line never aborts the entire file.
+ * Blank lines are skipped. Malformed lines are skipped and reported under the parser's MalformedLinePolicy,
+ * so a single bad line never aborts the entire file and a corrupted one logs only a bounded sample.
+ * Gzip-compressed files are decompressed transparently.
  */
 public class LogParser {
 
     private static final Logger LOGGER = Logger.getLogger(LogParser.class.getName());
     private static final int EXPECTED_FIELDS = 3;
 
+    private final MalformedLinePolicy policy;
+
+    public LogParser() {
+        this(MalformedLinePolicy.DEFAULT);
+    }
+
+    public LogParser(MalformedLinePolicy policy) {
+        this.policy = policy;
+    }
+
     public List<LogRecord> parseFile(Path filePath) throws IOException {
-        List<String> lines = Files.readAllLines(filePath);
+        List<String> lines = readLines(filePath);
         List<LogRecord> records = new ArrayList<>(lines.size());
+        MalformedLineReport malformed = policy.newReport(filePath);
 
-        for (int lineNumber = 1; lineNumber <= lines.size(); lineNumber++) {
+        int lineNumber = 1;
+        for (; lineNumber <= lines.size(); lineNumber++) {
             String line = lines.get(lineNumber - 1).strip();
             if (line.isEmpty()) continue;
-            parseFileLine(line, lineNumber, filePath).ifPresent(records::add);
+            parseFileLine(line, lineNumber, filePath, malformed).ifPresent(records::add);
+            if (malformed.exceeded(lineNumber)) break;
         }
+        malformed.finish(Math.min(lineNumber, lines.size()));
 
         return records;
     }
 
     public Optional<LogRecord> parseFileLine(String line, int lineNumber, Path filePath) {
+        return parseFileLine(line, lineNumber, filePath, MalformedLineHandler.logging());
+    }
+
+    private static Optional<LogRecord> parseFileLine(String line, int lineNumber, Path filePath,
+                                                     MalformedLineHandler malformed) {
         String[] parts = line.split("\\s+", EXPECTED_FIELDS);
         if (parts.length != EXPECTED_FIELDS) {
-            LOGGER.warning("Malformed log entry at %s:%d: \"%s\""
-                    .formatted(filePath.getFileName(), lineNumber, line));
+            malformed.malformed(filePath, lineNumber, line);
             return Optional.empty();
         }
         return Optional.of(new LogRecord(parts[0], parts[1], parts[2]));
     }
+
+    /** Reads all lines, inflating gzip-compressed files on the fly. */
+    private static List<String> readLines(Path filePath) throws IOException {
+        Compression compression = Compression.detect(filePath);
+        if (compression == Compression.NONE) return Files.readAllLines(filePath);
+
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(compression.open(filePath),
+                StandardCharsets.UTF_8.newDecoder()))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) lines.add(line);
+        }
+        return lines;
+    }
+
+    static void warnMalformed(Path filePath, long lineNumber, String line) {
+        LOGGER.warning(() -> "Malformed log entry at %s:%d: \"%s\""
+                .formatted(filePath.getFileName(), lineNumber, line));
+    }
 }
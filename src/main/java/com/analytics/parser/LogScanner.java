@@ -0,0 +1,482 @@
+package com.analytics.parser;
+
+import com.analytics.collection.ByteSlice;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Byte-level alternative to LogParser that never decodes a line into a String.
+ * Lines are reported either as field offsets (FieldVisitor) or through a single reused
+ * LogCursor (RecordVisitor); neither allocates per line.
+ * The file is memory-mapped one window at a time; every window ends on a line boundary,
+ * so files larger than 2 GB are handled without a single oversized mapping.
+ * Line handling mirrors LogParser: lines end at \n, \r or \r\n, surrounding whitespace is
+ * stripped, blank lines are skipped and malformed lines are reported with their line number.
+ * Whole-file scans report them under the scanner's MalformedLinePolicy and fail with
+ * TooManyMalformedLinesException if it is exceeded; a malformed line is only decoded if it is sampled.
+ * Fields are split on ASCII whitespace; the customerId is the remainder of the line after
+ * the pageId, exactly as with split("\\s+", 3).
+ * Gzip-compressed files (detected by their magic bytes) are inflated on a separate thread and
+ * scanned chunk by chunk as they arrive; byte counts then refer to the decompressed content.
+ * Compressed files cannot be split, so they are always scanned as a single range.
+ * The scanner's TimeFilter, if active, is applied to every line; only then are timestamps read.
+ * A bounded filter lets an uncompressed file that is sorted by time be scanned from the start of the range
+ * only, found by binary search on line starts; line numbers are then counted from the first line scanned.
+ */
+public class LogScanner {
+
+    static final long DEFAULT_WINDOW_SIZE = 1L << 30;
+    static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+    private static final int CHUNK_QUEUE_DEPTH = 4;
+    /** Lines sampled to decide whether a file is sorted by time. */
+    private static final int SORTED_PROBES = 32;
+    /** A time-sorted range is narrowed by binary search until its ends are this close to the true boundaries. */
+    private static final long SEARCH_GRANULARITY = 64 << 10;
+    private static final int PROBE_BYTES = 256;
+    private static final Logger LOGGER = Logger.getLogger(LogScanner.class.getName());
+
+    private final long windowSize;
+    private final int chunkSize;
+    private final MalformedLinePolicy policy;
+    private final TimeFilter filter;
+
+    /** Applies no TimeFilter and reports malformed lines under MalformedLinePolicy.DEFAULT. */
+    public LogScanner() {
+        this(MalformedLinePolicy.DEFAULT, TimeFilter.NONE);
+    }
+
+    public LogScanner(MalformedLinePolicy policy, TimeFilter filter) {
+        this(DEFAULT_WINDOW_SIZE, DEFAULT_CHUNK_SIZE, policy, filter);
+    }
+
+    LogScanner(long windowSize) {
+        this(windowSize, DEFAULT_CHUNK_SIZE);
+    }
+
+    LogScanner(long windowSize, int chunkSize) {
+        this(windowSize, chunkSize, MalformedLinePolicy.DEFAULT, TimeFilter.NONE);
+    }
+
+    LogScanner(long windowSize, int chunkSize, MalformedLinePolicy policy, TimeFilter filter) {
+        if (windowSize <= 0 || windowSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Window size must be between 1 and %d bytes: %d"
+                    .formatted(Integer.MAX_VALUE, windowSize));
+        }
+        if (chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        this.windowSize = windowSize;
+        this.chunkSize = chunkSize;
+        this.policy = policy;
+        this.filter = filter;
+    }
+
+    /** How whole-file scans report malformed lines; callers scanning ranges build their reports from it too. */
+    public MalformedLinePolicy policy() {
+        return policy;
+    }
+
+    public TimeFilter filter() {
+        return filter;
+    }
+
+    public ScanResult scan(Path filePath, FieldVisitor visitor) throws IOException {
+        return scan(filePath, fields(visitor));
+    }
+
+    /** Scans filePath, presenting every well-formed line through one reused LogCursor. */
+    public ScanResult scan(Path filePath, RecordVisitor visitor) throws IOException {
+        MalformedLineReport malformed = policy.newReport(filePath);
+        ScanResult result;
+        Compression compression = Compression.detect(filePath);
+        if (compression != Compression.NONE) {
+            result = scanCompressed(filePath, compression, visitor, malformed);
+        } else {
+            try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+                result = scan(channel, filePath, new FileRange(0, channel.size()), visitor, malformed);
+            }
+        }
+        malformed.finish(result.lines());
+        return result;
+    }
+
+    public ScanResult scan(Path filePath, FileRange range, FieldVisitor visitor, MalformedLineHandler malformed)
+            throws IOException {
+        return scan(filePath, range, fields(visitor), malformed);
+    }
+
+    /**
+     * Scans only the lines inside range, which must start on a line boundary (see split).
+     * Line numbers passed to the handler are relative to the start of the range.
+     */
+    public ScanResult scan(Path filePath, FileRange range, RecordVisitor visitor, MalformedLineHandler malformed)
+            throws IOException {
+        Compression compression = Compression.detect(filePath);
+        if (compression != Compression.NONE) {
+            if (range.start() != 0 || range.end() != Files.size(filePath)) {
+                throw new IllegalArgumentException("Compressed input can only be scanned as a whole: " + filePath);
+            }
+            return scanCompressed(filePath, compression, visitor, malformed);
+        }
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            return scan(channel, filePath, range, visitor, malformed);
+        }
+    }
+
+    /** True if filePath is compressed and will be inflated while scanning. */
+    public static boolean isCompressed(Path filePath) throws IOException {
+        return Compression.detect(filePath) != Compression.NONE;
+    }
+
+    /**
+     * Splits the file into at most parts non-empty ranges of roughly equal size.
+     * Each boundary is moved forward to the start of the next line, so no line spans two ranges.
+     */
+    public List<FileRange> split(Path filePath, int parts) throws IOException {
+        if (parts < 1) throw new IllegalArgumentException("parts must be positive: " + parts);
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > 0 && Compression.detect(filePath) != Compression.NONE) return List.of(new FileRange(0, size));
+            List<FileRange> ranges = new ArrayList<>(parts);
+            long start = 0;
+            for (int i = 1; i <= parts && start < size; i++) {
+                long end = i == parts ? size : Math.max(start, nextLineStart(channel, size * i / parts, size));
+                if (end > start) {
+                    ranges.add(new FileRange(start, end));
+                    start = end;
+                }
+            }
+            return ranges;
+        }
+    }
+
+    /**
+     * The lines of an uncompressed file between two byte offsets: both ends are moved forward to the start of
+     * the next line, as with split. The range may be empty.
+     */
+    public FileRange alignedRange(Path filePath, long start, long end) throws IOException {
+        if (start < 0 || end < start) throw new IllegalArgumentException("Invalid range [%d, %d)".formatted(start, end));
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long alignedStart = nextLineStart(channel, Math.min(start, size), size);
+            return new FileRange(alignedStart, Math.max(alignedStart, nextLineStart(channel, Math.min(end, size), size)));
+        }
+    }
+
+    /**
+     * With a bounded TimeFilter a file that looks sorted by time is narrowed to the byte range that can hold
+     * matching lines (see sortedRange). The lines skipped are still counted, by their terminators alone, and
+     * reported as filtered, so line numbers and totals are those of a full scan. If the lines scanned turn out
+     * not to be in order after all, the parts skipped are scanned as well, so only disorder confined to the
+     * skipped parts can go unnoticed.
+     */
+    private ScanResult scan(FileChannel channel, Path filePath, FileRange range, RecordVisitor visitor,
+                            MalformedLineHandler malformed) throws IOException {
+        LineCounter lines = new LineCounter(filePath, malformed, filter);
+        FileRange within = lines.filter != null && lines.filter.isBounded()
+                ? sortedRange(channel, range, lines.filter) : range;
+        long skippedBefore = countLines(channel, range.start(), within.start());
+        lines.lineNumber = skippedBefore;
+        lines.filtered = skippedBefore;
+        long reached = scanLines(channel, filePath, within, visitor, lines);
+        if (!within.equals(range) && lines.unsorted && !lines.stopped) {
+            LOGGER.warning(() -> "%s is not sorted by time after all; scanning the %d bytes skipped by the time range"
+                    .formatted(filePath.getFileName(), range.length() - within.length()));
+            long afterWithin = lines.lineNumber;
+            lines.lineNumber = 0;
+            lines.filtered -= skippedBefore;
+            reached = scanLines(channel, filePath, new FileRange(range.start(), within.start()), visitor, lines);
+            lines.lineNumber = afterWithin;
+            if (!lines.stopped) {
+                reached = scanLines(channel, filePath, new FileRange(within.end(), range.end()), visitor, lines);
+            }
+        } else if (!lines.stopped) {
+            long skippedAfter = countLines(channel, within.end(), range.end());
+            lines.lineNumber += skippedAfter;
+            lines.filtered += skippedAfter;
+        }
+        return lines.result(lines.stopped ? reached - range.start() : range.length());
+    }
+
+    /** Number of lines in [start, end), as scanWindow counts them: \n, \r\n and \r end a line. */
+    private static long countLines(FileChannel channel, long start, long end) throws IOException {
+        if (end <= start) return 0;
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(1 << 16, end - start));
+        long count = 0;
+        long position = start;
+        boolean afterCarriageReturn = false;
+        byte last = 0;
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                last = buffer.get(i);
+                if (last == '\n' && !afterCarriageReturn || last == '\r') count++;
+                afterCarriageReturn = last == '\r';
+            }
+            position += read;
+        }
+        return isLineTerminator(last) ? count : count + 1;
+    }
+
+    /** Scans the lines of range and returns the offset reached: range.end unless the visitor stopped. */
+    private long scanLines(FileChannel channel, Path filePath, FileRange range, RecordVisitor visitor,
+                           LineCounter lines) throws IOException {
+        long position = range.start();
+        long window = windowSize;
+
+        while (position < range.end()) {
+            long length = Math.min(window, range.end() - position);
+            boolean endOfInput = position + length == range.end();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+            int consumed = scanWindow(buffer, (int) length, endOfInput, lines, visitor);
+            position += consumed;
+            if (lines.stopped) break;
+
+            if (consumed == 0 && !endOfInput) {
+                // A single line is longer than the window; retry the same position with a larger mapping.
+                if (window == Integer.MAX_VALUE) {
+                    throw new IOException("Line at %s:%d exceeds %d bytes"
+                            .formatted(filePath.getFileName(), lines.lineNumber + 1, Integer.MAX_VALUE));
+                }
+                window = Math.min(window * 2, Integer.MAX_VALUE);
+            } else {
+                window = windowSize;
+            }
+        }
+        return position;
+    }
+
+    /** Scans decompressed chunks as the inflater thread produces them; each chunk ends on a line boundary. */
+    private ScanResult scanCompressed(Path filePath, Compression compression, RecordVisitor visitor,
+                                      MalformedLineHandler malformed) throws IOException {
+        LineCounter lines = new LineCounter(filePath, malformed, filter);
+        long bytes = 0;
+        try (DecompressionPipeline pipeline = new DecompressionPipeline(compression.open(filePath),
+                String.valueOf(filePath.getFileName()), chunkSize, CHUNK_QUEUE_DEPTH)) {
+            DecompressionPipeline.Chunk chunk;
+            while (!lines.stopped && (chunk = pipeline.take()) != null) {
+                bytes += scanWindow(ByteBuffer.wrap(chunk.bytes()), chunk.length(), true, lines, visitor);
+                pipeline.release(chunk);
+            }
+        }
+        return lines.result(bytes);
+    }
+
+    /**
+     * The part of range that can hold lines accepted by filter if the file is sorted by time, judged from
+     * SORTED_PROBES lines spread over the range; otherwise range itself. Both ends are found by binary search
+     * on line starts, down to the search granularity, so the result may include a few lines outside filter.
+     */
+    private FileRange sortedRange(FileChannel channel, FileRange range, TimeFilter filter) throws IOException {
+        long granularity = Math.min(SEARCH_GRANULARITY, windowSize);
+        if (range.length() <= granularity) return range;
+        long previous = Long.MIN_VALUE;
+        for (int i = 0; i < SORTED_PROBES; i++) {
+            long offset = nextLineStart(channel, range.start() + range.length() * i / SORTED_PROBES, range.end());
+            long time = timestampAt(channel, offset, range.end());
+            if (time == TimeFilter.INVALID || time < previous) return range;
+            previous = time;
+        }
+        long start = range.start();
+        long end = range.end();
+        if (filter.from() != null) {
+            // start: a line start, or the range start, with every earlier line before the range of filter
+            long hi = end;
+            while (hi - start > granularity) {
+                long mid = nextLineStart(channel, start + (hi - start) / 2, hi);
+                if (mid >= hi) break;
+                long time = timestampAt(channel, mid, hi);
+                if (time == TimeFilter.INVALID) return range;
+                if (filter.isBefore(time)) start = mid; else hi = mid;
+            }
+        }
+        if (filter.to() != null) {
+            // end: a line start, or the range end, with every line from it on past the range of filter
+            long lo = start;
+            while (end - lo > granularity) {
+                long mid = nextLineStart(channel, lo + (end - lo) / 2, end);
+                if (mid >= end) break;
+                long time = timestampAt(channel, mid, end);
+                if (time == TimeFilter.INVALID) return range;
+                if (filter.isAfter(time)) end = mid; else lo = mid;
+            }
+        }
+        return new FileRange(start, end);
+    }
+
+    /** Timestamp of the first non-blank line at offset, or INVALID if it cannot be read from the first bytes. */
+    private static long timestampAt(FileChannel channel, long offset, long limit) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(PROBE_BYTES, limit - offset));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) break;
+        }
+        int length = buffer.position();
+        int start = skipWhitespace(buffer, 0, length);
+        int end = skipField(buffer, start, length);
+        if (end == length && offset + length < limit) return TimeFilter.INVALID;
+        return TimeFilter.epochSecond(buffer, start, end);
+    }
+
+    /** Returns the first line start at or after offset. */
+    private static long nextLineStart(FileChannel channel, long offset, long size) throws IOException {
+        if (offset == 0) return 0;
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = offset - 1;
+        boolean afterCarriageReturn = false;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++, position++) {
+                byte b = buffer.get(i);
+                if (afterCarriageReturn) return b == '\n' ? position + 1 : position;
+                if (b == '\n') return position + 1;
+                afterCarriageReturn = b == '\r';
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Scans the complete lines in buffer[0, limit) and returns the number of bytes consumed.
+     * A trailing line without a terminator is only consumed when endOfInput is set.
+     */
+    private int scanWindow(ByteBuffer buffer, int limit, boolean endOfInput, LineCounter lines, RecordVisitor visitor) {
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int end = lineStart;
+            while (end < limit && !isLineTerminator(buffer.get(end))) end++;
+
+            int next;
+            if (end == limit) {
+                if (!endOfInput) break;
+                next = limit;
+            } else if (buffer.get(end) == '\r') {
+                if (end + 1 == limit && !endOfInput) break;
+                next = end + 1 < limit && buffer.get(end + 1) == '\n' ? end + 2 : end + 1;
+            } else {
+                next = end + 1;
+            }
+
+            lines.lineNumber++;
+            boolean proceed = scanLine(buffer, lineStart, end, lines, visitor);
+            lineStart = next;
+            if (!proceed) {
+                lines.stopped = true;
+                break;
+            }
+        }
+        return lineStart;
+    }
+
+    /** Splits one line into fields; returns the visitor's decision, or true for skipped lines. */
+    private boolean scanLine(ByteBuffer buffer, int start, int end, LineCounter lines, RecordVisitor visitor) {
+        while (start < end && isWhitespace(buffer.get(start))) start++;
+        while (end > start && isWhitespace(buffer.get(end - 1))) end--;
+        if (start == end) {
+            lines.blank++;
+            return true;
+        }
+
+        int timestampEnd = skipField(buffer, start, end);
+        int pageStart = skipWhitespace(buffer, timestampEnd, end);
+        int pageEnd = skipField(buffer, pageStart, end);
+        int customerStart = skipWhitespace(buffer, pageEnd, end);
+        if (customerStart == end) {
+            return malformed(buffer, start, end, lines, pageStart == end
+                    ? MalformedLineReport.Kind.MISSING_PAGE_ID : MalformedLineReport.Kind.MISSING_CUSTOMER_ID);
+        }
+        if (lines.filter != null) {
+            long time = TimeFilter.epochSecond(buffer, start, timestampEnd);
+            if (time == TimeFilter.INVALID) {
+                return malformed(buffer, start, end, lines, MalformedLineReport.Kind.INVALID_TIMESTAMP);
+            }
+            if (time < lines.lastTime) lines.unsorted = true;
+            lines.lastTime = time;
+            if (!lines.filter.accepts(time)) {
+                lines.filtered++;
+                return true;
+            }
+        }
+        lines.cursor.set(buffer, start, timestampEnd, pageStart, pageEnd, customerStart, end, lines.lineNumber);
+        return visitor.visit(lines.cursor);
+    }
+
+    private static boolean malformed(ByteBuffer buffer, int start, int end, LineCounter lines,
+                                     MalformedLineReport.Kind kind) {
+        lines.malformedCount++;
+        lines.malformed.malformed(lines.filePath, lines.lineNumber, kind, lines.malformedLine.set(buffer, start, end));
+        // A live report past its threshold stops the scan; the caller's finish() then throws.
+        return !(lines.malformed instanceof MalformedLineReport report && report.exceeded(lines.lineNumber));
+    }
+
+    /** Adapts an offset-based visitor to the cursor; the adapter is created once per scan. */
+    private static RecordVisitor fields(FieldVisitor visitor) {
+        return cursor -> visitor.visit(cursor.customerId().buffer(), cursor.pageId().start(), cursor.pageId().end(),
+                cursor.customerId().start(), cursor.customerId().end());
+    }
+
+    private static int skipField(ByteBuffer buffer, int from, int end) {
+        while (from < end && !isWhitespace(buffer.get(from))) from++;
+        return from;
+    }
+
+    private static int skipWhitespace(ByteBuffer buffer, int from, int end) {
+        while (from < end && isWhitespace(buffer.get(from))) from++;
+        return from;
+    }
+
+    private static boolean isLineTerminator(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    /** Matches the ASCII subset of the \s character class used by LogParser. */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\f' || b == 0x0B || b == '\r' || b == '\n';
+    }
+
+    /** Decodes buffer[start, end) as UTF-8. */
+    public static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Per-scan line bookkeeping shared across windows. */
+    private static final class LineCounter {
+        private final Path filePath;
+        private final MalformedLineHandler malformed;
+        private final LogCursor cursor = new LogCursor();
+        private final ByteSlice malformedLine = new ByteSlice();
+        /** The scanner's TimeFilter when it is active, otherwise null so timestamps are never read. */
+        private final TimeFilter filter;
+        private long lineNumber;
+        private long blank;
+        private long malformedCount;
+        private long filtered;
+        private long lastTime = Long.MIN_VALUE;
+        private boolean unsorted;
+        private boolean stopped;
+
+        private LineCounter(Path filePath, MalformedLineHandler malformed, TimeFilter filter) {
+            this.filePath = filePath;
+            this.malformed = malformed;
+            this.filter = filter.isActive() ? filter : null;
+        }
+
+        ScanResult result(long bytes) {
+            return new ScanResult(lineNumber, bytes, blank, malformedCount, filtered);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.analytics.parser;
+
+import com.analytics.collection.ByteSlice;
+
+import java.nio.file.Path;
+
+/** Receives lines that do not contain the three expected fields. */
+@FunctionalInterface
+public interface MalformedLineHandler {
+
+    void malformed(Path filePath, long lineNumber, String line);
+
+    /**
+     * Raw form used by LogScanner; line is only valid during the call.
+     * The default decodes it, handlers that usually ignore the text can override this to skip decoding.
+     */
+    default void malformed(Path filePath, long lineNumber, MalformedLineReport.Kind kind, ByteSlice line) {
+        malformed(filePath, lineNumber, line.toString());
+    }
+
+    /** Logs a warning for every line in the same format as LogParser; see MalformedLinePolicy for a bounded report. */
+    static MalformedLineHandler logging() {
+        return LogParser::warnMalformed;
+    }
+}
@@ -0,0 +1,37 @@
+package com.analytics.parser;
+
+import java.nio.file.Path;
+
+/**
+ * How malformed lines are reported: only the first sampleSize lines of a file are logged individually,
+ * the rest are counted by kind and summarized once. A file with more than maxMalformedRatio of its lines
+ * malformed fails with TooManyMalformedLinesException; the ratio is only applied once minLines lines have been
+ * seen, so a bad line at the top of a file does not abort it. A ratio of 1 never fails.
+ * Each LogScanner and LogParser applies the policy it was constructed with, DEFAULT unless given another.
+ */
+public record MalformedLinePolicy(int sampleSize, double maxMalformedRatio, long minLines) {
+
+    public static final MalformedLinePolicy DEFAULT = new MalformedLinePolicy(10, 1.0, 1000);
+
+    public MalformedLinePolicy {
+        if (sampleSize < 0) throw new IllegalArgumentException("sampleSize must not be negative: " + sampleSize);
+        if (!(maxMalformedRatio >= 0 && maxMalformedRatio <= 1)) {
+            throw new IllegalArgumentException("maxMalformedRatio must be within [0, 1]: " + maxMalformedRatio);
+        }
+        if (minLines < 0) throw new IllegalArgumentException("minLines must not be negative: " + minLines);
+    }
+
+    public boolean failsFast() {
+        return maxMalformedRatio < 1;
+    }
+
+    /** Report for a sequential scan of file: samples are logged as they arrive and may abort the scan. */
+    public MalformedLineReport newReport(Path file) {
+        return new MalformedLineReport(file, this, true);
+    }
+
+    /** Report for one range of file; it logs nothing and is merged into the file's report afterwards. */
+    public MalformedLineReport rangeReport(Path file) {
+        return new MalformedLineReport(file, this, false);
+    }
+}
@@ -0,0 +1,145 @@
+package com.analytics.parser;
+
+import com.analytics.collection.ByteSlice;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Malformed lines of one file under a MalformedLinePolicy: per-kind counts plus the first sampleSize lines.
+ * Only sampled lines are decoded and logged, lazily and in LogParser's format, so a badly corrupted file
+ * costs a counter increment per bad line. Lines beyond the sample are summarized by finish.
+ * Not thread-safe; parallel scans give each range its own report and merge them in file order.
+ */
+public final class MalformedLineReport implements MalformedLineHandler {
+
+    private static final Logger LOGGER = Logger.getLogger(LogParser.class.getName());
+
+    /** Why a line was rejected. */
+    public enum Kind {
+        /** A single field: neither pageId nor customerId. */
+        MISSING_PAGE_ID,
+        /** Two fields: no customerId. */
+        MISSING_CUSTOMER_ID,
+        /** A timestamp TimeFilter cannot read; only reported while a filter is active. */
+        INVALID_TIMESTAMP
+    }
+
+    public record Sample(long lineNumber, Kind kind, String line) {}
+
+    private final Path file;
+    private final MalformedLinePolicy policy;
+    private final boolean live;
+    private final long[] counts = new long[Kind.values().length];
+    private final List<Sample> samples = new ArrayList<>();
+    private long total;
+
+    MalformedLineReport(Path file, MalformedLinePolicy policy, boolean live) {
+        this.file = file;
+        this.policy = policy;
+        this.live = live;
+    }
+
+    @Override
+    public void malformed(Path filePath, long lineNumber, String line) {
+        Kind kind = classify(line);
+        if (tally(kind)) sample(lineNumber, kind, line);
+    }
+
+    @Override
+    public void malformed(Path filePath, long lineNumber, Kind kind, ByteSlice line) {
+        if (tally(kind)) sample(lineNumber, kind, line.toString());
+    }
+
+    /** Adds a range's counts and samples, shifting its line numbers by the lines preceding the range. */
+    public void merge(MalformedLineReport range, long firstLine) {
+        for (Sample s : range.samples) {
+            if (samples.size() == policy.sampleSize()) break;
+            sample(firstLine + s.lineNumber(), s.kind(), s.line());
+        }
+        for (Kind kind : Kind.values()) counts[kind.ordinal()] += range.counts[kind.ordinal()];
+        total += range.total;
+    }
+
+    /** True if a live report has passed the policy's ratio with linesSeen lines scanned so far. */
+    boolean exceeded(long linesSeen) {
+        return live && overRatio(linesSeen);
+    }
+
+    /**
+     * Ends the file: logs one summary of the lines that were not sampled, then fails if the file as scanned
+     * (lines lines in total) has more malformed lines than the policy allows.
+     */
+    public void finish(long lines) throws TooManyMalformedLinesException {
+        long unsampled = total - samples.size();
+        if (unsampled > 0) LOGGER.warning(() -> "%d more malformed log entries in %s not shown (%s)"
+                .formatted(unsampled, file.getFileName(), countsByKind()));
+        check(lines);
+    }
+
+    /**
+     * Fails if the lines lines scanned so far have more malformed lines than the policy allows, without the
+     * summary of finish; for a file that is checked again as it grows.
+     */
+    public void check(long lines) throws TooManyMalformedLinesException {
+        if (overRatio(lines)) {
+            throw new TooManyMalformedLinesException("%d of %d lines in %s are malformed (%s), more than %s%% allowed"
+                    .formatted(total, lines, file.getFileName(), countsByKind(),
+                            trimmed(policy.maxMalformedRatio() * 100)), total, lines);
+        }
+    }
+
+    public long total() {
+        return total;
+    }
+
+    public long count(Kind kind) {
+        return counts[kind.ordinal()];
+    }
+
+    public List<Sample> samples() {
+        return Collections.unmodifiableList(samples);
+    }
+
+    /** Counts a line and returns whether it still belongs in the sample. */
+    private boolean tally(Kind kind) {
+        counts[kind.ordinal()]++;
+        return total++ < policy.sampleSize();
+    }
+
+    private void sample(long lineNumber, Kind kind, String line) {
+        samples.add(new Sample(lineNumber, kind, line));
+        if (live) LogParser.warnMalformed(file, lineNumber, line);
+    }
+
+    private boolean overRatio(long lines) {
+        return policy.failsFast() && lines >= policy.minLines() && lines > 0
+                && total > policy.maxMalformedRatio() * lines;
+    }
+
+    private String countsByKind() {
+        StringBuilder summary = new StringBuilder();
+        for (Kind kind : Kind.values()) {
+            if (counts[kind.ordinal()] == 0) continue;
+            if (!summary.isEmpty()) summary.append(", ");
+            summary.append(kind).append('=').append(counts[kind.ordinal()]);
+        }
+        return summary.toString();
+    }
+
+    private static String trimmed(double percent) {
+        return percent == Math.rint(percent) ? String.valueOf((long) percent) : String.valueOf(percent);
+    }
+
+    /** A stripped line that failed to split into three fields has either one field or two. */
+    static Kind classify(String line) {
+        String stripped = line.strip();
+        for (int i = 0; i < stripped.length(); i++) {
+            if (Character.isWhitespace(stripped.charAt(i))) return Kind.MISSING_CUSTOMER_ID;
+        }
+        return Kind.MISSING_PAGE_ID;
+    }
+}
@@ -0,0 +1,13 @@
+package com.analytics.parser;
+
+/**
+ * Receives each well-formed line found by LogScanner through a single reused LogCursor.
+ * The cursor and its slices are only valid for the duration of the call.
+ */
+@FunctionalInterface
+public interface RecordVisitor {
+
+    /** Returns false to stop scanning after this line. */
+    boolean visit(LogCursor cursor);
+
+}
@@ -0,0 +1,20 @@
+package com.analytics.parser;
+
+/**
+ * Totals for one scan: lines seen (including blank, malformed and filtered ones), bytes consumed,
+ * and how many of the lines were skipped as blank or malformed or left out by the TimeFilter.
+ * Bytes a time-sorted file let the scan skip count as consumed.
+ */
+public record ScanResult(long lines, long bytes, long blankLines, long malformedLines, long filteredLines) {
+
+    /** Lines that reached the visitor. */
+    public long records() {
+        return lines - blankLines - malformedLines - filteredLines;
+    }
+
+    /** Totals of this scan followed by next, e.g. consecutive ranges of one file. */
+    public ScanResult plus(ScanResult next) {
+        return new ScanResult(lines + next.lines, bytes + next.bytes, blankLines + next.blankLines,
+                malformedLines + next.malformedLines, filteredLines + next.filteredLines);
+    }
+}
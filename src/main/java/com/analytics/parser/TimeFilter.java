@@ -0,0 +1,176 @@
+package com.analytics.parser;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Year;
+import java.time.ZoneOffset;
+
+/**
+ * Which log lines count, by timestamp: an optional range [from, to) and an optional daily window of times of
+ * day [dailyFrom, dailyTo), which wraps past midnight if dailyTo is before dailyFrom.
+ * Timestamps are read straight from the line's bytes, without allocating, and only while a filter is active:
+ * an ISO local date-time (2024-01-15T10:00, optional seconds and fraction, any zone suffix is ignored so the
+ * time is taken as written) or epoch seconds, or epoch milliseconds if 13 or more digits, read as UTC.
+ * A LogScanner constructed with an active filter counts the lines outside it but never passes them to the
+ * visitor, and treats an unreadable timestamp as malformed.
+ */
+public final class TimeFilter {
+
+    /** Returned by epochSecond for a timestamp it cannot read. */
+    public static final long INVALID = Long.MIN_VALUE;
+    public static final TimeFilter NONE = new TimeFilter(null, null, null, null);
+
+    private static final int SECONDS_PER_DAY = 86_400;
+
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final LocalTime dailyFrom;
+    private final LocalTime dailyTo;
+    private final long fromSecond;
+    private final long toSecond;
+    private final int dailyFromSecond;
+    private final int dailyToSecond;
+
+    /** Any argument may be null for no bound; the daily bounds come together or not at all. */
+    public TimeFilter(LocalDateTime from, LocalDateTime to, LocalTime dailyFrom, LocalTime dailyTo) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("Empty time range: %s to %s".formatted(from, to));
+        }
+        if ((dailyFrom == null) != (dailyTo == null) || dailyFrom != null && dailyFrom.equals(dailyTo)) {
+            throw new IllegalArgumentException("A daily window needs two different times: %s to %s"
+                    .formatted(dailyFrom, dailyTo));
+        }
+        this.from = from;
+        this.to = to;
+        this.dailyFrom = dailyFrom;
+        this.dailyTo = dailyTo;
+        this.fromSecond = from == null ? Long.MIN_VALUE : from.toEpochSecond(ZoneOffset.UTC);
+        this.toSecond = to == null ? Long.MAX_VALUE : to.toEpochSecond(ZoneOffset.UTC);
+        this.dailyFromSecond = dailyFrom == null ? -1 : dailyFrom.toSecondOfDay();
+        this.dailyToSecond = dailyTo == null ? -1 : dailyTo.toSecondOfDay();
+    }
+
+    /** False for NONE: scans then never look at timestamps. */
+    public boolean isActive() {
+        return from != null || to != null || dailyFrom != null;
+    }
+
+    /** True if the filter has a from or to bound, so a time-sorted file can be narrowed to a byte range. */
+    public boolean isBounded() {
+        return from != null || to != null;
+    }
+
+    public LocalDateTime from() {
+        return from;
+    }
+
+    public LocalDateTime to() {
+        return to;
+    }
+
+    public LocalTime dailyFrom() {
+        return dailyFrom;
+    }
+
+    public LocalTime dailyTo() {
+        return dailyTo;
+    }
+
+    /** True if a line stamped epochSecond (as returned by epochSecond, not INVALID) is kept. */
+    public boolean accepts(long epochSecond) {
+        if (epochSecond < fromSecond || epochSecond >= toSecond) return false;
+        if (dailyFromSecond < 0) return true;
+        int secondOfDay = (int) Math.floorMod(epochSecond, (long) SECONDS_PER_DAY);
+        return dailyFromSecond < dailyToSecond
+                ? secondOfDay >= dailyFromSecond && secondOfDay < dailyToSecond
+                : secondOfDay >= dailyFromSecond || secondOfDay < dailyToSecond;
+    }
+
+    /** True if epochSecond is before the range, so a sorted file has nothing to keep up to it. */
+    boolean isBefore(long epochSecond) {
+        return epochSecond < fromSecond;
+    }
+
+    /** True if epochSecond is at or past the end of the range, so a sorted file has nothing to keep from it on. */
+    boolean isAfter(long epochSecond) {
+        return epochSecond >= toSecond;
+    }
+
+    /** Seconds since the epoch of the timestamp in buffer[start, end), or INVALID. */
+    public static long epochSecond(ByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        if (length == 0) return INVALID;
+        if (isDigits(buffer, start, end)) {
+            if (length > 18) return INVALID;
+            long value = number(buffer, start, end);
+            return length >= 13 ? Math.floorDiv(value, 1000) : value;
+        }
+        // yyyy-MM-ddTHH:mm, then optionally :ss, a fraction and a zone that are not interpreted
+        if (length < 16 || buffer.get(start + 4) != '-' || buffer.get(start + 7) != '-'
+                || buffer.get(start + 10) != 'T' || buffer.get(start + 13) != ':') {
+            return INVALID;
+        }
+        long year = digits(buffer, start, 4);
+        int month = (int) digits(buffer, start + 5, 2);
+        int day = (int) digits(buffer, start + 8, 2);
+        int hour = (int) digits(buffer, start + 11, 2);
+        int minute = (int) digits(buffer, start + 14, 2);
+        int second = 0;
+        if (length >= 19 && buffer.get(start + 16) == ':') second = (int) digits(buffer, start + 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month) || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID;
+        }
+        return epochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second;
+    }
+
+    private static int lengthOfMonth(long year, int month) {
+        return switch (month) {
+            case 2 -> Year.isLeap(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    /** Days since 1970-01-01 of a proleptic Gregorian date (Howard Hinnant's days_from_civil). */
+    private static long epochDay(long year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+
+    /** The count digits at offset, or -1 if any of them is not a digit. */
+    private static long digits(ByteBuffer buffer, int offset, int count) {
+        return isDigits(buffer, offset, offset + count) ? number(buffer, offset, offset + count) : -1;
+    }
+
+    private static boolean isDigits(ByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') return false;
+        }
+        return true;
+    }
+
+    private static long number(ByteBuffer buffer, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) value = value * 10 + (buffer.get(i) - '0');
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        if (!isActive()) return "all times";
+        StringBuilder description = new StringBuilder();
+        if (from != null) description.append("from ").append(from);
+        if (to != null) description.append(description.isEmpty() ? "" : " ").append("before ").append(to);
+        if (dailyFrom != null) {
+            description.append(description.isEmpty() ? "" : ", ").append("daily ").append(dailyFrom).append('-').append(dailyTo);
+        }
+        return description.toString();
+    }
+}
@@ -0,0 +1,27 @@
+package com.analytics.parser;
+
+import java.io.IOException;
+
+/** A log file exceeded the malformed-line ratio of its MalformedLinePolicy. */
+public class TooManyMalformedLinesException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long malformedLines;
+    private final long lines;
+
+    public TooManyMalformedLinesException(String message, long malformedLines, long lines) {
+        super(message);
+        this.malformedLines = malformedLines;
+        this.lines = lines;
+    }
+
+    public long malformedLines() {
+        return malformedLines;
+    }
+
+    /** Lines seen when the scan was abandoned. */
+    public long lines() {
+        return lines;
+    }
+}
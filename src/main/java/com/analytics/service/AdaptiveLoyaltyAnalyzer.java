@@ -0,0 +1,265 @@
+package com.analytics.service;
+
+import com.analytics.collection.ByteSlice;
+import com.analytics.collection.ByteStringDictionary;
+import com.analytics.collection.HyperLogLog;
+import com.analytics.metrics.RunMetrics;
+import com.analytics.model.HeapCustomerStateStore;
+import com.analytics.parser.FileRange;
+import com.analytics.parser.LogCursor;
+import com.analytics.parser.LogScanner;
+import com.analytics.parser.ScanResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Picks an analyzer per day pair from the file sizes and a small sample of both days.
+ * A few line-aligned ranges spread over each file (the head of a compressed file) are scanned into a
+ * HyperLogLog sketch and exact sample frequencies; distinct customers per day are extrapolated from the
+ * customers seen once in the sample, and the share of day Y customers that also visited on day X from the
+ * intersection of the two sketches. Against half the free heap (or an explicit budget):
+ * in-memory if the whole aggregate fits and most day Y customers are repeat visitors, streaming if the
+ * day X candidates fit, partitioned with enough partitions for each to fit, external sort otherwise.
+ * The choice and its reason are logged at INFO and kept in lastChoice. The estimates are rough: they
+ * only need to tell megabytes from gigabytes.
+ */
+public class AdaptiveLoyaltyAnalyzer implements LoyaltyAnalyzer {
+
+    private static final Logger LOGGER = Logger.getLogger(AdaptiveLoyaltyAnalyzer.class.getName());
+
+    static final long SAMPLE_BYTES = 4L << 20;
+    static final int SAMPLE_RANGES = 4;
+    /** Assumed expansion of a compressed log, used to size a file whose head is all that was sampled. */
+    static final int ASSUMED_COMPRESSION_RATIO = 6;
+    static final double HIGH_OVERLAP = 0.8;
+    /** Heap per customer and day of InMemoryLoyaltyAnalyzer's DaySummary, excluding the ID: dictionary slots, first page. */
+    static final int IN_MEMORY_BYTES_PER_CUSTOMER = 48;
+    /** Heap per day X candidate of StreamingLoyaltyAnalyzer, excluding the ID: dictionary slots, state, filter. */
+    static final int STREAMING_BYTES_PER_CUSTOMER = 32;
+    static final int MAX_PARTITIONS = 1024;
+    private static final int SKETCH_PRECISION = 14;
+
+    /** What was sampled and extrapolated for one day pair. */
+    public record Estimate(long dayXBytes, long dayYBytes, long dayXCustomers, long dayYCustomers,
+                           long sharedCustomers, int averageIdLength, boolean exact) {
+
+        public long unionCustomers() {
+            return dayXCustomers + dayYCustomers - sharedCustomers;
+        }
+
+        /** Fraction of day Y customers that also visited on day X. */
+        public double overlap() {
+            return dayYCustomers == 0 ? 0 : (double) sharedCustomers / dayYCustomers;
+        }
+
+        long inMemoryBytes() {
+            return (dayXCustomers + dayYCustomers) * (IN_MEMORY_BYTES_PER_CUSTOMER + (long) averageIdLength);
+        }
+
+        long streamingBytes() {
+            return dayXCustomers * (STREAMING_BYTES_PER_CUSTOMER + (long) averageIdLength);
+        }
+    }
+
+    /** analyzer is one of the --analyzer names; partitions and memoryBudget only apply to partitioned and external. */
+    public record Choice(String analyzer, int partitions, long memoryBudget, String reason, Estimate estimate) {}
+
+    private final LogScanner scanner;
+    private final long heapBudget;
+    private volatile Choice lastChoice;
+
+    /** Budgets half of the heap that is free when each find starts. */
+    public AdaptiveLoyaltyAnalyzer() {
+        this(0);
+    }
+
+    /** heapBudget in bytes, or 0 to use half of the free heap. */
+    public AdaptiveLoyaltyAnalyzer(long heapBudget) {
+        this(heapBudget, new LogScanner());
+    }
+
+    /** scanner samples both days and is handed to the analyzer chosen. */
+    public AdaptiveLoyaltyAnalyzer(long heapBudget, LogScanner scanner) {
+        if (heapBudget < 0) throw new IllegalArgumentException("heapBudget must not be negative: " + heapBudget);
+        this.heapBudget = heapBudget;
+        this.scanner = scanner;
+    }
+
+    @Override
+    public List<String> find(Path dayX, Path dayY) throws IOException {
+        List<String> loyal = new ArrayList<>();
+        find(dayX, dayY, LoyalCustomerSink.into(loyal));
+        return loyal;
+    }
+
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink) throws IOException {
+        return find(dayX, dayY, sink, RunMetrics.disabled());
+    }
+
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink, RunMetrics metrics) throws IOException {
+        Choice choice = choose(dayX, dayY);
+        lastChoice = choice;
+        LOGGER.info(() -> "Analyzing %s and %s with %s: %s"
+                .formatted(dayX.getFileName(), dayY.getFileName(), choice.analyzer(), choice.reason()));
+        return create(choice).find(dayX, dayY, sink, metrics);
+    }
+
+    /** The choice made by the last find, or null before the first. */
+    public Choice lastChoice() {
+        return lastChoice;
+    }
+
+    /** Samples both days and chooses against this analyzer's budget, without running the analysis. */
+    public Choice choose(Path dayX, Path dayY) throws IOException {
+        return choose(estimate(dayX, dayY), heapBudget > 0 ? heapBudget : freeHeap() / 2);
+    }
+
+    /** The selection rules applied to an estimate, for a heap budget in bytes. */
+    public static Choice choose(Estimate estimate, long heapBudget) {
+        long inMemory = estimate.inMemoryBytes();
+        String customers = "~%d day X and ~%d day Y customers, %d%% of day Y seen on day X%s"
+                .formatted(estimate.dayXCustomers(), estimate.dayYCustomers(), Math.round(estimate.overlap() * 100),
+                        estimate.exact() ? "" : " (sampled)");
+        if (inMemory <= heapBudget && estimate.overlap() >= HIGH_OVERLAP) {
+            return new Choice("in-memory", 0, 0, "%s; the aggregate needs ~%s of a %s budget"
+                    .formatted(customers, megabytes(inMemory), megabytes(heapBudget)), estimate);
+        }
+        long streaming = estimate.streamingBytes();
+        if (streaming <= heapBudget) {
+            return new Choice("streaming", 0, 0, "%s; day X candidates need ~%s of a %s budget"
+                    .formatted(customers, megabytes(streaming), megabytes(heapBudget)), estimate);
+        }
+        long needed = (inMemory + heapBudget - 1) / Math.max(1, heapBudget);
+        int partitions = Math.max(PartitionedLoyaltyAnalyzer.DEFAULT_PARTITIONS,
+                Integer.highestOneBit((int) Math.min(needed, MAX_PARTITIONS) * 2 - 1));
+        if (needed <= MAX_PARTITIONS) {
+            return new Choice("partitioned", partitions, 0, "%s; the aggregate needs ~%s, over a %s budget, so %d partitions"
+                    .formatted(customers, megabytes(inMemory), megabytes(heapBudget), partitions), estimate);
+        }
+        return new Choice("external", 0, heapBudget, "%s; the aggregate needs ~%s, more than %d partitions of a %s budget"
+                .formatted(customers, megabytes(inMemory), MAX_PARTITIONS, megabytes(heapBudget)), estimate);
+    }
+
+    private LoyaltyAnalyzer create(Choice choice) {
+        return switch (choice.analyzer()) {
+            case "in-memory" -> new InMemoryLoyaltyAnalyzer(HeapCustomerStateStore::new, scanner);
+            case "streaming" -> new StreamingLoyaltyAnalyzer(null, scanner);
+            case "partitioned" -> new PartitionedLoyaltyAnalyzer(choice.partitions(), 1, scanner);
+            default -> new ExternalSortLoyaltyAnalyzer(
+                    Math.max(ExternalSortLoyaltyAnalyzer.MIN_MEMORY_BUDGET, choice.memoryBudget()),
+                    Path.of(System.getProperty("java.io.tmpdir")), scanner);
+        };
+    }
+
+    Estimate estimate(Path dayX, Path dayY) throws IOException {
+        DaySample x = sample(dayX);
+        DaySample y = sample(dayY);
+        long dayXCustomers = x.customers();
+        long dayYCustomers = y.customers();
+        // A customer in both days shows up in both samples with probability (sampled share of X) * (of Y).
+        double seenInBoth = ((double) x.distinct() / Math.max(1, dayXCustomers))
+                * ((double) y.distinct() / Math.max(1, dayYCustomers));
+        long shared = Math.min(Math.min(dayXCustomers, dayYCustomers),
+                Math.round(HyperLogLog.intersection(x.sketch, y.sketch) / Math.max(seenInBoth, 1e-9)));
+        long ids = x.distinct() + y.distinct();
+        int averageIdLength = ids == 0 ? 0 : (int) ((x.idBytes + y.idBytes + ids - 1) / ids);
+        return new Estimate(x.totalBytes, y.totalBytes, dayXCustomers, dayYCustomers, shared, averageIdLength,
+                x.complete() && y.complete());
+    }
+
+    /** Scans up to SAMPLE_BYTES of file: SAMPLE_RANGES ranges spread over a plain file, the head of a compressed one. */
+    private DaySample sample(Path file) throws IOException {
+        long size = Files.size(file);
+        DaySample sample = new DaySample();
+        if (LogScanner.isCompressed(file)) {
+            ScanResult result = scanner.scan(file, new FileRange(0, size),
+                    (LogCursor cursor) -> sample.add(cursor) < SAMPLE_BYTES,
+                    scanner.policy().rangeReport(file));
+            boolean truncated = sample.lineBytes >= SAMPLE_BYTES;
+            sample.sampledBytes = result.bytes();
+            sample.totalBytes = truncated ? Math.max(result.bytes(), size * ASSUMED_COMPRESSION_RATIO) : result.bytes();
+            return sample;
+        }
+        List<FileRange> ranges = new ArrayList<>();
+        if (size <= SAMPLE_BYTES) {
+            ranges.add(new FileRange(0, size));
+        } else {
+            long length = SAMPLE_BYTES / SAMPLE_RANGES;
+            for (int i = 0; i < SAMPLE_RANGES; i++) {
+                long start = (size - length) * i / (SAMPLE_RANGES - 1);
+                ranges.add(scanner.alignedRange(file, start, start + length));
+            }
+        }
+        for (FileRange range : ranges) {
+            ScanResult result = scanner.scan(file, range, (LogCursor cursor) -> {
+                sample.add(cursor);
+                return true;
+            }, scanner.policy().rangeReport(file));
+            sample.sampledBytes += result.bytes();
+        }
+        sample.totalBytes = size;
+        return sample;
+    }
+
+    private static long freeHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    private static String megabytes(long bytes) {
+        return (bytes + (1 << 20) - 1 >> 20) + " MB";
+    }
+
+    /** Customers of one day's sample: a sketch for the overlap, exact counts for the extrapolation. */
+    private static final class DaySample {
+
+        final HyperLogLog sketch = new HyperLogLog(SKETCH_PRECISION);
+        final ByteStringDictionary ids = new ByteStringDictionary();
+        int[] visits = new int[1024];
+        long idBytes;
+        long lineBytes;
+        long sampledBytes;
+        long totalBytes;
+
+        /** Adds one visit and returns the bytes of the well-formed lines sampled so far. */
+        long add(LogCursor cursor) {
+            ByteSlice customerId = cursor.customerId();
+            sketch.add(customerId);
+            int id = ids.intern(customerId);
+            if (id == visits.length) visits = Arrays.copyOf(visits, id * 2);
+            if (visits[id]++ == 0) idBytes += customerId.length();
+            lineBytes += customerId.end() - cursor.timestamp().start() + 1;
+            return lineBytes;
+        }
+
+        long distinct() {
+            return ids.size();
+        }
+
+        boolean complete() {
+            return sampledBytes >= totalBytes;
+        }
+
+        /**
+         * Distinct customers of the whole day: exact if the whole file was scanned, otherwise the customers
+         * seen more than once plus those seen once scaled by sqrt(1 / sampled fraction) (the GEE estimator).
+         */
+        long customers() {
+            if (complete()) return distinct();
+            long once = 0;
+            for (int i = 0; i < ids.size(); i++) {
+                if (visits[i] == 1) once++;
+            }
+            double fraction = (double) sampledBytes / totalBytes;
+            return Math.round(Math.sqrt(1 / fraction) * once) + distinct() - once;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.analytics.service;
+
+import com.analytics.model.DaySketch;
+import com.analytics.model.LoyaltyEstimate;
+import com.analytics.parser.LogCursor;
+import com.analytics.parser.LogScanner;
+import com.analytics.snapshot.SnapshotStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Estimates the number of loyal customers without listing them: each day is scanned once into a fixed-size
+ * DaySketch and the two sketches are compared (DaySketch.estimateLoyal). Memory does not grow with the input.
+ * With the default capacity the 95% interval is within about 1% once some 40 000 sampled customers are loyal;
+ * smaller days are counted exactly. With a SnapshotStore each day's sketch is saved, so tomorrow's run loads
+ * today's day Y as its day X instead of scanning it again.
+ */
+public class ApproximateLoyaltyCounter {
+
+    private final LogScanner scanner;
+    private final int capacity;
+    private final SnapshotStore sketches;
+
+    public ApproximateLoyaltyCounter() {
+        this(DaySketch.DEFAULT_CAPACITY, null);
+    }
+
+    /** capacity is the number of customers sampled per day; sketches may be null to always scan raw logs. */
+    public ApproximateLoyaltyCounter(int capacity, SnapshotStore sketches) {
+        this(capacity, sketches, new LogScanner());
+    }
+
+    public ApproximateLoyaltyCounter(int capacity, SnapshotStore sketches, LogScanner scanner) {
+        if (capacity < 16) throw new IllegalArgumentException("capacity must be at least 16: " + capacity);
+        this.capacity = capacity;
+        this.sketches = sketches;
+        this.scanner = scanner;
+    }
+
+    public LoyaltyEstimate count(Path dayX, Path dayY) throws IOException {
+        return DaySketch.estimateLoyal(sketch(dayX), sketch(dayY));
+    }
+
+    /** The sketch of day, loaded from the store if it holds a current one, otherwise scanned (and saved). */
+    public DaySketch sketch(Path day) throws IOException {
+        if (sketches != null) {
+            Optional<DaySketch> saved = sketches.loadSketch(day);
+            if (saved.isPresent()) return saved.get();
+        }
+        DaySketch sketch = new DaySketch(capacity);
+        scanner.scan(day, (LogCursor cursor) -> {
+            sketch.record(cursor.pageId(), cursor.customerId());
+            return true;
+        });
+        if (sketches != null) sketches.saveSketch(day, sketch);
+        return sketch;
+    }
+}
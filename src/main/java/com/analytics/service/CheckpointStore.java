@@ -0,0 +1,232 @@
+package com.analytics.service;
+
+import com.analytics.snapshot.DaySummaryCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Directory of checkpoints of StreamingLoyaltyAnalyzer runs, one per day pair, and how often to take them.
+ * A checkpoint records the phase (day X or day Y), the byte offset and line count reached in that day, the
+ * number of loyal customers emitted so far and the day X candidates. It is written to a temporary file,
+ * forced to disk and moved into place, so a run killed at any moment leaves the previous checkpoint intact.
+ * A checkpoint is only used if both logs still have the size and modification time it was taken against;
+ * stale and corrupt checkpoints are reported and ignored.
+ * Binary format (big-endian):
+ *   header:  magic "LCKP", version, day X size and mtime (ms), day Y size and mtime (ms),
+ *            phase, offset, lines, loyal, body length, CRC32 of the body
+ *   body:    the candidates (DayXCandidates.write)
+ */
+public class CheckpointStore {
+
+    private static final Logger LOGGER = Logger.getLogger(CheckpointStore.class.getName());
+    private static final String SUFFIX = ".checkpoint";
+    static final int MAGIC = 0x4C434B50;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 8 + 8 + 4 + 8 + 8 + 8 + 8 + 8;
+    static final int DAY_X = 0;
+    static final int DAY_Y = 1;
+
+    /** Largest stretch of a day scanned between two chances to checkpoint. */
+    static final long MAX_SEGMENT_BYTES = 64L << 20;
+    public static final long DEFAULT_BYTES = 1L << 30;
+    public static final Duration DEFAULT_INTERVAL = Duration.ofMinutes(5);
+
+    /** Where a run stopped: offset and lines into the day of phase, and the loyal customers emitted before it. */
+    record Checkpoint(int phase, long offset, long lines, long loyal, DayXCandidates candidates) {}
+
+    /** Header fields of a checkpoint, with the CRC32 of its body. */
+    private record Header(int phase, long offset, long lines, long loyal, long checksum) {}
+
+    private final Path directory;
+    private final long everyBytes;
+    private final Duration every;
+
+    public CheckpointStore(Path directory) {
+        this(directory, DEFAULT_BYTES, DEFAULT_INTERVAL);
+    }
+
+    /** Checkpoints once everyBytes of input have been scanned or every has elapsed since the last one. */
+    public CheckpointStore(Path directory, long everyBytes, Duration every) {
+        if (everyBytes <= 0) throw new IllegalArgumentException("everyBytes must be positive: " + everyBytes);
+        if (every.isNegative() || every.isZero()) throw new IllegalArgumentException("every must be positive: " + every);
+        this.directory = directory;
+        this.everyBytes = everyBytes;
+        this.every = every;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /** Checkpoint location for a day pair. */
+    public Path checkpointPath(Path dayX, Path dayY) {
+        String key = Integer.toHexString((absolute(dayX) + "\n" + absolute(dayY)).hashCode());
+        return directory.resolve(dayY.getFileName() + "-" + key + SUFFIX);
+    }
+
+    /**
+     * Loyal customers emitted before the current checkpoint of the pair, if there is one: a resumed run emits
+     * only the customers after them, so output kept from the interrupted run should be cut to that many IDs.
+     * The body is only checksummed, not decoded; the candidates are left to the run that resumes.
+     */
+    public OptionalLong loyalEmitted(Path dayX, Path dayY) throws IOException {
+        Path path = checkpointPath(dayX, dayY);
+        if (!Files.exists(path)) return OptionalLong.empty();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Header header = readHeader(channel, path, dayX, dayY);
+            if (header == null) return OptionalLong.empty();
+            checkedBody(channel, header);
+            return OptionalLong.of(header.loyal());
+        } catch (IOException e) {
+            LOGGER.warning("Ignoring unusable checkpoint %s: %s".formatted(path.getFileName(), e.getMessage()));
+            return OptionalLong.empty();
+        }
+    }
+
+    /** Bytes to scan between two chances to checkpoint. */
+    long segmentBytes() {
+        return Math.min(everyBytes, MAX_SEGMENT_BYTES);
+    }
+
+    /** True if a checkpoint is due after bytes scanned over elapsed since the last one. */
+    boolean due(long bytes, Duration elapsed) {
+        return bytes >= everyBytes || elapsed.compareTo(every) >= 0;
+    }
+
+    /** Returns the checkpoint of the pair if one exists and both logs are unchanged, otherwise empty. */
+    Optional<Checkpoint> load(Path dayX, Path dayY) throws IOException {
+        Path path = checkpointPath(dayX, dayY);
+        if (!Files.exists(path)) return Optional.empty();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Header header = readHeader(channel, path, dayX, dayY);
+            if (header == null) return Optional.empty();
+            try {
+                ByteBuffer body = checkedBody(channel, header);
+                DayXCandidates candidates = DayXCandidates.read(body);
+                if (body.hasRemaining()) throw new IOException("Trailing bytes after the candidates");
+                return Optional.of(new Checkpoint(header.phase(), header.offset(), header.lines(), header.loyal(),
+                        candidates));
+            } catch (RuntimeException e) {
+                throw new IOException("Malformed checkpoint body", e);
+            }
+        } catch (IOException e) {
+            LOGGER.warning("Ignoring unusable checkpoint %s: %s".formatted(path.getFileName(), e.getMessage()));
+            return Optional.empty();
+        }
+    }
+
+    /** Reads and checks the header of a checkpoint, or returns null if the logs have changed since it was taken. */
+    private static Header readHeader(FileChannel channel, Path path, Path dayX, Path dayY) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) throw new IOException("Not a checkpoint");
+        }
+        if (buffer.getInt(0) != MAGIC) throw new IOException("Not a checkpoint");
+        if (buffer.getInt(4) != VERSION) throw new IOException("Unsupported checkpoint version " + buffer.getInt(4));
+        DaySummaryCodec.Source x = new DaySummaryCodec.Source(buffer.getLong(8), buffer.getLong(16));
+        DaySummaryCodec.Source y = new DaySummaryCodec.Source(buffer.getLong(24), buffer.getLong(32));
+        if (!x.equals(sourceOf(dayX)) || !y.equals(sourceOf(dayY))) {
+            LOGGER.info("Ignoring stale checkpoint %s: the logs have changed".formatted(path.getFileName()));
+            return null;
+        }
+        Header header = new Header(buffer.getInt(40), buffer.getLong(44), buffer.getLong(52), buffer.getLong(60),
+                buffer.getLong(76));
+        if (buffer.getLong(68) != channel.size() - HEADER_BYTES) throw new IOException("Truncated checkpoint");
+        if (header.phase() != DAY_X && header.phase() != DAY_Y || header.offset() < 0 || header.lines() < 0
+                || header.loyal() < 0) {
+            throw new IOException("Invalid checkpoint position");
+        }
+        return header;
+    }
+
+    /** Maps the body of a checkpoint after checking it against the checksum in its header. */
+    private static ByteBuffer checkedBody(FileChannel channel, Header header) throws IOException {
+        if (channel.size() > Integer.MAX_VALUE) throw new IOException("Checkpoint larger than 2 GB");
+        ByteBuffer body = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, channel.size() - HEADER_BYTES);
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        if (crc.getValue() != header.checksum()) throw new IOException("Checkpoint checksum mismatch");
+        return body;
+    }
+
+    /** Replaces the checkpoint of the pair atomically; the new one is on disk before it becomes visible. */
+    void save(Path dayX, Path dayY, Checkpoint checkpoint) throws IOException {
+        Files.createDirectories(directory);
+        Path target = checkpointPath(dayX, dayY);
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            write(checkpoint, sourceOf(dayX), sourceOf(dayY), temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /** Removes the checkpoint of a pair whose run has completed, and temporary files left by killed runs. */
+    void delete(Path dayX, Path dayY) throws IOException {
+        Path target = checkpointPath(dayX, dayY);
+        Files.deleteIfExists(target);
+        if (!Files.isDirectory(directory)) return;
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory, target.getFileName() + "*.tmp")) {
+            for (Path leftover : leftovers) Files.deleteIfExists(leftover);
+        }
+    }
+
+    private static void write(Checkpoint checkpoint, DaySummaryCodec.Source x, DaySummaryCodec.Source y, Path target)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_BYTES);
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), new CRC32());
+            DataOutputStream body = new DataOutputStream(checked);
+            checkpoint.candidates().write(body);
+            body.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(x.size())
+                    .putLong(x.lastModifiedMillis())
+                    .putLong(y.size())
+                    .putLong(y.lastModifiedMillis())
+                    .putInt(checkpoint.phase())
+                    .putLong(checkpoint.offset())
+                    .putLong(checkpoint.lines())
+                    .putLong(checkpoint.loyal())
+                    .putLong(channel.size() - HEADER_BYTES)
+                    .putLong(checked.getChecksum().getValue())
+                    .flip();
+            while (header.hasRemaining()) channel.write(header, header.position());
+            channel.force(true);
+        }
+    }
+
+    private static DaySummaryCodec.Source sourceOf(Path log) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(log, BasicFileAttributes.class);
+        return new DaySummaryCodec.Source(attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    private static String absolute(Path log) {
+        return log.toAbsolutePath().normalize().toString();
+    }
+}
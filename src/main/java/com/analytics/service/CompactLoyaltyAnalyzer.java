@@ -0,0 +1,93 @@
+package com.analytics.service;
+
+import com.analytics.metrics.RunMetrics;
+import com.analytics.model.CompactCustomerActivity;
+import com.analytics.parser.LogScanner;
+import com.analytics.parser.ScanResult;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.analytics.parser.LogScanner.decode;
+
+/**
+ * Same flow as InMemoryLoyaltyAnalyzer, but with CompactCustomerActivity instead of full page sets.
+ * Pages of customers that have already reached the threshold are not even decoded.
+ */
+public class CompactLoyaltyAnalyzer implements LoyaltyAnalyzer {
+
+    private final LogScanner scanner;
+    private final int minPages;
+
+    public CompactLoyaltyAnalyzer() {
+        this(CompactCustomerActivity.DEFAULT_MIN_PAGES);
+    }
+
+    public CompactLoyaltyAnalyzer(int minPages) {
+        this(minPages, new LogScanner());
+    }
+
+    public CompactLoyaltyAnalyzer(int minPages, LogScanner scanner) {
+        if (minPages < 1) throw new IllegalArgumentException("minPages must be positive: " + minPages);
+        this.minPages = minPages;
+        this.scanner = scanner;
+    }
+
+    @Override
+    public List<String> find(Path dayX, Path dayY) throws IOException {
+        List<String> loyal = new ArrayList<>();
+        find(dayX, dayY, LoyalCustomerSink.into(loyal));
+        return loyal;
+    }
+
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink) throws IOException {
+        return find(dayX, dayY, sink, RunMetrics.disabled());
+    }
+
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink, RunMetrics metrics) throws IOException {
+        Map<String, CompactCustomerActivity> activities = new HashMap<>();
+
+        RunMetrics.PhaseTimer parseX = metrics.begin(RunMetrics.Phase.PARSE_DAY_X);
+        ScanResult scanX = scanner.scan(dayX, (buf, pageStart, pageEnd, customerStart, customerEnd) -> {
+            CompactCustomerActivity a = activity(activities, buf, customerStart, customerEnd);
+            a.markDayX();
+            if (!a.isSaturated()) a.addPage(decode(buf, pageStart, pageEnd));
+            return true;
+        });
+        parseX.end(dayX, scanX);
+
+        RunMetrics.PhaseTimer parseY = metrics.begin(RunMetrics.Phase.PARSE_DAY_Y);
+        ScanResult scanY = scanner.scan(dayY, (buf, pageStart, pageEnd, customerStart, customerEnd) -> {
+            CompactCustomerActivity a = activity(activities, buf, customerStart, customerEnd);
+            a.markDayY();
+            if (!a.isSaturated()) a.addPage(decode(buf, pageStart, pageEnd));
+            return true;
+        });
+        parseY.end(dayY, scanY);
+        metrics.aggregateCustomers(activities.size());
+
+        RunMetrics.PhaseTimer evaluate = metrics.begin(RunMetrics.Phase.EVALUATE);
+        long loyal = 0;
+        for (CompactCustomerActivity a : activities.values()) {
+            if (a.isLoyal()) {
+                sink.accept(a.customerId());
+                loyal++;
+            }
+        }
+        evaluate.end();
+        return loyal;
+    }
+
+    private CompactCustomerActivity activity(Map<String, CompactCustomerActivity> activities,
+                                             ByteBuffer buf, int customerStart, int customerEnd) {
+        return activities.computeIfAbsent(decode(buf, customerStart, customerEnd),
+                id -> new CompactCustomerActivity(id, minPages));
+    }
+}
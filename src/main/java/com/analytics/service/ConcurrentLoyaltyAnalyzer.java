@@ -0,0 +1,148 @@
+package com.analytics.service;
+
+import com.analytics.collection.ConcurrentCustomerTable;
+import com.analytics.metrics.RunMetrics;
+import com.analytics.parser.FileRange;
+import com.analytics.parser.LogScanner;
+import com.analytics.parser.MalformedLineReport;
+import com.analytics.parser.ScanResult;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Splits both day files into newline-aligned ranges like ParallelLoyaltyAnalyzer, but every worker
+ * records straight into one shared ConcurrentCustomerTable instead of building a partial map,
+ * so there is no merge step and each customer is stored once.
+ * Both days are scanned at the same time; the table's CAS updates make the order irrelevant.
+ * Malformed lines are reported once all ranges are done, with line numbers relative to the whole file.
+ */
+public class ConcurrentLoyaltyAnalyzer implements LoyaltyAnalyzer {
+
+    private final LogScanner scanner;
+    private final int workers;
+
+    public ConcurrentLoyaltyAnalyzer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ConcurrentLoyaltyAnalyzer(int workers) {
+        this(workers, new LogScanner());
+    }
+
+    public ConcurrentLoyaltyAnalyzer(int workers, LogScanner scanner) {
+        if (workers < 1) throw new IllegalArgumentException("workers must be positive: " + workers);
+        this.workers = workers;
+        this.scanner = scanner;
+    }
+
+    @Override
+    public List<String> find(Path dayX, Path dayY) throws IOException {
+        List<String> loyal = new ArrayList<>();
+        find(dayX, dayY, LoyalCustomerSink.into(loyal));
+        return loyal;
+    }
+
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink) throws IOException {
+        return find(dayX, dayY, sink, RunMetrics.disabled());
+    }
+
+    /** Both days are scanned at once; each parse phase lasts until its last range has been reported. */
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink, RunMetrics metrics) throws IOException {
+        ConcurrentCustomerTable table = new ConcurrentCustomerTable();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            RunMetrics.PhaseTimer parseX = metrics.begin(RunMetrics.Phase.PARSE_DAY_X);
+            RunMetrics.PhaseTimer parseY = metrics.begin(RunMetrics.Phase.PARSE_DAY_Y);
+            List<Future<Range>> xRanges = submit(pool, table, dayX, ConcurrentCustomerTable.DAY_X);
+            List<Future<Range>> yRanges = submit(pool, table, dayY, ConcurrentCustomerTable.DAY_Y);
+            parseX.end(dayX, report(dayX, xRanges));
+            parseY.end(dayY, report(dayY, yRanges));
+            metrics.aggregateCustomers(table.size());
+
+            RunMetrics.PhaseTimer evaluate = metrics.begin(RunMetrics.Phase.EVALUATE);
+            long loyal = emitLoyal(table, sink);
+            evaluate.end();
+            return loyal;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static long emitLoyal(ConcurrentCustomerTable table, LoyalCustomerSink sink) throws IOException {
+        long[] loyal = new long[1];
+        try {
+            table.forEachLoyal((id, key) -> {
+                try {
+                    sink.accept(new String(key, StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                loyal[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return loyal[0];
+    }
+
+    private List<Future<Range>> submit(ExecutorService pool, ConcurrentCustomerTable table, Path file, int day)
+            throws IOException {
+        List<Future<Range>> ranges = new ArrayList<>();
+        for (FileRange range : scanner.split(file, workers)) {
+            ranges.add(pool.submit(() -> scan(table, file, range, day)));
+        }
+        return ranges;
+    }
+
+    private Range scan(ConcurrentCustomerTable table, Path file, FileRange range, int day) throws IOException {
+        MalformedLineReport malformed = scanner.policy().rangeReport(file);
+        ScanResult result = scanner.scan(file, range, cursor -> {
+            table.record(cursor.customerId(), cursor.pageId(), day);
+            return true;
+        }, malformed);
+        return new Range(result, malformed);
+    }
+
+    /**
+     * Waits for every range in file order and reports a sample of its malformed lines with file-relative numbers.
+     * Returns the scan totals of the whole file.
+     */
+    private ScanResult report(Path file, List<Future<Range>> ranges) throws IOException {
+        MalformedLineReport report = scanner.policy().newReport(file);
+        ScanResult total = new ScanResult(0, 0, 0, 0, 0);
+        for (Future<Range> future : ranges) {
+            Range range = await(future);
+            report.merge(range.malformed(), total.lines());
+            total = total.plus(range.scan());
+        }
+        report.finish(total.lines());
+        return total;
+    }
+
+    private static Range await(Future<Range> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a log range");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IOException("Failed to scan log range", e.getCause());
+        }
+    }
+
+    private record Range(ScanResult scan, MalformedLineReport malformed) {}
+}
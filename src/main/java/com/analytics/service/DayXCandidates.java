@@ -0,0 +1,132 @@
+package com.analytics.service;
+
+import com.analytics.collection.BloomFilter;
+import com.analytics.collection.ByteStringDictionary;
+import com.analytics.parser.LogCursor;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Day-X customers classified for a day-Y pass: multi-page customers are loyal on any day-Y visit,
+ * single-page ones only on a visit to a different page. Each customer is resolved at most once, so a day-Y
+ * pass (or a follower reading day Y as it grows) can emit it the moment it becomes loyal.
+ * State is kept per customer dictionary id; onlyPage is meaningful for single-page customers. Not thread-safe.
+ */
+final class DayXCandidates {
+
+    /** match result for a customer that is not (or no longer) a candidate. */
+    static final int NOT_A_CANDIDATE = -1;
+    /** match result for a single-page candidate seen again on its only page. */
+    static final int UNDECIDED = -2;
+
+    private static final double FILTER_FALSE_POSITIVE_RATE = 0.01;
+    private static final byte SINGLE_PAGE = 1;
+    private static final byte MULTI_PAGE = 2;
+    private static final byte RESOLVED = 3;
+
+    private final ByteStringDictionary customers = new ByteStringDictionary();
+    private final ByteStringDictionary pages = new ByteStringDictionary();
+    private byte[] state = new byte[1 << 10];
+    private int[] onlyPage = new int[1 << 10];
+    private int remaining;
+
+    /** Records one day-X visit. */
+    void record(LogCursor cursor) {
+        int customer = customers.intern(cursor.customerId());
+        if (customer == state.length) {
+            state = Arrays.copyOf(state, customer * 2);
+            onlyPage = Arrays.copyOf(onlyPage, customer * 2);
+        }
+        if (state[customer] == MULTI_PAGE) return;
+
+        int page = pages.intern(cursor.pageId());
+        if (state[customer] == 0) {
+            state[customer] = SINGLE_PAGE;
+            onlyPage[customer] = page;
+            remaining++;
+        } else if (onlyPage[customer] != page) {
+            state[customer] = MULTI_PAGE;
+        }
+    }
+
+    /**
+     * Applies one day-Y visit: returns the customer's id if this visit makes it loyal (it is then resolved),
+     * otherwise NOT_A_CANDIDATE or UNDECIDED.
+     */
+    int match(LogCursor cursor) {
+        int customer = customers.find(cursor.customerId());
+        if (customer < 0 || state[customer] == RESOLVED) return NOT_A_CANDIDATE;
+        if (state[customer] == SINGLE_PAGE && pages.find(cursor.pageId()) == onlyPage[customer]) return UNDECIDED;
+        state[customer] = RESOLVED;
+        remaining--;
+        return customer;
+    }
+
+    String customerId(int customer) {
+        return customers.decode(customer);
+    }
+
+    int size() {
+        return customers.size();
+    }
+
+    /** Candidates not yet resolved; a day-Y pass can stop once this reaches 0. */
+    int remaining() {
+        return remaining;
+    }
+
+    /** Filter over every day-X candidate, built once day X is complete and the count is known. */
+    BloomFilter membershipFilter() {
+        BloomFilter filter = new BloomFilter(customers.size(), FILTER_FALSE_POSITIVE_RATE);
+        for (int customer = 0; customer < customers.size(); customer++) filter.add(customers.bytes(customer));
+        return filter;
+    }
+
+    /** Writes the pages, then each customer with its state and page, in id order so read restores the same ids. */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(pages.size());
+        for (int page = 0; page < pages.size(); page++) writeKey(out, pages.bytes(page));
+        out.writeInt(customers.size());
+        for (int customer = 0; customer < customers.size(); customer++) {
+            writeKey(out, customers.bytes(customer));
+            out.writeByte(state[customer]);
+            out.writeInt(onlyPage[customer]);
+        }
+    }
+
+    /** Restores candidates saved by write; a malformed buffer surfaces as a RuntimeException. */
+    static DayXCandidates read(ByteBuffer in) {
+        DayXCandidates candidates = new DayXCandidates();
+        int pageCount = in.getInt();
+        for (int page = 0; page < pageCount; page++) candidates.pages.intern(readKey(in));
+        int customerCount = in.getInt();
+        candidates.state = new byte[Math.max(customerCount, 1 << 10)];
+        candidates.onlyPage = new int[candidates.state.length];
+        for (int customer = 0; customer < customerCount; customer++) {
+            if (candidates.customers.intern(readKey(in)) != customer) throw new IllegalStateException("Duplicate customer");
+            byte state = in.get();
+            int page = in.getInt();
+            if (state < SINGLE_PAGE || state > RESOLVED || page < 0 || page >= pageCount) {
+                throw new IllegalStateException("Invalid candidate " + customer);
+            }
+            candidates.state[customer] = state;
+            candidates.onlyPage[customer] = page;
+            if (state == SINGLE_PAGE || state == MULTI_PAGE) candidates.remaining++;
+        }
+        return candidates;
+    }
+
+    private static void writeKey(DataOutput out, byte[] key) throws IOException {
+        out.writeInt(key.length);
+        out.write(key);
+    }
+
+    private static byte[] readKey(ByteBuffer in) {
+        byte[] key = new byte[in.getInt()];
+        in.get(key);
+        return key;
+    }
+}
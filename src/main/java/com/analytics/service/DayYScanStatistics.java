@@ -0,0 +1,24 @@
+package com.analytics.service;
+
+/**
+ * How much of day Y StreamingLoyaltyAnalyzer actually had to look at.
+ *   records          — well-formed lines visited before the scan stopped
+ *   rejected         — records dismissed by the day-X membership filter without decoding any field
+ *   unmatched        — records that passed the filter but matched no remaining candidate
+ *   bytesScanned     — bytes of day Y read before the scan stopped (decompressed bytes for gzip input)
+ *   fileSize         — total size of day Y in the same unit, or -1 if a compressed scan exited before the end
+ *   exitedEarly      — true if the scan stopped because no candidates were left
+ */
+public record DayYScanStatistics(long records, long rejected, long unmatched,
+                                 long bytesScanned, long fileSize, boolean exitedEarly) {
+
+    /** Share of day-Y bytes never read thanks to early exit. */
+    public double skippedFraction() {
+        return fileSize <= 0 ? 0 : 1 - (double) bytesScanned / fileSize;
+    }
+
+    /** Share of visited records rejected by the filter alone. */
+    public double rejectedFraction() {
+        return records == 0 ? 0 : (double) rejected / records;
+    }
+}
@@ -0,0 +1,103 @@
+package com.analytics.service;
+
+import com.analytics.collection.ByteStringDictionary;
+import com.analytics.collection.LongHashSet;
+import com.analytics.metrics.RunMetrics;
+import com.analytics.parser.LogScanner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Same aggregation as InMemoryLoyaltyAnalyzer, stored without per-customer objects.
+ * customerId and pageId bytes are interned to dense ints on first sight, so the per-customer state
+ * lives in primitive arrays indexed by customer id: a byte of day bits and a distinct-page count.
+ * Distinct pages are tracked as packed (customer, page) pairs in a single LongHashSet.
+ * IDs are decoded back to Strings only for loyal customers.
+ */
+public class DictionaryLoyaltyAnalyzer implements LoyaltyAnalyzer {
+
+    private static final byte DAY_X = 1;
+    private static final byte DAY_Y = 2;
+    private static final int MIN_PAGES = 2;
+
+    private final LogScanner scanner;
+
+    public DictionaryLoyaltyAnalyzer() {
+        this(new LogScanner());
+    }
+
+    public DictionaryLoyaltyAnalyzer(LogScanner scanner) {
+        this.scanner = scanner;
+    }
+
+    @Override
+    public List<String> find(Path dayX, Path dayY) throws IOException {
+        List<String> loyal = new ArrayList<>();
+        find(dayX, dayY, LoyalCustomerSink.into(loyal));
+        return loyal;
+    }
+
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink) throws IOException {
+        return find(dayX, dayY, sink, RunMetrics.disabled());
+    }
+
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink, RunMetrics metrics) throws IOException {
+        Aggregate aggregate = new Aggregate();
+
+        RunMetrics.PhaseTimer parseX = metrics.begin(RunMetrics.Phase.PARSE_DAY_X);
+        parseX.end(dayX, scanner.scan(dayX, (buf, pageStart, pageEnd, customerStart, customerEnd) -> {
+            aggregate.record(buf, pageStart, pageEnd, customerStart, customerEnd, DAY_X);
+            return true;
+        }));
+        RunMetrics.PhaseTimer parseY = metrics.begin(RunMetrics.Phase.PARSE_DAY_Y);
+        parseY.end(dayY, scanner.scan(dayY, (buf, pageStart, pageEnd, customerStart, customerEnd) -> {
+            aggregate.record(buf, pageStart, pageEnd, customerStart, customerEnd, DAY_Y);
+            return true;
+        }));
+        metrics.aggregateCustomers(aggregate.customers.size());
+
+        RunMetrics.PhaseTimer evaluate = metrics.begin(RunMetrics.Phase.EVALUATE);
+        long loyal = aggregate.emitLoyal(sink);
+        evaluate.end();
+        return loyal;
+    }
+
+    /** Dense per-customer state keyed by dictionary id. */
+    private static final class Aggregate {
+        private final ByteStringDictionary customers = new ByteStringDictionary();
+        private final ByteStringDictionary pages = new ByteStringDictionary();
+        private final LongHashSet visits = new LongHashSet();
+        private byte[] days = new byte[1 << 10];
+        private int[] pageCounts = new int[1 << 10];
+
+        void record(ByteBuffer buf, int pageStart, int pageEnd, int customerStart, int customerEnd, byte day) {
+            int customer = customers.intern(buf, customerStart, customerEnd);
+            if (customer == days.length) {
+                days = Arrays.copyOf(days, customer * 2);
+                pageCounts = Arrays.copyOf(pageCounts, customer * 2);
+            }
+            days[customer] |= day;
+
+            int page = pages.intern(buf, pageStart, pageEnd);
+            if (visits.add(LongHashSet.pack(customer, page))) pageCounts[customer]++;
+        }
+
+        long emitLoyal(LoyalCustomerSink sink) throws IOException {
+            long loyal = 0;
+            for (int customer = 0; customer < customers.size(); customer++) {
+                if (days[customer] == (DAY_X | DAY_Y) && pageCounts[customer] >= MIN_PAGES) {
+                    sink.accept(customers.decode(customer));
+                    loyal++;
+                }
+            }
+            return loyal;
+        }
+    }
+}
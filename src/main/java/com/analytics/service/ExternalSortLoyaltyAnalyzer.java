@@ -0,0 +1,151 @@
+package com.analytics.service;
+
+import com.analytics.metrics.RunMetrics;
+import com.analytics.parser.LogScanner;
+import com.analytics.parser.ScanResult;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loyalty analysis for inputs whose distinct customers do not fit in the heap.
+ * Every visit of both days is fed to a VisitSorter, which keeps at most memoryBudget bytes of
+ * (customerId, pageId, day) records in memory and spills sorted runs to temp files beyond that.
+ * A k-way merge of the runs then yields each customer's visits contiguously, sorted by page,
+ * so loyalty is decided per customer in one sequential pass with constant state.
+ * Loyal customers are returned in unsigned byte order of their IDs. Run files are deleted after each find.
+ */
+public class ExternalSortLoyaltyAnalyzer implements LoyaltyAnalyzer {
+
+    public static final long DEFAULT_MEMORY_BUDGET = 256L << 20;
+    static final long MIN_MEMORY_BUDGET = 1 << 10;
+
+    private static final byte DAY_X = 1;
+    private static final byte DAY_Y = 2;
+    private static final int MIN_PAGES = 2;
+
+    private final LogScanner scanner;
+    private final long memoryBudget;
+    private final Path spillDirectory;
+    private volatile int lastSpilledRuns;
+
+    public ExternalSortLoyaltyAnalyzer() {
+        this(DEFAULT_MEMORY_BUDGET);
+    }
+
+    public ExternalSortLoyaltyAnalyzer(long memoryBudget) {
+        this(memoryBudget, Path.of(System.getProperty("java.io.tmpdir")));
+    }
+
+    /** memoryBudget bounds the sort buffer in bytes; runs are written under spillDirectory. */
+    public ExternalSortLoyaltyAnalyzer(long memoryBudget, Path spillDirectory) {
+        this(memoryBudget, spillDirectory, new LogScanner());
+    }
+
+    public ExternalSortLoyaltyAnalyzer(long memoryBudget, Path spillDirectory, LogScanner scanner) {
+        if (memoryBudget < MIN_MEMORY_BUDGET) {
+            throw new IllegalArgumentException("memoryBudget must be at least %d bytes: %d"
+                    .formatted(MIN_MEMORY_BUDGET, memoryBudget));
+        }
+        this.memoryBudget = memoryBudget;
+        this.spillDirectory = spillDirectory;
+        this.scanner = scanner;
+    }
+
+    @Override
+    public List<String> find(Path dayX, Path dayY) throws IOException {
+        List<String> loyal = new ArrayList<>();
+        find(dayX, dayY, LoyalCustomerSink.into(loyal));
+        return loyal;
+    }
+
+    /** Emits customers during the merge pass, in unsigned byte order of their IDs. */
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink) throws IOException {
+        return find(dayX, dayY, sink, RunMetrics.disabled());
+    }
+
+    /** The parse phases include spilling runs; evaluate covers the merge pass. */
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink, RunMetrics metrics) throws IOException {
+        try (VisitSorter sorter = new VisitSorter(memoryBudget, spillDirectory)) {
+            try {
+                RunMetrics.PhaseTimer parseX = metrics.begin(RunMetrics.Phase.PARSE_DAY_X);
+                parseX.end(dayX, sort(sorter, dayX, DAY_X));
+                RunMetrics.PhaseTimer parseY = metrics.begin(RunMetrics.Phase.PARSE_DAY_Y);
+                parseY.end(dayY, sort(sorter, dayY, DAY_Y));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            RunMetrics.PhaseTimer evaluate = metrics.begin(RunMetrics.Phase.EVALUATE);
+            try (VisitRun visits = sorter.finish()) {
+                lastSpilledRuns = sorter.spilledRuns();
+                long loyal = emitLoyal(visits, sink);
+                evaluate.end();
+                return loyal;
+            }
+        }
+    }
+
+    /** Number of runs spilled to disk by the most recent find; 0 if everything fitted in memory. */
+    public int lastSpilledRuns() {
+        return lastSpilledRuns;
+    }
+
+    private ScanResult sort(VisitSorter sorter, Path file, byte day) throws IOException {
+        return scanner.scan(file, cursor -> {
+            try {
+                sorter.add(cursor.customerId(), cursor.pageId(), day);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return true;
+        });
+    }
+
+    /** Walks the merged visits customer by customer, counting days and distinct pages. */
+    private static long emitLoyal(VisitRun visits, LoyalCustomerSink sink) throws IOException {
+        long loyal = 0;
+        byte[] customer = new byte[64];
+        int customerLength = -1;
+        byte[] page = new byte[64];
+        int pageLength = -1;
+        int days = 0;
+        int pages = 0;
+
+        while (visits.next()) {
+            if (customerLength < 0 || !visits.sameCustomer(customer, customerLength)) {
+                if (days == (DAY_X | DAY_Y) && pages >= MIN_PAGES) {
+                    sink.accept(new String(customer, 0, customerLength, StandardCharsets.UTF_8));
+                    loyal++;
+                }
+                customer = copy(visits.customer, visits.customerLength, customer);
+                customerLength = visits.customerLength;
+                pageLength = -1;
+                days = 0;
+                pages = 0;
+            }
+            days |= visits.day;
+            if (pages < MIN_PAGES && (pageLength < 0 || !visits.samePage(page, pageLength))) {
+                page = copy(visits.page, visits.pageLength, page);
+                pageLength = visits.pageLength;
+                pages++;
+            }
+        }
+        if (days == (DAY_X | DAY_Y) && pages >= MIN_PAGES) {
+            sink.accept(new String(customer, 0, customerLength, StandardCharsets.UTF_8));
+            loyal++;
+        }
+        return loyal;
+    }
+
+    private static byte[] copy(byte[] source, int length, byte[] target) {
+        if (target.length < length) target = new byte[Math.max(length, target.length * 2)];
+        System.arraycopy(source, 0, target, 0, length);
+        return target;
+    }
+}
@@ -1,38 +1,161 @@
 package com.analytics.service;
 
-import com.analytics.model.CustomerActivity;
-import com.analytics.model.LogRecord;
-import com.analytics.parser.LogParser;
+import com.analytics.metrics.RunMetrics;
+import com.analytics.model.CustomerStateStore;
+import com.analytics.model.DaySummary;
+import com.analytics.model.HeapCustomerStateStore;
+import com.analytics.parser.LogScanner;
+import com.analytics.parser.ScanResult;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
-/** Loads both log files into memory and aggregates customer activity before evaluating loyalty. */
+/**
+ * Loads both log files into memory and aggregates customer activity before evaluating loyalty.
+ * The two days are read and parsed at the same time, day X on a helper thread and day Y on the caller,
+ * each into its own DaySummary: customer to first page plus a multi-page flag, with customer and page bytes
+ * interned in per-day dictionaries, so neither scan waits for the other and no String is decoded while parsing.
+ * A join then walks the smaller summary and probes the larger one; a customer present in both is loyal if it
+ * saw two pages on either day or different first pages. Loyal customers are emitted in first-seen order of
+ * the smaller day.
+ * Customers are kept in a CustomerStateStore per day: on the heap by default, or in direct memory with
+ * OffHeapCustomerStateStore::new so that the heap does not grow with the number of customers; either way
+ * both stores are released when find returns.
+ */
 public class InMemoryLoyaltyAnalyzer implements LoyaltyAnalyzer {
 
-    private final LogParser parser = new LogParser();
+    private static final int MIN_PAGES = 2;
+
+    private final LogScanner scanner;
+    private final CustomerStateStore.Factory stores;
+
+    public InMemoryLoyaltyAnalyzer() {
+        this(HeapCustomerStateStore::new);
+    }
+
+    /** Keeps each day's customers in a store created by stores. */
+    public InMemoryLoyaltyAnalyzer(CustomerStateStore.Factory stores) {
+        this(stores, new LogScanner());
+    }
+
+    /** Reads both days with scanner, which carries the run's MalformedLinePolicy and TimeFilter. */
+    public InMemoryLoyaltyAnalyzer(CustomerStateStore.Factory stores, LogScanner scanner) {
+        this.stores = stores;
+        this.scanner = scanner;
+    }
 
     @Override
     public List<String> find(Path dayX, Path dayY) throws IOException {
-        Map<String, CustomerActivity> activities = new HashMap<>();
+        List<String> loyal = new ArrayList<>();
+        find(dayX, dayY, LoyalCustomerSink.into(loyal));
+        return loyal;
+    }
 
-        for (LogRecord r : parser.parseFile(dayX))
-            activities.computeIfAbsent(r.customerId(), CustomerActivity::new).recordDayX(r.pageId());
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink) throws IOException {
+        return find(dayX, dayY, sink, RunMetrics.disabled());
+    }
 
-        for (LogRecord r : parser.parseFile(dayY))
-            activities.computeIfAbsent(r.customerId(), CustomerActivity::new).recordDayY(r.pageId());
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink, RunMetrics metrics) throws IOException {
+        try (DaySummary summaryX = new DaySummary(MIN_PAGES, stores);
+             DaySummary summaryY = new DaySummary(MIN_PAGES, stores)) {
+            return find(dayX, dayY, summaryX, summaryY, sink, metrics);
+        }
+    }
 
-        List<String> loyal = new ArrayList<>();
-        for (CustomerActivity a : activities.values()) {
-            if (a.isLoyal()) {
-                loyal.add(a.customerId());
+    private long find(Path dayX, Path dayY, DaySummary summaryX, DaySummary summaryY, LoyalCustomerSink sink,
+                      RunMetrics metrics) throws IOException {
+        RunMetrics.PhaseTimer parseX = metrics.begin(RunMetrics.Phase.PARSE_DAY_X);
+        RunMetrics.PhaseTimer parseY = metrics.begin(RunMetrics.Phase.PARSE_DAY_Y);
+
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        ScanResult scanX;
+        ScanResult scanY;
+        try {
+            Future<ScanResult> pendingX = reader.submit(() -> summarize(dayX, summaryX, parseX));
+            scanY = summarize(dayY, summaryY, parseY);
+            scanX = await(pendingX);
+        } finally {
+            reader.shutdownNow();
+            awaitTermination(reader);
+        }
+        parseX.end(dayX, scanX);
+        parseY.end(dayY, scanY);
+
+        RunMetrics.PhaseTimer evaluate = metrics.begin(RunMetrics.Phase.EVALUATE);
+        boolean xIsSmaller = summaryX.customerCount() <= summaryY.customerCount();
+        DaySummary small = xIsSmaller ? summaryX : summaryY;
+        DaySummary large = xIsSmaller ? summaryY : summaryX;
+        Join join = join(small, large, sink);
+        metrics.aggregateCustomers(summaryX.customerCount() + summaryY.customerCount() - join.shared());
+        evaluate.end();
+        return join.loyal();
+    }
+
+    private ScanResult summarize(Path day, DaySummary summary, RunMetrics.PhaseTimer timer) throws IOException {
+        ScanResult result = scanner.scan(day, (buf, pageStart, pageEnd, customerStart, customerEnd) -> {
+            summary.record(buf, pageStart, pageEnd, customerStart, customerEnd);
+            return true;
+        });
+        timer.stop();
+        return result;
+    }
+
+    /** Emits the loyal customers of the pair; also counts the customers present on both days. */
+    private static Join join(DaySummary small, DaySummary large, LoyalCustomerSink sink) throws IOException {
+        // Page ids are per day; translate the smaller day's pages once instead of comparing bytes per customer.
+        int[] pageInLarge = new int[small.pageCount()];
+        for (int page = 0; page < pageInLarge.length; page++) pageInLarge[page] = large.findPage(small, page);
+
+        long loyal = 0;
+        long shared = 0;
+        for (int customer = 0; customer < small.customerCount(); customer++) {
+            int other = large.findCustomer(small, customer);
+            if (other < 0) continue;
+            shared++;
+            if (small.isSaturated(customer) || large.isSaturated(other)
+                    || pageInLarge[small.samplePage(customer, 0)] != large.samplePage(other, 0)) {
+                sink.accept(small.customerId(customer));
+                loyal++;
             }
         }
+        return new Join(loyal, shared);
+    }
 
-        return loyal;
+    /** Waits out a day X scan abandoned by a failure on day Y: its summary is released when find returns. */
+    private static void awaitTermination(ExecutorService reader) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (reader.awaitTermination(1, TimeUnit.MINUTES)) break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
     }
+
+    private static ScanResult await(Future<ScanResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading day X");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IOException("Reading day X failed", e.getCause());
+        }
+    }
+
+    private record Join(long loyal, long shared) {}
 }
@@ -0,0 +1,131 @@
+package com.analytics.service;
+
+import com.analytics.collection.ByteSlice;
+import com.analytics.collection.Hashing;
+import com.analytics.metrics.RunMetrics;
+import com.analytics.parser.LogScanner;
+import com.analytics.parser.ScanResult;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Scatters a pair of day logs into P partition pairs by hash of customerId, so every customer's
+ * lines from both days land in the same partition and each pair can be analyzed on its own.
+ * Partition files are plain logs ("timestamp pageId customerId" per line) that any LoyaltyAnalyzer
+ * can read; malformed and blank lines are dropped (and reported) while scattering.
+ */
+public final class LogPartitioner {
+
+    /** One self-contained pair of partition logs. */
+    public record Partition(int index, Path dayX, Path dayY) {}
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final LogScanner scanner;
+    private final int partitions;
+
+    public LogPartitioner(int partitions) {
+        this(partitions, new LogScanner());
+    }
+
+    /** Reads the input with scanner, so lines it filters out or finds malformed are not written to any partition. */
+    public LogPartitioner(int partitions, LogScanner scanner) {
+        if (partitions < 1) throw new IllegalArgumentException("partitions must be positive: " + partitions);
+        this.partitions = partitions;
+        this.scanner = scanner;
+    }
+
+    public int partitions() {
+        return partitions;
+    }
+
+    /** Partition of a customerId; stable across runs and processes. */
+    public static int partitionOf(ByteSlice customerId, int partitions) {
+        return (int) Long.remainderUnsigned(Hashing.hash64(customerId), partitions);
+    }
+
+    /** Writes day-x-N.log and day-y-N.log for every partition N into directory. */
+    public List<Partition> scatter(Path dayX, Path dayY, Path directory) throws IOException {
+        return scatter(dayX, dayY, directory, RunMetrics.disabled());
+    }
+
+    /** Like scatter(dayX, dayY, directory), recording the scan of each day as its parse phase. */
+    public List<Partition> scatter(Path dayX, Path dayY, Path directory, RunMetrics metrics) throws IOException {
+        List<Partition> result = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            result.add(new Partition(i, directory.resolve("day-x-%d.log".formatted(i)),
+                    directory.resolve("day-y-%d.log".formatted(i))));
+        }
+        RunMetrics.PhaseTimer parseX = metrics.begin(RunMetrics.Phase.PARSE_DAY_X);
+        parseX.end(dayX, scatter(dayX, result.stream().map(Partition::dayX).toList()));
+        RunMetrics.PhaseTimer parseY = metrics.begin(RunMetrics.Phase.PARSE_DAY_Y);
+        parseY.end(dayY, scatter(dayY, result.stream().map(Partition::dayY).toList()));
+        return result;
+    }
+
+    private ScanResult scatter(Path log, List<Path> targets) throws IOException {
+        OutputStream[] outputs = new OutputStream[targets.size()];
+        try {
+            for (int i = 0; i < outputs.length; i++) {
+                outputs[i] = new BufferedOutputStream(Files.newOutputStream(targets.get(i)), WRITE_BUFFER_SIZE);
+            }
+            LineWriter writer = new LineWriter();
+            return scanner.scan(log, cursor -> {
+                ByteSlice customer = cursor.customerId();
+                writer.write(outputs[partitionOf(customer, outputs.length)], cursor.timestamp(), cursor.pageId(), customer);
+                return true;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            closeAll(outputs);
+        }
+    }
+
+    private static void closeAll(OutputStream[] outputs) throws IOException {
+        IOException failure = null;
+        for (OutputStream out : outputs) {
+            if (out == null) continue;
+            try {
+                out.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /** Re-serialises the three fields into a reused line buffer. */
+    private static final class LineWriter {
+        private byte[] line = new byte[256];
+
+        void write(OutputStream out, ByteSlice timestamp, ByteSlice page, ByteSlice customer) {
+            int length = timestamp.length() + page.length() + customer.length() + 3;
+            if (line.length < length) line = Arrays.copyOf(line, Math.max(length, line.length * 2));
+            int position = put(timestamp, 0);
+            line[position++] = ' ';
+            position = put(page, position);
+            line[position++] = ' ';
+            position = put(customer, position);
+            line[position++] = '\n';
+            try {
+                out.write(line, 0, position);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private int put(ByteSlice slice, int position) {
+            slice.buffer().get(slice.start(), line, position, slice.length());
+            return position + slice.length();
+        }
+    }
+}
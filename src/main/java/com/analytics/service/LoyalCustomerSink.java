@@ -0,0 +1,28 @@
+package com.analytics.service;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/** Receives loyal customer IDs one at a time, as soon as an analyzer has decided them. */
+@FunctionalInterface
+public interface LoyalCustomerSink {
+
+    void accept(String customerId) throws IOException;
+
+    /** Called by long-running producers (LoyaltyFollower) after each batch; buffering sinks push IDs out here. */
+    default void flush() throws IOException {
+    }
+
+    /**
+     * Called before a checkpoint records how many IDs were emitted: the IDs so far must survive a crash,
+     * so a sink writing to a file forces them to disk here. Defaults to flush.
+     */
+    default void sync() throws IOException {
+        flush();
+    }
+
+    /** Sink that adds every ID to target. */
+    static LoyalCustomerSink into(Collection<String> target) {
+        return target::add;
+    }
+}
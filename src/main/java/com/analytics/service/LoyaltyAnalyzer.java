@@ -1,5 +1,7 @@
 package com.analytics.service;
 
+import com.analytics.metrics.RunMetrics;
+
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
@@ -9,4 +11,23 @@ public interface LoyaltyAnalyzer {
 
     List<String> find(Path dayX, Path dayY) throws IOException;
 
+    /**
+     * Emits every loyal customer to sink and returns how many were emitted.
+     * Implementations that decide customers one by one emit them as they go instead of building a list;
+     * the default simply forwards the result of find(dayX, dayY).
+     */
+    default long find(Path dayX, Path dayY, LoyalCustomerSink sink) throws IOException {
+        List<String> loyal = find(dayX, dayY);
+        for (String customerId : loyal) sink.accept(customerId);
+        return loyal.size();
+    }
+
+    /**
+     * Like find(dayX, dayY, sink), additionally recording phase timings, scan totals and state sizes into metrics.
+     * The caller owns metrics and ends the run with RunMetrics.finish; the default records nothing beyond that.
+     */
+    default long find(Path dayX, Path dayY, LoyalCustomerSink sink, RunMetrics metrics) throws IOException {
+        return find(dayX, dayY, sink);
+    }
+
 }
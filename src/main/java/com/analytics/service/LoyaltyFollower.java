@@ -0,0 +1,167 @@
+package com.analytics.service;
+
+import com.analytics.parser.FileRange;
+import com.analytics.parser.LogCursor;
+import com.analytics.parser.LogScanner;
+import com.analytics.parser.MalformedLinePolicy;
+import com.analytics.parser.MalformedLineReport;
+import com.analytics.parser.ScanResult;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.logging.Logger;
+
+/**
+ * Follow mode: classifies day X once, as StreamingLoyaltyAnalyzer does, then reads the live day-Y log by byte
+ * offset as it grows and emits each customer the moment a new visit makes it loyal.
+ * Each poll scans only the complete lines appended since the previous one; a partial trailing line is left for
+ * the next poll. If the file shrinks (truncation) or another file appears at its path (rotation, detected by
+ * file key where the file system has one), reading restarts at offset 0; customers already emitted are never
+ * emitted again. A missing day-Y file is treated as not yet created. Lines must end with \n, and compressed
+ * logs cannot be followed. Polling is used rather than a WatchService, which is itself polled on several
+ * platforms and reports nothing for files on network mounts. Not thread-safe: one thread polls.
+ */
+public class LoyaltyFollower {
+
+    private static final Logger LOGGER = Logger.getLogger(LoyaltyFollower.class.getName());
+    private static final int TAIL_BLOCK = 8192;
+
+    private final LogScanner scanner;
+    private final DayXCandidates candidates = new DayXCandidates();
+    private final Path dayY;
+    private final LoyalCustomerSink sink;
+    private MalformedLineReport malformed;
+    private Object fileKey;
+    private long position;
+    private long lines;
+    private long loyal;
+
+    /** Scans dayX in full; dayY need not exist yet. */
+    public LoyaltyFollower(Path dayX, Path dayY, LoyalCustomerSink sink) throws IOException {
+        this(dayX, dayY, sink, new LogScanner());
+    }
+
+    /** Reads both days with scanner, whose MalformedLinePolicy also applies to day Y as it grows. */
+    public LoyaltyFollower(Path dayX, Path dayY, LoyalCustomerSink sink, LogScanner scanner) throws IOException {
+        this.scanner = scanner;
+        scanner.scan(dayX, (LogCursor cursor) -> {
+            candidates.record(cursor);
+            return true;
+        });
+        this.dayY = dayY;
+        this.sink = sink;
+        this.malformed = scanner.policy().newReport(dayY);
+    }
+
+    /** Reads the complete lines appended to day Y since the last poll; returns how many customers became loyal. */
+    public long poll() throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(dayY, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+        Object key = attributes.fileKey();
+        if (position > 0 && (attributes.size() < position || !Objects.equals(key, fileKey))) {
+            LOGGER.info(() -> "%s was %s at offset %d, reading it again from the start"
+                    .formatted(dayY.getFileName(), attributes.size() < position ? "truncated" : "replaced", position));
+            position = 0;
+            lines = 0;
+            malformed = scanner.policy().newReport(dayY);
+        }
+        fileKey = key;
+        if (attributes.size() <= position) return 0;
+        if (position == 0 && LogScanner.isCompressed(dayY)) throw new IOException("Cannot follow compressed log " + dayY);
+
+        long end = lastLineEnd(position);
+        if (end == position) return 0;
+        MalformedLineReport range = scanner.policy().rangeReport(dayY);
+        long before = loyal;
+        ScanResult result;
+        try {
+            result = scanner.scan(dayY, new FileRange(position, end), (LogCursor cursor) -> {
+                int customer = candidates.match(cursor);
+                if (customer >= 0) emit(candidates.customerId(customer));
+                return true;
+            }, range);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        malformed.merge(range, lines);
+        lines += result.lines();
+        position = end;
+        malformed.check(lines);
+        return loyal - before;
+    }
+
+    /**
+     * Polls every interval until the thread is interrupted, flushing the sink after each poll that emitted;
+     * returns the number of loyal customers emitted in total. Each poll fails once day Y has more malformed
+     * lines than the scanner's MalformedLinePolicy allows, and the malformed lines are summarized on the way out.
+     */
+    public long follow(Duration interval) throws IOException {
+        while (!Thread.currentThread().isInterrupted()) {
+            if (poll() > 0) sink.flush();
+            try {
+                Thread.sleep(interval.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        malformed.finish(lines);
+        return loyal;
+    }
+
+    /** Byte offset of day Y up to which lines have been read. */
+    public long position() {
+        return position;
+    }
+
+    /** Loyal customers emitted so far. */
+    public long loyalCustomers() {
+        return loyal;
+    }
+
+    /** Day-X candidates not yet seen loyal on day Y. */
+    public int remainingCandidates() {
+        return candidates.remaining();
+    }
+
+    private void emit(String customerId) {
+        try {
+            sink.accept(customerId);
+            loyal++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** End of the last complete line after from: one past the last \n, or from if there is none yet. */
+    private long lastLineEnd(long from) throws IOException {
+        try (FileChannel channel = FileChannel.open(dayY, StandardOpenOption.READ)) {
+            ByteBuffer block = ByteBuffer.allocate(TAIL_BLOCK);
+            long end = channel.size();
+            while (end > from) {
+                long start = Math.max(from, end - TAIL_BLOCK);
+                block.clear().limit((int) (end - start));
+                while (block.hasRemaining()) {
+                    if (channel.read(block, start + block.position()) < 0) break;
+                }
+                for (int i = block.position() - 1; i >= 0; i--) {
+                    if (block.get(i) == '\n') return start + i + 1;
+                }
+                end = start;
+            }
+            return from;
+        }
+    }
+}
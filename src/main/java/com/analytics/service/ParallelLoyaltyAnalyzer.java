@@ -0,0 +1,150 @@
+package com.analytics.service;
+
+import com.analytics.metrics.RunMetrics;
+import com.analytics.model.CustomerActivity;
+import com.analytics.parser.FileRange;
+import com.analytics.parser.LogScanner;
+import com.analytics.parser.MalformedLineReport;
+import com.analytics.parser.ScanResult;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.analytics.parser.LogScanner.decode;
+
+/**
+ * Same aggregation as InMemoryLoyaltyAnalyzer, but each day file is split into newline-aligned
+ * byte ranges that are scanned concurrently by a fixed pool of workers.
+ * Every range produces its own partial customer map; the partial maps are merged on the calling
+ * thread once all ranges are done, so workers never share mutable state.
+ * Malformed lines are reported after the merge, with line numbers relative to the whole file.
+ */
+public class ParallelLoyaltyAnalyzer implements LoyaltyAnalyzer {
+
+    private final LogScanner scanner;
+    private final int workers;
+
+    public ParallelLoyaltyAnalyzer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelLoyaltyAnalyzer(int workers) {
+        this(workers, new LogScanner());
+    }
+
+    public ParallelLoyaltyAnalyzer(int workers, LogScanner scanner) {
+        if (workers < 1) throw new IllegalArgumentException("workers must be positive: " + workers);
+        this.workers = workers;
+        this.scanner = scanner;
+    }
+
+    @Override
+    public List<String> find(Path dayX, Path dayY) throws IOException {
+        List<String> loyal = new ArrayList<>();
+        find(dayX, dayY, LoyalCustomerSink.into(loyal));
+        return loyal;
+    }
+
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink) throws IOException {
+        return find(dayX, dayY, sink, RunMetrics.disabled());
+    }
+
+    /** Both days are scanned at once; each parse phase lasts until its last chunk has been merged. */
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink, RunMetrics metrics) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            RunMetrics.PhaseTimer parseX = metrics.begin(RunMetrics.Phase.PARSE_DAY_X);
+            RunMetrics.PhaseTimer parseY = metrics.begin(RunMetrics.Phase.PARSE_DAY_Y);
+            List<Future<Chunk>> xChunks = submitChunks(pool, dayX, true);
+            List<Future<Chunk>> yChunks = submitChunks(pool, dayY, false);
+
+            Map<String, CustomerActivity> activities = new HashMap<>();
+            parseX.end(dayX, merge(dayX, xChunks, activities));
+            parseY.end(dayY, merge(dayY, yChunks, activities));
+            metrics.aggregateCustomers(activities.size());
+
+            RunMetrics.PhaseTimer evaluate = metrics.begin(RunMetrics.Phase.EVALUATE);
+            long loyal = 0;
+            for (CustomerActivity a : activities.values()) {
+                if (a.isLoyal()) {
+                    sink.accept(a.customerId());
+                    loyal++;
+                }
+            }
+            evaluate.end();
+            return loyal;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private List<Future<Chunk>> submitChunks(ExecutorService pool, Path file, boolean dayX) throws IOException {
+        List<Future<Chunk>> chunks = new ArrayList<>();
+        for (FileRange range : scanner.split(file, workers)) {
+            chunks.add(pool.submit(() -> scanChunk(file, range, dayX)));
+        }
+        return chunks;
+    }
+
+    private Chunk scanChunk(Path file, FileRange range, boolean dayX) throws IOException {
+        Map<String, CustomerActivity> partial = new HashMap<>();
+        MalformedLineReport malformed = scanner.policy().rangeReport(file);
+
+        ScanResult result = scanner.scan(file, range, (buf, pageStart, pageEnd, customerStart, customerEnd) -> {
+            CustomerActivity activity = partial.computeIfAbsent(decode(buf, customerStart, customerEnd), CustomerActivity::new);
+            String pageId = decode(buf, pageStart, pageEnd);
+            if (dayX) {
+                activity.recordDayX(pageId);
+            } else {
+                activity.recordDayY(pageId);
+            }
+            return true;
+        }, malformed);
+
+        return new Chunk(partial, result, malformed);
+    }
+
+    /**
+     * Merges chunks in file order, reporting a sample of their malformed lines with file-relative line numbers.
+     * Returns the scan totals of the whole file.
+     */
+    private ScanResult merge(Path file, List<Future<Chunk>> chunks, Map<String, CustomerActivity> activities)
+            throws IOException {
+        MalformedLineReport report = scanner.policy().newReport(file);
+        ScanResult total = new ScanResult(0, 0, 0, 0, 0);
+        for (Future<Chunk> future : chunks) {
+            Chunk chunk = await(future);
+            chunk.activities().forEach((customerId, activity) -> activities.merge(customerId, activity, CustomerActivity::merge));
+            report.merge(chunk.malformed(), total.lines());
+            total = total.plus(chunk.scan());
+        }
+        report.finish(total.lines());
+        return total;
+    }
+
+    private static Chunk await(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a log chunk");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IOException("Failed to scan log chunk", e.getCause());
+        }
+    }
+
+    private record Chunk(Map<String, CustomerActivity> activities, ScanResult scan, MalformedLineReport malformed) {}
+}
@@ -0,0 +1,159 @@
+package com.analytics.service;
+
+import com.analytics.metrics.RunMetrics;
+import com.analytics.parser.LogScanner;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Splits the problem by customer: both days are scattered into P partition pairs by hash of customerId
+ * (LogPartitioner), then each pair is analyzed independently by a fresh delegate analyzer.
+ * With one worker peak memory is roughly 1/P of analyzing the whole pair at once; with W workers, W/P.
+ * Results are concatenated in partition order; a sink receives each partition's customers as soon as
+ * that partition and all before it are done. Partition files live in a temp directory that is
+ * deleted after each find.
+ */
+public class PartitionedLoyaltyAnalyzer implements LoyaltyAnalyzer {
+
+    public static final int DEFAULT_PARTITIONS = 16;
+
+    private final LogPartitioner partitioner;
+    private final int workers;
+    private final Supplier<? extends LoyaltyAnalyzer> delegate;
+    private final Path tempDirectory;
+
+    public PartitionedLoyaltyAnalyzer() {
+        this(DEFAULT_PARTITIONS, 1);
+    }
+
+    public PartitionedLoyaltyAnalyzer(int partitions, int workers) {
+        this(partitions, workers, new LogScanner());
+    }
+
+    public PartitionedLoyaltyAnalyzer(int partitions, int workers, LogScanner scanner) {
+        this(partitions, workers, InMemoryLoyaltyAnalyzer::new, Path.of(System.getProperty("java.io.tmpdir")), scanner);
+    }
+
+    public PartitionedLoyaltyAnalyzer(int partitions, int workers, Supplier<? extends LoyaltyAnalyzer> delegate,
+                                      Path tempDirectory) {
+        this(partitions, workers, delegate, tempDirectory, new LogScanner());
+    }
+
+    /**
+     * scanner reads the input while it is scattered; the partitions hold only the lines it kept, so delegates
+     * need no filter or malformed line policy of their own.
+     */
+    public PartitionedLoyaltyAnalyzer(int partitions, int workers, Supplier<? extends LoyaltyAnalyzer> delegate,
+                                      Path tempDirectory, LogScanner scanner) {
+        if (workers < 1) throw new IllegalArgumentException("workers must be positive: " + workers);
+        this.partitioner = new LogPartitioner(partitions, scanner);
+        this.workers = workers;
+        this.delegate = delegate;
+        this.tempDirectory = tempDirectory;
+    }
+
+    @Override
+    public List<String> find(Path dayX, Path dayY) throws IOException {
+        List<String> loyal = new ArrayList<>();
+        find(dayX, dayY, LoyalCustomerSink.into(loyal));
+        return loyal;
+    }
+
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink) throws IOException {
+        return find(dayX, dayY, sink, RunMetrics.disabled());
+    }
+
+    /** The parse phases cover scattering the input; evaluate covers analyzing the partitions. */
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink, RunMetrics metrics) throws IOException {
+        Path directory = Files.createTempDirectory(tempDirectory, "loyalty-partitions");
+        try {
+            List<LogPartitioner.Partition> partitions = partitioner.scatter(dayX, dayY, directory, metrics);
+            RunMetrics.PhaseTimer evaluate = metrics.begin(RunMetrics.Phase.EVALUATE);
+            long loyal = workers == 1 ? analyzeSequentially(partitions, sink) : analyzeConcurrently(partitions, sink);
+            evaluate.end();
+            return loyal;
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private long analyzeSequentially(List<LogPartitioner.Partition> partitions, LoyalCustomerSink sink)
+            throws IOException {
+        long loyal = 0;
+        for (LogPartitioner.Partition partition : partitions) {
+            loyal += delegate.get().find(partition.dayX(), partition.dayY(), sink);
+        }
+        return loyal;
+    }
+
+    private long analyzeConcurrently(List<LogPartitioner.Partition> partitions, LoyalCustomerSink sink)
+            throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(workers, partitions.size()));
+        try {
+            List<Future<List<String>>> results = new ArrayList<>(partitions.size());
+            for (LogPartitioner.Partition partition : partitions) results.add(pool.submit(() -> analyze(partition)));
+
+            long loyal = 0;
+            for (Future<List<String>> result : results) {
+                List<String> partitionLoyal = await(result);
+                for (String customerId : partitionLoyal) sink.accept(customerId);
+                loyal += partitionLoyal.size();
+            }
+            return loyal;
+        } finally {
+            pool.shutdownNow();
+            awaitTermination(pool);
+        }
+    }
+
+    /** Waits out partitions still running after another failed, so their files are not deleted under them. */
+    private static void awaitTermination(ExecutorService pool) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (pool.awaitTermination(1, TimeUnit.MINUTES)) break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private List<String> analyze(LogPartitioner.Partition partition) throws IOException {
+        return delegate.get().find(partition.dayX(), partition.dayY());
+    }
+
+    private static List<String> await(Future<List<String>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a partition");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IOException("Failed to analyze partition", e.getCause());
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(directory);
+    }
+}
@@ -0,0 +1,126 @@
+package com.analytics.service;
+
+import com.analytics.metrics.RunMetrics;
+import com.analytics.model.DaySummary;
+import com.analytics.model.LoyaltyRule;
+import com.analytics.parser.LogScanner;
+import com.analytics.parser.ScanResult;
+import com.analytics.snapshot.SnapshotStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Loyalty over the last N days: "visited on at least minDays of the last N days and saw at least
+ * minPages distinct pages across them".
+ * Each day file is parsed exactly once into a DaySummary; adding a day only scans the new file and
+ * drops the oldest summary once the window is full. Evaluation merges the retained summaries,
+ * so its cost depends on the number of customers in the window, not on the size of the raw logs.
+ * With a SnapshotStore, summaries are also persisted, so a log is parsed once across runs as well.
+ */
+public class RollingLoyaltyWindow {
+
+    private final LogScanner scanner;
+    private final int windowDays;
+    private final LoyaltyRule rule;
+    private final Deque<DaySummary> days = new ArrayDeque<>();
+    private final SnapshotStore snapshots;
+
+    public RollingLoyaltyWindow(int windowDays, LoyaltyRule rule) {
+        this(windowDays, rule, null);
+    }
+
+    /** snapshots may be null to always parse raw logs. */
+    public RollingLoyaltyWindow(int windowDays, LoyaltyRule rule, SnapshotStore snapshots) {
+        this(windowDays, rule, snapshots, new LogScanner());
+    }
+
+    public RollingLoyaltyWindow(int windowDays, LoyaltyRule rule, SnapshotStore snapshots, LogScanner scanner) {
+        if (windowDays < 1) throw new IllegalArgumentException("windowDays must be positive: " + windowDays);
+        if (rule.minDays() > windowDays) {
+            throw new IllegalArgumentException("minDays %d exceeds the %d-day window".formatted(rule.minDays(), windowDays));
+        }
+        this.windowDays = windowDays;
+        this.rule = rule;
+        this.snapshots = snapshots;
+        this.scanner = scanner;
+    }
+
+    /** Summarizes one day file for this window's rule, from its snapshot when a current one exists. */
+    public DaySummary summarize(Path dayLog) throws IOException {
+        return summarize(dayLog, RunMetrics.PhaseTimer.NOOP);
+    }
+
+    /** Like summarize(dayLog), ending timer with the scan totals, or with none if the snapshot was current. */
+    public DaySummary summarize(Path dayLog, RunMetrics.PhaseTimer timer) throws IOException {
+        ScanResult[] scan = new ScanResult[1];
+        DaySummary summary = snapshots == null
+                ? parse(dayLog, scan)
+                : snapshots.loadOrSummarize(dayLog, rule.minPages(), log -> parse(log, scan));
+        timer.end(dayLog, scan[0]);
+        return summary;
+    }
+
+    private DaySummary parse(Path dayLog, ScanResult[] scan) throws IOException {
+        DaySummary summary = new DaySummary(rule.minPages());
+        scan[0] = scanner.scan(dayLog, (buf, pageStart, pageEnd, customerStart, customerEnd) -> {
+            summary.record(buf, pageStart, pageEnd, customerStart, customerEnd);
+            return true;
+        });
+        return summary;
+    }
+
+    /** Parses dayLog and appends it as the newest day. */
+    public void addDay(Path dayLog) throws IOException {
+        addDay(summarize(dayLog));
+    }
+
+    /** Like addDay(dayLog), timing the parse with timer. */
+    public void addDay(Path dayLog, RunMetrics.PhaseTimer timer) throws IOException {
+        addDay(summarize(dayLog, timer));
+    }
+
+    /** Appends a summary as the newest day, evicting the oldest one if the window is full. */
+    public void addDay(DaySummary summary) {
+        if (summary.pageLimit() != rule.minPages()) {
+            throw new IllegalArgumentException("Summary tracks %d pages, rule needs %d"
+                    .formatted(summary.pageLimit(), rule.minPages()));
+        }
+        days.addLast(summary);
+        if (days.size() > windowDays) days.removeFirst();
+    }
+
+    public int size() {
+        return days.size();
+    }
+
+    public LoyaltyRule rule() {
+        return rule;
+    }
+
+    public List<String> loyalCustomers() {
+        DaySummary merged = new DaySummary(rule.minPages());
+        int[] dayCounts = new int[1 << 10];
+
+        for (DaySummary day : days) {
+            for (int customer = 0; customer < day.customerCount(); customer++) {
+                int id = merged.absorb(day, customer);
+                if (id == dayCounts.length) dayCounts = Arrays.copyOf(dayCounts, id * 2);
+                dayCounts[id]++;
+            }
+        }
+
+        List<String> loyal = new ArrayList<>();
+        for (int id = 0; id < merged.customerCount(); id++) {
+            if (dayCounts[id] >= rule.minDays() && merged.distinctPages(id) >= rule.minPages()) {
+                loyal.add(merged.customerId(id));
+            }
+        }
+        return loyal;
+    }
+}
@@ -1,106 +1,219 @@
 package com.analytics.service;
 
-import com.analytics.model.LogRecord;
-import com.analytics.parser.LogParser;
+import com.analytics.collection.BloomFilter;
+import com.analytics.metrics.RunMetrics;
+import com.analytics.parser.FileRange;
+import com.analytics.parser.LogScanner;
+import com.analytics.parser.MalformedLineReport;
+import com.analytics.parser.RecordVisitor;
+import com.analytics.parser.ScanResult;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
 
 /**
  * Alternative implementation included for reference only.
  * Identifies loyal customers from two daily log files.
  * A customer is loyal if they appear on both days and visit at least 2 unique pages in total.
  * The algorithm runs in two phases:
- *   1. Parse day X — build two candidate collections:
- *        multiPage  (Set) — customers with 2+ unique pages; loyal on any day Y appearance
- *        singlePage (Map) — customers with exactly 1 unique page, mapped to that page;
- *                           loyal only if they visit a different page on day Y
- *   2. Stream day Y — match entries against the candidate collections, collecting loyal IDs.
- *      Stops early once both collections are empty.
- * Neither file is fully loaded into memory; both are streamed line by line.
+ *   1. Parse day X — classify each customer as a candidate:
+ *        multi-page  — customers with 2+ unique pages; loyal on any day Y appearance
+ *        single-page — customers with exactly 1 unique page, remembered with that page;
+ *                      loyal only if they visit a different page on day Y
+ *   2. Stream day Y — match entries against the candidates, emitting each loyal ID as soon as it is matched.
+ *      A Bloom filter over all day-X candidates rejects unknown customers before any lookup.
+ *      Stops early once every candidate has been resolved.
+ * Each day-Y pass records DayYScanStatistics (filter rejections, early-exit position).
+ * With a CheckpointStore the run saves its position and candidates periodically (and once day X is done),
+ * and a later run over the same unchanged pair resumes there; customers emitted after the last checkpoint
+ * are emitted again by the resumed run. Statistics then cover only the resumed part of day Y.
+ * Neither file is fully loaded into memory; both are scanned line by line through a reused LogCursor.
+ * Customer and page bytes are interned into dictionaries, so the only Strings built are the loyal IDs.
  * Expected log format (whitespace-separated): timestamp pageId customerId
  */
 public class StreamingLoyaltyAnalyzer implements LoyaltyAnalyzer {
 
-    private final LogParser parser = new LogParser();
+    private static final Logger LOGGER = Logger.getLogger(StreamingLoyaltyAnalyzer.class.getName());
+    private static final long UNKNOWN_SIZE = -1;
+
+    private final LogScanner scanner;
+    private final CheckpointStore checkpoints;
+    private volatile DayYScanStatistics lastDayYStatistics;
+
+    public StreamingLoyaltyAnalyzer() {
+        this(null);
+    }
+
+    /** checkpoints may be null to run without them; otherwise an interrupted run resumes from its last one. */
+    public StreamingLoyaltyAnalyzer(CheckpointStore checkpoints) {
+        this(checkpoints, new LogScanner());
+    }
+
+    public StreamingLoyaltyAnalyzer(CheckpointStore checkpoints, LogScanner scanner) {
+        this.checkpoints = checkpoints;
+        this.scanner = scanner;
+    }
 
     @Override
     public List<String> find(Path dayX, Path dayY) throws IOException {
-        Map<String, String> singlePage = new HashMap<>();
-        Set<String> multiPage = new HashSet<>();
+        List<String> loyal = new ArrayList<>();
+        find(dayX, dayY, LoyalCustomerSink.into(loyal));
+        return loyal;
+    }
 
-        classifyDayXCustomers(dayX, singlePage, multiPage);
+    /** Emits each loyal customer during the day-Y pass, the moment its visit is matched. */
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink) throws IOException {
+        return find(dayX, dayY, sink, RunMetrics.disabled());
+    }
 
-        List<String> loyal = new ArrayList<>();
+    /** Day Y is both parsed and evaluated in one pass, so its time is reported as PARSE_DAY_Y. */
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink, RunMetrics metrics) throws IOException {
+        CheckpointStore.Checkpoint resumed = checkpoints == null ? null : checkpoints.load(dayX, dayY).orElse(null);
+        if (resumed != null) {
+            LOGGER.info(() -> "Resuming %s and %s from the checkpoint at offset %d of day %s"
+                    .formatted(dayX.getFileName(), dayY.getFileName(), resumed.offset(),
+                            resumed.phase() == CheckpointStore.DAY_X ? "X" : "Y"));
+        }
+        DayXCandidates candidates = resumed != null ? resumed.candidates() : new DayXCandidates();
+        long[] counts = new long[4]; // records, rejected, unmatched, loyal
+        if (resumed != null) counts[3] = resumed.loyal();
+        Progress progress = checkpoints == null ? null : new Progress(dayX, dayY, candidates, sink, () -> counts[3]);
+
+        if (resumed == null || resumed.phase() == CheckpointStore.DAY_X) {
+            RunMetrics.PhaseTimer parseX = metrics.begin(RunMetrics.Phase.PARSE_DAY_X);
+            parseX.end(dayX, scan(dayX, CheckpointStore.DAY_X, resumed, cursor -> {
+                candidates.record(cursor);
+                return true;
+            }, progress));
+            if (progress != null) progress.save(CheckpointStore.DAY_Y, 0, 0);
+        }
+        metrics.candidateCustomers(candidates.size());
+
+        boolean compressed = LogScanner.isCompressed(dayY);
+        long fileSize = compressed ? UNKNOWN_SIZE : Files.size(dayY);
+        if (candidates.remaining() == 0) {
+            lastDayYStatistics = new DayYScanStatistics(0, 0, 0, 0, fileSize, fileSize != 0);
+            if (checkpoints != null) checkpoints.delete(dayX, dayY);
+            return counts[3];
+        }
+
+        BloomFilter dayXCustomers = candidates.membershipFilter();
 
-        try (BufferedReader reader = Files.newBufferedReader(dayY)) {
-            String line;
-            int lineNumber = 0;
-            while ((line = reader.readLine()) != null && !(multiPage.isEmpty() && singlePage.isEmpty())) {
-                lineNumber++;
-                String trimmed = line.strip();
-                if (trimmed.isEmpty()) continue;
-
-                Optional<LogRecord> entry = parser.parseFileLine(trimmed, lineNumber, dayY);
-                if (entry.isEmpty()) continue;
-
-                String pageId = entry.get().pageId();
-                String customerId = entry.get().customerId();
-
-                if (multiPage.remove(customerId)) {
-                    loyal.add(customerId);
-                } else {
-                    String onlyPage = singlePage.get(customerId);
-                    if (onlyPage != null && !onlyPage.equals(pageId)) {
-                        singlePage.remove(customerId);
-                        loyal.add(customerId);
-                    }
-                }
+        RunMetrics.PhaseTimer parseY = metrics.begin(RunMetrics.Phase.PARSE_DAY_Y);
+        ScanResult result = scan(dayY, CheckpointStore.DAY_Y, resumed, cursor -> {
+            counts[0]++;
+            if (!dayXCustomers.mightContain(cursor.customerId())) {
+                counts[1]++;
+                return true;
             }
-        }
+            int customer = candidates.match(cursor);
+            if (customer == DayXCandidates.NOT_A_CANDIDATE) {
+                counts[2]++;
+            } else if (customer >= 0) {
+                emit(sink, candidates.customerId(customer));
+                counts[3]++;
+            }
+            return candidates.remaining() > 0;
+        }, progress);
+
+        parseY.end(dayY, result);
+        boolean exitedEarly = candidates.remaining() == 0;
+        if (exitedEarly) metrics.earlyExit(result.bytes());
+        if (compressed && !exitedEarly) fileSize = result.bytes();
+        DayYScanStatistics statistics = new DayYScanStatistics(counts[0], counts[1], counts[2],
+                result.bytes(), fileSize, exitedEarly);
+        lastDayYStatistics = statistics;
+        LOGGER.fine(() -> "Day Y scan of %s: %s".formatted(dayY.getFileName(), statistics));
+        if (checkpoints != null) checkpoints.delete(dayX, dayY);
+
+        return counts[3];
+    }
 
-        return loyal;
+    /** Statistics of the most recent day-Y pass, or null before the first find. */
+    public DayYScanStatistics lastDayYStatistics() {
+        return lastDayYStatistics;
     }
 
     /**
-     * Reads day-X logs and populates the two candidate collections.
-     * Customers promoted to multiPage are removed from singlePage.
+     * Scans one day, letting sink failures raised inside the visitor surface as the IOException they are.
+     * With checkpoints an uncompressed day is scanned a segment at a time from the resumed offset, saving a
+     * checkpoint between segments whenever one is due; a compressed day can only be scanned, and resumed, whole.
      */
-    private void classifyDayXCustomers(Path file, Map<String, String> singlePage, Set<String> multiPage)
-            throws IOException {
-        try (BufferedReader reader = Files.newBufferedReader(file)) {
-            String line;
-            int lineNumber = 0;
-            while ((line = reader.readLine()) != null) {
-                lineNumber++;
-                String trimmed = line.strip();
-                if (trimmed.isEmpty()) continue;
-
-                Optional<LogRecord> entry = parser.parseFileLine(trimmed, lineNumber, file);
-                if (entry.isEmpty()) continue;
-
-                String pageId = entry.get().pageId();
-                String customerId = entry.get().customerId();
-
-                if (multiPage.contains(customerId)) continue;
-
-                String prev = singlePage.get(customerId);
-                if (prev == null) {
-                    singlePage.put(customerId, pageId);
-                } else if (!prev.equals(pageId)) {
-                    singlePage.remove(customerId);
-                    multiPage.add(customerId);
-                }
+    private ScanResult scan(Path day, int phase, CheckpointStore.Checkpoint resumed, RecordVisitor visitor,
+                            Progress progress) throws IOException {
+        try {
+            if (progress == null || LogScanner.isCompressed(day)) return scanner.scan(day, visitor);
+            boolean resuming = resumed != null && resumed.phase() == phase;
+            long position = resuming ? resumed.offset() : 0;
+            long lines = resuming ? resumed.lines() : 0;
+            long size = Files.size(day);
+            MalformedLineReport malformed = scanner.policy().newReport(day);
+            ScanResult total = new ScanResult(0, 0, 0, 0, 0);
+            while (position < size) {
+                FileRange segment = scanner.alignedRange(day, position, position + checkpoints.segmentBytes());
+                MalformedLineReport range = scanner.policy().rangeReport(day);
+                ScanResult result = scanner.scan(day, segment, visitor, range);
+                malformed.merge(range, lines);
+                total = total.plus(result);
+                lines += result.lines();
+                position = segment.end();
+                if (result.bytes() < segment.length()) break;
+                progress.scanned(phase, position, lines, result.bytes());
             }
+            malformed.finish(total.lines());
+            return total;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void emit(LoyalCustomerSink sink, String customerId) {
+        try {
+            sink.accept(customerId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Bytes and time since the last checkpoint of one run, and what goes into the next. */
+    private final class Progress {
+
+        private final Path dayX;
+        private final Path dayY;
+        private final DayXCandidates candidates;
+        private final LoyalCustomerSink sink;
+        private final LongSupplier loyal;
+        private long bytes;
+        private long lastSave = System.nanoTime();
+
+        Progress(Path dayX, Path dayY, DayXCandidates candidates, LoyalCustomerSink sink, LongSupplier loyal) {
+            this.dayX = dayX;
+            this.dayY = dayY;
+            this.candidates = candidates;
+            this.sink = sink;
+            this.loyal = loyal;
+        }
+
+        void scanned(int phase, long offset, long lines, long segmentBytes) throws IOException {
+            bytes += segmentBytes;
+            if (checkpoints.due(bytes, Duration.ofNanos(System.nanoTime() - lastSave))) save(phase, offset, lines);
+        }
+
+        /** The sink is synced first, so every ID counted in the checkpoint is on disk before the checkpoint is. */
+        void save(int phase, long offset, long lines) throws IOException {
+            sink.sync();
+            checkpoints.save(dayX, dayY, new CheckpointStore.Checkpoint(phase, offset, lines, loyal.getAsLong(), candidates));
+            bytes = 0;
+            lastSave = System.nanoTime();
         }
     }
 }
@@ -0,0 +1,53 @@
+package com.analytics.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Forward-only cursor over (customerId, pageId, day) visits in ascending order:
+ * customerId bytes, then pageId bytes (both unsigned), then day.
+ * The current visit is held in reusable buffers that are overwritten by next().
+ */
+abstract class VisitRun implements Closeable {
+
+    byte[] customer = new byte[64];
+    int customerLength;
+    byte[] page = new byte[64];
+    int pageLength;
+    byte day;
+
+    /** Advances to the next visit; false once the run is exhausted. */
+    abstract boolean next() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    int compareTo(VisitRun other) {
+        int c = Arrays.compareUnsigned(customer, 0, customerLength, other.customer, 0, other.customerLength);
+        if (c != 0) return c;
+        c = Arrays.compareUnsigned(page, 0, pageLength, other.page, 0, other.pageLength);
+        return c != 0 ? c : Byte.compare(day, other.day);
+    }
+
+    boolean sameCustomer(byte[] bytes, int length) {
+        return Arrays.equals(customer, 0, customerLength, bytes, 0, length);
+    }
+
+    boolean samePage(byte[] bytes, int length) {
+        return Arrays.equals(page, 0, pageLength, bytes, 0, length);
+    }
+
+    void setCustomer(byte[] source, int offset, int length) {
+        if (customer.length < length) customer = new byte[Math.max(length, customer.length * 2)];
+        System.arraycopy(source, offset, customer, 0, length);
+        customerLength = length;
+    }
+
+    void setPage(byte[] source, int offset, int length) {
+        if (page.length < length) page = new byte[Math.max(length, page.length * 2)];
+        System.arraycopy(source, offset, page, 0, length);
+        pageLength = length;
+    }
+}
@@ -0,0 +1,314 @@
+package com.analytics.service;
+
+import com.analytics.collection.ByteSlice;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+/**
+ * Sorts (customerId, pageId, day) visits under a memory budget.
+ * Visits are packed into a byte arena with an int offset per visit; when either reaches its share
+ * of the budget the buffer is sorted and spilled to a temp file as a run (duplicates removed).
+ * finish() merges the spilled runs with the final in-memory buffer, which is never written out.
+ * More than MAX_FAN_IN runs are first merged in groups, so open files and read buffers stay bounded too.
+ * Record layout, both in the arena and in run files: int customerLength, customer bytes, byte day,
+ * int pageLength, page bytes.
+ */
+final class VisitSorter implements Closeable {
+
+    static final int MAX_FAN_IN = 64;
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+    private static final int RECORD_OVERHEAD = 4 + 1 + 4;
+    private static final int INITIAL_ARENA_SIZE = 1 << 16;
+
+    private final int arenaLimit;
+    private final int maxRecords;
+    private final Path spillParent;
+
+    private byte[] arena = new byte[0];
+    private int used;
+    private int[] offsets = new int[0];
+    private int count;
+
+    private Path spillDirectory;
+    private final List<Path> runs = new ArrayList<>();
+    private int spilledRuns;
+
+    /** Three quarters of memoryBudget go to the arena, the rest to the offsets. */
+    VisitSorter(long memoryBudget, Path spillParent) {
+        this.arenaLimit = (int) Math.min(memoryBudget / 4 * 3, Integer.MAX_VALUE - 8);
+        this.maxRecords = (int) Math.min(memoryBudget / 4 / Integer.BYTES, Integer.MAX_VALUE - 8);
+        this.spillParent = spillParent;
+    }
+
+    void add(ByteSlice customer, ByteSlice page, byte day) throws IOException {
+        int size = RECORD_OVERHEAD + customer.length() + page.length();
+        if (size > arenaLimit) {
+            throw new IOException("A %d byte visit exceeds the sort buffer of %d bytes".formatted(size, arenaLimit));
+        }
+        if (used + size > arenaLimit || count == maxRecords) spill();
+        if (used + size > arena.length) {
+            arena = Arrays.copyOf(arena, (int) Math.min(arenaLimit, Math.max((long) used + size, Math.max(INITIAL_ARENA_SIZE, arena.length * 2L))));
+        }
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, (int) Math.min(maxRecords, Math.max(1024, offsets.length * 2L)));
+        }
+
+        offsets[count++] = used;
+        used = putBytes(customer, used);
+        arena[used++] = day;
+        used = putBytes(page, used);
+    }
+
+    /** Number of runs written to disk so far, including intermediate merges. */
+    int spilledRuns() {
+        return spilledRuns;
+    }
+
+    /** Sorts what is still buffered and returns a cursor over all visits in order. */
+    VisitRun finish() throws IOException {
+        sort(0, count);
+        VisitRun memory = new MemoryRun();
+        if (runs.isEmpty()) return memory;
+
+        while (runs.size() + 1 > MAX_FAN_IN) {
+            List<Path> group = new ArrayList<>(runs.subList(0, MAX_FAN_IN));
+            runs.subList(0, MAX_FAN_IN).clear();
+            try (VisitRun merged = merge(group, null)) {
+                runs.add(write(merged));
+            }
+            for (Path run : group) Files.delete(run);
+        }
+        return merge(runs, memory);
+    }
+
+    /** Deletes every run file; the sorter cannot be used afterwards. */
+    @Override
+    public void close() throws IOException {
+        if (spillDirectory == null) return;
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(spillDirectory);
+        spillDirectory = null;
+    }
+
+    private void spill() throws IOException {
+        sort(0, count);
+        runs.add(write(new MemoryRun()));
+        used = 0;
+        count = 0;
+    }
+
+    /** Writes a sorted run to a new file, dropping consecutive duplicates. */
+    private Path write(VisitRun visits) throws IOException {
+        if (spillDirectory == null) spillDirectory = Files.createTempDirectory(spillParent, "loyalty-runs");
+        Path file = Files.createTempFile(spillDirectory, "run", ".bin");
+        VisitRun previous = new Scratch();
+        previous.customerLength = -1;
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), IO_BUFFER_SIZE))) {
+            while (visits.next()) {
+                if (previous.customerLength >= 0 && visits.compareTo(previous) == 0) continue;
+                out.writeInt(visits.customerLength);
+                out.write(visits.customer, 0, visits.customerLength);
+                out.writeByte(visits.day);
+                out.writeInt(visits.pageLength);
+                out.write(visits.page, 0, visits.pageLength);
+                previous.setCustomer(visits.customer, 0, visits.customerLength);
+                previous.setPage(visits.page, 0, visits.pageLength);
+                previous.day = visits.day;
+            }
+        }
+        spilledRuns++;
+        return file;
+    }
+
+    private VisitRun merge(List<Path> files, VisitRun memory) throws IOException {
+        List<VisitRun> sources = new ArrayList<>(files.size() + 1);
+        try {
+            for (Path file : files) sources.add(new FileRun(file));
+        } catch (IOException e) {
+            for (VisitRun source : sources) source.close();
+            throw e;
+        }
+        if (memory != null) sources.add(memory);
+        return new MergedRun(sources);
+    }
+
+    private int putBytes(ByteSlice slice, int position) {
+        int length = slice.length();
+        arena[position] = (byte) (length >>> 24);
+        arena[position + 1] = (byte) (length >>> 16);
+        arena[position + 2] = (byte) (length >>> 8);
+        arena[position + 3] = (byte) length;
+        slice.buffer().get(slice.start(), arena, position + 4, length);
+        return position + 4 + length;
+    }
+
+    private int getInt(int position) {
+        return (arena[position] & 0xFF) << 24 | (arena[position + 1] & 0xFF) << 16
+                | (arena[position + 2] & 0xFF) << 8 | (arena[position + 3] & 0xFF);
+    }
+
+    /** Compares the visits at two arena offsets: customer, then page, then day. */
+    private int compare(int a, int b) {
+        int customerA = getInt(a);
+        int customerB = getInt(b);
+        int c = Arrays.compareUnsigned(arena, a + 4, a + 4 + customerA, arena, b + 4, b + 4 + customerB);
+        if (c != 0) return c;
+        int dayA = a + 4 + customerA;
+        int dayB = b + 4 + customerB;
+        c = Arrays.compareUnsigned(arena, dayA + 5, dayA + 5 + getInt(dayA + 1), arena, dayB + 5, dayB + 5 + getInt(dayB + 1));
+        return c != 0 ? c : Byte.compare(arena[dayA], arena[dayB]);
+    }
+
+    /** Quicksort of offsets[from, to); recurses into the smaller half so the stack stays logarithmic. */
+    private void sort(int from, int to) {
+        while (to - from > 16) {
+            int pivot = offsets[medianOfThree(from, from + (to - from) / 2, to - 1)];
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                while (compare(offsets[i], pivot) < 0) i++;
+                while (compare(offsets[j], pivot) > 0) j--;
+                if (i <= j) swap(i++, j--);
+            }
+            if (j - from < to - i) {
+                sort(from, j + 1);
+                from = i;
+            } else {
+                sort(i, to);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && compare(offsets[j - 1], offsets[j]) > 0; j--) swap(j - 1, j);
+        }
+    }
+
+    private int medianOfThree(int a, int b, int c) {
+        if (compare(offsets[a], offsets[b]) > 0) { int t = a; a = b; b = t; }
+        if (compare(offsets[b], offsets[c]) > 0) b = c;
+        return compare(offsets[a], offsets[b]) > 0 ? a : b;
+    }
+
+    private void swap(int i, int j) {
+        int t = offsets[i];
+        offsets[i] = offsets[j];
+        offsets[j] = t;
+    }
+
+    /** The sorted arena, read in place; valid until the next add. */
+    private final class MemoryRun extends VisitRun {
+        private int index;
+
+        @Override
+        boolean next() {
+            if (index >= count) return false;
+            int position = offsets[index++];
+            int customerLength = getInt(position);
+            setCustomer(arena, position + 4, customerLength);
+            position += 4 + customerLength;
+            day = arena[position];
+            setPage(arena, position + 5, getInt(position + 1));
+            return true;
+        }
+    }
+
+    /** Holds a copy of a visit; never advances. */
+    private static final class Scratch extends VisitRun {
+        @Override
+        boolean next() {
+            return false;
+        }
+    }
+
+    private static final class FileRun extends VisitRun {
+        private final DataInputStream in;
+
+        FileRun(Path file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), IO_BUFFER_SIZE));
+        }
+
+        @Override
+        boolean next() throws IOException {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            if (customer.length < length) customer = new byte[length];
+            in.readFully(customer, 0, length);
+            customerLength = length;
+            day = in.readByte();
+            length = in.readInt();
+            if (page.length < length) page = new byte[length];
+            in.readFully(page, 0, length);
+            pageLength = length;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /** k-way merge of sorted runs through a heap ordered by each run's current visit. */
+    private static final class MergedRun extends VisitRun {
+        private final List<VisitRun> sources;
+        private final PriorityQueue<VisitRun> heap;
+        private VisitRun current;
+        private boolean started;
+
+        MergedRun(List<VisitRun> sources) {
+            this.sources = sources;
+            this.heap = new PriorityQueue<>(Math.max(1, sources.size()), VisitRun::compareTo);
+        }
+
+        @Override
+        boolean next() throws IOException {
+            if (!started) {
+                started = true;
+                for (VisitRun source : sources) {
+                    if (source.next()) heap.add(source);
+                }
+            } else if (current != null && current.next()) {
+                heap.add(current);
+            }
+            current = heap.poll();
+            if (current == null) return false;
+            setCustomer(current.customer, 0, current.customerLength);
+            setPage(current.page, 0, current.pageLength);
+            day = current.day;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (VisitRun source : sources) {
+                try {
+                    source.close();
+                } catch (IOException e) {
+                    if (failure == null) failure = e;
+                }
+            }
+            if (failure != null) throw failure;
+        }
+    }
+}
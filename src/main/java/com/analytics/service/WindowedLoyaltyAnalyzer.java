@@ -0,0 +1,61 @@
+package com.analytics.service;
+
+import com.analytics.metrics.RunMetrics;
+import com.analytics.model.LoyaltyRule;
+import com.analytics.parser.LogScanner;
+import com.analytics.snapshot.SnapshotStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The two-day LoyaltyAnalyzer contract expressed as a two-day RollingLoyaltyWindow.
+ * With a SnapshotStore, day Y's summary is saved so tomorrow's run loads it as day X instead of re-parsing.
+ */
+public class WindowedLoyaltyAnalyzer implements LoyaltyAnalyzer {
+
+    private final SnapshotStore snapshots;
+    private final LogScanner scanner;
+
+    public WindowedLoyaltyAnalyzer() {
+        this(null);
+    }
+
+    /** snapshots may be null to always parse raw logs. */
+    public WindowedLoyaltyAnalyzer(SnapshotStore snapshots) {
+        this(snapshots, new LogScanner());
+    }
+
+    public WindowedLoyaltyAnalyzer(SnapshotStore snapshots, LogScanner scanner) {
+        this.snapshots = snapshots;
+        this.scanner = scanner;
+    }
+
+    @Override
+    public List<String> find(Path dayX, Path dayY) throws IOException {
+        List<String> loyal = new ArrayList<>();
+        find(dayX, dayY, LoyalCustomerSink.into(loyal));
+        return loyal;
+    }
+
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink) throws IOException {
+        return find(dayX, dayY, sink, RunMetrics.disabled());
+    }
+
+    /** A day loaded from its snapshot records its parse time but no scan totals. */
+    @Override
+    public long find(Path dayX, Path dayY, LoyalCustomerSink sink, RunMetrics metrics) throws IOException {
+        RollingLoyaltyWindow window = new RollingLoyaltyWindow(2, LoyaltyRule.DEFAULT, snapshots, scanner);
+        window.addDay(dayX, metrics.begin(RunMetrics.Phase.PARSE_DAY_X));
+        window.addDay(dayY, metrics.begin(RunMetrics.Phase.PARSE_DAY_Y));
+
+        RunMetrics.PhaseTimer evaluate = metrics.begin(RunMetrics.Phase.EVALUATE);
+        List<String> loyal = window.loyalCustomers();
+        for (String customerId : loyal) sink.accept(customerId);
+        evaluate.end();
+        return loyal.size();
+    }
+}
@@ -0,0 +1,114 @@
+package com.analytics.snapshot;
+
+import com.analytics.collection.HyperLogLog;
+import com.analytics.model.DaySketch;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary format of a DaySketch (big-endian):
+ *   header:  magic "LDSK", version, capacity, source log size, source log mtime (ms),
+ *            sample threshold, sample size, body length, CRC32 of the body
+ *   body:    HyperLogLog register count and registers,
+ *            then per sampled customer: customer hash, first page hash, multi-page flag
+ * A sketch is a few megabytes at most, so it is read into the heap rather than mapped.
+ */
+public final class DaySketchCodec {
+
+    static final int MAGIC = 0x4C44534B;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 4 + 4 + 4 + 8 + 8 + 8 + 4 + 8 + 8;
+
+    private DaySketchCodec() {
+    }
+
+    /** Writes sketch to target, streaming the body and filling in the header last. */
+    public static void write(DaySketch sketch, DaySummaryCodec.Source source, Path target) throws IOException {
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_BYTES);
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), new CRC32());
+            DataOutputStream body = new DataOutputStream(checked);
+
+            byte[] registers = sketch.customers().toByteArray();
+            body.writeInt(registers.length);
+            body.write(registers);
+            try {
+                sketch.forEachSample((customer, page, multiPage) -> {
+                    try {
+                        body.writeLong(customer);
+                        body.writeLong(page);
+                        body.writeBoolean(multiPage);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            body.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(sketch.capacity())
+                    .putLong(source.size())
+                    .putLong(source.lastModifiedMillis())
+                    .putLong(sketch.threshold())
+                    .putInt(sketch.sampleSize())
+                    .putLong(channel.size() - HEADER_BYTES)
+                    .putLong(checked.getChecksum().getValue())
+                    .flip();
+            while (header.hasRemaining()) channel.write(header, header.position());
+        }
+    }
+
+    /** Reads only the header fields needed to decide whether a sketch is usable. */
+    public static DaySummaryCodec.Source readSource(ByteBuffer sketch) throws IOException {
+        checkHeader(sketch);
+        return new DaySummaryCodec.Source(sketch.getLong(12), sketch.getLong(20));
+    }
+
+    /** Decodes a sketch, verifying magic, version and checksum. */
+    public static DaySketch read(ByteBuffer buffer) throws IOException {
+        checkHeader(buffer);
+        int capacity = buffer.getInt(8);
+        long threshold = buffer.getLong(28);
+        int sampleSize = buffer.getInt(36);
+        long bodyLength = buffer.getLong(40);
+        long checksum = buffer.getLong(48);
+        if (bodyLength != buffer.limit() - HEADER_BYTES) throw new IOException("Truncated sketch");
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(HEADER_BYTES));
+        if (crc.getValue() != checksum) throw new IOException("Sketch checksum mismatch");
+
+        try {
+            ByteBuffer body = buffer.duplicate().position(HEADER_BYTES);
+            byte[] registers = new byte[body.getInt()];
+            body.get(registers);
+            DaySketch sketch = new DaySketch(capacity, threshold, HyperLogLog.fromByteArray(registers));
+            for (int i = 0; i < sampleSize; i++) sketch.addSample(body.getLong(), body.getLong(), body.get() != 0);
+            if (body.hasRemaining()) throw new IOException("Trailing bytes after the sample");
+            return sketch;
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed sketch body", e);
+        }
+    }
+
+    private static void checkHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) throw new IOException("Not a day sketch");
+        if (buffer.getInt(4) != VERSION) throw new IOException("Unsupported sketch version " + buffer.getInt(4));
+    }
+}
@@ -0,0 +1,156 @@
+package com.analytics.snapshot;
+
+import com.analytics.model.DaySummary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary format of a DaySummary snapshot (big-endian):
+ *   header:  magic "LDSS", version, pageLimit, source log size, source log mtime (ms),
+ *            customer count, page count, body length, CRC32 of the body
+ *   body:    page dictionary    — per page: length, bytes (in page id order)
+ *            customer dictionary — per customer, sorted by unsigned customerId bytes:
+ *                                  length, bytes, sample size (-1 = saturated), sampled page ids
+ * With the default page limit of 2 the sample is the first page id, and saturation is the multi-page flag.
+ * Snapshots are read through a memory mapping and must be smaller than 2 GB.
+ */
+public final class DaySummaryCodec {
+
+    static final int MAGIC = 0x4C445353;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 4 + 4 + 4 + 8 + 8 + 4 + 4 + 8 + 8;
+
+    private DaySummaryCodec() {
+    }
+
+    /** Identity of the raw log a snapshot was built from; a mismatch means the snapshot is stale. */
+    public record Source(long size, long lastModifiedMillis) {}
+
+    /** Writes summary to target, streaming the body and filling in the header last. */
+    public static void write(DaySummary summary, Source source, Path target) throws IOException {
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_BYTES);
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), new CRC32());
+            DataOutputStream body = new DataOutputStream(checked);
+
+            for (int page = 0; page < summary.pageCount(); page++) {
+                writeBytes(body, summary.pageBytes(page));
+            }
+            for (int customer : sortedCustomers(summary)) {
+                writeBytes(body, summary.customerBytes(customer));
+                if (summary.isSaturated(customer)) {
+                    body.writeByte(-1);
+                } else {
+                    int size = summary.distinctPages(customer);
+                    body.writeByte(size);
+                    for (int i = 0; i < size; i++) body.writeInt(summary.samplePage(customer, i));
+                }
+            }
+            body.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(summary.pageLimit())
+                    .putLong(source.size())
+                    .putLong(source.lastModifiedMillis())
+                    .putInt(summary.customerCount())
+                    .putInt(summary.pageCount())
+                    .putLong(channel.size() - HEADER_BYTES)
+                    .putLong(checked.getChecksum().getValue())
+                    .flip();
+            while (header.hasRemaining()) channel.write(header, header.position());
+        }
+    }
+
+    /** Reads only the header fields needed to decide whether a snapshot is usable. */
+    public static Source readSource(ByteBuffer snapshot) throws IOException {
+        checkHeader(snapshot);
+        return new Source(snapshot.getLong(12), snapshot.getLong(20));
+    }
+
+    /** Maps snapshot and decodes it, verifying magic, version, page limit and checksum. */
+    public static DaySummary read(Path snapshot, int expectedPageLimit) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Snapshot larger than 2 GB: " + snapshot);
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), expectedPageLimit);
+        }
+    }
+
+    public static DaySummary read(ByteBuffer buffer, int expectedPageLimit) throws IOException {
+        checkHeader(buffer);
+        int pageLimit = buffer.getInt(8);
+        if (pageLimit != expectedPageLimit) {
+            throw new IOException("Snapshot tracks %d pages, %d required".formatted(pageLimit, expectedPageLimit));
+        }
+        int customerCount = buffer.getInt(28);
+        int pageCount = buffer.getInt(32);
+        long bodyLength = buffer.getLong(36);
+        long checksum = buffer.getLong(44);
+        if (bodyLength != buffer.limit() - HEADER_BYTES) throw new IOException("Truncated snapshot");
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(HEADER_BYTES));
+        if (crc.getValue() != checksum) throw new IOException("Snapshot checksum mismatch");
+
+        try {
+            ByteBuffer body = buffer.duplicate().position(HEADER_BYTES);
+            DaySummary summary = new DaySummary(pageLimit);
+            for (int page = 0; page < pageCount; page++) {
+                if (summary.internPage(readBytes(body)) != page) throw new IOException("Duplicate page in snapshot");
+            }
+            for (int i = 0; i < customerCount; i++) {
+                int customer = summary.internCustomer(readBytes(body));
+                int size = body.get();
+                if (size < 0) {
+                    summary.saturate(customer);
+                } else {
+                    for (int j = 0; j < size; j++) summary.addPage(customer, checkPage(body.getInt(), pageCount));
+                }
+            }
+            return summary;
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed snapshot body", e);
+        }
+    }
+
+    private static void checkHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) throw new IOException("Not a day summary snapshot");
+        if (buffer.getInt(4) != VERSION) throw new IOException("Unsupported snapshot version " + buffer.getInt(4));
+    }
+
+    private static int checkPage(int page, int pageCount) throws IOException {
+        if (page < 0 || page >= pageCount) throw new IOException("Page id out of range: " + page);
+        return page;
+    }
+
+    private static Integer[] sortedCustomers(DaySummary summary) {
+        Integer[] order = new Integer[summary.customerCount()];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, summary::compareCustomers);
+        return order;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuffer body) {
+        byte[] bytes = new byte[body.getInt()];
+        body.get(bytes);
+        return bytes;
+    }
+}
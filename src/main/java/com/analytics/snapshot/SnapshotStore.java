@@ -0,0 +1,139 @@
+package com.analytics.snapshot;
+
+import com.analytics.model.DaySketch;
+import com.analytics.model.DaySummary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+import java.util.logging.Logger;
+
+/**
+ * Directory of DaySummary snapshots, and DaySketches for approximate counting, keyed by raw log file.
+ * A snapshot is only used if it was built from a log with the same size and modification time and
+ * for the same page limit; missing, stale and corrupt snapshots are reported and ignored, so callers
+ * fall back to parsing the raw log. Snapshots are written to a temporary file and moved into place.
+ */
+public class SnapshotStore {
+
+    private static final Logger LOGGER = Logger.getLogger(SnapshotStore.class.getName());
+    private static final String SUFFIX = ".summary";
+    private static final String SKETCH_SUFFIX = ".sketch";
+
+    private final Path directory;
+
+    public SnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /** Snapshot location for log. */
+    public Path snapshotPath(Path log) {
+        return path(log, SUFFIX);
+    }
+
+    public Path sketchPath(Path log) {
+        return path(log, SKETCH_SUFFIX);
+    }
+
+    /** Returns the snapshot of log if one exists and is current, otherwise empty. */
+    public Optional<DaySummary> load(Path log, int pageLimit) throws IOException {
+        Path snapshot = snapshotPath(log);
+        if (!Files.exists(snapshot)) return Optional.empty();
+
+        DaySummaryCodec.Source source = sourceOf(log);
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Snapshot larger than 2 GB");
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (!DaySummaryCodec.readSource(mapped).equals(source)) {
+                LOGGER.info("Ignoring stale snapshot %s of %s".formatted(snapshot.getFileName(), log.getFileName()));
+                return Optional.empty();
+            }
+            return Optional.of(DaySummaryCodec.read(mapped, pageLimit));
+        } catch (IOException e) {
+            LOGGER.warning("Ignoring unusable snapshot %s: %s".formatted(snapshot.getFileName(), e.getMessage()));
+            return Optional.empty();
+        }
+    }
+
+    /** Writes the summary of log, replacing any previous snapshot atomically. */
+    public void save(Path log, DaySummary summary) throws IOException {
+        replace(snapshotPath(log), temp -> DaySummaryCodec.write(summary, sourceOf(log), temp));
+    }
+
+    /** Returns the sketch of log if one exists and is current, otherwise empty. */
+    public Optional<DaySketch> loadSketch(Path log) throws IOException {
+        Path sketch = sketchPath(log);
+        if (!Files.exists(sketch)) return Optional.empty();
+
+        DaySummaryCodec.Source source = sourceOf(log);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(sketch));
+            if (!DaySketchCodec.readSource(buffer).equals(source)) {
+                LOGGER.info("Ignoring stale sketch %s of %s".formatted(sketch.getFileName(), log.getFileName()));
+                return Optional.empty();
+            }
+            return Optional.of(DaySketchCodec.read(buffer));
+        } catch (IOException e) {
+            LOGGER.warning("Ignoring unusable sketch %s: %s".formatted(sketch.getFileName(), e.getMessage()));
+            return Optional.empty();
+        }
+    }
+
+    /** Writes the sketch of log, replacing any previous one atomically. */
+    public void saveSketch(Path log, DaySketch sketch) throws IOException {
+        replace(sketchPath(log), temp -> DaySketchCodec.write(sketch, sourceOf(log), temp));
+    }
+
+    /** Loads the snapshot of log, or summarizes the raw log and saves a snapshot of the result. */
+    public DaySummary loadOrSummarize(Path log, int pageLimit, Summarizer summarizer) throws IOException {
+        Optional<DaySummary> cached = load(log, pageLimit);
+        if (cached.isPresent()) return cached.get();
+
+        DaySummary summary = summarizer.summarize(log);
+        save(log, summary);
+        return summary;
+    }
+
+    /** The hash of the absolute path keeps same-named logs apart. */
+    private Path path(Path log, String suffix) {
+        String key = Integer.toHexString(log.toAbsolutePath().normalize().toString().hashCode());
+        return directory.resolve(log.getFileName() + "-" + key + suffix);
+    }
+
+    private void replace(Path target, Writer writer) throws IOException {
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            writer.write(temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static DaySummaryCodec.Source sourceOf(Path log) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(log, BasicFileAttributes.class);
+        return new DaySummaryCodec.Source(attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(Path temp) throws IOException;
+    }
+
+    /** Parses a raw log into a DaySummary. */
+    @FunctionalInterface
+    public interface Summarizer {
+        DaySummary summarize(Path log) throws IOException;
+    }
+}
@@ -0,0 +1,97 @@
+package com.analytics;
+
+import com.analytics.parser.LogScanner;
+import com.analytics.service.AdaptiveLoyaltyAnalyzer;
+import com.analytics.service.InMemoryLoyaltyAnalyzer;
+import com.analytics.service.LoyaltyAnalyzer;
+import com.analytics.service.PartitionedLoyaltyAnalyzer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class AdaptiveLoyaltyAnalyzerTest extends LoyaltyAnalyzerContractTest {
+
+    @Override
+    LoyaltyAnalyzer analyzer(LogScanner scanner) {
+        return new AdaptiveLoyaltyAnalyzer(0, scanner);
+    }
+
+    /** lines visits of customers drawn from [firstCustomer, firstCustomer + customers), two pages each. */
+    private Path writeDay(String name, int lines, int firstCustomer, int customers, long seed) throws IOException {
+        Random random = new Random(seed);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            content.append("2024-01-15T10:00:00 /page-%d cust_%d\n"
+                    .formatted(random.nextInt(2), firstCustomer + random.nextInt(customers)));
+        }
+        Path file = tempDir.resolve(name);
+        Files.writeString(file, content);
+        return file;
+    }
+
+    @Test
+    void highOverlapPairThatFitsRunsInMemory() throws IOException {
+        Path x = writeDay("x.log", 5_000, 0, 1_000, 1);
+        Path y = writeDay("y.log", 5_000, 0, 1_000, 2);
+        AdaptiveLoyaltyAnalyzer analyzer = new AdaptiveLoyaltyAnalyzer(64L << 20);
+
+        assertThat(analyzer.find(x, y)).containsExactlyInAnyOrderElementsOf(new InMemoryLoyaltyAnalyzer().find(x, y));
+        AdaptiveLoyaltyAnalyzer.Choice choice = analyzer.lastChoice();
+        assertThat(choice.analyzer()).isEqualTo("in-memory");
+        assertThat(choice.estimate().exact()).isTrue();
+        assertThat(choice.estimate().overlap()).isGreaterThan(0.9);
+        assertThat(choice.reason()).contains("of day Y seen on day X");
+    }
+
+    @Test
+    void lowOverlapPairStreams() throws IOException {
+        Path x = writeDay("x.log", 5_000, 0, 1_000, 1);
+        Path y = writeDay("y.log", 5_000, 900, 1_000, 2);
+        AdaptiveLoyaltyAnalyzer analyzer = new AdaptiveLoyaltyAnalyzer(64L << 20);
+
+        assertThat(analyzer.find(x, y)).containsExactlyInAnyOrderElementsOf(new InMemoryLoyaltyAnalyzer().find(x, y));
+        assertThat(analyzer.lastChoice().analyzer()).isEqualTo("streaming");
+    }
+
+    @Test
+    void pairLargerThanTheBudgetIsPartitioned() throws IOException {
+        Path x = writeDay("x.log", 40_000, 0, 20_000, 1);
+        Path y = writeDay("y.log", 40_000, 0, 20_000, 2);
+        AdaptiveLoyaltyAnalyzer analyzer = new AdaptiveLoyaltyAnalyzer(100_000);
+
+        assertThat(analyzer.find(x, y)).containsExactlyInAnyOrderElementsOf(new InMemoryLoyaltyAnalyzer().find(x, y));
+        assertThat(analyzer.lastChoice().analyzer()).isEqualTo("partitioned");
+        assertThat(Integer.bitCount(analyzer.lastChoice().partitions())).isEqualTo(1);
+        assertThat(analyzer.lastChoice().partitions()).isGreaterThan(PartitionedLoyaltyAnalyzer.DEFAULT_PARTITIONS);
+    }
+
+    @Test
+    void customersOfALargeFileAreExtrapolatedFromTheSample() throws IOException {
+        Path x = writeDay("x.log", 300_000, 0, 100_000, 1);
+        Path y = writeDay("y.log", 300_000, 50_000, 100_000, 2);
+
+        AdaptiveLoyaltyAnalyzer.Estimate estimate = new AdaptiveLoyaltyAnalyzer().choose(x, y).estimate();
+
+        assertThat(estimate.exact()).isFalse();
+        assertThat((double) estimate.dayXCustomers()).isCloseTo(95_000, within(30_000.0));
+        assertThat(estimate.overlap()).isCloseTo(0.5, within(0.25));
+    }
+
+    @Test
+    void aggregateBeyondEveryPartitionCountFallsBackToExternalSort() {
+        AdaptiveLoyaltyAnalyzer.Estimate estimate = new AdaptiveLoyaltyAnalyzer.Estimate(
+                1L << 40, 1L << 40, 10_000_000_000L, 10_000_000_000L, 5_000_000_000L, 12, false);
+
+        AdaptiveLoyaltyAnalyzer.Choice choice = AdaptiveLoyaltyAnalyzer.choose(estimate, 1L << 30);
+
+        assertThat(choice.analyzer()).isEqualTo("external");
+        assertThat(choice.memoryBudget()).isEqualTo(1L << 30);
+        assertThat(choice.reason()).contains("(sampled)");
+    }
+}
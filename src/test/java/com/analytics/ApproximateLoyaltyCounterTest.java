@@ -0,0 +1,59 @@
+package com.analytics;
+
+import com.analytics.model.LoyaltyEstimate;
+import com.analytics.service.ApproximateLoyaltyCounter;
+import com.analytics.service.InMemoryLoyaltyAnalyzer;
+import com.analytics.snapshot.SnapshotStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ApproximateLoyaltyCounterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path writeDay(String name, int firstCustomer, long seed) throws IOException {
+        Random random = new Random(seed);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 30_000; i++) {
+            content.append("t /page-%d cust_%d\n".formatted(random.nextInt(3), firstCustomer + random.nextInt(10_000)));
+        }
+        Path file = tempDir.resolve(name);
+        Files.writeString(file, content);
+        return file;
+    }
+
+    @Test
+    void smallPairIsCountedExactly() throws IOException {
+        Path x = writeDay("x.log", 0, 1);
+        Path y = writeDay("y.log", 5_000, 2);
+
+        LoyaltyEstimate estimate = new ApproximateLoyaltyCounter().count(x, y);
+
+        assertThat(estimate.exact()).isTrue();
+        assertThat(estimate.loyalCustomers()).isEqualTo(new InMemoryLoyaltyAnalyzer().find(x, y).size());
+    }
+
+    @Test
+    void sampledCountBracketsTheExactOneAndSketchesAreReused() throws IOException {
+        Path x = writeDay("x.log", 0, 1);
+        Path y = writeDay("y.log", 5_000, 2);
+        int exact = new InMemoryLoyaltyAnalyzer().find(x, y).size();
+        SnapshotStore store = new SnapshotStore(tempDir.resolve("sketches"));
+
+        LoyaltyEstimate first = new ApproximateLoyaltyCounter(2_000, store).count(x, y);
+
+        assertThat(first.exact()).isFalse();
+        assertThat(first.lower()).isLessThanOrEqualTo(exact);
+        assertThat(first.upper()).isGreaterThanOrEqualTo(exact);
+        assertThat(store.loadSketch(y)).isPresent();
+        assertThat(new ApproximateLoyaltyCounter(2_000, store).count(x, y)).isEqualTo(first);
+    }
+}
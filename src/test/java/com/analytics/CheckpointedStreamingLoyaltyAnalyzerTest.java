@@ -0,0 +1,149 @@
+package com.analytics;
+
+import com.analytics.parser.LogScanner;
+import com.analytics.service.CheckpointStore;
+import com.analytics.service.LoyalCustomerSink;
+import com.analytics.service.LoyaltyAnalyzer;
+import com.analytics.service.StreamingLoyaltyAnalyzer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** The contract with a checkpoint every 4 KB, so larger days are scanned in many segments. */
+class CheckpointedStreamingLoyaltyAnalyzerTest extends LoyaltyAnalyzerContractTest {
+
+    @Override
+    LoyaltyAnalyzer analyzer(LogScanner scanner) {
+        return new StreamingLoyaltyAnalyzer(new CheckpointStore(tempDir.resolve("checkpoints"), 4096, Duration.ofHours(1)),
+                scanner);
+    }
+
+    /** Checkpoints every 64 bytes, so the small days below are interrupted between checkpoints. */
+    private CheckpointStore store() {
+        return new CheckpointStore(tempDir.resolve("checkpoints"), 64, Duration.ofHours(1));
+    }
+
+    private Path day(String name, int firstCustomer, int pageOffset) throws IOException {
+        String[] lines = new String[400];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = "t /page-%d cust_%d".formatted((i / 100 + pageOffset) % 3, firstCustomer + i % 100);
+        }
+        return writeLog(name, lines);
+    }
+
+    /** Fails the run after limit IDs, as a node eviction would at an arbitrary point. */
+    private static LoyalCustomerSink failingAfter(int limit, List<String> emitted) {
+        return id -> {
+            if (emitted.size() == limit) throw new IOException("evicted");
+            emitted.add(id);
+        };
+    }
+
+    @Test
+    void interruptedRunResumesFromItsLastCheckpoint() throws IOException {
+        Path x = writeLog("x.log", "t /a cust_0", "t /a cust_1", "t /a cust_2", "t /a cust_3", "t /a cust_4");
+        String[] dayY = new String[200];
+        for (int i = 0; i < dayY.length; i++) dayY[i] = "t /%s cust_%d".formatted(i % 40 == 39 ? "b" : "a", i / 40);
+        Path y = writeLog("y.log", dayY);
+        List<String> expected = new StreamingLoyaltyAnalyzer().find(x, y);
+        List<String> first = new ArrayList<>();
+
+        assertThatThrownBy(() -> new StreamingLoyaltyAnalyzer(store()).find(x, y, failingAfter(3, first)))
+                .hasMessage("evicted");
+        long kept = store().loyalEmitted(x, y).orElseThrow();
+        assertThat(kept).isBetween(1L, 3L);
+
+        StreamingLoyaltyAnalyzer resumed = new StreamingLoyaltyAnalyzer(store());
+        List<String> rest = new ArrayList<>();
+        long total = resumed.find(x, y, LoyalCustomerSink.into(rest));
+
+        List<String> combined = new ArrayList<>(first.subList(0, (int) kept));
+        combined.addAll(rest);
+        assertThat(combined).isEqualTo(expected);
+        assertThat(total).isEqualTo(expected.size());
+        assertThat(resumed.lastDayYStatistics().bytesScanned()).isLessThan(Files.size(y));
+        assertThat(store().checkpointPath(x, y)).doesNotExist();
+    }
+
+    @Test
+    void checkpointTakenDuringDayXIsResumedThere() throws IOException {
+        Path x = day("x.log", 0, 0);
+        Path y = day("y.log", 50, 1);
+        List<String> expected = new StreamingLoyaltyAnalyzer().find(x, y);
+        Path checkpoint = store().checkpointPath(x, y);
+        // A sink that fails on its first flush stops the run at the first checkpoint, in the middle of day X.
+        LoyalCustomerSink sink = new LoyalCustomerSink() {
+            private boolean flushed;
+
+            @Override
+            public void accept(String customerId) {
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (flushed) throw new IOException("evicted");
+                flushed = true;
+            }
+        };
+
+        assertThatThrownBy(() -> new StreamingLoyaltyAnalyzer(store()).find(x, y, sink)).hasMessage("evicted");
+        assertThat(checkpoint).exists();
+
+        assertThat(new StreamingLoyaltyAnalyzer(store()).find(x, y)).isEqualTo(expected);
+    }
+
+    @Test
+    void everyIdCountedByACheckpointWasSyncedBeforeIt() throws IOException {
+        Path x = day("x.log", 0, 0);
+        Path y = day("y.log", 50, 1);
+        List<String> accepted = new ArrayList<>();
+        List<Integer> synced = new ArrayList<>();
+        LoyalCustomerSink sink = new LoyalCustomerSink() {
+            @Override
+            public void accept(String customerId) throws IOException {
+                if (accepted.size() == 30) throw new IOException("evicted");
+                accepted.add(customerId);
+            }
+
+            @Override
+            public void sync() {
+                synced.add(accepted.size());
+            }
+        };
+
+        assertThatThrownBy(() -> new StreamingLoyaltyAnalyzer(store()).find(x, y, sink)).hasMessage("evicted");
+
+        assertThat(synced).isNotEmpty();
+        assertThat(store().loyalEmitted(x, y)).hasValue(synced.get(synced.size() - 1));
+    }
+
+    @Test
+    void staleAndCorruptCheckpointsAreIgnored() throws IOException {
+        Path x = day("x.log", 0, 0);
+        Path y = day("y.log", 50, 1);
+        List<String> expected = new StreamingLoyaltyAnalyzer().find(x, y);
+        Path checkpoint = store().checkpointPath(x, y);
+
+        assertThatThrownBy(() -> new StreamingLoyaltyAnalyzer(store()).find(x, y, failingAfter(10, new ArrayList<>())))
+                .hasMessage("evicted");
+        byte[] saved = Files.readAllBytes(checkpoint);
+        saved[saved.length - 1] ^= 1;
+        Files.write(checkpoint, saved);
+        assertThat(store().loyalEmitted(x, y)).isEmpty();
+        assertThat(new StreamingLoyaltyAnalyzer(store()).find(x, y)).isEqualTo(expected);
+
+        assertThatThrownBy(() -> new StreamingLoyaltyAnalyzer(store()).find(x, y, failingAfter(10, new ArrayList<>())))
+                .hasMessage("evicted");
+        Files.writeString(y, Files.readString(y) + "\nt /page-0 cust_0");
+        assertThat(store().loyalEmitted(x, y)).isEmpty();
+        assertThat(new StreamingLoyaltyAnalyzer(store()).find(x, y)).contains("cust_0");
+    }
+}
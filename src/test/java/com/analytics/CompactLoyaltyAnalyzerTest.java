@@ -0,0 +1,33 @@
+package com.analytics;
+
+import com.analytics.model.CompactCustomerActivity;
+import com.analytics.parser.LogScanner;
+import com.analytics.service.CompactLoyaltyAnalyzer;
+import com.analytics.service.LoyaltyAnalyzer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactLoyaltyAnalyzerTest extends LoyaltyAnalyzerContractTest {
+
+    @Override
+    LoyaltyAnalyzer analyzer(LogScanner scanner) {
+        return new CompactLoyaltyAnalyzer(CompactCustomerActivity.DEFAULT_MIN_PAGES, scanner);
+    }
+
+    @Test
+    void raisedThresholdRequiresMoreDistinctPages() throws IOException {
+        Path x = writeLog("x.log",
+                "2024-01-15T10:00:00 /home cust_001",
+                "2024-01-15T10:05:00 /about cust_001",
+                "2024-01-15T10:10:00 /home cust_002");
+        Path y = writeLog("y.log",
+                "2024-01-16T09:00:00 /contact cust_001",
+                "2024-01-16T09:05:00 /about cust_002");
+
+        assertThat(new CompactLoyaltyAnalyzer(3).find(x, y)).containsExactly("cust_001");
+    }
+}
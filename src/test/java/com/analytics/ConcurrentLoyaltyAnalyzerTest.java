@@ -0,0 +1,13 @@
+package com.analytics;
+
+import com.analytics.parser.LogScanner;
+import com.analytics.service.ConcurrentLoyaltyAnalyzer;
+import com.analytics.service.LoyaltyAnalyzer;
+
+class ConcurrentLoyaltyAnalyzerTest extends LoyaltyAnalyzerContractTest {
+
+    @Override
+    LoyaltyAnalyzer analyzer(LogScanner scanner) {
+        return new ConcurrentLoyaltyAnalyzer(4, scanner);
+    }
+}
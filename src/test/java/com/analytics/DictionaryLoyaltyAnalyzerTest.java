@@ -0,0 +1,13 @@
+package com.analytics;
+
+import com.analytics.parser.LogScanner;
+import com.analytics.service.DictionaryLoyaltyAnalyzer;
+import com.analytics.service.LoyaltyAnalyzer;
+
+class DictionaryLoyaltyAnalyzerTest extends LoyaltyAnalyzerContractTest {
+
+    @Override
+    LoyaltyAnalyzer analyzer(LogScanner scanner) {
+        return new DictionaryLoyaltyAnalyzer(scanner);
+    }
+}
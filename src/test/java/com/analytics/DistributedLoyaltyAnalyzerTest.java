@@ -0,0 +1,180 @@
+package com.analytics;
+
+import com.analytics.cluster.ClusterReport;
+import com.analytics.cluster.DistributedLoyaltyAnalyzer;
+import com.analytics.cluster.LocalCluster;
+import com.analytics.cluster.WorkerStats;
+import com.analytics.model.LoyaltyRule;
+import com.analytics.parser.LogScanner;
+import com.analytics.parser.MalformedLinePolicy;
+import com.analytics.parser.TimeFilter;
+import com.analytics.service.InMemoryLoyaltyAnalyzer;
+import com.analytics.service.LoyaltyAnalyzer;
+import com.analytics.service.RollingLoyaltyWindow;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DistributedLoyaltyAnalyzerTest extends LoyaltyAnalyzerContractTest {
+
+    private LocalCluster cluster;
+
+    @BeforeEach
+    void startCluster() throws IOException {
+        cluster = LocalCluster.inProcess(3);
+    }
+
+    @AfterEach
+    void stopCluster() throws IOException {
+        cluster.close();
+    }
+
+    @Override
+    LoyaltyAnalyzer analyzer(LogScanner scanner) {
+        return new DistributedLoyaltyAnalyzer(cluster.addresses(), LoyaltyRule.DEFAULT, scanner);
+    }
+
+    private Path writeDay(String name, int customers, long seed) throws IOException {
+        Random random = new Random(seed);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < customers * 3; i++) {
+            content.append("t /page-%d cust_%d\n".formatted(random.nextInt(4), random.nextInt(customers)));
+        }
+        Path file = tempDir.resolve(name);
+        Files.writeString(file, content);
+        return file;
+    }
+
+    @Test
+    void reportCoversEveryWorkerAndTheWholeInput() throws IOException {
+        Path x = writeDay("x.log", 5_000, 1);
+        Path y = writeDay("y.log", 5_000, 2);
+        DistributedLoyaltyAnalyzer analyzer = new DistributedLoyaltyAnalyzer(cluster.addresses());
+
+        List<String> loyal = analyzer.find(x, y);
+
+        assertThat(loyal).containsExactlyInAnyOrderElementsOf(new InMemoryLoyaltyAnalyzer().find(x, y));
+        ClusterReport report = analyzer.lastReport();
+        assertThat(report.workers()).isEqualTo(3);
+        assertThat(report.workerStats()).extracting(WorkerStats::worker).containsExactly(0, 1, 2);
+        assertThat(report.bytes()).isEqualTo(Files.size(x) + Files.size(y));
+        assertThat(report.workerStats().stream().mapToLong(WorkerStats::loyal).sum()).isEqualTo(loyal.size());
+        assertThat(report.workerStats()).allSatisfy(stats -> assertThat(stats.shuffleBytes()).isPositive());
+    }
+
+    @Test
+    void workerFailureIsReportedAndOtherWorkersStopWaiting() throws IOException {
+        Path x = writeLog("x.log", "t /home cust_001", "BADLINE", "t /about cust_002");
+        Path y = writeLog("y.log", "t /home cust_001", "t /about cust_002");
+        LoyaltyAnalyzer strict = analyzer(new LogScanner(new MalformedLinePolicy(10, 0, 0), TimeFilter.NONE));
+
+        assertThatThrownBy(() -> strict.find(x, y))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("malformed");
+        assertThat(analyzer().find(x, y)).isEmpty();
+    }
+
+    @Test
+    void workerProcessesGiveTheSameResultAsOneJvm() throws IOException {
+        Path x = writeDay("x.log", 2_000, 3);
+        Path y = writeDay("y.log", 2_000, 4);
+
+        try (LocalCluster processes = LocalCluster.processes(2, List.of("-Xmx64m"))) {
+            DistributedLoyaltyAnalyzer analyzer = new DistributedLoyaltyAnalyzer(processes.addresses());
+            assertThat(analyzer.find(x, y)).containsExactlyInAnyOrderElementsOf(new InMemoryLoyaltyAnalyzer().find(x, y));
+            assertThat(analyzer.lastReport().workers()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void workerProcessesApplyTheCoordinatorsMalformedLinePolicy() throws IOException {
+        Path x = writeLog("x.log", "t /home cust_001", "BADLINE", "t /about cust_002");
+        Path y = writeLog("y.log", "t /home cust_001", "t /about cust_002");
+
+        try (LocalCluster processes = LocalCluster.processes(2, List.of("-Xmx64m"))) {
+            DistributedLoyaltyAnalyzer strict = new DistributedLoyaltyAnalyzer(processes.addresses(), LoyaltyRule.DEFAULT,
+                    new LogScanner(new MalformedLinePolicy(10, 0, 0), TimeFilter.NONE));
+            assertThatThrownBy(() -> strict.find(x, y))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("malformed");
+            assertThat(new DistributedLoyaltyAnalyzer(processes.addresses()).find(x, y)).isEmpty();
+        }
+    }
+
+    @Test
+    @Timeout(60)
+    void workerThatDiesBeforeItsShuffleFailsTheJobAtOnce() throws IOException {
+        Path x = writeDay("x.log", 1_000, 5);
+        Path y = writeDay("y.log", 1_000, 6);
+        // Accepts shuffles from the real worker and keeps them open, but drops its job as a dying process would.
+        try (ServerSocket dead = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            Thread acceptor = new Thread(() -> {
+                List<Socket> shuffles = new ArrayList<>();
+                try {
+                    while (true) {
+                        Socket socket = dead.accept();
+                        DataInputStream in = new DataInputStream(socket.getInputStream());
+                        in.readInt();
+                        in.readInt();
+                        if (in.readByte() == 1) socket.close(); else shuffles.add(socket);
+                    }
+                } catch (IOException e) {
+                    // the test closed the server
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+            InetSocketAddress deadAddress = new InetSocketAddress(dead.getInetAddress(), dead.getLocalPort());
+            DistributedLoyaltyAnalyzer analyzer =
+                    new DistributedLoyaltyAnalyzer(List.of(cluster.addresses().get(0), deadAddress));
+
+            assertThatThrownBy(() -> analyzer.find(x, y))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("Worker 1")
+                    .hasMessageContaining("closed its connection");
+        }
+    }
+
+    @Test
+    void workersApplyTheGivenLoyaltyRule() throws IOException {
+        Path x = writeDay("x.log", 2_000, 7);
+        Path y = writeDay("y.log", 2_000, 8);
+        for (LoyaltyRule rule : List.of(new LoyaltyRule(1, 3), new LoyaltyRule(2, 4), new LoyaltyRule(1, 1))) {
+            RollingLoyaltyWindow window = new RollingLoyaltyWindow(2, rule);
+            window.addDay(x);
+            window.addDay(y);
+
+            List<String> loyal = new DistributedLoyaltyAnalyzer(cluster.addresses(), rule).find(x, y);
+
+            assertThat(loyal).as("rule %s", rule).containsExactlyInAnyOrderElementsOf(window.loyalCustomers());
+        }
+        assertThatThrownBy(() -> new DistributedLoyaltyAnalyzer(cluster.addresses(), new LoyaltyRule(3, 2)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void efficiencyIsSpeedupPerAddedWorker() {
+        ClusterReport one = new ClusterReport(1, 8_000_000_000L, List.of());
+        ClusterReport four = new ClusterReport(4, 2_500_000_000L, List.of());
+
+        assertThat(four.speedup(one)).isEqualTo(3.2);
+        assertThat(four.efficiency(one)).isEqualTo(0.8);
+        assertThat(ClusterReport.scalingTable(List.of(one, four))).contains("3.20", "0.80");
+    }
+}
@@ -0,0 +1,71 @@
+package com.analytics;
+
+import com.analytics.parser.LogScanner;
+import com.analytics.service.ExternalSortLoyaltyAnalyzer;
+import com.analytics.service.InMemoryLoyaltyAnalyzer;
+import com.analytics.service.LoyaltyAnalyzer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExternalSortLoyaltyAnalyzerTest extends LoyaltyAnalyzerContractTest {
+
+    /** Small enough that the larger contract tests spill many runs. */
+    private static final long BUDGET = 4096;
+
+    @Override
+    LoyaltyAnalyzer analyzer(LogScanner scanner) {
+        return new ExternalSortLoyaltyAnalyzer(BUDGET, tempDir, scanner);
+    }
+
+    @Test
+    void matchesInMemoryAnalyzerWhenSpillingBeyondMergeFanIn() throws IOException {
+        Random random = new Random(7);
+        StringBuilder xLines = new StringBuilder();
+        StringBuilder yLines = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            xLines.append("t /page-%d cust_%d\n".formatted(random.nextInt(5), random.nextInt(4_000)));
+            yLines.append("t /page-%d cust_%d\n".formatted(random.nextInt(5), random.nextInt(8_000)));
+        }
+        Path x = tempDir.resolve("x.log");
+        Path y = tempDir.resolve("y.log");
+        Files.writeString(x, xLines);
+        Files.writeString(y, yLines);
+        ExternalSortLoyaltyAnalyzer analyzer = new ExternalSortLoyaltyAnalyzer(BUDGET, tempDir);
+
+        assertThat(analyzer.find(x, y)).containsExactlyInAnyOrderElementsOf(new InMemoryLoyaltyAnalyzer().find(x, y));
+        assertThat(analyzer.lastSpilledRuns()).isGreaterThan(64);
+    }
+
+    @Test
+    void runFilesAreRemovedAfterFind() throws IOException {
+        String[] noise = Stream.iterate(0, i -> i + 1).limit(200).map(i -> "t /a other_" + i).toArray(String[]::new);
+        Path x = writeLog("x.log", Stream.concat(Stream.of("t /a c1", "t /b c1", "t /a c2", "t /a c3"), Stream.of(noise))
+                .toArray(String[]::new));
+        Path y = writeLog("y.log", "t /a c1", "t /b c2", "t /a c3");
+        Path spill = Files.createDirectory(tempDir.resolve("spill"));
+        ExternalSortLoyaltyAnalyzer analyzer = new ExternalSortLoyaltyAnalyzer(1024, spill);
+
+        assertThat(analyzer.find(x, y)).containsExactly("c1", "c2");
+        assertThat(analyzer.lastSpilledRuns()).isPositive();
+        try (Stream<Path> left = Files.list(spill)) {
+            assertThat(left).isEmpty();
+        }
+    }
+
+    @Test
+    void smallInputNeverTouchesDisk() throws IOException {
+        Path x = writeLog("x.log", "t /a c1", "t /b c1");
+        Path y = writeLog("y.log", "t /a c1");
+        ExternalSortLoyaltyAnalyzer analyzer = new ExternalSortLoyaltyAnalyzer();
+
+        assertThat(analyzer.find(x, y)).containsExactly("c1");
+        assertThat(analyzer.lastSpilledRuns()).isZero();
+    }
+}
@@ -1,12 +1,45 @@
 package com.analytics;
 
+import com.analytics.model.HeapCustomerStateStore;
+import com.analytics.parser.LogScanner;
+import com.analytics.service.DictionaryLoyaltyAnalyzer;
 import com.analytics.service.InMemoryLoyaltyAnalyzer;
 import com.analytics.service.LoyaltyAnalyzer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 class InMemoryLoyaltyAnalyzerTest extends LoyaltyAnalyzerContractTest {
 
     @Override
-    LoyaltyAnalyzer analyzer() {
-        return new InMemoryLoyaltyAnalyzer();
+    LoyaltyAnalyzer analyzer(LogScanner scanner) {
+        return new InMemoryLoyaltyAnalyzer(HeapCustomerStateStore::new, scanner);
+    }
+
+    private Path writeDay(String name, int customers, long seed) throws IOException {
+        Random random = new Random(seed);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < customers * 2; i++) {
+            content.append("t /page-%d cust_%d\n".formatted(random.nextInt(4), random.nextInt(customers)));
+        }
+        Path file = tempDir.resolve(name);
+        Files.writeString(file, content);
+        return file;
+    }
+
+    @Test
+    void joinGivesTheSameCustomersWhicheverDayIsSmaller() throws IOException {
+        Path small = writeDay("small.log", 2_000, 1);
+        Path large = writeDay("large.log", 8_000, 2);
+
+        assertThat(analyzer().find(small, large))
+                .containsExactlyInAnyOrderElementsOf(new DictionaryLoyaltyAnalyzer().find(small, large));
+        assertThat(analyzer().find(large, small))
+                .containsExactlyInAnyOrderElementsOf(new DictionaryLoyaltyAnalyzer().find(large, small));
     }
 }
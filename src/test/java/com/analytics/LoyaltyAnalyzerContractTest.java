@@ -1,26 +1,39 @@
 package com.analytics;
 
+import com.analytics.parser.LogScanner;
+import com.analytics.parser.MalformedLinePolicy;
+import com.analytics.parser.TimeFilter;
+import com.analytics.service.LoyalCustomerSink;
 import com.analytics.service.LoyaltyAnalyzer;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * Contract tests for LoyaltyAnalyzer implementations.
- * Subclasses supply the implementation under test via analyzer().
+ * Subclasses supply the implementation under test via analyzer(scanner), reading the logs with scanner.
  */
 abstract class LoyaltyAnalyzerContractTest {
 
     @TempDir
     protected Path tempDir;
 
-    abstract LoyaltyAnalyzer analyzer();
+    abstract LoyaltyAnalyzer analyzer(LogScanner scanner);
+
+    LoyaltyAnalyzer analyzer() {
+        return analyzer(new LogScanner());
+    }
 
     protected Path writeLog(String filename, String... lines) throws IOException {
         Path file = tempDir.resolve(filename);
@@ -181,4 +194,71 @@ abstract class LoyaltyAnalyzerContractTest {
 
         assertThat(find(x, y)).containsExactlyInAnyOrder("cust_MULTI", "cust_SINGLE");
     }
+
+    @Test
+    void gzipCompressedLogsGiveSameResultAsPlainLogs() throws IOException {
+        Path x = writeLog("x.log",
+                "2024-01-15T10:00:00 /home cust_001",
+                "2024-01-15T10:05:00 /about cust_001",
+                "2024-01-15T10:10:00 /home cust_002");
+        Path y = writeLog("y.log",
+                "2024-01-16T09:00:00 /home cust_001",
+                "2024-01-16T09:05:00 /cart cust_002",
+                "2024-01-16T09:10:00 /home cust_003");
+
+        assertThat(find(gzip(x), gzip(y))).containsExactlyInAnyOrderElementsOf(find(x, y));
+    }
+
+    @Test
+    void sinkReceivesTheSameCustomersAndCountIsReturned() throws IOException {
+        Path x = writeLog("x.log",
+                "2024-01-15T10:00:00 /home cust_001",
+                "2024-01-15T10:05:00 /about cust_001",
+                "2024-01-15T10:10:00 /home cust_002");
+        Path y = writeLog("y.log",
+                "2024-01-16T09:00:00 /home cust_001",
+                "2024-01-16T09:05:00 /cart cust_002",
+                "2024-01-16T09:10:00 /home cust_003");
+        List<String> emitted = new ArrayList<>();
+
+        long count = analyzer().find(x, y, LoyalCustomerSink.into(emitted));
+
+        assertThat(emitted).containsExactlyInAnyOrder("cust_001", "cust_002");
+        assertThat(count).isEqualTo(2);
+    }
+
+    @Test
+    void sinkFailureIsPropagated() throws IOException {
+        Path x = writeLog("x.log", "t /home cust_001", "t /about cust_001");
+        Path y = writeLog("y.log", "t /home cust_001");
+        IOException failure = new IOException("disk full");
+
+        assertThatThrownBy(() -> analyzer().find(x, y, customerId -> {
+            throw failure;
+        })).isSameAs(failure);
+    }
+
+    @Test
+    void visitsOutsideTheTimeFilterAreIgnored() throws IOException {
+        Path x = writeLog("x.log",
+                "2024-01-15T08:00:00 /home cust_001",
+                "2024-01-15T10:00:00 /about cust_001",
+                "2024-01-15T10:00:00 /home cust_002",
+                "2024-01-15T20:00:00 /about cust_002");
+        Path y = writeLog("y.log",
+                "2024-01-16T09:30:00 /home cust_001",
+                "2024-01-16T12:00:00 /home cust_002");
+        LogScanner scanner = new LogScanner(MalformedLinePolicy.DEFAULT,
+                new TimeFilter(null, null, LocalTime.of(9, 0), LocalTime.of(17, 0)));
+
+        assertThat(analyzer(scanner).find(x, y)).containsExactly("cust_001");
+    }
+
+    protected Path gzip(Path file) throws IOException {
+        Path compressed = tempDir.resolve(file.getFileName() + ".gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+            Files.copy(file, out);
+        }
+        return compressed;
+    }
 }
@@ -0,0 +1,141 @@
+package com.analytics;
+
+import com.analytics.parser.LogScanner;
+import com.analytics.parser.MalformedLinePolicy;
+import com.analytics.parser.TimeFilter;
+import com.analytics.parser.TooManyMalformedLinesException;
+import com.analytics.service.LoyalCustomerSink;
+import com.analytics.service.LoyaltyFollower;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoyaltyFollowerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<String> emitted = new ArrayList<>();
+
+    private Path dayX() throws IOException {
+        Path file = tempDir.resolve("x.log");
+        Files.writeString(file, """
+                t /home alice
+                t /cart bob
+                t /home carol
+                t /home dave
+                """);
+        return file;
+    }
+
+    private static void append(Path file, String content) throws IOException {
+        Files.writeString(file, content, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Test
+    void emitsCustomersAsAppendedLinesMakeThemLoyal() throws IOException {
+        Path y = tempDir.resolve("y.log");
+        LoyaltyFollower follower = new LoyaltyFollower(dayX(), y, LoyalCustomerSink.into(emitted));
+
+        assertThat(follower.poll()).isZero();
+        append(y, "t /home alice\nt /cart alice\n");
+        assertThat(follower.poll()).isEqualTo(1);
+        append(y, "t /home bob\nt /home eve\n");
+        assertThat(follower.poll()).isEqualTo(1);
+
+        assertThat(emitted).containsExactly("alice", "bob");
+        assertThat(follower.position()).isEqualTo(Files.size(y));
+        assertThat(follower.remainingCandidates()).isEqualTo(2);
+    }
+
+    @Test
+    void partialLineWaitsForItsNewline() throws IOException {
+        Path y = tempDir.resolve("y.log");
+        LoyaltyFollower follower = new LoyaltyFollower(dayX(), y, LoyalCustomerSink.into(emitted));
+
+        append(y, "t /cart carol\nt /cart da");
+        assertThat(follower.poll()).isEqualTo(1);
+        assertThat(follower.position()).isEqualTo("t /cart carol\n".length());
+
+        append(y, "ve\n");
+        assertThat(follower.poll()).isEqualTo(1);
+        assertThat(emitted).containsExactly("carol", "dave");
+    }
+
+    @Test
+    void truncationRestartsWithoutEmittingTwice() throws IOException {
+        Path y = tempDir.resolve("y.log");
+        LoyaltyFollower follower = new LoyaltyFollower(dayX(), y, LoyalCustomerSink.into(emitted));
+        append(y, "t /cart carol\nt /cart bob\nt /cart bob\n");
+        assertThat(follower.poll()).isEqualTo(1);
+
+        Files.writeString(y, "t /cart carol\nt /home bob\n");
+        assertThat(follower.poll()).isEqualTo(1);
+
+        assertThat(emitted).containsExactly("carol", "bob");
+        assertThat(follower.position()).isEqualTo(Files.size(y));
+    }
+
+    @Test
+    void rotatedFileIsReadFromTheStart() throws IOException {
+        Path y = tempDir.resolve("y.log");
+        LoyaltyFollower follower = new LoyaltyFollower(dayX(), y, LoyalCustomerSink.into(emitted));
+        append(y, "t /home alice\nt /home alice\nt /home alice\nt /home alice\n");
+        follower.poll();
+
+        Files.move(y, tempDir.resolve("y.log.1"));
+        assertThat(follower.poll()).isZero();
+        append(y, "t /cart alice\nt /cart dave\nt /cart dave\nt /cart dave\nt /cart dave\n");
+        assertThat(follower.poll()).isEqualTo(2);
+
+        assertThat(emitted).containsExactly("alice", "dave");
+    }
+
+    @Test
+    void malformedLineLimitAppliesAsTheLogGrows() throws IOException {
+        Path y = tempDir.resolve("y.log");
+        LogScanner scanner = new LogScanner(new MalformedLinePolicy(10, 0.5, 4), TimeFilter.NONE);
+        LoyaltyFollower follower = new LoyaltyFollower(dayX(), y, LoyalCustomerSink.into(emitted), scanner);
+        append(y, "t /home alice\nbroken\n");
+        assertThat(follower.poll()).isZero();
+        append(y, "broken\nbroken\n");
+
+        assertThatThrownBy(follower::poll)
+                .isInstanceOf(TooManyMalformedLinesException.class)
+                .hasMessageContaining("3 of 4 lines in y.log are malformed");
+    }
+
+    @Test
+    void followStopsWhenInterrupted() throws Exception {
+        Path y = tempDir.resolve("y.log");
+        append(y, "t /cart alice\n");
+        LoyaltyFollower follower = new LoyaltyFollower(dayX(), y, LoyalCustomerSink.into(emitted));
+        long[] total = new long[1];
+        Thread thread = new Thread(() -> {
+            try {
+                total[0] = follower.follow(Duration.ofMillis(10));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        thread.start();
+        Thread.sleep(100);
+        thread.interrupt();
+        thread.join(5_000);
+
+        assertThat(thread.isAlive()).isFalse();
+        assertThat(total[0]).isEqualTo(1);
+        assertThat(emitted).containsExactly("alice");
+    }
+}
@@ -0,0 +1,14 @@
+package com.analytics;
+
+import com.analytics.model.OffHeapCustomerStateStore;
+import com.analytics.parser.LogScanner;
+import com.analytics.service.InMemoryLoyaltyAnalyzer;
+import com.analytics.service.LoyaltyAnalyzer;
+
+class OffHeapInMemoryLoyaltyAnalyzerTest extends InMemoryLoyaltyAnalyzerTest {
+
+    @Override
+    LoyaltyAnalyzer analyzer(LogScanner scanner) {
+        return new InMemoryLoyaltyAnalyzer(OffHeapCustomerStateStore::new, scanner);
+    }
+}
@@ -0,0 +1,63 @@
+package com.analytics;
+
+import com.analytics.parser.LogScanner;
+import com.analytics.parser.MalformedLinePolicy;
+import com.analytics.parser.TimeFilter;
+import com.analytics.parser.TooManyMalformedLinesException;
+import com.analytics.service.InMemoryLoyaltyAnalyzer;
+import com.analytics.service.LoyaltyAnalyzer;
+import com.analytics.service.ParallelLoyaltyAnalyzer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ParallelLoyaltyAnalyzerTest extends LoyaltyAnalyzerContractTest {
+
+    @Override
+    LoyaltyAnalyzer analyzer(LogScanner scanner) {
+        return new ParallelLoyaltyAnalyzer(4, scanner);
+    }
+
+    @Test
+    void matchesInMemoryAnalyzerForEveryWorkerCount() throws IOException {
+        StringBuilder xLines = new StringBuilder();
+        StringBuilder yLines = new StringBuilder();
+        for (int i = 0; i < 5_000; i++) {
+            xLines.append("2024-01-15T10:00:00 /page-%d cust_%d\r\n".formatted(i % 5, i % 1_500));
+            yLines.append("2024-01-16T09:00:00 /page-%d cust_%d\n".formatted(i % 3, (i * 7) % 2_000));
+        }
+        Path x = tempDir.resolve("x.log");
+        Path y = tempDir.resolve("y.log");
+        Files.writeString(x, xLines.toString());
+        Files.writeString(y, yLines.toString());
+
+        var expected = new InMemoryLoyaltyAnalyzer().find(x, y);
+
+        for (int workers : new int[] {1, 2, 3, 8, 32}) {
+            assertThat(new ParallelLoyaltyAnalyzer(workers).find(x, y))
+                    .as("workers=%d", workers)
+                    .containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+
+    @Test
+    void malformedThresholdAppliesToTheWholeFileAcrossRanges() throws IOException {
+        StringBuilder xLines = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) xLines.append(i < 200 ? "BAD\n" : "t /p c%d\n".formatted(i));
+        Path x = tempDir.resolve("x.log");
+        Files.writeString(x, xLines.toString());
+        Path y = writeLog("y.log", "t /p c1");
+
+        assertThat(analyzer(new LogScanner(new MalformedLinePolicy(0, 0.15, 100), TimeFilter.NONE)).find(x, y)).isEmpty();
+
+        LoyaltyAnalyzer strict = analyzer(new LogScanner(new MalformedLinePolicy(0, 0.05, 100), TimeFilter.NONE));
+        assertThatThrownBy(() -> strict.find(x, y))
+                .isInstanceOf(TooManyMalformedLinesException.class)
+                .hasMessageStartingWith("200 of 2000 lines in x.log are malformed");
+    }
+}
@@ -0,0 +1,98 @@
+package com.analytics;
+
+import com.analytics.parser.LogScanner;
+import com.analytics.service.InMemoryLoyaltyAnalyzer;
+import com.analytics.service.LogPartitioner;
+import com.analytics.service.LoyaltyAnalyzer;
+import com.analytics.service.PartitionedLoyaltyAnalyzer;
+import com.analytics.service.StreamingLoyaltyAnalyzer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PartitionedLoyaltyAnalyzerTest extends LoyaltyAnalyzerContractTest {
+
+    @Override
+    LoyaltyAnalyzer analyzer(LogScanner scanner) {
+        return new PartitionedLoyaltyAnalyzer(4, 2, InMemoryLoyaltyAnalyzer::new, tempDir, scanner);
+    }
+
+    @Test
+    void everyCustomerLandsInExactlyOnePartitionForBothDays() throws IOException {
+        Path x = writeLog("x.log", "t1 /a c1", "t2 /b c1", "t3 /a c2", "BAD", "t4 /a c3");
+        Path y = writeLog("y.log", "t5 /c c1", "t6 /a c3");
+        Path directory = Files.createDirectory(tempDir.resolve("parts"));
+
+        List<LogPartitioner.Partition> partitions = new LogPartitioner(3).scatter(x, y, directory);
+
+        List<String> xLines = new ArrayList<>();
+        List<String> yLines = new ArrayList<>();
+        for (LogPartitioner.Partition partition : partitions) {
+            List<String> px = Files.readAllLines(partition.dayX());
+            List<String> py = Files.readAllLines(partition.dayY());
+            List<String> customers = Stream.concat(px.stream(), py.stream()).map(l -> l.split(" ")[2]).distinct().toList();
+            for (String customer : customers) {
+                assertThat(partitions).filteredOn(p -> p != partition)
+                        .allSatisfy(other -> assertThat(Files.readString(other.dayX()) + Files.readString(other.dayY()))
+                                .doesNotContain(" " + customer + "\n"));
+            }
+            xLines.addAll(px);
+            yLines.addAll(py);
+        }
+        assertThat(partitions).hasSize(3);
+        assertThat(xLines).containsExactlyInAnyOrder("t1 /a c1", "t2 /b c1", "t3 /a c2", "t4 /a c3");
+        assertThat(yLines).containsExactlyInAnyOrder("t5 /c c1", "t6 /a c3");
+    }
+
+    @Test
+    void sequentialPartitionsWithAnotherDelegateGiveSameResult() throws IOException {
+        Path x = writeLog("x.log", "t /a c1", "t /b c1", "t /a c2", "t /a c3", "t /a c4", "t /b c4");
+        Path y = writeLog("y.log", "t /a c1", "t /b c2", "t /a c3", "t /a c4");
+
+        List<String> loyal = new PartitionedLoyaltyAnalyzer(5, 1, StreamingLoyaltyAnalyzer::new, tempDir).find(x, y);
+
+        assertThat(loyal).containsExactlyInAnyOrder("c1", "c2", "c4");
+    }
+
+    @Test
+    void partitionFilesAreRemovedAfterFind() throws IOException {
+        Path x = writeLog("x.log", "t /a c1", "t /b c1");
+        Path y = writeLog("y.log", "t /a c1");
+        Path work = Files.createDirectory(tempDir.resolve("work"));
+
+        new PartitionedLoyaltyAnalyzer(4, 2, InMemoryLoyaltyAnalyzer::new, work).find(x, y);
+
+        try (Stream<Path> left = Files.list(work)) {
+            assertThat(left).isEmpty();
+        }
+    }
+
+    @Test
+    void failedPartitionWaitsForTheOthersBeforeRemovingTheirFiles() throws IOException {
+        Path x = writeLog("x.log", "t /a c1", "t /a c2", "t /a c3", "t /a c4", "t /a c5", "t /a c6");
+        Path y = writeLog("y.log", "t /b c1", "t /b c2", "t /b c3", "t /b c4", "t /b c5", "t /b c6");
+        AtomicBoolean slowPartitionFound = new AtomicBoolean();
+        // Partition 0 fails and is awaited first; partition 1 is interrupted, so it only checks its files are still there.
+        Supplier<LoyaltyAnalyzer> delegate = () -> (dayX, dayY) -> {
+            if (dayX.getFileName().toString().equals("day-x-0.log")) throw new IOException("partition failed");
+            long deadline = System.nanoTime() + 200_000_000L;
+            while (System.nanoTime() < deadline) Thread.onSpinWait();
+            slowPartitionFound.set(Files.exists(dayX) && Files.exists(dayY));
+            return List.of();
+        };
+
+        assertThatThrownBy(() -> new PartitionedLoyaltyAnalyzer(2, 2, delegate, tempDir).find(x, y))
+                .hasMessage("partition failed");
+        assertThat(slowPartitionFound).isTrue();
+    }
+}
@@ -0,0 +1,79 @@
+package com.analytics;
+
+import com.analytics.model.LoyaltyRule;
+import com.analytics.service.RollingLoyaltyWindow;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RollingLoyaltyWindowTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path writeLog(String filename, String... lines) throws IOException {
+        Path file = tempDir.resolve(filename);
+        Files.writeString(file, String.join("\n", lines));
+        return file;
+    }
+
+    @Test
+    void customerOnKOfNDaysWithEnoughPagesIsLoyal() throws IOException {
+        RollingLoyaltyWindow window = new RollingLoyaltyWindow(3, new LoyaltyRule(2, 2));
+        window.addDay(writeLog("d1.log",
+                "t /home cust_001",
+                "t /home cust_002"));
+        window.addDay(writeLog("d2.log",
+                "t /home cust_003"));
+        window.addDay(writeLog("d3.log",
+                "t /about cust_001",
+                "t /home cust_002",
+                "t /about cust_003"));
+
+        // cust_001: days 1 and 3, /home + /about; cust_002: one page; cust_003: days 2 and 3, two pages
+        assertThat(window.loyalCustomers()).containsExactlyInAnyOrder("cust_001", "cust_003");
+    }
+
+    @Test
+    void oldestDayIsDroppedWhenWindowIsFull() throws IOException {
+        RollingLoyaltyWindow window = new RollingLoyaltyWindow(2, LoyaltyRule.DEFAULT);
+        window.addDay(writeLog("d1.log", "t /home cust_001"));
+        window.addDay(writeLog("d2.log", "t /about cust_001"));
+        assertThat(window.loyalCustomers()).containsExactly("cust_001");
+
+        window.addDay(writeLog("d3.log", "t /contact cust_002"));
+
+        assertThat(window.size()).isEqualTo(2);
+        assertThat(window.loyalCustomers()).isEmpty();
+    }
+
+    @Test
+    void minPagesCountsDistinctPagesAcrossAllDays() throws IOException {
+        RollingLoyaltyWindow window = new RollingLoyaltyWindow(3, new LoyaltyRule(3, 3));
+        window.addDay(writeLog("d1.log", "t /home cust_001", "t /home cust_002"));
+        window.addDay(writeLog("d2.log", "t /home cust_001", "t /about cust_002"));
+        window.addDay(writeLog("d3.log", "t /about cust_001", "t /contact cust_002"));
+
+        assertThat(window.loyalCustomers()).containsExactly("cust_002");
+    }
+
+    @Test
+    void singleDayRuleNeedsOnlyPages() throws IOException {
+        RollingLoyaltyWindow window = new RollingLoyaltyWindow(1, new LoyaltyRule(1, 2));
+        window.addDay(writeLog("d1.log", "t /home cust_001", "t /about cust_001", "t /home cust_002"));
+
+        assertThat(window.loyalCustomers()).containsExactly("cust_001");
+    }
+
+    @Test
+    void rejectsRuleNeedingMoreDaysThanTheWindow() {
+        assertThatThrownBy(() -> new RollingLoyaltyWindow(2, new LoyaltyRule(3, 2)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
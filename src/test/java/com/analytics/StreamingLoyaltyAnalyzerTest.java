@@ -0,0 +1,68 @@
+package com.analytics;
+
+import com.analytics.parser.LogScanner;
+import com.analytics.service.DayYScanStatistics;
+import com.analytics.service.LoyalCustomerSink;
+import com.analytics.service.LoyaltyAnalyzer;
+import com.analytics.service.StreamingLoyaltyAnalyzer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingLoyaltyAnalyzerTest extends LoyaltyAnalyzerContractTest {
+
+    @Override
+    LoyaltyAnalyzer analyzer(LogScanner scanner) {
+        return new StreamingLoyaltyAnalyzer(null, scanner);
+    }
+
+    @Test
+    void customersAreEmittedInTheOrderDayYDecidesThem() throws IOException {
+        Path x = writeLog("x.log", "t /a cust_a", "t /b cust_a", "t /a cust_b", "t /b cust_b", "t /a cust_c");
+        Path y = writeLog("y.log", "t /a cust_b", "t /b cust_c", "t /a cust_a");
+        List<String> emitted = new ArrayList<>();
+
+        new StreamingLoyaltyAnalyzer().find(x, y, LoyalCustomerSink.into(emitted));
+
+        assertThat(emitted).containsExactly("cust_b", "cust_c", "cust_a");
+    }
+
+    @Test
+    void dayYCustomersAbsentFromDayXAreMostlyRejectedByTheFilter() throws IOException {
+        Path x = writeLog("x.log", "t /a cust_x", "t /b cust_x", "t /a cust_absent");
+        String[] dayY = new String[1001];
+        for (int i = 0; i < 1000; i++) dayY[i] = "t /a stranger_" + i;
+        dayY[1000] = "t /a cust_x";
+        Path y = writeLog("y.log", dayY);
+        StreamingLoyaltyAnalyzer analyzer = new StreamingLoyaltyAnalyzer();
+
+        assertThat(analyzer.find(x, y)).containsExactly("cust_x");
+
+        DayYScanStatistics statistics = analyzer.lastDayYStatistics();
+        assertThat(statistics.records()).isEqualTo(1001);
+        assertThat(statistics.rejected() + statistics.unmatched()).isEqualTo(1000);
+        assertThat(statistics.rejected()).isGreaterThan(950);
+        assertThat(statistics.bytesScanned()).isEqualTo(Files.size(y));
+        assertThat(statistics.exitedEarly()).isFalse();
+    }
+
+    @Test
+    void statisticsReportBytesSkippedByEarlyExit() throws IOException {
+        Path x = writeLog("x.log", "t /a cust_x", "t /b cust_x");
+        Path y = writeLog("y.log", "t /a cust_x", "t /a other_1", "t /a other_2", "t /a other_3");
+        StreamingLoyaltyAnalyzer analyzer = new StreamingLoyaltyAnalyzer();
+
+        analyzer.find(x, y);
+
+        DayYScanStatistics statistics = analyzer.lastDayYStatistics();
+        assertThat(statistics.records()).isEqualTo(1);
+        assertThat(statistics.exitedEarly()).isTrue();
+        assertThat(statistics.skippedFraction()).isGreaterThan(0.5);
+    }
+}
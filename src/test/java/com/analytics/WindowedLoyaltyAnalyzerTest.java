@@ -0,0 +1,34 @@
+package com.analytics;
+
+import com.analytics.parser.LogScanner;
+import com.analytics.service.LoyaltyAnalyzer;
+import com.analytics.service.WindowedLoyaltyAnalyzer;
+import com.analytics.snapshot.SnapshotStore;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WindowedLoyaltyAnalyzerTest extends LoyaltyAnalyzerContractTest {
+
+    @Override
+    LoyaltyAnalyzer analyzer(LogScanner scanner) {
+        return new WindowedLoyaltyAnalyzer(null, scanner);
+    }
+
+    @Test
+    void yesterdaysDayYSnapshotServesAsTodaysDayX() throws IOException {
+        SnapshotStore store = new SnapshotStore(tempDir.resolve("snapshots"));
+        Path monday = writeLog("monday.log", "2024-01-15T10:00:00 /home cust_001");
+        Path tuesday = writeLog("tuesday.log", "2024-01-16T10:00:00 /home cust_001");
+        Path wednesday = writeLog("wednesday.log", "2024-01-17T10:00:00 /about cust_001");
+
+        assertThat(new WindowedLoyaltyAnalyzer(store).find(monday, tuesday)).isEmpty();
+        assertThat(Files.exists(store.snapshotPath(tuesday))).isTrue();
+
+        assertThat(new WindowedLoyaltyAnalyzer(store).find(tuesday, wednesday)).containsExactly("cust_001");
+    }
+}
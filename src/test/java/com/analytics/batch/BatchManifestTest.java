@@ -0,0 +1,58 @@
+package com.analytics.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BatchManifestTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path manifest(String content) throws IOException {
+        Path file = tempDir.resolve("jobs.txt");
+        Files.writeString(file, content);
+        return file;
+    }
+
+    @Test
+    void readsJobsResolvingRelativePathsAgainstTheManifest() throws IOException {
+        Path absolute = tempDir.resolve("abs-y.log").toAbsolutePath();
+        Path file = manifest("""
+                # tenant a
+                a/x.log  a/y.log  out/a.txt
+
+                \tb/x.log %s out/b.txt
+                """.formatted(absolute));
+
+        assertThat(BatchManifest.read(file)).containsExactly(
+                new BatchJob(1, tempDir.resolve("a/x.log").toAbsolutePath(), tempDir.resolve("a/y.log").toAbsolutePath(),
+                        tempDir.resolve("out/a.txt").toAbsolutePath()),
+                new BatchJob(2, tempDir.resolve("b/x.log").toAbsolutePath(), absolute,
+                        tempDir.resolve("out/b.txt").toAbsolutePath()));
+    }
+
+    @Test
+    void lineWithoutThreePathsIsRejectedWithItsLineNumber() throws IOException {
+        Path file = manifest("x.log y.log out.txt\nx.log y.log\n");
+
+        assertThatThrownBy(() -> BatchManifest.read(file))
+                .isInstanceOf(IOException.class)
+                .hasMessageStartingWith("jobs.txt:2: expected <dayX> <dayY> <output>");
+    }
+
+    @Test
+    void duplicateOutputIsRejected() throws IOException {
+        Path file = manifest("x.log y.log out.txt\nx2.log y2.log ./out.txt\n");
+
+        assertThatThrownBy(() -> BatchManifest.read(file))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("jobs.txt:2: output ./out.txt is already written by another job");
+    }
+}
@@ -0,0 +1,108 @@
+package com.analytics.batch;
+
+import com.analytics.service.InMemoryLoyaltyAnalyzer;
+import com.analytics.service.LoyaltyAnalyzer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchRunnerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private BatchJob job(int number, String loyalCustomer) throws IOException {
+        Path x = tempDir.resolve("x" + number + ".log");
+        Path y = tempDir.resolve("y" + number + ".log");
+        Files.writeString(x, "t /a %s\nt /b %s\nt /a other%d\n".formatted(loyalCustomer, loyalCustomer, number));
+        Files.writeString(y, "t /a %s\n".formatted(loyalCustomer));
+        return new BatchJob(number, x, y, tempDir.resolve("out/" + number + ".txt"));
+    }
+
+    @Test
+    void everyJobWritesItsOwnOutput() throws IOException {
+        List<BatchJob> jobs = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) jobs.add(job(i, "cust_" + i));
+        List<JobResult> reported = Collections.synchronizedList(new ArrayList<>());
+
+        List<JobResult> results = new BatchRunner(InMemoryLoyaltyAnalyzer::new, 4, 64L << 20).run(jobs, reported::add);
+
+        assertThat(results).extracting(JobResult::job).containsExactlyElementsOf(jobs);
+        assertThat(results).allMatch(JobResult::succeeded).extracting(JobResult::loyalCustomers).containsOnly(1L);
+        assertThat(reported).containsExactlyInAnyOrderElementsOf(results);
+        for (int i = 1; i <= 20; i++) {
+            assertThat(tempDir.resolve("out/" + i + ".txt")).hasContent("cust_" + i);
+        }
+    }
+
+    @Test
+    void failedJobLeavesNoOutputAndDoesNotStopTheOthers() throws IOException {
+        BatchJob good = job(1, "cust_1");
+        BatchJob missing = new BatchJob(2, tempDir.resolve("absent.log"), good.dayY(), tempDir.resolve("out/2.txt"));
+
+        List<JobResult> results = new BatchRunner(InMemoryLoyaltyAnalyzer::new, 2, 64L << 20)
+                .run(List.of(good, missing), result -> { });
+
+        assertThat(results.get(0).succeeded()).isTrue();
+        assertThat(results.get(1).succeeded()).isFalse();
+        assertThat(results.get(1).failure()).isInstanceOf(IOException.class);
+        assertThat(tempDir.resolve("out/2.txt")).doesNotExist();
+        try (Stream<Path> files = Files.list(tempDir.resolve("out"))) {
+            assertThat(files).extracting(p -> p.getFileName().toString()).containsExactly("1.txt");
+        }
+    }
+
+    @Test
+    void jobRunningOutOfHeapDoesNotStopTheOthers() throws IOException {
+        BatchJob good = job(1, "cust_1");
+        BatchJob greedy = job(2, "cust_2");
+        LoyaltyAnalyzer analyzer = (dayX, dayY) -> {
+            if (dayX.equals(greedy.dayX())) throw new OutOfMemoryError("Java heap space");
+            return new InMemoryLoyaltyAnalyzer().find(dayX, dayY);
+        };
+
+        List<JobResult> results = new BatchRunner(() -> analyzer, 1, 64L << 20).run(List.of(greedy, good), result -> { });
+
+        assertThat(results.get(0).failure()).isInstanceOf(OutOfMemoryError.class);
+        assertThat(results.get(1).succeeded()).isTrue();
+        assertThat(tempDir.resolve("out/1.txt")).hasContent("cust_1");
+        assertThat(tempDir.resolve("out/2.txt")).doesNotExist();
+    }
+
+    @Test
+    void jobsAreLimitedByTheMemoryBudget() throws IOException {
+        // Each job's estimate exceeds the 1 MB budget, so they must run one at a time despite four threads.
+        List<BatchJob> jobs = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            BatchJob job = job(i, "cust_" + i);
+            Files.writeString(job.dayX(), "t /p filler\n".repeat(60_000), StandardOpenOption.APPEND);
+            jobs.add(job);
+        }
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        LoyaltyAnalyzer counting = (dayX, dayY) -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                return new InMemoryLoyaltyAnalyzer().find(dayX, dayY);
+            } finally {
+                running.decrementAndGet();
+            }
+        };
+        BatchRunner runner = new BatchRunner(() -> counting, 4, 1L << 20);
+
+        assertThat(runner.reservationMb(jobs.get(0))).isEqualTo(1);
+        assertThat(runner.run(jobs, result -> { })).allMatch(JobResult::succeeded);
+        assertThat(peak).hasValue(1);
+    }
+}
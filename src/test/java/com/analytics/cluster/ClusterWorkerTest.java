@@ -0,0 +1,94 @@
+package com.analytics.cluster;
+
+import com.analytics.model.LoyaltyRule;
+import com.analytics.parser.MalformedLinePolicy;
+import com.analytics.parser.TimeFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClusterWorkerTest {
+
+    private static final long JOB_ID = 42;
+
+    private ClusterWorker worker;
+
+    @BeforeEach
+    void startWorker() throws IOException {
+        worker = new ClusterWorker(0).start();
+    }
+
+    @AfterEach
+    void stopWorker() throws IOException {
+        worker.close();
+    }
+
+    @Test
+    void statesArrivingAfterTheirJobFinishedAreDropped() throws IOException {
+        InetSocketAddress peer = new InetSocketAddress(worker.address().getAddress(), 1);
+        send(out -> {
+            ClusterProtocol.writeHeader(out, ClusterProtocol.JOB);
+            out.writeLong(JOB_ID);
+            out.writeInt(2);
+            out.writeInt(0);
+            ClusterProtocol.writeAddress(out, worker.address());
+            ClusterProtocol.writeAddress(out, peer);
+            out.writeUTF("x.log");
+            out.writeUTF("y.log");
+            ClusterProtocol.writePolicy(out, MalformedLinePolicy.DEFAULT);
+            ClusterProtocol.writeFilter(out, TimeFilter.NONE);
+            ClusterProtocol.writeRule(out, LoyaltyRule.DEFAULT);
+            out.writeInt(0);
+        });
+        assertThat(worker.jobCount()).isZero();
+
+        sendShuffle(JOB_ID);
+
+        assertThat(worker.jobCount()).isZero();
+    }
+
+    @Test
+    void statesArrivingBeforeTheirJobAreKept() throws IOException {
+        sendShuffle(JOB_ID);
+
+        assertThat(worker.jobCount()).isEqualTo(1);
+    }
+
+    private void sendShuffle(long jobId) throws IOException {
+        send(out -> {
+            ClusterProtocol.writeHeader(out, ClusterProtocol.SHUFFLE);
+            out.writeLong(jobId);
+            out.writeInt(2);
+            out.writeInt(1);
+            ClusterProtocol.writeRule(out, LoyaltyRule.DEFAULT);
+            new PartialStates(LoyaltyRule.DEFAULT).write(out);
+        });
+    }
+
+    /** Sends one message and waits until the worker has handled it and closed the connection. */
+    private void send(Message message) throws IOException {
+        InetSocketAddress address = worker.address();
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            message.write(out);
+            out.flush();
+            InputStream in = socket.getInputStream();
+            while (in.read() >= 0) {
+                // drain the answer until the worker closes the connection
+            }
+        }
+    }
+
+    private interface Message {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,51 @@
+package com.analytics.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BloomFilterTest {
+
+    private static byte[] key(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void addedKeysAreAlwaysReported() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) filter.add(key("cust_" + i));
+
+        for (int i = 0; i < 10_000; i++) assertThat(filter.mightContain(key("cust_" + i))).isTrue();
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTarget() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) filter.add(key("cust_" + i));
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(key("other_" + i))) falsePositives++;
+        }
+        assertThat(falsePositives).isLessThan(2_000);
+    }
+
+    @Test
+    void bufferSliceIsCheckedWithoutCopying() {
+        BloomFilter filter = new BloomFilter(1, 0.01);
+        filter.add(key("cust_001"));
+        ByteBuffer line = ByteBuffer.wrap(key("t /home cust_001\n"));
+
+        assertThat(filter.mightContain(line, 8, 16)).isTrue();
+    }
+
+    @Test
+    void rejectsInvalidFalsePositiveRate() {
+        assertThatThrownBy(() -> new BloomFilter(10, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new BloomFilter(10, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,58 @@
+package com.analytics.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ByteSliceTest {
+
+    private final ByteBuffer line = ByteBuffer.wrap("t /home cust_001".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    void viewsARangeOfTheBuffer() {
+        ByteSlice slice = new ByteSlice().set(line, 2, 7);
+
+        assertThat(slice.length()).isEqualTo(5);
+        assertThat(slice.byteAt(1)).isEqualTo((byte) 'h');
+        assertThat(slice.toString()).isEqualTo("/home");
+        assertThat(slice.slice(1, 3).toString()).isEqualTo("ho");
+    }
+
+    @Test
+    void lengthAndToStringAgreeOnUtf8Bytes() {
+        byte[] bytes = "cust_é".getBytes(StandardCharsets.UTF_8);
+        ByteSlice slice = new ByteSlice().set(ByteBuffer.wrap(bytes), 0, bytes.length);
+
+        assertThat(slice.length()).isEqualTo(7);
+        assertThat(slice.toString()).isEqualTo("cust_é");
+        assertThat(slice.toByteArray()).isEqualTo(bytes);
+    }
+
+    @Test
+    void comparesContentNotPosition() {
+        ByteBuffer other = ByteBuffer.wrap("cust_001".getBytes(StandardCharsets.UTF_8));
+
+        ByteSlice slice = new ByteSlice().set(line, 8, 16);
+
+        assertThat(slice.contentEquals(new ByteSlice().set(other, 0, 8))).isTrue();
+        assertThat(slice.contentEquals("cust_001".getBytes(StandardCharsets.UTF_8))).isTrue();
+        assertThat(slice.contentEquals(new ByteSlice().set(other, 0, 7))).isFalse();
+    }
+
+    @Test
+    void dictionaryAndFilterAcceptSlices() {
+        ByteSlice slice = new ByteSlice().set(line, 8, 16);
+        ByteStringDictionary dictionary = new ByteStringDictionary();
+        BloomFilter filter = new BloomFilter(1, 0.01);
+        filter.add(slice.toByteArray());
+
+        int id = dictionary.intern(slice);
+
+        assertThat(dictionary.find("cust_001".getBytes(StandardCharsets.UTF_8))).isEqualTo(id);
+        assertThat(dictionary.find(slice.set(line, 2, 7))).isEqualTo(-1);
+        assertThat(filter.mightContain(slice.set(line, 8, 16))).isTrue();
+    }
+}
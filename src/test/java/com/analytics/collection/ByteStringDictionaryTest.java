@@ -0,0 +1,96 @@
+package com.analytics.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ByteStringDictionaryTest {
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void assignsDenseIdsInOrderOfFirstSight() {
+        ByteStringDictionary dictionary = new ByteStringDictionary();
+
+        assertThat(dictionary.intern(bytes("cust_001"))).isZero();
+        assertThat(dictionary.intern(bytes("cust_002"))).isEqualTo(1);
+        assertThat(dictionary.intern(bytes("cust_001"))).isZero();
+        assertThat(dictionary.size()).isEqualTo(2);
+    }
+
+    @Test
+    void internsSlicesOfALargerBuffer() {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes("t /home cust_001"));
+        ByteStringDictionary dictionary = new ByteStringDictionary();
+
+        int id = dictionary.intern(buffer, 8, 16);
+
+        assertThat(dictionary.decode(id)).isEqualTo("cust_001");
+        assertThat(dictionary.find(bytes("cust_001"))).isEqualTo(id);
+        assertThat(dictionary.equals(id, buffer, 8, 16)).isTrue();
+    }
+
+    @Test
+    void findsTheKeyOfAnotherDictionary() {
+        ByteStringDictionary a = new ByteStringDictionary();
+        ByteStringDictionary b = new ByteStringDictionary();
+        a.intern(bytes("cust_001"));
+        a.intern(bytes("cust_002"));
+        b.intern(bytes("cust_002"));
+
+        assertThat(b.find(a, 1)).isZero();
+        assertThat(b.find(a, 0)).isEqualTo(-1);
+    }
+
+    @Test
+    void findReturnsMinusOneForUnknownKeys() {
+        ByteStringDictionary dictionary = new ByteStringDictionary();
+        dictionary.intern(bytes("/home"));
+
+        assertThat(dictionary.find(bytes("/about"))).isEqualTo(-1);
+        assertThat(dictionary.size()).isEqualTo(1);
+    }
+
+    @Test
+    void survivesGrowthAcrossManyKeysAndPages() {
+        ByteStringDictionary dictionary = new ByteStringDictionary();
+        String padding = "x".repeat(200);
+        for (int i = 0; i < 20_000; i++) {
+            assertThat(dictionary.intern(bytes(padding + i))).isEqualTo(i);
+        }
+
+        for (int i = 0; i < 20_000; i += 997) {
+            assertThat(dictionary.find(bytes(padding + i))).isEqualTo(i);
+            assertThat(dictionary.decode(i)).isEqualTo(padding + i);
+        }
+        assertThat(dictionary.size()).isEqualTo(20_000);
+    }
+
+    @Test
+    void decodesMultiByteUtf8() {
+        ByteStringDictionary dictionary = new ByteStringDictionary();
+
+        int id = dictionary.intern(bytes("kunde_č"));
+
+        assertThat(dictionary.decode(id)).isEqualTo("kunde_č");
+        assertThat(dictionary.bytes(id)).isEqualTo(bytes("kunde_č"));
+    }
+
+    @Test
+    void longHashSetTracksPackedPairs() {
+        LongHashSet set = new LongHashSet(4);
+
+        assertThat(set.add(LongHashSet.pack(1, 2))).isTrue();
+        assertThat(set.add(LongHashSet.pack(1, 2))).isFalse();
+        for (int i = 0; i < 1_000; i++) set.add(LongHashSet.pack(i, 0));
+
+        assertThat(set.contains(LongHashSet.pack(999, 0))).isTrue();
+        assertThat(set.contains(LongHashSet.pack(2, 1))).isFalse();
+        assertThat(set.size()).isEqualTo(1_001);
+    }
+}
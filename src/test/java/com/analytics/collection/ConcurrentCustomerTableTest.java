@@ -0,0 +1,107 @@
+package com.analytics.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrentCustomerTableTest {
+
+    private static ByteSlice slice(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        return new ByteSlice().set(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    /** Runs task(thread) on the given number of threads, all released at once. */
+    private static void race(int threads, IntConsumer task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> running = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                task.accept(thread);
+            });
+            worker.start();
+            running.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : running) worker.join();
+    }
+
+    @Test
+    void tracksDaysAndDistinctPages() {
+        ConcurrentCustomerTable table = new ConcurrentCustomerTable();
+        table.record(slice("c1"), slice("/a"), ConcurrentCustomerTable.DAY_X);
+        table.record(slice("c1"), slice("/b"), ConcurrentCustomerTable.DAY_Y);
+        table.record(slice("c2"), slice("/a"), ConcurrentCustomerTable.DAY_X);
+        table.record(slice("c2"), slice("/a"), ConcurrentCustomerTable.DAY_Y);
+        table.record(slice("c3"), slice("/a"), ConcurrentCustomerTable.DAY_X);
+        table.record(slice("c3"), slice("/b"), ConcurrentCustomerTable.DAY_X);
+
+        assertThat(table.loyalCustomers()).containsExactly("c1");
+        assertThat(table.size()).isEqualTo(3);
+    }
+
+    @Test
+    void concurrentProducersAgreeWithTheRule() throws InterruptedException {
+        ConcurrentCustomerTable table = new ConcurrentCustomerTable();
+        int customers = 20_000;
+
+        // Thread t records every customer on day X (t even) or day Y (t odd); customer i is seen on
+        // page (i % 3 == 0 ? "/same" : "/page-" + t), so only customers with i % 3 != 0 reach two pages.
+        race(4, thread -> {
+            for (int i = 0; i < customers; i++) {
+                String page = i % 3 == 0 ? "/same" : "/page-" + thread;
+                table.record(slice("cust_" + i), slice(page),
+                        thread % 2 == 0 ? ConcurrentCustomerTable.DAY_X : ConcurrentCustomerTable.DAY_Y);
+            }
+        });
+
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < customers; i++) {
+            if (i % 3 != 0) expected.add("cust_" + i);
+        }
+        assertThat(table.size()).isEqualTo(customers);
+        assertThat(table.loyalCustomers()).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @Test
+    void dictionaryHandsOutEachIdExactlyOnceUnderContention() throws InterruptedException {
+        ConcurrentByteStringDictionary dictionary = new ConcurrentByteStringDictionary(4);
+        int keys = 10_000;
+        AtomicIntegerArray ids = new AtomicIntegerArray(keys);
+        AtomicInteger conflicts = new AtomicInteger();
+
+        race(4, thread -> {
+            for (int i = 0; i < keys; i++) {
+                int key = (i + thread * 2_500) % keys;
+                int id = dictionary.intern(slice("key_" + key));
+                int previous = ids.getAndSet(key, id + 1);
+                if (previous != 0 && previous != id + 1) conflicts.incrementAndGet();
+            }
+        });
+
+        assertThat(conflicts).hasValue(0);
+        Set<Integer> distinct = new HashSet<>();
+        for (int i = 0; i < keys; i++) distinct.add(ids.get(i) - 1);
+        assertThat(dictionary.size()).isEqualTo(keys);
+        assertThat(distinct).hasSize(keys).allMatch(id -> id >= 0 && id < keys);
+        assertThat(dictionary.find(slice("key_42"))).isEqualTo(ids.get(42) - 1);
+        assertThat(dictionary.find(slice("missing"))).isEqualTo(-1);
+    }
+}
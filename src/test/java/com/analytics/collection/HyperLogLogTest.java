@@ -0,0 +1,65 @@
+package com.analytics.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+
+    private static HyperLogLog sketchOf(int from, int to) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = from; i < to; i++) sketch.add(("cust_" + i).getBytes(StandardCharsets.UTF_8));
+        return sketch;
+    }
+
+    @Test
+    void smallCardinalitiesAreNearlyExact() {
+        assertThat(new HyperLogLog().estimate()).isZero();
+        assertThat(sketchOf(0, 100).estimate()).isCloseTo(100L, within(2L));
+    }
+
+    @Test
+    void largeCardinalityIsWithinAFewStandardErrors() {
+        assertThat((double) sketchOf(0, 200_000).estimate()).isCloseTo(200_000, within(200_000 * 0.05));
+    }
+
+    @Test
+    void duplicatesDoNotCount() {
+        HyperLogLog sketch = sketchOf(0, 1000);
+        sketch.merge(sketchOf(0, 1000));
+        assertThat(sketch.estimate()).isEqualTo(sketchOf(0, 1000).estimate());
+    }
+
+    @Test
+    void mergeCountsTheUnionAndIntersectionFollows() {
+        HyperLogLog a = sketchOf(0, 60_000);
+        HyperLogLog b = sketchOf(40_000, 100_000);
+
+        assertThat((double) HyperLogLog.intersection(a, b)).isCloseTo(20_000, within(100_000 * 0.05));
+        a.merge(b);
+        assertThat((double) a.estimate()).isCloseTo(100_000, within(100_000 * 0.05));
+    }
+
+    @Test
+    void sliceAndByteArrayHashAlike() {
+        HyperLogLog bytes = new HyperLogLog();
+        bytes.add("cust_1".getBytes(StandardCharsets.UTF_8));
+        HyperLogLog slice = new HyperLogLog();
+        slice.add(new ByteSlice().set(ByteBuffer.wrap("x cust_1".getBytes(StandardCharsets.UTF_8)), 2, 8));
+
+        assertThat(HyperLogLog.intersection(bytes, slice)).isEqualTo(1);
+    }
+
+    @Test
+    void invalidPrecisionIsRejected() {
+        assertThatThrownBy(() -> new HyperLogLog(3)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new HyperLogLog(19)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new HyperLogLog(10).merge(new HyperLogLog(12)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
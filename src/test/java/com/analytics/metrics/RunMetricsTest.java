@@ -0,0 +1,209 @@
+package com.analytics.metrics;
+
+import com.analytics.service.CompactLoyaltyAnalyzer;
+import com.analytics.service.ConcurrentLoyaltyAnalyzer;
+import com.analytics.service.DictionaryLoyaltyAnalyzer;
+import com.analytics.service.ExternalSortLoyaltyAnalyzer;
+import com.analytics.service.InMemoryLoyaltyAnalyzer;
+import com.analytics.service.LoyalCustomerSink;
+import com.analytics.service.LoyaltyAnalyzer;
+import com.analytics.service.ParallelLoyaltyAnalyzer;
+import com.analytics.service.PartitionedLoyaltyAnalyzer;
+import com.analytics.service.StreamingLoyaltyAnalyzer;
+import com.analytics.service.WindowedLoyaltyAnalyzer;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RunMetricsTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path writeLog(String filename, String... lines) throws IOException {
+        Path file = tempDir.resolve(filename);
+        Files.writeString(file, String.join("\n", lines));
+        return file;
+    }
+
+    private Path dayX() throws IOException {
+        return writeLog("x.log", "t /home cust_001", "", "BADLINE", "t /about cust_001", "t /home cust_002");
+    }
+
+    private Path dayY() throws IOException {
+        return writeLog("y.log", "t /home cust_001", "t /cart cust_002", "t /home cust_003");
+    }
+
+    @Test
+    void inMemoryAnalyzerRecordsScanTotalsAndAggregateSize() throws IOException {
+        Path x = dayX();
+        Path y = dayY();
+        RunMetrics metrics = new RunMetrics("in-memory");
+
+        long loyal = new InMemoryLoyaltyAnalyzer().find(x, y, LoyalCustomerSink.into(new ArrayList<>()), metrics);
+        metrics.finish(loyal);
+
+        assertThat(metrics.getLines()).isEqualTo(8);
+        assertThat(metrics.getBytes()).isEqualTo(Files.size(x) + Files.size(y));
+        assertThat(metrics.getBlankLines()).isEqualTo(1);
+        assertThat(metrics.getMalformedLines()).isEqualTo(1);
+        assertThat(metrics.getAggregateCustomers()).isEqualTo(3);
+        assertThat(metrics.getCandidateCustomers()).isEqualTo(RunMetrics.NOT_MEASURED);
+        assertThat(metrics.getLoyalCustomers()).isEqualTo(2);
+        assertThat(metrics.getTotalMillis()).isGreaterThanOrEqualTo(0);
+        assertThat(metrics.getLinesPerSecond()).isPositive();
+    }
+
+    @Test
+    void dictionaryAnalyzerRecordsTheSameTotals() throws IOException {
+        RunMetrics metrics = new RunMetrics("dictionary");
+
+        new DictionaryLoyaltyAnalyzer().find(dayX(), dayY(), LoyalCustomerSink.into(new ArrayList<>()), metrics);
+
+        assertThat(metrics.getLines()).isEqualTo(8);
+        assertThat(metrics.getMalformedLines()).isEqualTo(1);
+        assertThat(metrics.getAggregateCustomers()).isEqualTo(3);
+    }
+
+    @Test
+    void streamingAnalyzerRecordsCandidatesAndEarlyExitPosition() throws IOException {
+        Path x = writeLog("x.log", "t /a cust_1", "t /b cust_1");
+        Path y = writeLog("y.log", "t /a cust_1", "t /a cust_2", "t /a cust_3");
+        RunMetrics metrics = new RunMetrics("streaming");
+
+        new StreamingLoyaltyAnalyzer().find(x, y, LoyalCustomerSink.into(new ArrayList<>()), metrics);
+
+        assertThat(metrics.getCandidateCustomers()).isEqualTo(1);
+        assertThat(metrics.getEarlyExitPosition()).isEqualTo("t /a cust_1\n".length());
+        assertThat(metrics.getLines()).isEqualTo(3);
+    }
+
+    @Test
+    void disabledMetricsRecordNothing() throws IOException {
+        RunMetrics metrics = RunMetrics.disabled();
+
+        new InMemoryLoyaltyAnalyzer().find(dayX(), dayY(), LoyalCustomerSink.into(new ArrayList<>()), metrics);
+        metrics.finish(2);
+
+        assertThat(metrics.isEnabled()).isFalse();
+        assertThat(metrics.getLines()).isEqualTo(RunMetrics.NOT_MEASURED);
+        assertThat(metrics.getAggregateCustomers()).isEqualTo(RunMetrics.NOT_MEASURED);
+        assertThat(metrics.getLoyalCustomers()).isEqualTo(RunMetrics.NOT_MEASURED);
+    }
+
+    @Test
+    void everyAnalyzerRecordsItsScanTotals() throws IOException {
+        Path x = dayX();
+        Path y = dayY();
+        Map<String, LoyaltyAnalyzer> analyzers = Map.of(
+                "parallel", new ParallelLoyaltyAnalyzer(2),
+                "compact", new CompactLoyaltyAnalyzer(),
+                "concurrent", new ConcurrentLoyaltyAnalyzer(2),
+                "external", new ExternalSortLoyaltyAnalyzer(),
+                "partitioned", new PartitionedLoyaltyAnalyzer(4, 2, InMemoryLoyaltyAnalyzer::new, tempDir),
+                "windowed", new WindowedLoyaltyAnalyzer());
+
+        for (Map.Entry<String, LoyaltyAnalyzer> entry : analyzers.entrySet()) {
+            String name = entry.getKey();
+            RunMetrics metrics = new RunMetrics(name);
+            metrics.finish(entry.getValue().find(x, y, LoyalCustomerSink.into(new ArrayList<>()), metrics));
+
+            assertThat(metrics.getLines()).as(name).isEqualTo(8);
+            assertThat(metrics.getBytes()).as(name).isEqualTo(Files.size(x) + Files.size(y));
+            assertThat(metrics.getBlankLines()).as(name).isEqualTo(1);
+            assertThat(metrics.getMalformedLines()).as(name).isEqualTo(1);
+            assertThat(metrics.getParseDayXMillis()).as(name).isNotNegative();
+            assertThat(metrics.getEvaluateMillis()).as(name).isNotNegative();
+            assertThat(metrics.getLinesPerSecond()).as(name).isPositive();
+            assertThat(metrics.getLoyalCustomers()).as(name).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void unmeasuredScanTotalsAreReportedAsMinusOne() {
+        RunMetrics metrics = new RunMetrics("none");
+        metrics.finish(0);
+
+        assertThat(metrics.getLines()).isEqualTo(RunMetrics.NOT_MEASURED);
+        assertThat(metrics.getLinesPerSecond()).isEqualTo(RunMetrics.NOT_MEASURED);
+        assertThat(metrics.toJson())
+                .contains("\"phaseMillis\": {\"parseDayX\": -1, \"parseDayY\": -1, \"evaluate\": -1}")
+                .contains("\"lines\": -1,")
+                .contains("\"bytes\": -1,")
+                .contains("\"linesPerSecond\": -1.0,")
+                .contains("\"bytesPerSecond\": -1.0,");
+    }
+
+    @Test
+    void jsonSummaryContainsEveryMeasurement() throws IOException {
+        RunMetrics metrics = new RunMetrics("in-\"memory\"");
+        long loyal = new InMemoryLoyaltyAnalyzer().find(dayX(), dayY(), LoyalCustomerSink.into(new ArrayList<>()), metrics);
+        metrics.finish(loyal);
+
+        assertThat(metrics.toJson())
+                .startsWith("{")
+                .endsWith("}")
+                .contains("\"analyzer\": \"in-\\\"memory\\\"\"")
+                .contains("\"phaseMillis\": {\"parseDayX\": ")
+                .contains("\"lines\": 8,")
+                .contains("\"blankLines\": 1,")
+                .contains("\"malformedLines\": 1,")
+                .contains("\"aggregateCustomers\": 3,")
+                .contains("\"candidateCustomers\": -1,")
+                .contains("\"loyalCustomers\": 2");
+    }
+
+    @Test
+    void registeredMetricsAreVisibleThroughJmx() throws Exception {
+        RunMetrics metrics = new RunMetrics("in-memory");
+        metrics.register();
+        new InMemoryLoyaltyAnalyzer().find(dayX(), dayY(), LoyalCustomerSink.into(new ArrayList<>()), metrics);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(RunMetrics.OBJECT_NAME);
+        assertThat(server.getAttribute(name, "Lines")).isEqualTo(8L);
+        assertThat(server.getAttribute(name, "Analyzer")).isEqualTo("in-memory");
+
+        RunMetrics next = new RunMetrics("streaming");
+        next.register();
+        assertThat(server.getAttribute(name, "Analyzer")).isEqualTo("streaming");
+        server.unregisterMBean(name);
+    }
+
+    @Test
+    void phasesAndRunAreRecordedAsFlightRecorderEvents() throws IOException {
+        Path dump = tempDir.resolve("run.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.analytics.Phase");
+            recording.enable("com.analytics.Run");
+            recording.start();
+            RunMetrics metrics = new RunMetrics("in-memory");
+            long loyal = new InMemoryLoyaltyAnalyzer().find(dayX(), dayY(), LoyalCustomerSink.into(new ArrayList<>()), metrics);
+            metrics.finish(loyal);
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        assertThat(events).filteredOn(e -> e.getEventType().getName().equals("com.analytics.Phase"))
+                .extracting(e -> e.getString("phase"))
+                .containsExactly("parseDayX", "parseDayY", "evaluate");
+        assertThat(events).filteredOn(e -> e.getEventType().getName().equals("com.analytics.Run"))
+                .singleElement()
+                .satisfies(e -> assertThat(e.getLong("loyalCustomers")).isEqualTo(2));
+    }
+}
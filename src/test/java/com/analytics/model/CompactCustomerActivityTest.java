@@ -0,0 +1,94 @@
+package com.analytics.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactCustomerActivityTest {
+
+    @Test
+    void newActivityHasNoPagesAndHasNotVisitedEitherDay() {
+        CompactCustomerActivity a = new CompactCustomerActivity("cust_001");
+
+        assertThat(a.uniquePageCount()).isZero();
+        assertThat(a.visitedDayX()).isFalse();
+        assertThat(a.visitedDayY()).isFalse();
+        assertThat(a.isSaturated()).isFalse();
+    }
+
+    @Test
+    void samePageRecordedMultipleTimesCountsOnce() {
+        CompactCustomerActivity a = new CompactCustomerActivity("cust_001");
+        a.recordDayX("/home");
+        a.recordDayY("/home");
+
+        assertThat(a.uniquePageCount()).isEqualTo(1);
+        assertThat(a.isLoyal()).isFalse();
+    }
+
+    @Test
+    void saturatesAtThresholdAndStopsGrowing() {
+        CompactCustomerActivity a = new CompactCustomerActivity("cust_001");
+        a.recordDayX("/home");
+        a.recordDayX("/about");
+        a.recordDayX("/contact");
+
+        assertThat(a.isSaturated()).isTrue();
+        assertThat(a.uniquePageCount()).isEqualTo(2);
+    }
+
+    @Test
+    void loyalWhenVisitedBothDaysAndTwoUniquePages() {
+        CompactCustomerActivity a = new CompactCustomerActivity("cust_001");
+        a.recordDayX("/home");
+        a.recordDayY("/about");
+
+        assertThat(a.isLoyal()).isTrue();
+    }
+
+    @Test
+    void notLoyalWhenVisitedOnlyOneDay() {
+        CompactCustomerActivity a = new CompactCustomerActivity("cust_001");
+        a.recordDayX("/home");
+        a.recordDayX("/about");
+
+        assertThat(a.isLoyal()).isFalse();
+    }
+
+    @Test
+    void higherThresholdKeepsPagesUntilReached() {
+        CompactCustomerActivity a = new CompactCustomerActivity("cust_001", 3);
+        a.recordDayX("/home");
+        a.recordDayY("/about");
+        a.recordDayY("/home");
+
+        assertThat(a.uniquePageCount()).isEqualTo(2);
+        assertThat(a.isLoyal()).isFalse();
+
+        a.recordDayY("/contact");
+
+        assertThat(a.isSaturated()).isTrue();
+        assertThat(a.isLoyal()).isTrue();
+    }
+
+    @Test
+    void agreesWithCustomerActivityOnEveryShortSequence() {
+        String[] pages = {"/a", "/b", "/c"};
+        // each step is one of 6 events: page 0..2 on day X or day Y
+        for (int sequence = 0; sequence < 6 * 6 * 6; sequence++) {
+            CustomerActivity full = new CustomerActivity("c");
+            CompactCustomerActivity compact = new CompactCustomerActivity("c");
+            for (int step = 0, rest = sequence; step < 3; step++, rest /= 6) {
+                String page = pages[rest % 6 / 2];
+                if (rest % 2 == 0) {
+                    full.recordDayX(page);
+                    compact.recordDayX(page);
+                } else {
+                    full.recordDayY(page);
+                    compact.recordDayY(page);
+                }
+            }
+            assertThat(compact.isLoyal()).as("sequence %d", sequence).isEqualTo(full.isLoyal());
+        }
+    }
+}
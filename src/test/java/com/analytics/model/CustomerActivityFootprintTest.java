@@ -0,0 +1,61 @@
+package com.analytics.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the page references retained by CustomerActivity and CompactCustomerActivity maps built from the
+ * same generated visits: mostly customers with a handful of pages plus a minority of crawler-like customers
+ * with hundreds. Counting the structures' own contents keeps the comparison independent of the GC.
+ */
+class CustomerActivityFootprintTest {
+
+    private static final int CUSTOMERS = 20_000;
+    private static final int CRAWLERS = 200;
+    private static final int CRAWLER_PAGES = 500;
+
+    @Test
+    void compactStateRetainsFarFewerPagesThanFullPageSets() {
+        Map<String, CustomerActivity> full = build(CustomerActivity::new, (activity, dayX, page) -> {
+            if (dayX) activity.recordDayX(page); else activity.recordDayY(page);
+        });
+        Map<String, CompactCustomerActivity> compact = build(CompactCustomerActivity::new, (activity, dayX, page) -> {
+            if (dayX) activity.recordDayX(page); else activity.recordDayY(page);
+        });
+
+        long fullPages = full.values().stream().mapToLong(CustomerActivity::uniquePageCount).sum();
+        long compactPages = compact.values().stream()
+                .mapToLong(activity -> activity.isSaturated() ? 0 : activity.uniquePageCount())
+                .sum();
+
+        assertThat(compactPages * 4)
+                .as("compact state retained %,d pages, full page sets %,d pages", compactPages, fullPages)
+                .isLessThan(fullPages);
+        assertThat(compact.values().stream().filter(CompactCustomerActivity::isLoyal).count())
+                .isEqualTo(full.values().stream().filter(CustomerActivity::isLoyal).count());
+    }
+
+    private interface Visit<T> {
+        void record(T activity, boolean dayX, String page);
+    }
+
+    private static <T> Map<String, T> build(Function<String, T> factory, Visit<T> visit) {
+        Random random = new Random(42);
+        Map<String, T> activities = new HashMap<>();
+        for (int c = 0; c < CUSTOMERS; c++) {
+            String id = "cust_" + c;
+            T activity = activities.computeIfAbsent(id, factory);
+            int pages = c < CRAWLERS ? CRAWLER_PAGES : 1 + random.nextInt(4);
+            for (int p = 0; p < pages; p++) {
+                visit.record(activity, random.nextBoolean(), "/page-" + random.nextInt(2_000));
+            }
+        }
+        return activities;
+    }
+}
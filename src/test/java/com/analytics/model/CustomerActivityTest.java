@@ -56,6 +56,22 @@ class CustomerActivityTest {
         assertThat(a.uniquePageCount()).isEqualTo(2);
     }
 
+    // --- merge() ---
+
+    @Test
+    void mergeCombinesDaysAndPages() {
+        CustomerActivity a = new CustomerActivity("cust_001");
+        a.recordDayX("/home");
+        CustomerActivity b = new CustomerActivity("cust_001");
+        b.recordDayY("/home");
+        b.recordDayY("/about");
+
+        assertThat(a.merge(b)).isSameAs(a);
+        assertThat(a.visitedDayX()).isTrue();
+        assertThat(a.visitedDayY()).isTrue();
+        assertThat(a.uniquePageCount()).isEqualTo(2);
+    }
+
     // --- isLoyal() ---
 
     @Test
@@ -0,0 +1,95 @@
+package com.analytics.model;
+
+import com.analytics.collection.ByteSlice;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class DaySketchTest {
+
+    private static ByteSlice slice(String s) {
+        return new ByteSlice().set(ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8)), 0, s.length());
+    }
+
+    private static void visit(DaySketch sketch, String pageId, String customerId) {
+        sketch.record(slice(pageId), slice(customerId));
+    }
+
+    @Test
+    void smallDaysAreCountedExactly() {
+        DaySketch x = new DaySketch();
+        DaySketch y = new DaySketch();
+        visit(x, "/a", "pages_on_both_days");
+        visit(y, "/b", "pages_on_both_days");
+        visit(x, "/a", "same_page_twice");
+        visit(y, "/a", "same_page_twice");
+        visit(x, "/a", "multi_page_on_x");
+        visit(x, "/b", "multi_page_on_x");
+        visit(y, "/a", "multi_page_on_x");
+        visit(x, "/a", "only_x");
+        visit(x, "/b", "only_x");
+
+        LoyaltyEstimate estimate = DaySketch.estimateLoyal(x, y);
+
+        assertThat(estimate.exact()).isTrue();
+        assertThat(estimate.loyalCustomers()).isEqualTo(2);
+        assertThat(estimate.lower()).isEqualTo(2);
+        assertThat(estimate.upper()).isEqualTo(2);
+        assertThat(x.distinctCustomers()).isEqualTo(4);
+    }
+
+    @Test
+    void sampledEstimateContainsTheTrueCountAndMemoryStaysBounded() {
+        DaySketch x = new DaySketch(1024);
+        DaySketch y = new DaySketch(1024);
+        Random random = new Random(3);
+        long loyal = 0;
+        for (int c = 0; c < 60_000; c++) {
+            String customer = "cust_" + c;
+            boolean onX = c < 40_000;
+            boolean onY = c >= 20_000;
+            String pageX = "/p" + random.nextInt(3);
+            String pageY = "/p" + random.nextInt(3);
+            if (onX) visit(x, pageX, customer);
+            if (onY) visit(y, pageY, customer);
+            if (onX && onY && !pageX.equals(pageY)) loyal++;
+        }
+
+        LoyaltyEstimate estimate = DaySketch.estimateLoyal(x, y);
+
+        assertThat(estimate.exact()).isFalse();
+        assertThat(x.sampleSize()).isLessThan(2048);
+        assertThat(estimate.lower()).isLessThanOrEqualTo(loyal);
+        assertThat(estimate.upper()).isGreaterThanOrEqualTo(loyal);
+        assertThat(estimate.relativeError()).isLessThan(0.2);
+        assertThat((double) x.distinctCustomers()).isCloseTo(40_000, within(2_000.0));
+    }
+
+    @Test
+    void samplesAreCoordinatedAcrossDaysOfDifferentSize() {
+        DaySketch small = new DaySketch(64);
+        DaySketch large = new DaySketch(64);
+        for (int c = 0; c < 1_000; c++) {
+            visit(small, "/a", "cust_" + c);
+            visit(large, "/b", "cust_" + c);
+        }
+        for (int c = 1_000; c < 20_000; c++) visit(large, "/b", "cust_" + c);
+
+        LoyaltyEstimate estimate = DaySketch.estimateLoyal(small, large);
+
+        assertThat(Long.compareUnsigned(large.threshold(), small.threshold())).isLessThan(0);
+        assertThat(estimate.lower()).isLessThanOrEqualTo(1_000);
+        assertThat(estimate.upper()).isGreaterThanOrEqualTo(1_000);
+    }
+
+    @Test
+    void invalidCapacityIsRejected() {
+        assertThatThrownBy(() -> new DaySketch(8)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
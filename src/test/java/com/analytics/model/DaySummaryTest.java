@@ -0,0 +1,62 @@
+package com.analytics.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DaySummaryTest {
+
+    private static void visit(DaySummary summary, String pageId, String customerId) {
+        ByteBuffer line = ByteBuffer.wrap((pageId + " " + customerId).getBytes(StandardCharsets.UTF_8));
+        summary.record(line, 0, pageId.length(), pageId.length() + 1, line.limit());
+    }
+
+    @Test
+    void keepsDistinctPagesUntilLimitThenSaturates() {
+        DaySummary summary = new DaySummary(3);
+        visit(summary, "/home", "cust_001");
+        visit(summary, "/home", "cust_001");
+        visit(summary, "/about", "cust_001");
+
+        int customer = summary.findCustomer("cust_001".getBytes(StandardCharsets.UTF_8));
+        assertThat(summary.distinctPages(customer)).isEqualTo(2);
+        assertThat(summary.isSaturated(customer)).isFalse();
+
+        visit(summary, "/contact", "cust_001");
+
+        assertThat(summary.isSaturated(customer)).isTrue();
+        assertThat(summary.distinctPages(customer)).isEqualTo(3);
+    }
+
+    @Test
+    void absorbUnionsPagesOfTheSameCustomer() {
+        DaySummary x = new DaySummary(2);
+        DaySummary y = new DaySummary(2);
+        visit(x, "/home", "cust_001");
+        visit(y, "/home", "cust_001");
+        visit(y, "/about", "cust_002");
+
+        DaySummary merged = new DaySummary(2);
+        int first = merged.absorb(x, 0);
+        assertThat(merged.absorb(y, 0)).isEqualTo(first);
+        assertThat(merged.distinctPages(first)).isEqualTo(1);
+
+        visit(x, "/about", "cust_001");
+        merged.absorb(x, 0);
+
+        assertThat(merged.isSaturated(first)).isTrue();
+        assertThat(merged.customerId(merged.absorb(y, 1))).isEqualTo("cust_002");
+    }
+
+    @Test
+    void pageLimitOfOneSaturatesOnFirstVisit() {
+        DaySummary summary = new DaySummary(1);
+        visit(summary, "/home", "cust_001");
+
+        assertThat(summary.isSaturated(0)).isTrue();
+        assertThat(summary.distinctPages(0)).isEqualTo(1);
+    }
+}
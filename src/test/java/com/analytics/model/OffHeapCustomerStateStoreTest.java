@@ -0,0 +1,118 @@
+package com.analytics.model;
+
+import com.analytics.collection.ByteSlice;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OffHeapCustomerStateStoreTest {
+
+    private static int intern(CustomerStateStore store, String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        return store.intern(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    private static int find(CustomerStateStore store, String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        return store.find(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    @Test
+    void assignsDenseIdsAndKeepsThemAcrossGrowth() {
+        try (OffHeapCustomerStateStore store = new OffHeapCustomerStateStore(1, 16)) {
+            for (int i = 0; i < 50_000; i++) assertThat(intern(store, "cust_" + i)).isEqualTo(i);
+            for (int i = 0; i < 50_000; i += 997) {
+                assertThat(intern(store, "cust_" + i)).isEqualTo(i);
+                assertThat(store.decode(i)).isEqualTo("cust_" + i);
+            }
+            assertThat(store.size()).isEqualTo(50_000);
+            assertThat(find(store, "cust_50000")).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void keepsSamplesPerCustomer() {
+        try (OffHeapCustomerStateStore store = new OffHeapCustomerStateStore(3)) {
+            int alice = intern(store, "alice");
+            int bob = intern(store, "bob");
+            store.setSample(alice, 2, 42);
+            store.setSampleSize(alice, (byte) 3);
+            store.setSampleSize(bob, (byte) -1);
+
+            assertThat(store.sample(alice, 2)).isEqualTo(42);
+            assertThat(store.sampleSize(alice)).isEqualTo((byte) 3);
+            assertThat(store.sampleSize(bob)).isEqualTo((byte) -1);
+            assertThat(store.sample(bob, 0)).isZero();
+        }
+    }
+
+    @Test
+    void findsCustomersOfAHeapStoreAndBack() {
+        try (OffHeapCustomerStateStore offHeap = new OffHeapCustomerStateStore(1);
+             HeapCustomerStateStore heap = new HeapCustomerStateStore(1)) {
+            intern(offHeap, "alice");
+            intern(offHeap, "bob");
+            intern(heap, "bob");
+            intern(heap, "carol");
+
+            assertThat(offHeap.find(heap, 0)).isEqualTo(1);
+            assertThat(offHeap.find(heap, 1)).isEqualTo(-1);
+            assertThat(heap.find(offHeap, 1)).isEqualTo(0);
+            assertThat(offHeap.hash(1)).isEqualTo(heap.hash(0));
+            assertThat(offHeap.key(1, new ByteSlice()).toString()).isEqualTo("bob");
+        }
+    }
+
+    @Test
+    void comparesKeysAsUnsignedBytes() {
+        try (OffHeapCustomerStateStore store = new OffHeapCustomerStateStore(1)) {
+            int b = intern(store, "b");
+            int ab = intern(store, "ab");
+            int a = intern(store, "a");
+            int accented = intern(store, "é");
+
+            assertThat(store.compare(a, ab)).isNegative();
+            assertThat(store.compare(ab, b)).isNegative();
+            assertThat(store.compare(accented, b)).isPositive();
+            assertThat(store.compare(a, a)).isZero();
+        }
+    }
+
+    @Test
+    void ensureCapacityGrowsWithoutChangingIds() {
+        try (OffHeapCustomerStateStore store = new OffHeapCustomerStateStore(1)) {
+            int alice = intern(store, "alice");
+            long before = store.memoryUsage();
+            store.ensureCapacity(100_000);
+
+            assertThat(store.memoryUsage()).isGreaterThan(before);
+            assertThat(find(store, "alice")).isEqualTo(alice);
+        }
+    }
+
+    @Test
+    void closeReleasesTheMemory() {
+        OffHeapCustomerStateStore store = new OffHeapCustomerStateStore(1);
+        intern(store, "alice");
+        assertThat(store.memoryUsage()).isPositive();
+
+        store.close();
+        store.close();
+
+        assertThat(store.memoryUsage()).isZero();
+        assertThatThrownBy(() -> store.decode(0)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void rejectsOversizedKeys() {
+        try (OffHeapCustomerStateStore store = new OffHeapCustomerStateStore(1)) {
+            byte[] key = new byte[(1 << 20) + 1];
+            assertThatThrownBy(() -> store.intern(ByteBuffer.wrap(key), 0, key.length))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+}
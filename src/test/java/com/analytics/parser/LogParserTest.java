@@ -5,9 +5,12 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -76,4 +79,14 @@ class LogParserTest {
         assertThat(records).hasSize(1);
         assertThat(records.get(0)).isEqualTo(new LogRecord("2024-01-15T10:00:00", "/home", "cust_001"));
     }
+
+    @Test
+    void readsGzipCompressedFiles() throws IOException {
+        Path file = tempDir.resolve("log.txt.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write("2024-01-15T10:00:00 /home cust_001\nBADLINE\n".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(parser.parseFile(file)).containsExactly(new LogRecord("2024-01-15T10:00:00", "/home", "cust_001"));
+    }
 }
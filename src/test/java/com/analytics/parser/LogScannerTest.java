@@ -0,0 +1,462 @@
+package com.analytics.parser;
+
+import com.analytics.model.LogRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import static com.analytics.parser.LogScanner.decode;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LogScannerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final Logger parserLogger = Logger.getLogger(LogParser.class.getName());
+    private final List<String> warnings = new ArrayList<>();
+    private final Handler capture = new Handler() {
+        @Override
+        public void publish(java.util.logging.LogRecord record) {
+            warnings.add(record.getMessage());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @BeforeEach
+    void captureWarnings() {
+        parserLogger.addHandler(capture);
+    }
+
+    @AfterEach
+    void releaseWarnings() {
+        parserLogger.removeHandler(capture);
+    }
+
+    private Path write(String filename, String content) throws IOException {
+        Path file = tempDir.resolve(filename);
+        Files.writeString(file, content);
+        return file;
+    }
+
+    /** Scans into (pageId, customerId) pairs, reusing LogRecord with an empty timestamp. */
+    private static List<LogRecord> scan(LogScanner scanner, Path file) throws IOException {
+        List<LogRecord> records = new ArrayList<>();
+        scanner.scan(file, (buf, pageStart, pageEnd, customerStart, customerEnd) ->
+                records.add(new LogRecord("", decode(buf, pageStart, pageEnd), decode(buf, customerStart, customerEnd))));
+        return records;
+    }
+
+    private static List<LogRecord> withoutTimestamps(List<LogRecord> records) {
+        return records.stream().map(r -> new LogRecord("", r.pageId(), r.customerId())).toList();
+    }
+
+    @Test
+    void reportsPageAndCustomerFields() throws IOException {
+        Path file = write("log.txt", "2024-01-15T10:00:00 /home cust_001\n2024-01-15T10:05:00 /about cust_002\n");
+
+        assertThat(scan(new LogScanner(), file)).containsExactly(
+                new LogRecord("", "/home", "cust_001"),
+                new LogRecord("", "/about", "cust_002"));
+    }
+
+    @Test
+    void customerFieldKeepsRemainderOfLineLikeLogParser() throws IOException {
+        Path file = write("log.txt", "  2024-01-15T10:00:00 \t/home   cust 001  \n");
+
+        assertThat(scan(new LogScanner(), file))
+                .containsExactlyElementsOf(withoutTimestamps(new LogParser().parseFile(file)));
+    }
+
+    @Test
+    void malformedLinesAreReportedWithLineNumbers() throws IOException {
+        Path file = write("log.txt", "\r\n2024-01-15T10:00:00 /home cust_001\r\nBADLINE\r\n\n2024 /home\n");
+
+        assertThat(scan(new LogScanner(), file)).hasSize(1);
+        assertThat(warnings).containsExactly(
+                "Malformed log entry at log.txt:3: \"BADLINE\"",
+                "Malformed log entry at log.txt:5: \"2024 /home\"");
+    }
+
+    @Test
+    void lineNumbersMatchLogParserAcrossTerminatorStyles() throws IOException {
+        Path file = write("log.txt", "BAD1\rt /a c1\r\nBAD2\n\rBAD3");
+
+        scan(new LogScanner(), file);
+        List<String> scannerWarnings = List.copyOf(warnings);
+        warnings.clear();
+        new LogParser().parseFile(file);
+
+        assertThat(scannerWarnings).isEqualTo(warnings).hasSize(3);
+    }
+
+    @Test
+    void smallWindowsProduceSameRecordsAsSingleMapping() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            content.append("2024-01-15T10:00:00 /page-%d cust_%04d%s".formatted(i % 7, i, i % 3 == 0 ? "\r\n" : "\n"));
+        }
+        Path file = write("log.txt", content.toString());
+
+        List<LogRecord> expected = withoutTimestamps(new LogParser().parseFile(file));
+
+        assertThat(scan(new LogScanner(), file)).isEqualTo(expected);
+        assertThat(scan(new LogScanner(13), file)).isEqualTo(expected);
+        assertThat(scan(new LogScanner(64), file)).isEqualTo(expected);
+    }
+
+    @Test
+    void lineLongerThanWindowIsStillScanned() throws IOException {
+        Path file = write("log.txt", "2024-01-15T10:00:00 /home cust_001\n2024-01-15T10:05:00 /about cust_002");
+
+        assertThat(scan(new LogScanner(4), file)).containsExactly(
+                new LogRecord("", "/home", "cust_001"),
+                new LogRecord("", "/about", "cust_002"));
+    }
+
+    @Test
+    void visitorCanStopScanning() throws IOException {
+        Path file = write("log.txt", "t /a c1\nt /b c2\nt /c c3\n");
+        List<String> seen = new ArrayList<>();
+
+        new LogScanner().scan(file, (buf, pageStart, pageEnd, customerStart, customerEnd) -> {
+            seen.add(decode(buf, customerStart, customerEnd));
+            return seen.size() < 2;
+        });
+
+        assertThat(seen).containsExactly("c1", "c2");
+    }
+
+    @Test
+    void splitRangesStartOnLineBoundariesAndCoverTheFile() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            content.append("t /p cust_%d%s".formatted(i, i % 2 == 0 ? "\r\n" : "\n"));
+        }
+        Path file = write("log.txt", content.toString());
+        LogScanner scanner = new LogScanner();
+
+        List<FileRange> ranges = scanner.split(file, 7);
+        List<LogRecord> records = new ArrayList<>();
+        long lines = 0;
+        for (FileRange range : ranges) {
+            lines += scanner.scan(file, range, (buf, pageStart, pageEnd, customerStart, customerEnd) ->
+                    records.add(new LogRecord("", decode(buf, pageStart, pageEnd), decode(buf, customerStart, customerEnd))),
+                    MalformedLineHandler.logging()).lines();
+        }
+
+        assertThat(ranges).hasSize(7);
+        assertThat(ranges.get(0).start()).isZero();
+        assertThat(ranges.get(ranges.size() - 1).end()).isEqualTo(Files.size(file));
+        assertThat(lines).isEqualTo(200);
+        assertThat(records).isEqualTo(scan(scanner, file));
+    }
+
+    @Test
+    void splitNeverProducesEmptyRanges() throws IOException {
+        Path file = write("log.txt", "t /a c1\n");
+
+        assertThat(new LogScanner().split(file, 16)).containsExactly(new FileRange(0, 8));
+    }
+
+    @Test
+    void emptyFileProducesNoRecords() throws IOException {
+        Path file = write("log.txt", "");
+
+        assertThat(scan(new LogScanner(), file)).isEmpty();
+    }
+
+    private Path writeGzip(String filename, String... members) throws IOException {
+        Path file = tempDir.resolve(filename);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (String member : members) {
+                GZIPOutputStream gzip = new GZIPOutputStream(out);
+                gzip.write(member.getBytes(StandardCharsets.UTF_8));
+                gzip.finish();
+            }
+        }
+        return file;
+    }
+
+    @Test
+    void gzipInputProducesSameRecordsAndWarningsAsPlainInput() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            content.append(i % 50 == 7 ? "BAD%d".formatted(i) : "2024-01-15T10:00:00 /page-%d cust_%04d".formatted(i % 7, i))
+                    .append(i % 3 == 0 ? "\r\n" : i % 3 == 1 ? "\n" : "\r");
+        }
+        Path plain = write("log.txt", content.toString());
+        Path compressed = writeGzip("log.txt.gz", content.toString());
+
+        List<LogRecord> expected = scan(new LogScanner(), plain);
+        List<String> plainWarnings = List.copyOf(warnings);
+        warnings.clear();
+
+        // Chunks of 64 bytes split lines, and sometimes \r\n pairs, across reads.
+        assertThat(scan(new LogScanner(LogScanner.DEFAULT_WINDOW_SIZE, 64), compressed)).isEqualTo(expected);
+        assertThat(warnings.stream().map(w -> w.replace("log.txt.gz", "log.txt")).toList()).isEqualTo(plainWarnings);
+    }
+
+    @Test
+    void concatenatedGzipMembersAreReadAsOneStream() throws IOException {
+        Path file = writeGzip("log.gz", "t /a c1\n", "t /b c2\n");
+
+        assertThat(scan(new LogScanner(), file)).containsExactly(new LogRecord("", "/a", "c1"), new LogRecord("", "/b", "c2"));
+    }
+
+    @Test
+    void gzipLineLongerThanChunkIsStillScanned() throws IOException {
+        Path file = writeGzip("log.gz", "t /a " + "c".repeat(1000) + "\nt /b c2");
+
+        assertThat(scan(new LogScanner(LogScanner.DEFAULT_WINDOW_SIZE, 16), file))
+                .extracting(LogRecord::pageId).containsExactly("/a", "/b");
+    }
+
+    @Test
+    void visitorCanStopScanningGzipInput() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) content.append("t /p c").append(i).append('\n');
+        Path file = writeGzip("log.gz", content.toString());
+        List<String> seen = new ArrayList<>();
+
+        ScanResult result = new LogScanner(LogScanner.DEFAULT_WINDOW_SIZE, 128).scan(file,
+                (buf, pageStart, pageEnd, customerStart, customerEnd) -> seen.add(decode(buf, customerStart, customerEnd))
+                        && seen.size() < 3);
+
+        assertThat(seen).containsExactly("c0", "c1", "c2");
+        assertThat(result.lines()).isEqualTo(3);
+    }
+
+    @Test
+    void scanResultCountsBlankAndMalformedLines() throws IOException {
+        Path file = tempDir.resolve("log.txt");
+        Files.writeString(file, "t /a c1\n\n   \nBADLINE\nt /b c2\nonly two\n");
+
+        ScanResult result = new LogScanner().scan(file, (LogCursor cursor) -> true);
+
+        assertThat(result.lines()).isEqualTo(6);
+        assertThat(result.blankLines()).isEqualTo(2);
+        assertThat(result.malformedLines()).isEqualTo(2);
+        assertThat(result.records()).isEqualTo(2);
+        assertThat(result.bytes()).isEqualTo(Files.size(file));
+    }
+
+    @Test
+    void compressedFilesAreNotSplit() throws IOException {
+        Path file = writeGzip("log.gz", "t /a c1\nt /b c2\nt /c c3\n");
+
+        assertThat(new LogScanner().split(file, 4)).containsExactly(new FileRange(0, Files.size(file)));
+        assertThat(LogScanner.isCompressed(file)).isTrue();
+    }
+
+    @Test
+    void corruptGzipInputFailsTheScan() throws IOException {
+        Path file = writeGzip("log.gz", "t /a c1\n".repeat(1000));
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+
+        assertThatThrownBy(() -> scan(new LogScanner(), file)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void zstdInputIsRejectedWithClearMessage() throws IOException {
+        Path file = tempDir.resolve("log.zst");
+        Files.write(file, new byte[]{0x28, (byte) 0xB5, 0x2F, (byte) 0xFD, 0, 0});
+
+        assertThatThrownBy(() -> scan(new LogScanner(), file))
+                .isInstanceOf(IOException.class).hasMessageContaining("zstd");
+    }
+
+    @Test
+    void cursorExposesAllFieldsAndLineNumbers() throws IOException {
+        Path file = write("log.txt", "2024-01-15T10:00:00 /home cust_001\n\n2024-01-15T10:05:00 /about cust 002\n");
+        List<LogRecord> records = new ArrayList<>();
+        List<Long> lineNumbers = new ArrayList<>();
+
+        new LogScanner().scan(file, cursor -> {
+            lineNumbers.add(cursor.lineNumber());
+            return records.add(cursor.toRecord());
+        });
+
+        assertThat(records).isEqualTo(new LogParser().parseFile(file));
+        assertThat(lineNumbers).containsExactly(1L, 3L);
+    }
+
+    @Test
+    void cursorIsReusedAcrossLines() throws IOException {
+        Path file = write("log.txt", "t /a c1\nt /b c2\n");
+        List<LogCursor> cursors = new ArrayList<>();
+
+        new LogScanner().scan(file, cursor -> cursors.add(cursor));
+
+        assertThat(cursors).hasSize(2);
+        assertThat(cursors.get(0)).isSameAs(cursors.get(1));
+    }
+
+    @Test
+    void cursorScanAllocatesNothingPerLine() throws IOException {
+        Path small = write("small.txt", "t /home cust_001\n".repeat(1_000));
+        Path large = write("large.txt", "t /home cust_001\n".repeat(100_000));
+        LogScanner scanner = new LogScanner();
+        long[] lines = new long[1];
+        RecordVisitor counter = cursor -> {
+            if (cursor.customerId().length() > 0) lines[0]++;
+            return true;
+        };
+        scanner.scan(large, counter); // warm up
+
+        long smallBytes = allocatedBytes(() -> scanner.scan(small, counter));
+        long largeBytes = allocatedBytes(() -> scanner.scan(large, counter));
+
+        assertThat(largeBytes - smallBytes).isLessThan(64 * 1024);
+    }
+
+    /** One line per minute from 2024-01-15T00:00, each by its own customer. */
+    private Path sortedDay(String filename, int minutes) throws IOException {
+        StringBuilder content = new StringBuilder();
+        LocalDateTime time = LocalDateTime.of(2024, 1, 15, 0, 0);
+        for (int i = 0; i < minutes; i++) content.append("%s /home cust_%d\n".formatted(time.plusMinutes(i), i));
+        return write(filename, content.toString());
+    }
+
+    private static LogScanner filtering(long windowSize, TimeFilter filter) {
+        return new LogScanner(windowSize, LogScanner.DEFAULT_CHUNK_SIZE, MalformedLinePolicy.DEFAULT, filter);
+    }
+
+    private static List<String> customers(LogScanner scanner, Path file, ScanResult[] result) throws IOException {
+        List<String> customers = new ArrayList<>();
+        result[0] = scanner.scan(file, (LogCursor cursor) -> customers.add(cursor.customerId().toString()));
+        return customers;
+    }
+
+    @Test
+    void timeFilterKeepsOnlyLinesInItsRangeAndHours() throws IOException {
+        Path file = sortedDay("day.log", 24 * 60);
+        TimeFilter filter = new TimeFilter(LocalDateTime.of(2024, 1, 15, 8, 0), LocalDateTime.of(2024, 1, 15, 18, 0),
+                LocalTime.of(9, 0), LocalTime.of(17, 0));
+        ScanResult[] result = new ScanResult[1];
+
+        List<String> kept = customers(new LogScanner(MalformedLinePolicy.DEFAULT, filter), file, result);
+
+        assertThat(kept).hasSize(8 * 60).startsWith("cust_540").endsWith("cust_1019");
+        assertThat(result[0].filteredLines()).isEqualTo(24 * 60 - 8 * 60);
+        assertThat(result[0].records()).isEqualTo(kept.size());
+    }
+
+    @Test
+    void unreadableTimestampIsMalformedOnlyWhileFiltering() throws IOException {
+        Path file = write("log.txt", "2024-01-15T10:00:00 /home cust_001\nyesterday /home cust_002\n");
+
+        assertThat(new LogScanner().scan(file, (LogCursor cursor) -> true).malformedLines()).isZero();
+        TimeFilter filter = new TimeFilter(LocalDateTime.of(2024, 1, 1, 0, 0), null, null, null);
+        ScanResult result = new LogScanner(MalformedLinePolicy.DEFAULT, filter).scan(file, (LogCursor cursor) -> true);
+
+        assertThat(result.malformedLines()).isEqualTo(1);
+        assertThat(result.records()).isEqualTo(1);
+    }
+
+    @Test
+    void sortedFileIsScannedFromTheStartOfTheRangeOnly() throws IOException {
+        Path file = sortedDay("day.log", 24 * 60);
+        TimeFilter filter = new TimeFilter(LocalDateTime.of(2024, 1, 15, 20, 0), LocalDateTime.of(2024, 1, 15, 21, 0),
+                null, null);
+        ScanResult[] narrowed = new ScanResult[1];
+
+        List<String> kept = customers(filtering(256, filter), file, narrowed);
+
+        assertThat(kept).hasSize(60).startsWith("cust_1200").endsWith("cust_1259");
+        assertThat(narrowed[0].lines()).isEqualTo(24 * 60);
+        assertThat(narrowed[0].filteredLines()).isEqualTo(24 * 60 - 60);
+        assertThat(narrowed[0].bytes()).isEqualTo(Files.size(file));
+    }
+
+    @Test
+    void lineNumbersOfANarrowedScanCountFromTheStartOfTheFile() throws IOException {
+        List<String> lines = new ArrayList<>(Files.readAllLines(sortedDay("sorted.log", 24 * 60)));
+        // The first malformed line is in the part skipped by the time range, the second inside it.
+        lines.set(3, "2024-01-15T00:03 skipped");
+        lines.set(1230, "2024-01-15T20:30 broken");
+        Path file = write("day.log", String.join("\n", lines) + "\n");
+        TimeFilter filter = new TimeFilter(LocalDateTime.of(2024, 1, 15, 20, 0), LocalDateTime.of(2024, 1, 15, 21, 0),
+                null, null);
+        MalformedLineReport report = MalformedLinePolicy.DEFAULT.rangeReport(file);
+
+        ScanResult result = filtering(256, filter).scan(file, new FileRange(0, Files.size(file)), cursor -> true, report);
+
+        assertThat(result.lines()).isEqualTo(24 * 60);
+        assertThat(result.malformedLines()).isEqualTo(1);
+        assertThat(report.samples()).extracting(MalformedLineReport.Sample::lineNumber).containsExactly(1231L);
+    }
+
+    @Test
+    void fileThatIsNotSortedAfterAllIsScannedInFull() throws IOException {
+        List<String> lines = new ArrayList<>(Files.readAllLines(sortedDay("sorted.log", 24 * 60)));
+        // A line of the range early in the file, and a swap inside the range that reveals the disorder.
+        lines.set(5, "2024-01-15T20:30 /home early");
+        Collections.swap(lines, 1210, 1220);
+        Path file = write("day.log", String.join("\n", lines) + "\n");
+        TimeFilter filter = new TimeFilter(LocalDateTime.of(2024, 1, 15, 20, 0), LocalDateTime.of(2024, 1, 15, 21, 0),
+                null, null);
+        Logger scannerLogger = Logger.getLogger(LogScanner.class.getName());
+        scannerLogger.addHandler(capture);
+        try {
+            List<String> kept = customers(filtering(256, filter), file, new ScanResult[1]);
+
+            assertThat(kept).hasSize(61).contains("early");
+            assertThat(warnings).anyMatch(warning -> warning.contains("not sorted by time"));
+        } finally {
+            scannerLogger.removeHandler(capture);
+        }
+    }
+
+    @Test
+    void filteredScanAllocatesNothingPerLine() throws IOException {
+        Path small = write("small.txt", "2024-01-15T10:00:00 /home cust_001\n".repeat(1_000));
+        Path large = write("large.txt", "2024-01-15T10:00:00 /home cust_001\n".repeat(100_000));
+        LogScanner scanner = new LogScanner(MalformedLinePolicy.DEFAULT,
+                new TimeFilter(null, null, LocalTime.of(9, 0), LocalTime.of(17, 0)));
+        RecordVisitor counter = cursor -> true;
+        scanner.scan(large, counter); // warm up
+
+        long smallBytes = allocatedBytes(() -> scanner.scan(small, counter));
+        long largeBytes = allocatedBytes(() -> scanner.scan(large, counter));
+
+        assertThat(largeBytes - smallBytes).isLessThan(64 * 1024);
+    }
+
+    private interface IoAction {
+        void run() throws IOException;
+    }
+
+    private static long allocatedBytes(IoAction action) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        action.run();
+        return threads.getCurrentThreadAllocatedBytes() - before;
+    }
+}
@@ -0,0 +1,154 @@
+package com.analytics.parser;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MalformedLineReportTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final Logger parserLogger = Logger.getLogger(LogParser.class.getName());
+    private final List<String> warnings = new ArrayList<>();
+    private final Handler capture = new Handler() {
+        @Override
+        public void publish(java.util.logging.LogRecord record) {
+            warnings.add(record.getMessage());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @BeforeEach
+    void captureWarnings() {
+        parserLogger.addHandler(capture);
+    }
+
+    @AfterEach
+    void releaseWarnings() {
+        parserLogger.removeHandler(capture);
+    }
+
+    /** Writes good well-formed lines, each followed by badPerGood malformed ones alternating between one and two fields. */
+    private Path write(int good, int badPerGood) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < good; i++) {
+            content.append("t /p c").append(i).append('\n');
+            for (int j = 0; j < badPerGood; j++) content.append(j % 2 == 0 ? "BAD" : "t /only").append('\n');
+        }
+        Path file = tempDir.resolve("log.txt");
+        Files.writeString(file, content.toString());
+        return file;
+    }
+
+    @Test
+    void onlyTheFirstLinesAreLoggedAndTheRestSummarized() throws IOException {
+        Path file = write(100, 2);
+        MalformedLinePolicy policy = new MalformedLinePolicy(3, 1.0, 0);
+
+        ScanResult result = new LogScanner(policy, TimeFilter.NONE).scan(file, (LogCursor cursor) -> true);
+
+        assertThat(result.malformedLines()).isEqualTo(200);
+        assertThat(warnings).containsExactly(
+                "Malformed log entry at log.txt:2: \"BAD\"",
+                "Malformed log entry at log.txt:3: \"t /only\"",
+                "Malformed log entry at log.txt:5: \"BAD\"",
+                "197 more malformed log entries in log.txt not shown (MISSING_PAGE_ID=100, MISSING_CUSTOMER_ID=100)");
+    }
+
+    @Test
+    void scannerAbortsOnceTheRatioIsExceeded() throws IOException {
+        Path file = write(1000, 1);
+        MalformedLinePolicy policy = new MalformedLinePolicy(0, 0.05, 100);
+        List<String> seen = new ArrayList<>();
+        LogScanner scanner = new LogScanner(policy, TimeFilter.NONE);
+
+        assertThatThrownBy(() -> scanner.scan(file, (LogCursor cursor) -> seen.add(cursor.customerId().toString())))
+                .isInstanceOf(TooManyMalformedLinesException.class)
+                .hasMessageContaining("of 100 lines in log.txt are malformed")
+                .hasMessageContaining("more than 5% allowed");
+        assertThat(seen).hasSize(50);
+    }
+
+    @Test
+    void ratioBelowTheThresholdPasses() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) content.append(i % 25 == 0 ? "BAD" : "t /p c" + i).append('\n');
+        Path file = tempDir.resolve("log.txt");
+        Files.writeString(file, content.toString());
+        MalformedLinePolicy policy = new MalformedLinePolicy(0, 0.05, 100);
+
+        assertThat(new LogScanner(policy, TimeFilter.NONE).scan(file, (LogCursor cursor) -> true).malformedLines()).isEqualTo(40);
+        assertThat(new LogParser(policy).parseFile(file)).hasSize(960);
+    }
+
+    @Test
+    void parserAppliesTheSamePolicy() throws IOException {
+        Path file = write(1000, 1);
+        MalformedLinePolicy policy = new MalformedLinePolicy(2, 0.05, 100);
+
+        assertThatThrownBy(() -> new LogParser(policy).parseFile(file))
+                .isInstanceOf(TooManyMalformedLinesException.class)
+                .satisfies(e -> assertThat(((TooManyMalformedLinesException) e).lines()).isEqualTo(100));
+        assertThat(warnings).startsWith(
+                "Malformed log entry at log.txt:2: \"BAD\"",
+                "Malformed log entry at log.txt:4: \"BAD\"");
+    }
+
+    @Test
+    void fewBadLinesAtTheStartDoNotAbortBeforeMinLines() throws IOException {
+        Path file = tempDir.resolve("log.txt");
+        Files.writeString(file, "BAD\nBAD\n" + "t /p c\n".repeat(200));
+        MalformedLinePolicy policy = new MalformedLinePolicy(10, 0.05, 100);
+
+        assertThat(new LogScanner(policy, TimeFilter.NONE).scan(file, (LogCursor cursor) -> true).records()).isEqualTo(200);
+    }
+
+    @Test
+    void rangeReportsMergeInFileOrder() throws IOException {
+        MalformedLinePolicy policy = new MalformedLinePolicy(3, 1.0, 0);
+        Path file = tempDir.resolve("log.txt");
+        MalformedLineReport first = policy.rangeReport(file);
+        first.malformed(file, 4, "BAD");
+        MalformedLineReport second = policy.rangeReport(file);
+        second.malformed(file, 1, "t /only");
+        second.malformed(file, 2, "BAD");
+        second.malformed(file, 3, "BAD");
+
+        MalformedLineReport merged = policy.newReport(file);
+        merged.merge(first, 0);
+        merged.merge(second, 10);
+
+        assertThat(merged.samples()).extracting(MalformedLineReport.Sample::lineNumber).containsExactly(4L, 11L, 12L);
+        assertThat(merged.count(MalformedLineReport.Kind.MISSING_PAGE_ID)).isEqualTo(3);
+        assertThat(merged.count(MalformedLineReport.Kind.MISSING_CUSTOMER_ID)).isEqualTo(1);
+        assertThat(first.samples()).isNotEmpty();
+        assertThat(warnings).hasSize(3);
+    }
+
+    @Test
+    void invalidPolicyIsRejected() {
+        assertThatThrownBy(() -> new MalformedLinePolicy(-1, 0.5, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new MalformedLinePolicy(1, 1.5, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new MalformedLinePolicy(1, Double.NaN, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
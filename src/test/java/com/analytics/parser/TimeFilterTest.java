@@ -0,0 +1,84 @@
+package com.analytics.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimeFilterTest {
+
+    private static long epochSecond(String timestamp) {
+        ByteBuffer buffer = ByteBuffer.wrap(("  " + timestamp + " ").getBytes(StandardCharsets.US_ASCII));
+        return TimeFilter.epochSecond(buffer, 2, 2 + timestamp.length());
+    }
+
+    private static long utc(int year, int month, int day, int hour, int minute, int second) {
+        return LocalDateTime.of(year, month, day, hour, minute, second).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    @Test
+    void readsIsoLocalDateTimesAsWritten() {
+        assertThat(epochSecond("2024-01-15T10:05:30")).isEqualTo(utc(2024, 1, 15, 10, 5, 30));
+        assertThat(epochSecond("2024-01-15T10:05")).isEqualTo(utc(2024, 1, 15, 10, 5, 0));
+        assertThat(epochSecond("2024-02-29T23:59:59.999+02:00")).isEqualTo(utc(2024, 2, 29, 23, 59, 59));
+        assertThat(epochSecond("1969-12-31T23:59:59Z")).isEqualTo(-1);
+        assertThat(epochSecond("2000-03-01T00:00")).isEqualTo(utc(2000, 3, 1, 0, 0, 0));
+        assertThat(epochSecond("2000-02-29T00:00")).isEqualTo(utc(2000, 2, 29, 0, 0, 0));
+    }
+
+    @Test
+    void readsEpochSecondsAndMilliseconds() {
+        assertThat(epochSecond("1705312800")).isEqualTo(1705312800L);
+        assertThat(epochSecond("1705312800123")).isEqualTo(1705312800L);
+    }
+
+    @Test
+    void rejectsWhatItCannotRead() {
+        assertThat(epochSecond("t")).isEqualTo(TimeFilter.INVALID);
+        assertThat(epochSecond("2024-13-01T00:00")).isEqualTo(TimeFilter.INVALID);
+        assertThat(epochSecond("2023-02-29T00:00")).isEqualTo(TimeFilter.INVALID);
+        assertThat(epochSecond("2024-02-31T00:00")).isEqualTo(TimeFilter.INVALID);
+        assertThat(epochSecond("2024-04-31T00:00")).isEqualTo(TimeFilter.INVALID);
+        assertThat(epochSecond("1900-02-29T00:00")).isEqualTo(TimeFilter.INVALID);
+        assertThat(epochSecond("2024-01-15 10:00")).isEqualTo(TimeFilter.INVALID);
+        assertThat(epochSecond("2024-01-15T1x:00")).isEqualTo(TimeFilter.INVALID);
+        assertThat(epochSecond("2024-01-15")).isEqualTo(TimeFilter.INVALID);
+    }
+
+    @Test
+    void acceptsTheRangeAndDailyWindow() {
+        TimeFilter filter = new TimeFilter(LocalDateTime.of(2024, 1, 15, 0, 0), LocalDateTime.of(2024, 1, 17, 0, 0),
+                LocalTime.of(9, 0), LocalTime.of(17, 0));
+
+        assertThat(filter.accepts(utc(2024, 1, 15, 9, 0, 0))).isTrue();
+        assertThat(filter.accepts(utc(2024, 1, 16, 16, 59, 59))).isTrue();
+        assertThat(filter.accepts(utc(2024, 1, 16, 17, 0, 0))).isFalse();
+        assertThat(filter.accepts(utc(2024, 1, 14, 12, 0, 0))).isFalse();
+        assertThat(filter.accepts(utc(2024, 1, 17, 12, 0, 0))).isFalse();
+    }
+
+    @Test
+    void dailyWindowMayWrapPastMidnight() {
+        TimeFilter night = new TimeFilter(null, null, LocalTime.of(22, 0), LocalTime.of(6, 0));
+
+        assertThat(night.accepts(utc(2024, 1, 15, 23, 0, 0))).isTrue();
+        assertThat(night.accepts(utc(2024, 1, 15, 5, 59, 0))).isTrue();
+        assertThat(night.accepts(utc(2024, 1, 15, 12, 0, 0))).isFalse();
+        assertThat(night.isBounded()).isFalse();
+        assertThat(TimeFilter.NONE.isActive()).isFalse();
+    }
+
+    @Test
+    void emptyRangesAreRejected() {
+        LocalDateTime noon = LocalDateTime.of(2024, 1, 15, 12, 0);
+        assertThatThrownBy(() -> new TimeFilter(noon, noon, null, null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TimeFilter(null, null, LocalTime.NOON, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
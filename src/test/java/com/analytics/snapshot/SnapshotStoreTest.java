@@ -0,0 +1,152 @@
+package com.analytics.snapshot;
+
+import com.analytics.collection.ByteSlice;
+import com.analytics.model.DaySketch;
+import com.analytics.model.DaySummary;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnapshotStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path log;
+    private SnapshotStore store;
+
+    private DaySummary summary(String... visits) {
+        DaySummary summary = new DaySummary(2);
+        for (String visit : visits) {
+            ByteBuffer line = ByteBuffer.wrap(visit.getBytes(StandardCharsets.UTF_8));
+            int space = visit.indexOf(' ');
+            summary.record(line, 0, space, space + 1, line.limit());
+        }
+        return summary;
+    }
+
+    private void setUp() throws IOException {
+        log = tempDir.resolve("day.log");
+        Files.writeString(log, "t /home cust_b\nt /about cust_b\nt /home cust_a\n");
+        store = new SnapshotStore(tempDir.resolve("snapshots"));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void roundTripsCustomersPagesAndSaturation() throws IOException {
+        setUp();
+        store.save(log, summary("/home cust_b", "/about cust_b", "/home cust_a"));
+
+        DaySummary loaded = store.load(log, 2).orElseThrow();
+
+        assertThat(loaded.customerCount()).isEqualTo(2);
+        int a = loaded.findCustomer(bytes("cust_a"));
+        int b = loaded.findCustomer(bytes("cust_b"));
+        assertThat(a).as("customers are stored sorted").isZero();
+        assertThat(loaded.isSaturated(b)).isTrue();
+        assertThat(loaded.distinctPages(a)).isEqualTo(1);
+        assertThat(loaded.pageBytes(loaded.samplePage(a, 0))).isEqualTo(bytes("/home"));
+    }
+
+    @Test
+    void missingSnapshotIsEmpty() throws IOException {
+        setUp();
+
+        assertThat(store.load(log, 2)).isEmpty();
+    }
+
+    @Test
+    void staleSnapshotIsIgnored() throws IOException {
+        setUp();
+        store.save(log, summary("/home cust_a"));
+
+        Files.setLastModifiedTime(log, FileTime.fromMillis(Files.getLastModifiedTime(log).toMillis() + 60_000));
+
+        assertThat(store.load(log, 2)).isEmpty();
+    }
+
+    @Test
+    void corruptSnapshotIsIgnored() throws IOException {
+        setUp();
+        store.save(log, summary("/home cust_a", "/about cust_b"));
+        Path snapshot = store.snapshotPath(log);
+        byte[] content = Files.readAllBytes(snapshot);
+        content[content.length - 3] ^= 0x5A;
+        Files.write(snapshot, content);
+
+        assertThat(store.load(log, 2)).isEmpty();
+    }
+
+    @Test
+    void snapshotForAnotherPageLimitIsIgnored() throws IOException {
+        setUp();
+        store.save(log, summary("/home cust_a"));
+
+        assertThat(store.load(log, 3)).isEmpty();
+    }
+
+    @Test
+    void loadOrSummarizeParsesOnceAndThenReusesTheSnapshot() throws IOException {
+        setUp();
+        AtomicInteger parses = new AtomicInteger();
+        SnapshotStore.Summarizer summarizer = path -> {
+            parses.incrementAndGet();
+            return summary("/home cust_a");
+        };
+
+        store.loadOrSummarize(log, 2, summarizer);
+        DaySummary second = store.loadOrSummarize(log, 2, summarizer);
+
+        assertThat(parses).hasValue(1);
+        assertThat(second.findCustomer(bytes("cust_a"))).isZero();
+        assertThat(Files.exists(store.snapshotPath(log))).isTrue();
+    }
+
+    @Test
+    void sketchRoundTripsAndGivesTheSameEstimate() throws IOException {
+        setUp();
+        DaySketch sketch = new DaySketch(16);
+        for (int i = 0; i < 100; i++) {
+            ByteBuffer line = ByteBuffer.wrap(bytes("/p" + (i % 3) + " cust_" + i % 40));
+            sketch.record(new ByteSlice().set(line, 0, 3), new ByteSlice().set(line, 4, line.limit()));
+        }
+        store.saveSketch(log, sketch);
+
+        DaySketch loaded = store.loadSketch(log).orElseThrow();
+
+        assertThat(loaded.threshold()).isEqualTo(sketch.threshold());
+        assertThat(loaded.sampleSize()).isEqualTo(sketch.sampleSize());
+        assertThat(loaded.distinctCustomers()).isEqualTo(sketch.distinctCustomers());
+        assertThat(DaySketch.estimateLoyal(loaded, loaded)).isEqualTo(DaySketch.estimateLoyal(sketch, sketch));
+    }
+
+    @Test
+    void staleOrCorruptSketchIsIgnored() throws IOException {
+        setUp();
+        store.saveSketch(log, new DaySketch(16));
+        Path sketch = store.sketchPath(log);
+        byte[] content = Files.readAllBytes(sketch);
+        content[content.length - 1] ^= 0x5A;
+        Files.write(sketch, content);
+
+        assertThat(store.loadSketch(log)).isEmpty();
+
+        store.saveSketch(log, new DaySketch(16));
+        Files.setLastModifiedTime(log, FileTime.fromMillis(Files.getLastModifiedTime(log).toMillis() + 60_000));
+
+        assertThat(store.loadSketch(log)).isEmpty();
+        assertThat(store.load(log, 2)).as("summaries and sketches are separate files").isEmpty();
+    }
+}